@@ -7,6 +7,7 @@ import com.google.inject.Injector;
 import com.mambu.apisdk.exception.MambuApiException;
 import com.mambu.apisdk.services.AccountingService;
 import com.mambu.apisdk.services.ActivitiesService;
+import com.mambu.apisdk.services.Client360Service;
 import com.mambu.apisdk.services.ClientsService;
 import com.mambu.apisdk.services.CommentsService;
 import com.mambu.apisdk.services.CustomFieldValueService;
@@ -282,6 +283,18 @@ public class MambuAPIFactory {
 		return injector.getInstance(DocumentTemplatesService.class);
 	}
 
+	/***
+	 * Get an instance of the Client360Service class
+	 * 
+	 * @return the obtained instance
+	 * 
+	 * @throws MambuApiException
+	 */
+	public static Client360Service getClient360Service() throws MambuApiException {
+		validateFactorySetUp();
+		return injector.getInstance(Client360Service.class);
+	}
+
 	//
 	/***
 	 * Setter for an Application Key
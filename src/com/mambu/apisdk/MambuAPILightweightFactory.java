@@ -0,0 +1,310 @@
+package com.mambu.apisdk;
+
+import com.mambu.apisdk.services.AccountingService;
+import com.mambu.apisdk.services.ActivitiesService;
+import com.mambu.apisdk.services.Client360Service;
+import com.mambu.apisdk.services.ClientsService;
+import com.mambu.apisdk.services.CommentsService;
+import com.mambu.apisdk.services.CustomFieldValueService;
+import com.mambu.apisdk.services.CustomViewsService;
+import com.mambu.apisdk.services.DocumentTemplatesService;
+import com.mambu.apisdk.services.DocumentsService;
+import com.mambu.apisdk.services.IntelligenceService;
+import com.mambu.apisdk.services.LinesOfCreditService;
+import com.mambu.apisdk.services.LoansService;
+import com.mambu.apisdk.services.OrganizationService;
+import com.mambu.apisdk.services.RepaymentsService;
+import com.mambu.apisdk.services.SavingsService;
+import com.mambu.apisdk.services.SearchService;
+import com.mambu.apisdk.services.TasksService;
+import com.mambu.apisdk.services.UsersService;
+import com.mambu.apisdk.util.RequestExecutorImpl;
+import com.mambu.apisdk.util.URLHelper;
+
+/**
+ * Factory for creating Mambu API Service objects for a tenant without Guice.
+ * 
+ * The request executor and the API services are wired directly, which avoids the injector bootstrap cost in short lived
+ * processes (batch jobs, serverless functions). Services are created on first use and then cached: each getter returns
+ * the same service instance for the lifetime of the factory. Services are stateless and thread safe, so the instances
+ * can be shared
+ * 
+ * @author agent
+ * 
+ */
+public class MambuAPILightweightFactory {
+
+	private final MambuAPIService mambuAPIService;
+
+	// Service instances, created on first use. Guarded by this
+	private ClientsService clientsService;
+	private LoansService loansService;
+	private SavingsService savingsService;
+	private IntelligenceService intelligenceService;
+	private RepaymentsService repaymentsService;
+	private OrganizationService organizationService;
+	private AccountingService accountingService;
+	private UsersService usersService;
+	private SearchService searchService;
+	private TasksService tasksService;
+	private DocumentsService documentsService;
+	private ActivitiesService activitiesService;
+	private CommentsService commentsService;
+	private LinesOfCreditService linesOfCreditService;
+	private CustomFieldValueService customFieldValueService;
+	private CustomViewsService customViewsService;
+	private DocumentTemplatesService documentTemplatesService;
+	private Client360Service client360Service;
+
+	/***
+	 * Create a factory for services using the supplied Mambu API service
+	 * 
+	 * @param mambuAPIService
+	 *            Mambu API service with the tenant's credentials. Must not be null
+	 */
+	public MambuAPILightweightFactory(MambuAPIService mambuAPIService) {
+		if (mambuAPIService == null) {
+			throw new IllegalArgumentException("Mambu API Service must not be null");
+		}
+		this.mambuAPIService = mambuAPIService;
+	}
+
+	/***
+	 * Create a factory object to retrieve Mambu API services that have Mambu credentials built-in
+	 * 
+	 * @param domain
+	 *            the domain where the server is found
+	 * @param username
+	 *            the name of the user
+	 * @param password
+	 *            the password used by the user
+	 * 
+	 * @return factory object to create API service objects which are bound to the given credentials
+	 */
+	public static MambuAPILightweightFactory getFactory(String domain, String username, String password) {
+		URLHelper urlHelper = new URLHelper(domain);
+		RequestExecutorImpl executor = new RequestExecutorImpl(urlHelper);
+		MambuAPIService mambuAPIService = new MambuAPIService(domain, username, password, executor, urlHelper);
+		return new MambuAPILightweightFactory(mambuAPIService);
+	}
+
+	public MambuAPIService getMambuAPIService() {
+		return mambuAPIService;
+	}
+
+	/***
+	 * Get the ClientsService instance, equivalent of {@link MambuAPIServiceFactory#getClientService()}
+	 * 
+	 * @return the obtained instance
+	 */
+	public synchronized ClientsService getClientService() {
+		if (clientsService == null) {
+			clientsService = new ClientsService(mambuAPIService);
+		}
+		return clientsService;
+	}
+
+	/***
+	 * Get the LoansService instance, equivalent of {@link MambuAPIServiceFactory#getLoanService()}
+	 * 
+	 * @return the obtained instance
+	 */
+	public synchronized LoansService getLoanService() {
+		if (loansService == null) {
+			loansService = new LoansService(mambuAPIService);
+		}
+		return loansService;
+	}
+
+	/***
+	 * Get the SavingsService instance, equivalent of {@link MambuAPIServiceFactory#getSavingsService()}
+	 * 
+	 * @return the obtained instance
+	 */
+	public synchronized SavingsService getSavingsService() {
+		if (savingsService == null) {
+			savingsService = new SavingsService(mambuAPIService);
+		}
+		return savingsService;
+	}
+
+	/***
+	 * Get the IntelligenceService instance, equivalent of {@link MambuAPIServiceFactory#getIntelligenceService()}
+	 * 
+	 * @return the obtained instance
+	 */
+	public synchronized IntelligenceService getIntelligenceService() {
+		if (intelligenceService == null) {
+			intelligenceService = new IntelligenceService(mambuAPIService);
+		}
+		return intelligenceService;
+	}
+
+	/***
+	 * Get the RepaymentsService instance, equivalent of {@link MambuAPIServiceFactory#getRepaymentsService()}
+	 * 
+	 * @return the obtained instance
+	 */
+	public synchronized RepaymentsService getRepaymentsService() {
+		if (repaymentsService == null) {
+			repaymentsService = new RepaymentsService(mambuAPIService);
+		}
+		return repaymentsService;
+	}
+
+	/***
+	 * Get the OrganizationService instance, equivalent of {@link MambuAPIServiceFactory#getOrganizationService()}
+	 * 
+	 * @return the obtained instance
+	 */
+	public synchronized OrganizationService getOrganizationService() {
+		if (organizationService == null) {
+			organizationService = new OrganizationService(mambuAPIService);
+		}
+		return organizationService;
+	}
+
+	/***
+	 * Get the AccountingService instance, equivalent of {@link MambuAPIServiceFactory#getAccountingService()}
+	 * 
+	 * @return the obtained instance
+	 */
+	public synchronized AccountingService getAccountingService() {
+		if (accountingService == null) {
+			accountingService = new AccountingService(mambuAPIService);
+		}
+		return accountingService;
+	}
+
+	/***
+	 * Get the UsersService instance, equivalent of {@link MambuAPIServiceFactory#getUsersService()}
+	 * 
+	 * @return the obtained instance
+	 */
+	public synchronized UsersService getUsersService() {
+		if (usersService == null) {
+			usersService = new UsersService(mambuAPIService);
+		}
+		return usersService;
+	}
+
+	/***
+	 * Get the SearchService instance, equivalent of {@link MambuAPIServiceFactory#getSearchService()}
+	 * 
+	 * @return the obtained instance
+	 */
+	public synchronized SearchService getSearchService() {
+		if (searchService == null) {
+			searchService = new SearchService(mambuAPIService);
+		}
+		return searchService;
+	}
+
+	/***
+	 * Get the TasksService instance, equivalent of {@link MambuAPIServiceFactory#getTasksService()}
+	 * 
+	 * @return the obtained instance
+	 */
+	public synchronized TasksService getTasksService() {
+		if (tasksService == null) {
+			tasksService = new TasksService(mambuAPIService);
+		}
+		return tasksService;
+	}
+
+	/***
+	 * Get the DocumentsService instance, equivalent of {@link MambuAPIServiceFactory#getDocumentsService()}
+	 * 
+	 * @return the obtained instance
+	 */
+	public synchronized DocumentsService getDocumentsService() {
+		if (documentsService == null) {
+			documentsService = new DocumentsService(mambuAPIService);
+		}
+		return documentsService;
+	}
+
+	/***
+	 * Get the ActivitiesService instance, equivalent of {@link MambuAPIServiceFactory#getActivitiesService()}
+	 * 
+	 * @return the obtained instance
+	 */
+	public synchronized ActivitiesService getActivitiesService() {
+		if (activitiesService == null) {
+			activitiesService = new ActivitiesService(mambuAPIService);
+		}
+		return activitiesService;
+	}
+
+	/***
+	 * Get the CommentsService instance, equivalent of {@link MambuAPIServiceFactory#getCommentsService()}
+	 * 
+	 * @return the obtained instance
+	 */
+	public synchronized CommentsService getCommentsService() {
+		if (commentsService == null) {
+			commentsService = new CommentsService(mambuAPIService);
+		}
+		return commentsService;
+	}
+
+	/***
+	 * Get the LinesOfCreditService instance, equivalent of {@link MambuAPIServiceFactory#getLineOfCreditService()}
+	 * 
+	 * @return the obtained instance
+	 */
+	public synchronized LinesOfCreditService getLineOfCreditService() {
+		if (linesOfCreditService == null) {
+			linesOfCreditService = new LinesOfCreditService(mambuAPIService);
+		}
+		return linesOfCreditService;
+	}
+
+	/***
+	 * Get the CustomFieldValueService instance, equivalent of {@link MambuAPIServiceFactory#getCustomFieldValueService()}
+	 * 
+	 * @return the obtained instance
+	 */
+	public synchronized CustomFieldValueService getCustomFieldValueService() {
+		if (customFieldValueService == null) {
+			customFieldValueService = new CustomFieldValueService(mambuAPIService);
+		}
+		return customFieldValueService;
+	}
+
+	/***
+	 * Get the CustomViewsService instance, equivalent of {@link MambuAPIServiceFactory#getCustomViewsService()}
+	 * 
+	 * @return the obtained instance
+	 */
+	public synchronized CustomViewsService getCustomViewsService() {
+		if (customViewsService == null) {
+			customViewsService = new CustomViewsService(mambuAPIService);
+		}
+		return customViewsService;
+	}
+
+	/***
+	 * Get the DocumentTemplatesService instance, equivalent of {@link MambuAPIServiceFactory#getDocumentTemplatesService()}
+	 * 
+	 * @return the obtained instance
+	 */
+	public synchronized DocumentTemplatesService getDocumentTemplatesService() {
+		if (documentTemplatesService == null) {
+			documentTemplatesService = new DocumentTemplatesService(mambuAPIService);
+		}
+		return documentTemplatesService;
+	}
+
+	/***
+	 * Get the Client360Service instance, equivalent of {@link MambuAPIServiceFactory#getClient360Service()}
+	 * 
+	 * @return the obtained instance
+	 */
+	public synchronized Client360Service getClient360Service() {
+		if (client360Service == null) {
+			client360Service = new Client360Service(mambuAPIService);
+		}
+		return client360Service;
+	}
+}
@@ -0,0 +1,231 @@
+package com.mambu.apisdk;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.mambu.apisdk.exception.MambuApiException;
+import com.mambu.apisdk.util.RequestExecutor;
+import com.mambu.apisdk.util.RequestExecutorImpl;
+import com.mambu.apisdk.util.RequestThrottle;
+import com.mambu.apisdk.util.ThrottledRequestExecutor;
+import com.mambu.apisdk.util.URLHelper;
+
+/**
+ * Factory for applications serving many tenants from one JVM.
+ *
+ * All tenants share one HTTP transport with one connection pool. Each tenant has its own credentials, application key,
+ * rate limit and bulkhead (see {@link MambuAPITenantSettings}). Tenant contexts are created on first use and are evicted
+ * when not used for the configured idle time or when the number of active tenants exceeds the maximum (least recently
+ * used first), so memory grows with the number of active tenants and not with the number of registered tenants. The
+ * limits of a tenant are kept until it is unregistered and are shared by all its contexts, including evicted contexts
+ * still used by callers.
+ *
+ * Example: factory.registerTenant(settings); LoansService loansService =
+ * factory.getTenant("tenant.mambu.com").getLoanService();
+ *
+ * @author agent
+ *
+ */
+public class MambuAPIMultiTenantFactory {
+
+	private final static Logger LOGGER = Logger.getLogger(MambuAPIMultiTenantFactory.class.getName());
+
+	// Defaults
+	public final static int DEFAULT_MAX_TOTAL_CONNECTIONS = 200;
+	public final static int DEFAULT_MAX_CONNECTIONS_PER_TENANT = 20;
+	public final static int DEFAULT_MAX_ACTIVE_TENANTS = 1000;
+	public final static long DEFAULT_IDLE_TENANT_MINUTES = 30;
+
+	private final PoolingHttpClientConnectionManager connectionManager;
+	private final CloseableHttpClient sharedHttpClient;
+
+	// Settings for all registered tenants, keyed by domain
+	private final ConcurrentMap<String, MambuAPITenantSettings> tenantSettings = new ConcurrentHashMap<String, MambuAPITenantSettings>();
+	// Limits of the registered tenants, keyed by domain. Shared by all contexts of a tenant, including evicted contexts
+	// still used by callers, and kept until the tenant is unregistered
+	private final ConcurrentMap<String, RequestThrottle> tenantThrottles =
+			new ConcurrentHashMap<String, RequestThrottle>();
+	// Contexts for the active tenants only, keyed by domain
+	private final LoadingCache<String, MambuAPITenant> activeTenants;
+
+	/***
+	 * Create a multi-tenant factory with default pool size and tenant eviction settings
+	 */
+	public MambuAPIMultiTenantFactory() {
+		this(DEFAULT_MAX_TOTAL_CONNECTIONS, DEFAULT_MAX_CONNECTIONS_PER_TENANT, DEFAULT_MAX_ACTIVE_TENANTS,
+				DEFAULT_IDLE_TENANT_MINUTES);
+	}
+
+	/***
+	 * Create a multi-tenant factory
+	 *
+	 * @param maxTotalConnections
+	 *            maximum number of connections in the shared pool
+	 * @param maxConnectionsPerTenant
+	 *            maximum number of pooled connections to one tenant's domain
+	 * @param maxActiveTenants
+	 *            maximum number of tenant contexts kept in memory. Least recently used contexts are evicted first
+	 * @param idleTenantMinutes
+	 *            tenant contexts not used for this number of minutes are evicted
+	 */
+	public MambuAPIMultiTenantFactory(int maxTotalConnections, int maxConnectionsPerTenant, int maxActiveTenants,
+			long idleTenantMinutes) {
+
+		if (maxTotalConnections <= 0 || maxConnectionsPerTenant <= 0 || maxActiveTenants <= 0
+				|| idleTenantMinutes <= 0) {
+			throw new IllegalArgumentException("Pool sizes, maximum active tenants and idle time must be positive");
+		}
+
+		connectionManager = new PoolingHttpClientConnectionManager();
+		connectionManager.setMaxTotal(maxTotalConnections);
+		connectionManager.setDefaultMaxPerRoute(maxConnectionsPerTenant);
+		sharedHttpClient = HttpClients.custom().setConnectionManager(connectionManager).build();
+
+		activeTenants = CacheBuilder.newBuilder().maximumSize(maxActiveTenants)
+				.expireAfterAccess(idleTenantMinutes, TimeUnit.MINUTES)
+				.removalListener(new RemovalListener<String, MambuAPITenant>() {
+					@Override
+					public void onRemoval(RemovalNotification<String, MambuAPITenant> notification) {
+						LOGGER.fine("Tenant context removed for " + notification.getKey() + " cause="
+								+ notification.getCause());
+					}
+				}).build(new CacheLoader<String, MambuAPITenant>() {
+					@Override
+					public MambuAPITenant load(String domain) throws MambuApiException {
+						return createTenant(domain);
+					}
+				});
+	}
+
+	/***
+	 * Register a tenant. Registering a tenant with the same domain again replaces its settings and discards its current
+	 * context. The new rate and concurrency limits also apply to the contexts obtained before
+	 *
+	 * @param settings
+	 *            tenant's settings. Must not be null
+	 */
+	public synchronized void registerTenant(MambuAPITenantSettings settings) {
+		if (settings == null) {
+			throw new IllegalArgumentException("Tenant settings must not be null");
+		}
+		String domain = settings.getDomain();
+		if (settings.isThrottled()) {
+			RequestThrottle throttle = tenantThrottles.get(domain);
+			if (throttle == null) {
+				tenantThrottles.put(domain, new RequestThrottle(settings.getRequestsPerSecond(),
+						settings.getMaxConcurrentRequests(), settings.getMaxWaitMillis()));
+			} else {
+				throttle.setLimits(settings.getRequestsPerSecond(), settings.getMaxConcurrentRequests(),
+						settings.getMaxWaitMillis());
+			}
+		} else {
+			tenantThrottles.remove(domain);
+		}
+		tenantSettings.put(domain, settings);
+		activeTenants.invalidate(domain);
+	}
+
+	/***
+	 * Unregister a tenant and discard its context
+	 *
+	 * @param domain
+	 *            tenant's domain
+	 */
+	public synchronized void unregisterTenant(String domain) {
+		tenantSettings.remove(domain);
+		tenantThrottles.remove(domain);
+		activeTenants.invalidate(domain);
+	}
+
+	/***
+	 * Get the context for a registered tenant. The context is created if the tenant is not active
+	 *
+	 * @param domain
+	 *            tenant's domain
+	 * @return tenant's context
+	 * @throws MambuApiException
+	 *             if the tenant is not registered
+	 */
+	public MambuAPITenant getTenant(String domain) throws MambuApiException {
+		try {
+			return activeTenants.get(domain);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof MambuApiException) {
+				throw (MambuApiException) e.getCause();
+			}
+			throw new MambuApiException(e);
+		}
+	}
+
+	/***
+	 * Get the number of tenant contexts currently kept in memory
+	 *
+	 * @return number of active tenants
+	 */
+	public long getActiveTenantsCount() {
+		activeTenants.cleanUp();
+		return activeTenants.size();
+	}
+
+	/***
+	 * Get the number of registered tenants
+	 *
+	 * @return number of registered tenants
+	 */
+	public int getRegisteredTenantsCount() {
+		return tenantSettings.size();
+	}
+
+	/***
+	 * Discard all tenant contexts and close the shared transport. The factory cannot be used after it was shut down
+	 */
+	public void shutdown() {
+		activeTenants.invalidateAll();
+		try {
+			sharedHttpClient.close();
+		} catch (IOException e) {
+			LOGGER.warning("IOException when closing shared http client: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Create a context for a registered tenant: an executor sending requests via the shared http client, throttled by
+	 * the tenant's shared limits
+	 */
+	private MambuAPITenant createTenant(String domain) throws MambuApiException {
+
+		MambuAPITenantSettings settings = tenantSettings.get(domain);
+		if (settings == null) {
+			throw new MambuApiException(-1, "Tenant is not registered: " + domain);
+		}
+
+		URLHelper urlHelper = new URLHelper(domain);
+		RequestExecutorImpl requestExecutor = new RequestExecutorImpl(urlHelper, sharedHttpClient);
+		requestExecutor.setApplicationKey(settings.getApplicationKey());
+
+		RequestExecutor executor = requestExecutor;
+		RequestThrottle throttle = tenantThrottles.get(domain);
+		if (throttle != null) {
+			executor = new ThrottledRequestExecutor(requestExecutor, throttle);
+		}
+
+		MambuAPIService mambuAPIService = new MambuAPIService(domain, settings.getUsername(), settings.getPassword(),
+				executor, urlHelper);
+
+		LOGGER.fine("Created tenant context for " + domain);
+		return new MambuAPITenant(domain, mambuAPIService);
+	}
+}
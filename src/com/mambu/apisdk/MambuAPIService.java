@@ -5,6 +5,7 @@ import java.net.MalformedURLException;
 
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
+import com.mambu.apisdk.cache.EntityCache;
 import com.mambu.apisdk.exception.MambuApiException;
 import com.mambu.apisdk.model.Domain;
 import com.mambu.apisdk.model.Password;
@@ -25,6 +26,8 @@ public class MambuAPIService {
 
 	private RequestExecutor executor;
 	private URLHelper urlHelper;
+	// Optional cache for entities read by the services using this Mambu API service
+	private volatile EntityCache entityCache;
 
 	/**
 	 * Creates a Mambu API Service class
@@ -124,6 +127,25 @@ public class MambuAPIService {
 		return executor.executeRequest(urlString, method, contentTypeFormat);
 	}
 
+	/**
+	 * Executes the request for a resource which may not exist. A Not Found response is thrown as MambuApiException
+	 * with the 404 error code but is not logged as an error. See
+	 * {@link RequestExecutor#executeLookupRequest(String, ParamsMap, Method, RequestExecutor.ContentType)}
+	 * 
+	 * @param urlString
+	 * @param params
+	 * @param method
+	 * @param contentTypeFormat
+	 * 
+	 * @return String
+	 * 
+	 * @throws MambuApiException
+	 */
+	public String executeLookupRequest(String urlString, ParamsMap params, Method method,
+			RequestExecutor.ContentType contentTypeFormat) throws MambuApiException {
+		return executor.executeLookupRequest(urlString, params, method, contentTypeFormat);
+	}
+
 	/**
 	 * Creates the URL for the request executor
 	 * 
@@ -157,4 +179,25 @@ public class MambuAPIService {
 
 		return (url);
 	}
+
+	/**
+	 * Get the entity cache used by the services created with this Mambu API service
+	 * 
+	 * @return entity cache or null if entities are not cached
+	 */
+	public EntityCache getEntityCache() {
+		return entityCache;
+	}
+
+	/**
+	 * Set the entity cache to be used by the services created with this Mambu API service. Entities read with
+	 * ClientsService.getClient(), LoansService.getLoanAccount() and SavingsService.getSavingsAccount() are then cached
+	 * and invalidated when the services update them
+	 * 
+	 * @param entityCache
+	 *            entity cache. If null, entities are not cached
+	 */
+	public void setEntityCache(EntityCache entityCache) {
+		this.entityCache = entityCache;
+	}
 }
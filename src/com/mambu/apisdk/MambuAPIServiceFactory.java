@@ -5,6 +5,7 @@ import com.google.inject.Injector;
 import com.mambu.apisdk.exception.MambuApiException;
 import com.mambu.apisdk.services.AccountingService;
 import com.mambu.apisdk.services.ActivitiesService;
+import com.mambu.apisdk.services.Client360Service;
 import com.mambu.apisdk.services.ClientsService;
 import com.mambu.apisdk.services.CommentsService;
 import com.mambu.apisdk.services.CustomFieldValueService;
@@ -250,4 +251,15 @@ public final class MambuAPIServiceFactory {
 		return injector.getInstance(DocumentTemplatesService.class);
 	}
 
+	/***
+	 * Get an instance of the Client360Service class
+	 * 
+	 * @return the obtained instance
+	 * 
+	 * @throws MambuApiException
+	 */
+	public Client360Service getClient360Service() throws MambuApiException {
+		return injector.getInstance(Client360Service.class);
+	}
+
 }
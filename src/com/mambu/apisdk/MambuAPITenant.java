@@ -0,0 +1,32 @@
+package com.mambu.apisdk;
+
+/**
+ * A tenant's context in the {@link MambuAPIMultiTenantFactory}. Provides Mambu API services which are bound to the
+ * tenant's credentials and send their requests via the transport shared by all tenants. Services are created on first
+ * use and cached for the lifetime of the context
+ * 
+ * @author agent
+ * 
+ */
+public class MambuAPITenant extends MambuAPILightweightFactory {
+
+	private final String domain;
+
+	/***
+	 * Create tenant's context
+	 * 
+	 * @param domain
+	 *            tenant's domain
+	 * @param mambuAPIService
+	 *            Mambu API service with tenant's credentials
+	 */
+	public MambuAPITenant(String domain, MambuAPIService mambuAPIService) {
+		super(mambuAPIService);
+		this.domain = domain;
+	}
+
+	public String getDomain() {
+		return domain;
+	}
+
+}
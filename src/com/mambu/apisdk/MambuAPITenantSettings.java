@@ -0,0 +1,121 @@
+package com.mambu.apisdk;
+
+/**
+ * Settings for accessing one tenant via the {@link MambuAPIMultiTenantFactory}: tenant's credentials, application key
+ * and the limits isolating this tenant from other tenants sharing the same transport
+ *
+ * @author agent
+ *
+ */
+public class MambuAPITenantSettings {
+
+	/**
+	 * Default maximum time to wait for a rate limit or a bulkhead permit before rejecting the request
+	 */
+	public final static long DEFAULT_MAX_WAIT_MILLIS = 30000;
+
+	private final String domain;
+	private final String username;
+	private final String password;
+	private String applicationKey;
+	private Double requestsPerSecond;
+	private Integer maxConcurrentRequests;
+	private long maxWaitMillis = DEFAULT_MAX_WAIT_MILLIS;
+
+	/***
+	 * Create tenant settings with the tenant's credentials. The tenant's domain identifies the tenant in the
+	 * {@link MambuAPIMultiTenantFactory}
+	 *
+	 * @param domain
+	 *            the domain where the server is found
+	 * @param username
+	 *            the name of the user
+	 * @param password
+	 *            the password used by the user
+	 */
+	public MambuAPITenantSettings(String domain, String username, String password) {
+		if (domain == null || domain.trim().isEmpty()) {
+			throw new IllegalArgumentException("Domain must not be null or empty");
+		}
+		this.domain = domain;
+		this.username = username;
+		this.password = password;
+	}
+
+	public String getDomain() {
+		return domain;
+	}
+
+	public String getUsername() {
+		return username;
+	}
+
+	public String getPassword() {
+		return password;
+	}
+
+	public String getApplicationKey() {
+		return applicationKey;
+	}
+
+	/***
+	 * Set the Application Key to be used for this tenant's requests
+	 *
+	 * @param applicationKey
+	 *            application key. If null, the key set with {@link MambuAPIFactory#setApplicationKey(String)} is used
+	 */
+	public void setApplicationKey(String applicationKey) {
+		this.applicationKey = applicationKey;
+	}
+
+	public Double getRequestsPerSecond() {
+		return requestsPerSecond;
+	}
+
+	/***
+	 * Set the maximum number of requests per second for this tenant
+	 *
+	 * @param requestsPerSecond
+	 *            requests per second. If null, the rate is not limited
+	 */
+	public void setRequestsPerSecond(Double requestsPerSecond) {
+		this.requestsPerSecond = requestsPerSecond;
+	}
+
+	public Integer getMaxConcurrentRequests() {
+		return maxConcurrentRequests;
+	}
+
+	/***
+	 * Set the maximum number of requests in flight for this tenant (the tenant's bulkhead)
+	 *
+	 * @param maxConcurrentRequests
+	 *            maximum concurrent requests. If null, the number is limited only by the shared connection pool
+	 */
+	public void setMaxConcurrentRequests(Integer maxConcurrentRequests) {
+		this.maxConcurrentRequests = maxConcurrentRequests;
+	}
+
+	public long getMaxWaitMillis() {
+		return maxWaitMillis;
+	}
+
+	/***
+	 * Set the maximum time to wait for the rate limit or the bulkhead before the request is rejected
+	 *
+	 * @param maxWaitMillis
+	 *            wait time in milliseconds
+	 */
+	public void setMaxWaitMillis(long maxWaitMillis) {
+		this.maxWaitMillis = maxWaitMillis;
+	}
+
+	/***
+	 * Check if requests for this tenant must be throttled
+	 *
+	 * @return true if either the rate or the number of concurrent requests is limited
+	 */
+	public boolean isThrottled() {
+		return requestsPerSecond != null || maxConcurrentRequests != null;
+	}
+}
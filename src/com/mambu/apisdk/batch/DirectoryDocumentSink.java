@@ -0,0 +1,100 @@
+package com.mambu.apisdk.batch;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Writes each document to its own file in a directory, named after the entity ID. Example: "LOAN123.html". Characters
+ * which are not safe in file names are percent-encoded.
+ *
+ * Documents are written to a temporary file first and then moved in place, so an existing file is always complete and
+ * is skipped when the batch is resumed
+ *
+ * @author agent
+ *
+ */
+public class DirectoryDocumentSink implements DocumentSink {
+
+	private final static Charset UTF8 = Charset.forName("UTF-8");
+
+	private final File directory;
+	private final String extension;
+
+	/***
+	 * Create directory sink for HTML documents
+	 *
+	 * @param directory
+	 *            output directory. Must not be null. Created if it does not exist
+	 * @throws IOException
+	 *             if the directory cannot be created
+	 */
+	public DirectoryDocumentSink(File directory) throws IOException {
+		this(directory, ".html");
+	}
+
+	/***
+	 * Create directory sink
+	 *
+	 * @param directory
+	 *            output directory. Must not be null. Created if it does not exist
+	 * @param extension
+	 *            file name extension. Example: ".html"
+	 * @throws IOException
+	 *             if the directory cannot be created
+	 */
+	public DirectoryDocumentSink(File directory, String extension) throws IOException {
+		if (directory == null) {
+			throw new IllegalArgumentException("Directory must not be null");
+		}
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Cannot create directory " + directory);
+		}
+		this.directory = directory;
+		this.extension = extension == null ? "" : extension;
+	}
+
+	@Override
+	public boolean isCompleted(String entityId) {
+		return getFile(entityId).exists();
+	}
+
+	@Override
+	public void write(String entityId, String document) throws IOException {
+		File file = getFile(entityId);
+		File tempFile = File.createTempFile(file.getName(), ".tmp", directory);
+		try {
+			OutputStream out = new FileOutputStream(tempFile);
+			try {
+				out.write(document.getBytes(UTF8));
+			} finally {
+				out.close();
+			}
+			Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			if (tempFile.exists()) {
+				tempFile.delete();
+			}
+		}
+	}
+
+	/***
+	 * Get the file of an entity's document
+	 *
+	 * @param entityId
+	 *            entity ID
+	 * @return document file
+	 */
+	public File getFile(String entityId) {
+		return new File(directory, ZipDocumentSink.toFileName(entityId) + extension);
+	}
+
+	@Override
+	public void close() {
+		// Each document is closed when written
+	}
+}
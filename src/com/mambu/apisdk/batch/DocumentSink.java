@@ -0,0 +1,40 @@
+package com.mambu.apisdk.batch;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Destination of the documents generated by {@link TemplateBatchGenerator}. Documents are written one at a time, from
+ * the thread running the generator, as soon as each one is received.
+ *
+ * A sink also records the progress of a batch: documents it already holds are not generated again, so that an
+ * interrupted batch can be resumed with a new sink for the same destination
+ *
+ * @author agent
+ *
+ * @see DirectoryDocumentSink
+ * @see ZipDocumentSink
+ */
+public interface DocumentSink extends Closeable {
+
+	/***
+	 * Check if the document of an entity was already written, by this sink or by a previous one for the same
+	 * destination
+	 *
+	 * @param entityId
+	 *            entity ID
+	 * @return true if the document is complete
+	 */
+	boolean isCompleted(String entityId);
+
+	/***
+	 * Write the document of an entity. The document must be complete once this method returns
+	 *
+	 * @param entityId
+	 *            entity ID
+	 * @param document
+	 *            populated template
+	 * @throws IOException
+	 */
+	void write(String entityId, String document) throws IOException;
+}
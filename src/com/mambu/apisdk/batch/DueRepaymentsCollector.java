@@ -0,0 +1,173 @@
+package com.mambu.apisdk.batch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import com.mambu.apisdk.MambuAPIService;
+import com.mambu.apisdk.exception.MambuApiException;
+import com.mambu.apisdk.services.RepaymentsService;
+import com.mambu.apisdk.util.DateUtils;
+import com.mambu.apisdk.util.FutureUtils;
+import com.mambu.loans.shared.model.Repayment;
+
+/**
+ * Collects the repayments due in a date range across the portfolio (see
+ * {@link RepaymentsService#getRapaymentsDueFromTo(String, String, String, String)}) with concurrent requests.
+ *
+ * The date range is split into shards of consecutive days (one day or one week, for example). Shards are fetched
+ * concurrently, each one paged until its last page, with at most the configured number of requests running at the same
+ * time. Repayments are streamed to a {@link RepaymentConsumer} in due date order as soon as all earlier shards are
+ * delivered, so only the shards being fetched or waiting for delivery are held in memory.
+ *
+ * Example:
+ *
+ * <pre>
+ * new DueRepaymentsCollector(mambuAPIService).collect(monthStart, monthEnd, 1, consumer);
+ * </pre>
+ *
+ * @author agent
+ *
+ */
+public class DueRepaymentsCollector {
+
+	private final static Logger LOGGER = Logger.getLogger(DueRepaymentsCollector.class.getName());
+
+	/**
+	 * Default number of repayments requested with one page
+	 */
+	public final static int DEFAULT_PAGE_SIZE = 500;
+	/**
+	 * Default maximum number of concurrent requests
+	 */
+	public final static int DEFAULT_MAX_CONCURRENT_REQUESTS = 4;
+
+	private final RepaymentsService repaymentsService;
+	private final int pageSize;
+	private final int maxConcurrentRequests;
+
+	/**
+	 * Orders repayments by due date. Repayments without a due date are last
+	 */
+	private static final Comparator<Repayment> DUE_DATE_ORDER = new Comparator<Repayment>() {
+		@Override
+		public int compare(Repayment first, Repayment second) {
+			if (first.getDueDate() == null || second.getDueDate() == null) {
+				return first.getDueDate() == null ? (second.getDueDate() == null ? 0 : 1) : -1;
+			}
+			return first.getDueDate().compareTo(second.getDueDate());
+		}
+	};
+
+	/***
+	 * Create due repayments collector with default page size and concurrency
+	 *
+	 * @param mambuAPIService
+	 *            the service responsible for the connection to the server
+	 */
+	public DueRepaymentsCollector(MambuAPIService mambuAPIService) {
+		this(mambuAPIService, DEFAULT_PAGE_SIZE, DEFAULT_MAX_CONCURRENT_REQUESTS);
+	}
+
+	/***
+	 * Create due repayments collector
+	 *
+	 * @param mambuAPIService
+	 *            the service responsible for the connection to the server
+	 * @param pageSize
+	 *            number of repayments requested with one page. Must be positive
+	 * @param maxConcurrentRequests
+	 *            maximum number of concurrent requests. Must be positive
+	 */
+	public DueRepaymentsCollector(MambuAPIService mambuAPIService, int pageSize, int maxConcurrentRequests) {
+		if (mambuAPIService == null) {
+			throw new IllegalArgumentException("Mambu API Service must not be null");
+		}
+		if (pageSize <= 0 || maxConcurrentRequests <= 0) {
+			throw new IllegalArgumentException("Page size and maximum concurrent requests must be positive");
+		}
+		this.repaymentsService = new RepaymentsService(mambuAPIService);
+		this.pageSize = pageSize;
+		this.maxConcurrentRequests = maxConcurrentRequests;
+	}
+
+	/***
+	 * Stream all repayments due in a date range to a consumer, in due date order
+	 *
+	 * @param dueFrom
+	 *            first due date. Only the full date without time is used
+	 * @param dueTo
+	 *            last due date. Only the full date without time is used
+	 * @param daysPerShard
+	 *            number of days fetched with one shard. Must be positive. Example: 1 for daily or 7 for weekly shards
+	 * @param consumer
+	 *            consumer of the repayments. Called from the calling thread only
+	 * @return number of repayments delivered
+	 * @throws MambuApiException
+	 *             if any request fails. The remaining requests are cancelled, the repayments of earlier shards are
+	 *             already delivered
+	 */
+	public int collect(Date dueFrom, Date dueTo, int daysPerShard, RepaymentConsumer consumer)
+			throws MambuApiException {
+		if (dueFrom == null || dueTo == null || consumer == null) {
+			throw new IllegalArgumentException("Due dates and consumer must not be null");
+		}
+		if (daysPerShard <= 0) {
+			throw new IllegalArgumentException("Days per shard must be positive");
+		}
+		List<String[]> shards = DateUtils.splitIntoDayRanges(dueFrom, dueTo, daysPerShard);
+		if (shards.isEmpty()) {
+			return 0;
+		}
+		int delivered = 0;
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(shards.size(), maxConcurrentRequests));
+		try {
+			// Shards are submitted ahead of delivery, keeping at most one pending shard per request thread
+			LinkedList<Future<List<Repayment>>> pending = new LinkedList<Future<List<Repayment>>>();
+			int next = 0;
+			while (next < shards.size() || !pending.isEmpty()) {
+				while (next < shards.size() && pending.size() < maxConcurrentRequests) {
+					final String[] shard = shards.get(next++);
+					pending.add(executor.submit(new Callable<List<Repayment>>() {
+						@Override
+						public List<Repayment> call() throws MambuApiException {
+							return getAllPages(shard[0], shard[1]);
+						}
+					}));
+				}
+				for (Repayment repayment : FutureUtils.getResult(pending.removeFirst())) {
+					consumer.onRepayment(repayment);
+					delivered++;
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		LOGGER.fine("Collected " + delivered + " due repayments in " + shards.size() + " shards");
+		return delivered;
+	}
+
+	/**
+	 * Get all pages of one shard, in due date order
+	 */
+	private List<Repayment> getAllPages(String dueFrom, String dueTo) throws MambuApiException {
+		List<Repayment> repayments = new ArrayList<Repayment>();
+		List<Repayment> page;
+		do {
+			page = repaymentsService.getRapaymentsDueFromTo(dueFrom, dueTo, String.valueOf(repayments.size()),
+					String.valueOf(pageSize));
+			repayments.addAll(page);
+		} while (page.size() == pageSize && !Thread.currentThread().isInterrupted());
+		// Stable sort: repayments due on the same date keep the order returned by Mambu
+		Collections.sort(repayments, DUE_DATE_ORDER);
+		return repayments;
+	}
+}
@@ -0,0 +1,280 @@
+package com.mambu.apisdk.batch;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import com.mambu.accounting.shared.model.EntryType;
+import com.mambu.accounting.shared.model.GLJournalEntry;
+import com.mambu.apisdk.MambuAPIService;
+import com.mambu.apisdk.exception.MambuApiException;
+import com.mambu.apisdk.model.ApiGLJournalEntry;
+import com.mambu.apisdk.services.AccountingService;
+
+/**
+ * Posts large numbers of GL journal entries with
+ * {@link AccountingService#postGLJournalEntries(List, String, String, String)}.
+ *
+ * Postings for the same branch, date and notes are merged and split into chunks of at most the configured number of
+ * entries. Each chunk is balanced (total debit amount equals total credit amount), so that it can be posted with its
+ * own request: debit and credit entries are matched in their order and an entry is split between two chunks when
+ * needed. Chunks are posted concurrently, with at most the configured number of concurrent requests, and the results
+ * are consolidated into a {@link GLJournalBulkResult} reporting the failed chunks
+ *
+ * @author agent
+ *
+ */
+public class GLJournalBulkPoster {
+
+	private final static Logger LOGGER = Logger.getLogger(GLJournalBulkPoster.class.getName());
+
+	/**
+	 * Default maximum number of entries posted with one request
+	 */
+	public final static int DEFAULT_MAX_ENTRIES_PER_CHUNK = 100;
+	/**
+	 * Default maximum number of concurrent requests
+	 */
+	public final static int DEFAULT_MAX_CONCURRENT_REQUESTS = 4;
+
+	private final AccountingService accountingService;
+	private final int maxEntriesPerChunk;
+	private final int maxConcurrentRequests;
+
+	/**
+	 * Remaining amount of an entry being split into chunks
+	 */
+	private static class RemainingEntry {
+		private final String glCode;
+		private BigDecimal amount;
+
+		private RemainingEntry(String glCode, BigDecimal amount) {
+			this.glCode = glCode;
+			this.amount = amount;
+		}
+	}
+
+	/***
+	 * Create GL journal bulk poster with default chunk size and concurrency
+	 *
+	 * @param mambuAPIService
+	 *            the service responsible for the connection to the server
+	 */
+	public GLJournalBulkPoster(MambuAPIService mambuAPIService) {
+		this(mambuAPIService, DEFAULT_MAX_ENTRIES_PER_CHUNK, DEFAULT_MAX_CONCURRENT_REQUESTS);
+	}
+
+	/***
+	 * Create GL journal bulk poster
+	 *
+	 * @param mambuAPIService
+	 *            the service responsible for the connection to the server
+	 * @param maxEntriesPerChunk
+	 *            maximum number of entries posted with one request. Must be at least 2
+	 * @param maxConcurrentRequests
+	 *            maximum number of concurrent requests. Must be positive
+	 */
+	public GLJournalBulkPoster(MambuAPIService mambuAPIService, int maxEntriesPerChunk, int maxConcurrentRequests) {
+		if (mambuAPIService == null) {
+			throw new IllegalArgumentException("Mambu API Service must not be null");
+		}
+		if (maxEntriesPerChunk < 2 || maxConcurrentRequests <= 0) {
+			throw new IllegalArgumentException("At least 2 entries per chunk and one concurrent request are required");
+		}
+		this.accountingService = new AccountingService(mambuAPIService);
+		this.maxEntriesPerChunk = maxEntriesPerChunk;
+		this.maxConcurrentRequests = maxConcurrentRequests;
+	}
+
+	/***
+	 * Post GL journal entries for a branch and a date in balanced chunks
+	 *
+	 * @param entries
+	 *            debit and credit entries. Total debit amount must equal total credit amount
+	 * @param branchId
+	 *            branch id
+	 * @param date
+	 *            posting date in "yyyy-MM-dd" format. Must not be null
+	 * @param notes
+	 *            transaction notes
+	 * @return consolidated result
+	 */
+	public GLJournalBulkResult post(List<ApiGLJournalEntry> entries, String branchId, String date, String notes) {
+		return post(Arrays.asList(new GLJournalPosting(branchId, date, notes, entries)));
+	}
+
+	/***
+	 * Post GL journal entries for any number of branches and dates in balanced chunks
+	 *
+	 * @param postings
+	 *            postings. Postings for the same branch, date and notes are merged. The merged postings must be
+	 *            balanced
+	 * @return consolidated result
+	 */
+	public GLJournalBulkResult post(List<GLJournalPosting> postings) {
+		if (postings == null) {
+			throw new IllegalArgumentException("Postings must not be null");
+		}
+		// Split before posting anything: unbalanced input is rejected without partial postings
+		List<GLJournalPosting> chunks = new ArrayList<GLJournalPosting>();
+		for (GLJournalPosting posting : mergeByBranchAndDate(postings)) {
+			chunks.addAll(split(posting, maxEntriesPerChunk));
+		}
+
+		GLJournalBulkResult result = new GLJournalBulkResult();
+		if (chunks.isEmpty()) {
+			return result;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(chunks.size(), maxConcurrentRequests));
+		try {
+			List<Future<List<GLJournalEntry>>> futures = new ArrayList<Future<List<GLJournalEntry>>>();
+			for (final GLJournalPosting chunk : chunks) {
+				futures.add(executor.submit(new Callable<List<GLJournalEntry>>() {
+					@Override
+					public List<GLJournalEntry> call() throws MambuApiException {
+						return accountingService.postGLJournalEntries(chunk.getEntries(), chunk.getBranchId(),
+								chunk.getDate(), chunk.getNotes());
+					}
+				}));
+			}
+			for (int i = 0; i < chunks.size(); i++) {
+				GLJournalPosting chunk = chunks.get(i);
+				try {
+					result.addPosted(chunk, futures.get(i).get());
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof Error) {
+						throw (Error) e.getCause();
+					}
+					MambuApiException exception = (e.getCause() instanceof MambuApiException) ? (MambuApiException) e
+							.getCause() : new MambuApiException((Exception) e.getCause());
+					LOGGER.warning("GL journal chunk failed: " + chunk + ", error code=" + exception.getErrorCode()
+							+ " " + exception.getErrorMessage());
+					result.addFailed(chunk, exception);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					result.addFailed(chunk, new MambuApiException(e));
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		return result;
+	}
+
+	/***
+	 * Split a balanced posting into balanced chunks
+	 *
+	 * @param posting
+	 *            GL journal posting. Must be balanced. Entries must have GL code, entry type and a non negative amount
+	 * @param maxEntriesPerChunk
+	 *            maximum number of entries in a chunk. Must be at least 2
+	 * @return chunks with the posting's branch, date and notes. Entries for the same GL account and entry type are
+	 *         merged within a chunk
+	 */
+	public static List<GLJournalPosting> split(GLJournalPosting posting, int maxEntriesPerChunk) {
+		if (posting == null || maxEntriesPerChunk < 2) {
+			throw new IllegalArgumentException("Posting must not be null and chunks must allow at least 2 entries");
+		}
+		Deque<RemainingEntry> debits = new ArrayDeque<RemainingEntry>();
+		Deque<RemainingEntry> credits = new ArrayDeque<RemainingEntry>();
+		for (ApiGLJournalEntry entry : posting.getEntries()) {
+			if (entry.getGlCode() == null || entry.getEntryType() == null || entry.getAmount() == null
+					|| entry.getAmount().signum() < 0) {
+				throw new IllegalArgumentException("GlCode " + entry.getGlCode() + " EntryType=" + entry.getEntryType()
+						+ " and Amount=" + entry.getAmount() + " must not be null or negative");
+			}
+			if (entry.getAmount().signum() > 0) {
+				RemainingEntry remaining = new RemainingEntry(entry.getGlCode(), entry.getAmount());
+				(entry.getEntryType() == EntryType.DEBIT ? debits : credits).add(remaining);
+			}
+		}
+		if (!posting.isBalanced()) {
+			throw new IllegalArgumentException("Posting is not balanced: debit=" + posting.getTotal(EntryType.DEBIT)
+					+ " credit=" + posting.getTotal(EntryType.CREDIT));
+		}
+		if (posting.getEntries().size() <= maxEntriesPerChunk) {
+			return Collections.singletonList(posting);
+		}
+
+		List<GLJournalPosting> chunks = new ArrayList<GLJournalPosting>();
+		Map<String, BigDecimal> chunkDebits = new LinkedHashMap<String, BigDecimal>();
+		Map<String, BigDecimal> chunkCredits = new LinkedHashMap<String, BigDecimal>();
+		// Each step matches the first remaining debit and credit: the chunk stays balanced after each step
+		while (!debits.isEmpty() && !credits.isEmpty()) {
+			RemainingEntry debit = debits.peek();
+			RemainingEntry credit = credits.peek();
+			int newEntries = (chunkDebits.containsKey(debit.glCode) ? 0 : 1)
+					+ (chunkCredits.containsKey(credit.glCode) ? 0 : 1);
+			if (chunkDebits.size() + chunkCredits.size() + newEntries > maxEntriesPerChunk) {
+				chunks.add(makeChunk(posting, chunkDebits, chunkCredits));
+				chunkDebits.clear();
+				chunkCredits.clear();
+				continue;
+			}
+			BigDecimal amount = debit.amount.min(credit.amount);
+			addAmount(chunkDebits, debit.glCode, amount);
+			addAmount(chunkCredits, credit.glCode, amount);
+			debit.amount = debit.amount.subtract(amount);
+			credit.amount = credit.amount.subtract(amount);
+			if (debit.amount.signum() == 0) {
+				debits.poll();
+			}
+			if (credit.amount.signum() == 0) {
+				credits.poll();
+			}
+		}
+		if (!chunkDebits.isEmpty()) {
+			chunks.add(makeChunk(posting, chunkDebits, chunkCredits));
+		}
+		return chunks;
+	}
+
+	/**
+	 * Merge postings with the same branch, date and notes
+	 */
+	private static List<GLJournalPosting> mergeByBranchAndDate(List<GLJournalPosting> postings) {
+		Map<List<String>, List<ApiGLJournalEntry>> entriesByGroup = new LinkedHashMap<List<String>, List<ApiGLJournalEntry>>();
+		for (GLJournalPosting posting : postings) {
+			List<String> group = Arrays.asList(posting.getBranchId(), posting.getDate(), posting.getNotes());
+			if (!entriesByGroup.containsKey(group)) {
+				entriesByGroup.put(group, new ArrayList<ApiGLJournalEntry>());
+			}
+			entriesByGroup.get(group).addAll(posting.getEntries());
+		}
+		List<GLJournalPosting> merged = new ArrayList<GLJournalPosting>(entriesByGroup.size());
+		for (Map.Entry<List<String>, List<ApiGLJournalEntry>> entry : entriesByGroup.entrySet()) {
+			List<String> group = entry.getKey();
+			merged.add(new GLJournalPosting(group.get(0), group.get(1), group.get(2), entry.getValue()));
+		}
+		return merged;
+	}
+
+	private static void addAmount(Map<String, BigDecimal> amounts, String glCode, BigDecimal amount) {
+		BigDecimal current = amounts.get(glCode);
+		amounts.put(glCode, current == null ? amount : current.add(amount));
+	}
+
+	private static GLJournalPosting makeChunk(GLJournalPosting posting, Map<String, BigDecimal> debits,
+			Map<String, BigDecimal> credits) {
+		List<ApiGLJournalEntry> entries = new ArrayList<ApiGLJournalEntry>(debits.size() + credits.size());
+		for (Map.Entry<String, BigDecimal> debit : debits.entrySet()) {
+			entries.add(new ApiGLJournalEntry(debit.getKey(), EntryType.DEBIT, debit.getValue()));
+		}
+		for (Map.Entry<String, BigDecimal> credit : credits.entrySet()) {
+			entries.add(new ApiGLJournalEntry(credit.getKey(), EntryType.CREDIT, credit.getValue()));
+		}
+		return new GLJournalPosting(posting.getBranchId(), posting.getDate(), posting.getNotes(), entries);
+	}
+}
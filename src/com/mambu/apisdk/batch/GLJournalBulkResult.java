@@ -0,0 +1,79 @@
+package com.mambu.apisdk.batch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.mambu.accounting.shared.model.GLJournalEntry;
+import com.mambu.apisdk.exception.MambuApiException;
+
+/**
+ * Consolidated result of posting GL journal entries in chunks with the {@link GLJournalBulkPoster}.
+ *
+ * Each chunk is balanced and posted with its own request: failed chunks are not posted and can be posted again with
+ * {@link GLJournalBulkPoster#post(List)}
+ *
+ * @author agent
+ *
+ */
+public class GLJournalBulkResult {
+
+	private final List<GLJournalPosting> postedChunks = new ArrayList<GLJournalPosting>();
+	private final List<GLJournalEntry> postedEntries = new ArrayList<GLJournalEntry>();
+	private final Map<GLJournalPosting, MambuApiException> failedChunks = new LinkedHashMap<GLJournalPosting, MambuApiException>();
+
+	void addPosted(GLJournalPosting chunk, List<GLJournalEntry> entries) {
+		postedChunks.add(chunk);
+		if (entries != null) {
+			postedEntries.addAll(entries);
+		}
+	}
+
+	void addFailed(GLJournalPosting chunk, MambuApiException exception) {
+		failedChunks.put(chunk, exception);
+	}
+
+	/***
+	 * Check if all chunks were posted
+	 *
+	 * @return true if no chunk failed
+	 */
+	public boolean isSuccessful() {
+		return failedChunks.isEmpty();
+	}
+
+	/***
+	 * Get GL journal entries created by Mambu for all posted chunks
+	 *
+	 * @return created journal entries
+	 */
+	public List<GLJournalEntry> getPostedEntries() {
+		return Collections.unmodifiableList(postedEntries);
+	}
+
+	/***
+	 * Get posted chunks
+	 *
+	 * @return posted chunks
+	 */
+	public List<GLJournalPosting> getPostedChunks() {
+		return Collections.unmodifiableList(postedChunks);
+	}
+
+	/***
+	 * Get failed chunks and the exceptions they failed with
+	 *
+	 * @return failed chunks, in the order they were created
+	 */
+	public Map<GLJournalPosting, MambuApiException> getFailedChunks() {
+		return Collections.unmodifiableMap(failedChunks);
+	}
+
+	@Override
+	public String toString() {
+		return "Posted chunks=" + postedChunks.size() + " entries=" + postedEntries.size() + ", failed chunks="
+				+ failedChunks.size();
+	}
+}
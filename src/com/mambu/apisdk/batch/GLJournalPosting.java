@@ -0,0 +1,94 @@
+package com.mambu.apisdk.batch;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.mambu.accounting.shared.model.EntryType;
+import com.mambu.apisdk.model.ApiGLJournalEntry;
+
+/**
+ * GL journal entries posted with one request for a branch and a date. See
+ * {@link com.mambu.apisdk.services.AccountingService#postGLJournalEntries(List, String, String, String)}
+ *
+ * @author agent
+ *
+ */
+public class GLJournalPosting {
+
+	private final String branchId;
+	private final String date;
+	private final String notes;
+	private final List<ApiGLJournalEntry> entries;
+
+	/***
+	 * Create GL journal posting
+	 *
+	 * @param branchId
+	 *            branch id. Can be null
+	 * @param date
+	 *            posting date in "yyyy-MM-dd" format. Must not be null
+	 * @param notes
+	 *            transaction notes
+	 * @param entries
+	 *            debit and credit entries. Must not be null
+	 */
+	public GLJournalPosting(String branchId, String date, String notes, List<ApiGLJournalEntry> entries) {
+		if (date == null || entries == null) {
+			throw new IllegalArgumentException("Date and entries must not be null");
+		}
+		this.branchId = branchId;
+		this.date = date;
+		this.notes = notes;
+		this.entries = Collections.unmodifiableList(new ArrayList<ApiGLJournalEntry>(entries));
+	}
+
+	public String getBranchId() {
+		return branchId;
+	}
+
+	public String getDate() {
+		return date;
+	}
+
+	public String getNotes() {
+		return notes;
+	}
+
+	public List<ApiGLJournalEntry> getEntries() {
+		return entries;
+	}
+
+	/***
+	 * Get the total amount of the entries of a type
+	 *
+	 * @param entryType
+	 *            DEBIT or CREDIT
+	 * @return total amount
+	 */
+	public BigDecimal getTotal(EntryType entryType) {
+		BigDecimal total = BigDecimal.ZERO;
+		for (ApiGLJournalEntry entry : entries) {
+			if (entry.getEntryType() == entryType && entry.getAmount() != null) {
+				total = total.add(entry.getAmount());
+			}
+		}
+		return total;
+	}
+
+	/***
+	 * Check if the total debit amount equals the total credit amount
+	 *
+	 * @return true if balanced
+	 */
+	public boolean isBalanced() {
+		return getTotal(EntryType.DEBIT).compareTo(getTotal(EntryType.CREDIT)) == 0;
+	}
+
+	@Override
+	public String toString() {
+		return "branch=" + branchId + " date=" + date + " entries=" + entries.size() + " amount="
+				+ getTotal(EntryType.DEBIT);
+	}
+}
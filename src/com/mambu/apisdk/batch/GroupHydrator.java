@@ -0,0 +1,278 @@
+package com.mambu.apisdk.batch;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import com.mambu.apisdk.MambuAPIService;
+import com.mambu.apisdk.exception.MambuApiException;
+import com.mambu.apisdk.services.ClientsService;
+import com.mambu.apisdk.services.LoansService;
+import com.mambu.apisdk.services.SavingsService;
+import com.mambu.apisdk.util.BulkEntityFetcher.EntityGetter;
+import com.mambu.clients.shared.model.Client;
+import com.mambu.clients.shared.model.Group;
+import com.mambu.clients.shared.model.GroupExpanded;
+import com.mambu.clients.shared.model.GroupMember;
+import com.mambu.loans.shared.model.LoanAccount;
+import com.mambu.savings.shared.model.SavingsAccount;
+
+/**
+ * Gets groups with their member clients and the clients' loan and savings accounts, for solidarity group lending.
+ *
+ * Group details are requested concurrently. The member clients of all groups are then collected and each client is
+ * requested once, even if it is a member of several groups: clients are searched by encoded key in chunks (see
+ * {@link ClientsService#getClientsByEncodedKeys(Collection)}) and their loan and savings accounts are requested
+ * concurrently. All requests of one operation share one thread pool, so at most the configured number of requests run
+ * at the same time.
+ *
+ * Groups and clients which are not found are omitted. Other errors fail the whole operation
+ *
+ * @author agent
+ *
+ */
+public class GroupHydrator {
+
+	private final static Logger LOGGER = Logger.getLogger(GroupHydrator.class.getName());
+
+	/**
+	 * Default maximum number of concurrent requests
+	 */
+	public final static int DEFAULT_MAX_CONCURRENT_REQUESTS = 4;
+	/**
+	 * Default number of groups requested per page when getting the groups of a branch or centre
+	 */
+	public final static int DEFAULT_PAGE_SIZE = 500;
+
+	private final ClientsService clientsService;
+	private final LoansService loansService;
+	private final SavingsService savingsService;
+	private final int maxConcurrentRequests;
+	private final int pageSize;
+
+	/***
+	 * Create group hydrator with the default concurrency and page size
+	 *
+	 * @param mambuAPIService
+	 *            the service responsible for the connection to the server
+	 */
+	public GroupHydrator(MambuAPIService mambuAPIService) {
+		this(mambuAPIService, DEFAULT_MAX_CONCURRENT_REQUESTS, DEFAULT_PAGE_SIZE);
+	}
+
+	/***
+	 * Create group hydrator
+	 *
+	 * @param mambuAPIService
+	 *            the service responsible for the connection to the server
+	 * @param maxConcurrentRequests
+	 *            maximum number of concurrent requests. Must be positive
+	 * @param pageSize
+	 *            number of groups requested per page when getting the groups of a branch or centre. Must be positive
+	 */
+	public GroupHydrator(MambuAPIService mambuAPIService, int maxConcurrentRequests, int pageSize) {
+		if (mambuAPIService == null) {
+			throw new IllegalArgumentException("Mambu API Service must not be null");
+		}
+		if (maxConcurrentRequests <= 0 || pageSize <= 0) {
+			throw new IllegalArgumentException("Maximum concurrent requests and page size must be positive");
+		}
+		this.clientsService = new ClientsService(mambuAPIService);
+		this.loansService = new LoansService(mambuAPIService);
+		this.savingsService = new SavingsService(mambuAPIService);
+		this.maxConcurrentRequests = maxConcurrentRequests;
+		this.pageSize = pageSize;
+	}
+
+	/***
+	 * Get all groups of a branch or of a centre with their members and the members' accounts
+	 *
+	 * @param branchId
+	 *            the ID of the groups' branch or null
+	 * @param centreId
+	 *            the ID of the groups' centre or null. At least one of branchId and centreId must not be null
+	 * @return hydrated groups, in the order Mambu returns them
+	 * @throws MambuApiException
+	 */
+	public List<HydratedGroup> hydrateGroups(String branchId, String centreId) throws MambuApiException {
+		if (branchId == null && centreId == null) {
+			throw new IllegalArgumentException("Branch ID or centre ID must not be null");
+		}
+		List<String> groupKeys = new ArrayList<String>();
+		int offset = 0;
+		List<Group> page;
+		do {
+			page = clientsService.getGroupsByBranchCentreOfficer(branchId, centreId, null, String.valueOf(offset),
+					String.valueOf(pageSize));
+			if (page != null) {
+				for (Group group : page) {
+					groupKeys.add(group.getEncodedKey());
+				}
+			}
+			offset += pageSize;
+		} while (page != null && page.size() == pageSize);
+
+		return hydrateGroups(groupKeys);
+	}
+
+	/***
+	 * Get groups with their members and the members' accounts
+	 *
+	 * @param groupIds
+	 *            IDs or encoded keys of the groups. Must not be null. Duplicates are returned once
+	 * @return hydrated groups, in the requested order
+	 * @throws MambuApiException
+	 */
+	public List<HydratedGroup> hydrateGroups(Collection<String> groupIds) throws MambuApiException {
+		if (groupIds == null) {
+			throw new IllegalArgumentException("Group IDs must not be null");
+		}
+		Set<String> uniqueGroupIds = new LinkedHashSet<String>(groupIds);
+		uniqueGroupIds.remove(null);
+		List<HydratedGroup> hydratedGroups = new ArrayList<HydratedGroup>(uniqueGroupIds.size());
+		if (uniqueGroupIds.isEmpty()) {
+			return hydratedGroups;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(maxConcurrentRequests);
+		try {
+			Map<String, GroupExpanded> groups = getAll(executor, uniqueGroupIds, new EntityGetter<GroupExpanded>() {
+				@Override
+				public GroupExpanded getEntity(String groupId) throws MambuApiException {
+					return clientsService.getGroupDetails(groupId);
+				}
+			});
+
+			// Each client is requested once, however many groups it is a member of
+			Set<String> clientKeys = new LinkedHashSet<String>();
+			for (GroupExpanded group : groups.values()) {
+				for (GroupMember member : getMembers(group)) {
+					clientKeys.add(member.getClientKey());
+				}
+			}
+			clientKeys.remove(null);
+			Map<String, HydratedClient> clients = hydrateClients(executor, clientKeys);
+
+			for (GroupExpanded group : groups.values()) {
+				List<HydratedClient> members = new ArrayList<HydratedClient>();
+				for (GroupMember member : getMembers(group)) {
+					HydratedClient client = clients.get(member.getClientKey());
+					if (client != null) {
+						members.add(client);
+					}
+				}
+				hydratedGroups.add(new HydratedGroup(group, members));
+			}
+			LOGGER.fine("Hydrated " + hydratedGroups.size() + " groups with " + clients.size() + " clients");
+		} finally {
+			executor.shutdownNow();
+		}
+		return hydratedGroups;
+	}
+
+	/**
+	 * Get clients and, concurrently, their loan and savings accounts
+	 */
+	private Map<String, HydratedClient> hydrateClients(ExecutorService executor, Set<String> clientKeys)
+			throws MambuApiException {
+		Map<String, HydratedClient> hydratedClients = new LinkedHashMap<String, HydratedClient>();
+		if (clientKeys.isEmpty()) {
+			return hydratedClients;
+		}
+		Map<String, Client> clients = clientsService.getClientsByEncodedKeys(clientKeys);
+		if (clients.size() < clientKeys.size()) {
+			LOGGER.warning((clientKeys.size() - clients.size()) + " group members not found");
+		}
+
+		// Send the requests for both account types before waiting for any of them
+		Map<String, Future<List<LoanAccount>>> loanFutures = submitAll(executor, clients.keySet(),
+				new EntityGetter<List<LoanAccount>>() {
+					@Override
+					public List<LoanAccount> getEntity(String clientKey) throws MambuApiException {
+						return loansService.getLoanAccountsForClient(clientKey);
+					}
+				});
+		Map<String, Future<List<SavingsAccount>>> savingsFutures = submitAll(executor, clients.keySet(),
+				new EntityGetter<List<SavingsAccount>>() {
+					@Override
+					public List<SavingsAccount> getEntity(String clientKey) throws MambuApiException {
+						return savingsService.getSavingsAccountsForClient(clientKey);
+					}
+				});
+		Map<String, List<LoanAccount>> loanAccounts = getResults(loanFutures);
+		Map<String, List<SavingsAccount>> savingsAccounts = getResults(savingsFutures);
+
+		for (Map.Entry<String, Client> entry : clients.entrySet()) {
+			String clientKey = entry.getKey();
+			hydratedClients.put(clientKey, new HydratedClient(entry.getValue(), loanAccounts.get(clientKey),
+					savingsAccounts.get(clientKey)));
+		}
+		return hydratedClients;
+	}
+
+	private static <T> Map<String, T> getAll(ExecutorService executor, Collection<String> ids, EntityGetter<T> getter)
+			throws MambuApiException {
+		return getResults(submitAll(executor, ids, getter));
+	}
+
+	private static <T> Map<String, Future<T>> submitAll(ExecutorService executor, Collection<String> ids,
+			final EntityGetter<T> getter) {
+		Map<String, Future<T>> futures = new LinkedHashMap<String, Future<T>>();
+		for (final String id : ids) {
+			futures.put(id, executor.submit(new Callable<T>() {
+				@Override
+				public T call() throws MambuApiException {
+					return getter.getEntity(id);
+				}
+			}));
+		}
+		return futures;
+	}
+
+	/**
+	 * Wait for all results. Entities which are not found are omitted. Other errors are thrown
+	 */
+	private static <T> Map<String, T> getResults(Map<String, Future<T>> futures) throws MambuApiException {
+		Map<String, T> results = new LinkedHashMap<String, T>();
+		for (Map.Entry<String, Future<T>> entry : futures.entrySet()) {
+			try {
+				T result = entry.getValue().get();
+				if (result != null) {
+					results.put(entry.getKey(), result);
+				}
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				MambuApiException exception = (MambuApiException) cause;
+				if (!exception.isNotFound()) {
+					throw exception;
+				}
+				LOGGER.warning(entry.getKey() + " not found");
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new MambuApiException(e);
+			}
+		}
+		return results;
+	}
+
+	private static List<GroupMember> getMembers(GroupExpanded group) {
+		List<GroupMember> members = group.getGroupMembers();
+		return members == null ? new ArrayList<GroupMember>() : members;
+	}
+}
@@ -0,0 +1,42 @@
+package com.mambu.apisdk.batch;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.mambu.clients.shared.model.Client;
+import com.mambu.loans.shared.model.LoanAccount;
+import com.mambu.savings.shared.model.SavingsAccount;
+
+/**
+ * A group member with its loan and savings accounts, returned by the {@link GroupHydrator}. A client which is a member
+ * of several groups is represented by the same instance in all of them
+ *
+ * @author agent
+ *
+ */
+public class HydratedClient {
+
+	private final Client client;
+	private final List<LoanAccount> loanAccounts;
+	private final List<SavingsAccount> savingsAccounts;
+
+	HydratedClient(Client client, List<LoanAccount> loanAccounts, List<SavingsAccount> savingsAccounts) {
+		this.client = client;
+		this.loanAccounts = loanAccounts == null ? Collections.<LoanAccount> emptyList() : Collections
+				.unmodifiableList(loanAccounts);
+		this.savingsAccounts = savingsAccounts == null ? Collections.<SavingsAccount> emptyList() : Collections
+				.unmodifiableList(savingsAccounts);
+	}
+
+	public Client getClient() {
+		return client;
+	}
+
+	public List<LoanAccount> getLoanAccounts() {
+		return loanAccounts;
+	}
+
+	public List<SavingsAccount> getSavingsAccounts() {
+		return savingsAccounts;
+	}
+}
@@ -0,0 +1,42 @@
+package com.mambu.apisdk.batch;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.mambu.clients.shared.model.GroupExpanded;
+
+/**
+ * A group with its details and its member clients, returned by the {@link GroupHydrator}
+ *
+ * @author agent
+ *
+ */
+public class HydratedGroup {
+
+	private final GroupExpanded group;
+	private final List<HydratedClient> members;
+
+	HydratedGroup(GroupExpanded group, List<HydratedClient> members) {
+		this.group = group;
+		this.members = Collections.unmodifiableList(members);
+	}
+
+	/***
+	 * Get group details
+	 *
+	 * @return group with full details
+	 */
+	public GroupExpanded getGroup() {
+		return group;
+	}
+
+	/***
+	 * Get the member clients with their accounts, in the order of the group members. Members whose client was not
+	 * found are omitted
+	 *
+	 * @return group members
+	 */
+	public List<HydratedClient> getMembers() {
+		return members;
+	}
+}
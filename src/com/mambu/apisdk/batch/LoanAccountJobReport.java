@@ -0,0 +1,114 @@
+package com.mambu.apisdk.batch;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.mambu.apisdk.exception.MambuApiException;
+
+/**
+ * Summary of a job run by the {@link LoanAccountJobRunner}.
+ *
+ * Failed accounts are not written to the checkpoint, so running the job again with the same checkpoint file applies
+ * the operation only to the failed accounts and to the accounts not processed yet
+ *
+ * @author agent
+ *
+ */
+public class LoanAccountJobReport {
+
+	private final Date startTime = new Date();
+	private Date endTime;
+	private long selectedCount;
+	private long appliedCount;
+	private long skippedCount;
+	private boolean interrupted;
+	private final Map<String, MambuApiException> failed = new LinkedHashMap<String, MambuApiException>();
+
+	synchronized void addSelected() {
+		selectedCount++;
+	}
+
+	synchronized void addApplied() {
+		appliedCount++;
+	}
+
+	synchronized void addSkipped() {
+		skippedCount++;
+	}
+
+	synchronized void addFailed(String accountKey, MambuApiException exception) {
+		failed.put(accountKey, exception);
+	}
+
+	synchronized void finish(boolean interrupted) {
+		this.endTime = new Date();
+		this.interrupted = interrupted;
+	}
+
+	public Date getStartTime() {
+		return new Date(startTime.getTime());
+	}
+
+	public synchronized Date getEndTime() {
+		return endTime == null ? null : new Date(endTime.getTime());
+	}
+
+	/***
+	 * Get the number of accounts selected, including the skipped accounts
+	 *
+	 * @return number of selected accounts
+	 */
+	public synchronized long getSelectedCount() {
+		return selectedCount;
+	}
+
+	public synchronized long getAppliedCount() {
+		return appliedCount;
+	}
+
+	/***
+	 * Get the number of accounts skipped because the checkpoint shows they were processed by an earlier run
+	 *
+	 * @return number of skipped accounts
+	 */
+	public synchronized long getSkippedCount() {
+		return skippedCount;
+	}
+
+	/***
+	 * Get the accounts the operation failed for and the exceptions it failed with
+	 *
+	 * @return failed account keys and exceptions
+	 */
+	public synchronized Map<String, MambuApiException> getFailed() {
+		return Collections.unmodifiableMap(new LinkedHashMap<String, MambuApiException>(failed));
+	}
+
+	/***
+	 * Check if the job was interrupted before all selected accounts were processed
+	 *
+	 * @return true if interrupted
+	 */
+	public synchronized boolean isInterrupted() {
+		return interrupted;
+	}
+
+	/***
+	 * Check if the operation was applied to all selected accounts
+	 *
+	 * @return true if no account failed and the job was not interrupted
+	 */
+	public synchronized boolean isSuccessful() {
+		return failed.isEmpty() && !interrupted;
+	}
+
+	@Override
+	public synchronized String toString() {
+		long durationMillis = (endTime != null ? endTime.getTime() : System.currentTimeMillis())
+				- startTime.getTime();
+		return "Selected=" + selectedCount + ", applied=" + appliedCount + ", skipped=" + skippedCount + ", failed="
+				+ failed.size() + (interrupted ? ", interrupted" : "") + ", duration=" + durationMillis + " ms";
+	}
+}
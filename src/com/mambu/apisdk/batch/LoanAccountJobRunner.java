@@ -0,0 +1,307 @@
+package com.mambu.apisdk.batch;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Logger;
+
+import com.google.common.util.concurrent.RateLimiter;
+import com.mambu.apisdk.MambuAPIService;
+import com.mambu.apisdk.exception.MambuApiException;
+import com.mambu.apisdk.services.CustomViewsService;
+import com.mambu.apisdk.services.LoansService;
+import com.mambu.loans.shared.model.LoanAccount;
+
+/**
+ * Applies an operation (interest or fee, see {@link LoanAccountOperation}) to all loan accounts selected with filter
+ * constraints or a custom view (see {@link LoanAccountSelector}), for end of day jobs.
+ *
+ * The encoded keys of all selected accounts are read first, page by page, and only then is the operation applied.
+ * Applying the operation can move accounts in or out of the selection, and paging by offset through a changing
+ * selection would skip accounts. Only the keys are kept in memory. The operation is applied with at most the configured
+ * number of concurrent requests and, optionally, at most the configured number of requests per second.
+ *
+ * Progress is saved to a checkpoint file: the encoded key of each account the operation was applied to is appended to
+ * the file as soon as the request completes. When a run crashes or is interrupted, running the same job again with the
+ * same checkpoint file skips these accounts. Failed accounts are not saved, so they are retried by the next run. Delete
+ * the checkpoint file to start a new job.
+ *
+ * Example:
+ *
+ * <pre>
+ * LoanAccountJobReport report = new LoanAccountJobRunner(mambuAPIService, 4, 10.0, 500).run(
+ * 		LoanAccountSelector.byCustomView(customViewKey, null), LoanAccountOperation.applyInterest(date, notes),
+ * 		new File(&quot;interest-2016-05-31.checkpoint&quot;));
+ * </pre>
+ *
+ * @author agent
+ *
+ */
+public class LoanAccountJobRunner {
+
+	private final static Logger LOGGER = Logger.getLogger(LoanAccountJobRunner.class.getName());
+
+	private final static Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * Default maximum number of concurrent requests
+	 */
+	public final static int DEFAULT_MAX_CONCURRENT_REQUESTS = 4;
+	/**
+	 * Default number of accounts requested per page
+	 */
+	public final static int DEFAULT_PAGE_SIZE = 500;
+
+	private final LoansService loansService;
+	private final CustomViewsService customViewsService;
+	private final int maxConcurrentRequests;
+	private final Double requestsPerSecond;
+	private final int pageSize;
+
+	/***
+	 * Create job runner with the default concurrency and page size, without rate limit
+	 *
+	 * @param mambuAPIService
+	 *            the service responsible for the connection to the server
+	 */
+	public LoanAccountJobRunner(MambuAPIService mambuAPIService) {
+		this(mambuAPIService, DEFAULT_MAX_CONCURRENT_REQUESTS, null, DEFAULT_PAGE_SIZE);
+	}
+
+	/***
+	 * Create job runner
+	 *
+	 * @param mambuAPIService
+	 *            the service responsible for the connection to the server
+	 * @param maxConcurrentRequests
+	 *            maximum number of operation requests in flight. Must be positive
+	 * @param requestsPerSecond
+	 *            maximum number of operation requests per second. If null, the rate is not limited
+	 * @param pageSize
+	 *            number of accounts requested per page when reading the selection. Must be positive
+	 */
+	public LoanAccountJobRunner(MambuAPIService mambuAPIService, int maxConcurrentRequests, Double requestsPerSecond,
+			int pageSize) {
+		if (mambuAPIService == null) {
+			throw new IllegalArgumentException("Mambu API Service must not be null");
+		}
+		if (maxConcurrentRequests <= 0 || pageSize <= 0) {
+			throw new IllegalArgumentException("Maximum concurrent requests and page size must be positive");
+		}
+		if (requestsPerSecond != null && requestsPerSecond <= 0) {
+			throw new IllegalArgumentException("Requests per second must be positive");
+		}
+		this.loansService = new LoansService(mambuAPIService);
+		this.customViewsService = new CustomViewsService(mambuAPIService);
+		this.maxConcurrentRequests = maxConcurrentRequests;
+		this.requestsPerSecond = requestsPerSecond;
+		this.pageSize = pageSize;
+	}
+
+	/***
+	 * Apply the operation to all selected accounts
+	 *
+	 * @param selector
+	 *            account selector. Must not be null
+	 * @param operation
+	 *            operation to apply. Must not be null
+	 * @param checkpointFile
+	 *            checkpoint file or null to run without checkpoint. Created if it does not exist
+	 * @return job report
+	 * @throws MambuApiException
+	 *             if the selected accounts cannot be read. The operation is not applied to any account
+	 * @throws IOException
+	 *             if the checkpoint file cannot be read or written
+	 */
+	public LoanAccountJobReport run(LoanAccountSelector selector, final LoanAccountOperation operation,
+			File checkpointFile) throws MambuApiException, IOException {
+		if (selector == null || operation == null) {
+			throw new IllegalArgumentException("Selector and operation must not be null");
+		}
+		LOGGER.info(operation + " to " + selector);
+		final LoanAccountJobReport report = new LoanAccountJobReport();
+		Set<String> selectedKeys = select(selector);
+		final Checkpoint checkpoint = new Checkpoint(checkpointFile);
+		final RateLimiter rateLimiter = requestsPerSecond == null ? null : RateLimiter.create(requestsPerSecond);
+		final Semaphore inFlight = new Semaphore(maxConcurrentRequests);
+		boolean interrupted = false;
+
+		ExecutorService executor = Executors.newFixedThreadPool(maxConcurrentRequests);
+		try {
+			for (final String accountKey : selectedKeys) {
+				report.addSelected();
+				if (checkpoint.isCompleted(accountKey)) {
+					report.addSkipped();
+					continue;
+				}
+				if (checkpoint.getError() != null) {
+					break;
+				}
+				inFlight.acquire();
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							if (rateLimiter != null) {
+								rateLimiter.acquire();
+							}
+							apply(operation, accountKey, checkpoint, report);
+						} finally {
+							inFlight.release();
+						}
+					}
+				});
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			interrupted = true;
+			LOGGER.warning("Job interrupted: " + report);
+		} finally {
+			// Let the requests in flight complete, so that they are saved in the checkpoint
+			inFlight.acquireUninterruptibly(maxConcurrentRequests);
+			executor.shutdown();
+			checkpoint.close();
+			report.finish(interrupted);
+		}
+		if (checkpoint.getError() != null) {
+			throw checkpoint.getError();
+		}
+		LOGGER.info(operation + " completed: " + report);
+		return report;
+	}
+
+	/**
+	 * Read the encoded keys of all selected accounts, in selection order. Accounts moved between pages while reading
+	 * are returned twice by offset pagination, but selected once
+	 */
+	private Set<String> select(LoanAccountSelector selector) throws MambuApiException {
+		Set<String> selectedKeys = new LinkedHashSet<String>();
+		int offset = 0;
+		List<LoanAccount> page;
+		do {
+			page = selector.getPage(loansService, customViewsService, offset, pageSize);
+			if (page == null) {
+				break;
+			}
+			for (LoanAccount account : page) {
+				if (account.getEncodedKey() != null) {
+					selectedKeys.add(account.getEncodedKey());
+				}
+			}
+			offset += pageSize;
+		} while (page.size() == pageSize);
+		LOGGER.fine("Selected " + selectedKeys.size() + " accounts");
+		return selectedKeys;
+	}
+
+	private void apply(LoanAccountOperation operation, String accountKey, Checkpoint checkpoint,
+			LoanAccountJobReport report) {
+		try {
+			operation.apply(loansService, accountKey);
+		} catch (MambuApiException e) {
+			LOGGER.warning(operation + " failed for " + accountKey + ": " + e.getErrorCode() + " "
+					+ e.getErrorMessage());
+			report.addFailed(accountKey, e);
+			return;
+		} catch (RuntimeException e) {
+			LOGGER.warning(operation + " failed for " + accountKey + ": " + e.getMessage());
+			report.addFailed(accountKey, new MambuApiException(e));
+			return;
+		}
+		report.addApplied();
+		checkpoint.complete(accountKey);
+	}
+
+	/**
+	 * Encoded keys of the accounts processed by this job, one per line, appended as accounts are processed
+	 */
+	private static class Checkpoint {
+		private final Set<String> completedKeys = new HashSet<String>();
+		private final Writer writer;
+		// The first error writing the file. Guarded by this
+		private IOException error;
+
+		private Checkpoint(File file) throws IOException {
+			if (file == null) {
+				writer = null;
+				return;
+			}
+			if (file.exists()) {
+				BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF8));
+				try {
+					String line;
+					while ((line = reader.readLine()) != null) {
+						if (!line.isEmpty()) {
+							completedKeys.add(line);
+						}
+					}
+				} finally {
+					reader.close();
+				}
+				terminateLastLine(file);
+			}
+			writer = new OutputStreamWriter(new FileOutputStream(file, true), UTF8);
+		}
+
+		/**
+		 * Add a line break after a key left incomplete by a crash, so that the next key is written on its own line
+		 */
+		private static void terminateLastLine(File file) throws IOException {
+			RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+			try {
+				long length = randomAccessFile.length();
+				if (length == 0) {
+					return;
+				}
+				randomAccessFile.seek(length - 1);
+				if (randomAccessFile.read() != '\n') {
+					randomAccessFile.write('\n');
+				}
+			} finally {
+				randomAccessFile.close();
+			}
+		}
+
+		private boolean isCompleted(String accountKey) {
+			return completedKeys.contains(accountKey);
+		}
+
+		private synchronized void complete(String accountKey) {
+			if (writer == null || error != null) {
+				return;
+			}
+			try {
+				writer.write(accountKey);
+				writer.write('\n');
+				writer.flush();
+			} catch (IOException e) {
+				LOGGER.warning("Cannot write checkpoint: " + e.getMessage());
+				error = e;
+			}
+		}
+
+		private synchronized IOException getError() {
+			return error;
+		}
+
+		private synchronized void close() throws IOException {
+			if (writer != null) {
+				writer.close();
+			}
+		}
+	}
+}
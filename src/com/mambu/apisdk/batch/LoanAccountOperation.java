@@ -0,0 +1,85 @@
+package com.mambu.apisdk.batch;
+
+import java.util.Date;
+
+import com.mambu.apisdk.exception.MambuApiException;
+import com.mambu.apisdk.services.LoansService;
+import com.mambu.loans.shared.model.LoanTransaction;
+
+/**
+ * Operation applied to each account selected by the {@link LoanAccountJobRunner}. Use {@link #applyInterest} or
+ * {@link #applyFee} or implement {@link #apply(LoansService, String)} for other operations
+ *
+ * @author agent
+ *
+ */
+public abstract class LoanAccountOperation {
+
+	/***
+	 * Apply the operation to an account
+	 *
+	 * @param loansService
+	 *            loans service to send the request with
+	 * @param accountKey
+	 *            the encoded key of the account
+	 * @return posted transaction or null
+	 * @throws MambuApiException
+	 */
+	public abstract LoanTransaction apply(LoansService loansService, String accountKey) throws MambuApiException;
+
+	/***
+	 * Create operation applying interest (see {@link LoansService#applyInterestToLoanAccount(String, Date, String)})
+	 *
+	 * @param date
+	 *            date up to which interest is applied. Must not be null
+	 * @param notes
+	 *            transaction notes
+	 * @return operation
+	 */
+	public static LoanAccountOperation applyInterest(final Date date, final String notes) {
+		if (date == null) {
+			throw new IllegalArgumentException("Date must not be null");
+		}
+		return new LoanAccountOperation() {
+			@Override
+			public LoanTransaction apply(LoansService loansService, String accountKey) throws MambuApiException {
+				return loansService.applyInterestToLoanAccount(accountKey, date, notes);
+			}
+
+			@Override
+			public String toString() {
+				return "Apply interest";
+			}
+		};
+	}
+
+	/***
+	 * Create operation applying a fee (see
+	 * {@link LoansService#applyFeeToLoanAccount(String, String, String, String)})
+	 *
+	 * @param amount
+	 *            fee amount. Must not be null
+	 * @param repaymentNumber
+	 *            repayment number or null
+	 * @param notes
+	 *            transaction notes
+	 * @return operation
+	 */
+	public static LoanAccountOperation applyFee(final String amount, final String repaymentNumber,
+			final String notes) {
+		if (amount == null) {
+			throw new IllegalArgumentException("Amount must not be null");
+		}
+		return new LoanAccountOperation() {
+			@Override
+			public LoanTransaction apply(LoansService loansService, String accountKey) throws MambuApiException {
+				return loansService.applyFeeToLoanAccount(accountKey, amount, repaymentNumber, notes);
+			}
+
+			@Override
+			public String toString() {
+				return "Apply fee " + amount;
+			}
+		};
+	}
+}
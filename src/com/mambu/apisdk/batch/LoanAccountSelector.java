@@ -0,0 +1,78 @@
+package com.mambu.apisdk.batch;
+
+import java.util.List;
+
+import com.mambu.api.server.handler.core.dynamicsearch.model.JSONFilterConstraints;
+import com.mambu.api.server.handler.customviews.model.ApiViewType;
+import com.mambu.apisdk.exception.MambuApiException;
+import com.mambu.apisdk.services.CustomViewsService;
+import com.mambu.apisdk.services.LoansService;
+import com.mambu.loans.shared.model.LoanAccount;
+
+/**
+ * Selects the loan accounts processed by the {@link LoanAccountJobRunner}: the accounts matching filter constraints or
+ * the accounts of a custom view
+ *
+ * @author agent
+ *
+ */
+public class LoanAccountSelector {
+
+	private final JSONFilterConstraints filterConstraints;
+	private final String customViewKey;
+	private final String branchId;
+
+	private LoanAccountSelector(JSONFilterConstraints filterConstraints, String customViewKey, String branchId) {
+		this.filterConstraints = filterConstraints;
+		this.customViewKey = customViewKey;
+		this.branchId = branchId;
+	}
+
+	/***
+	 * Select the loan accounts matching filter constraints
+	 *
+	 * @param filterConstraints
+	 *            filter constraints. Must not be null
+	 * @return account selector
+	 */
+	public static LoanAccountSelector byFilter(JSONFilterConstraints filterConstraints) {
+		if (filterConstraints == null) {
+			throw new IllegalArgumentException("Filter constraints must not be null");
+		}
+		return new LoanAccountSelector(filterConstraints, null, null);
+	}
+
+	/***
+	 * Select the loan accounts of a custom view
+	 *
+	 * @param customViewKey
+	 *            the encoded key of a loan accounts custom view. Must not be null
+	 * @param branchId
+	 *            branch ID or null for the accounts of all branches managed by the API user
+	 * @return account selector
+	 */
+	public static LoanAccountSelector byCustomView(String customViewKey, String branchId) {
+		if (customViewKey == null) {
+			throw new IllegalArgumentException("Custom view key must not be null");
+		}
+		return new LoanAccountSelector(null, customViewKey, branchId);
+	}
+
+	/**
+	 * Get a page of the selected accounts
+	 */
+	List<LoanAccount> getPage(LoansService loansService, CustomViewsService customViewsService, int offset,
+			int limit) throws MambuApiException {
+		if (filterConstraints != null) {
+			return loansService.getLoanAccounts(filterConstraints, String.valueOf(offset), String.valueOf(limit));
+		}
+		return customViewsService.getCustomViewEntities(ApiViewType.LOANS, branchId, customViewKey,
+				String.valueOf(offset), String.valueOf(limit));
+	}
+
+	@Override
+	public String toString() {
+		return filterConstraints != null ? "Loan accounts matching filter constraints" : "Loan accounts of custom view "
+				+ customViewKey + (branchId != null ? " in branch " + branchId : "");
+	}
+}
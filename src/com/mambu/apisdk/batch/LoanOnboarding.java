@@ -0,0 +1,64 @@
+package com.mambu.apisdk.batch;
+
+import com.mambu.core.shared.model.Money;
+import com.mambu.loans.shared.model.DisbursementDetails;
+import com.mambu.loans.shared.model.LoanAccount;
+
+/**
+ * A loan account to be created, approved and disbursed by the {@link LoanOnboardingPipeline}
+ *
+ * @author agent
+ *
+ */
+public class LoanOnboarding {
+
+	private final LoanAccount account;
+	private final Money disbursementAmount;
+	private final DisbursementDetails disbursementDetails;
+	private final String notes;
+
+	/***
+	 * Create loan onboarding
+	 *
+	 * @param account
+	 *            loan account to create. Its encoded key must be null. Must not be null
+	 * @param disbursementAmount
+	 *            disbursement amount or null for the loan amount
+	 * @param disbursementDetails
+	 *            disbursement details or null
+	 * @param notes
+	 *            notes for the approval and disbursement transactions or null
+	 */
+	public LoanOnboarding(LoanAccount account, Money disbursementAmount, DisbursementDetails disbursementDetails,
+			String notes) {
+		if (account == null) {
+			throw new IllegalArgumentException("Loan account must not be null");
+		}
+		this.account = account;
+		this.disbursementAmount = disbursementAmount;
+		this.disbursementDetails = disbursementDetails;
+		this.notes = notes;
+	}
+
+	public LoanAccount getAccount() {
+		return account;
+	}
+
+	public Money getDisbursementAmount() {
+		return disbursementAmount;
+	}
+
+	public DisbursementDetails getDisbursementDetails() {
+		return disbursementDetails;
+	}
+
+	public String getNotes() {
+		return notes;
+	}
+
+	@Override
+	public String toString() {
+		return "Loan onboarding for client " + account.getAccountHolderKey() + ", product "
+				+ account.getProductTypeKey();
+	}
+}
@@ -0,0 +1,361 @@
+package com.mambu.apisdk.batch;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.mambu.apisdk.MambuAPIService;
+import com.mambu.apisdk.batch.LoanOnboardingResult.Stage;
+import com.mambu.apisdk.exception.MambuApiException;
+import com.mambu.apisdk.services.LoansService;
+import com.mambu.loans.shared.model.LoanAccount;
+import com.mambu.loans.shared.model.LoanTransaction;
+
+/**
+ * Creates, approves and disburses large numbers of loan accounts, for portfolio migrations and bulk onboarding.
+ *
+ * Each stage (see {@link LoanOnboardingResult.Stage}) has its own threads. The stages of one account run one after
+ * the other, but different accounts are in different stages at the same time: while one account is disbursed, the next
+ * ones are approved and created. The number of concurrent requests of each stage is configured separately.
+ *
+ * A failure stops only the failed account: its remaining stages are not run and the failure is reported by the future
+ * returned by {@link #submit(LoanOnboarding)}. Optionally, the approval of an account whose disbursement failed is
+ * undone (see {@link #setCompensateOnFailure(boolean)}). Onboarded accounts can be rolled back with
+ * {@link #undo(LoanOnboardingResult)}.
+ *
+ * Submitting blocks when the configured number of accounts is in the pipeline, so that accounts can be read from a
+ * large input without keeping them all in memory.
+ *
+ * Example:
+ *
+ * <pre>
+ * LoanOnboardingPipeline pipeline = new LoanOnboardingPipeline(mambuAPIService, 4, 2, 2, 1000);
+ * for (...) {
+ * 	pipeline.submit(new LoanOnboarding(loanAccount, null, null, notes));
+ * }
+ * pipeline.awaitCompletion();
+ * pipeline.shutdown();
+ * </pre>
+ *
+ * @author agent
+ *
+ */
+public class LoanOnboardingPipeline {
+
+	private final static Logger LOGGER = Logger.getLogger(LoanOnboardingPipeline.class.getName());
+
+	private final LoansService loansService;
+	private final ExecutorService createExecutor;
+	private final ExecutorService approveExecutor;
+	private final ExecutorService disburseExecutor;
+	private final Semaphore pendingPermits;
+
+	// Number of accounts in the pipeline. Guarded by pendingLock
+	private int pendingCount;
+	private final Object pendingLock = new Object();
+	private volatile boolean compensateOnFailure = false;
+	// Written under pendingLock, so that no account is submitted after the executors are shut down
+	private volatile boolean shutdown = false;
+
+	private final AtomicLong onboardedCount = new AtomicLong();
+	private final AtomicLong failedCount = new AtomicLong();
+
+	/**
+	 * State of an account in the pipeline. Each stage runs after the previous one completed, so the state is only
+	 * accessed by one thread at a time
+	 */
+	private class Job {
+		private final LoanOnboarding onboarding;
+		private final SettableFuture<LoanOnboardingResult> future = SettableFuture.create();
+		private LoanAccount account;
+		private LoanTransaction disbursement;
+
+		private Job(LoanOnboarding onboarding) {
+			this.onboarding = onboarding;
+		}
+
+		private void create() {
+			try {
+				account = loansService.createLoanAccount(onboarding.getAccount());
+				if (account == null || account.getEncodedKey() == null) {
+					throw new MambuApiException(-1, "Created account was not returned");
+				}
+			} catch (MambuApiException e) {
+				fail(Stage.CREATE, null, e);
+				return;
+			} catch (RuntimeException e) {
+				fail(Stage.CREATE, null, new MambuApiException(e));
+				return;
+			}
+			approveExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					approve();
+				}
+			});
+		}
+
+		private void approve() {
+			try {
+				loansService.approveLoanAccount(account.getEncodedKey(), onboarding.getNotes());
+			} catch (MambuApiException e) {
+				fail(Stage.APPROVE, Stage.CREATE, e);
+				return;
+			} catch (RuntimeException e) {
+				fail(Stage.APPROVE, Stage.CREATE, new MambuApiException(e));
+				return;
+			}
+			disburseExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					disburse();
+				}
+			});
+		}
+
+		private void disburse() {
+			try {
+				disbursement = loansService.disburseLoanAccount(account.getEncodedKey(),
+						onboarding.getDisbursementAmount(), onboarding.getDisbursementDetails(), onboarding.getNotes());
+			} catch (MambuApiException e) {
+				fail(Stage.DISBURSE, Stage.APPROVE, e);
+				return;
+			} catch (RuntimeException e) {
+				fail(Stage.DISBURSE, Stage.APPROVE, new MambuApiException(e));
+				return;
+			}
+			onboardedCount.incrementAndGet();
+			complete(new LoanOnboardingResult(onboarding, account, disbursement, Stage.DISBURSE, null, null, false));
+		}
+
+		private void fail(Stage failedStage, Stage completedStage, MambuApiException exception) {
+			LOGGER.warning(onboarding + " failed to " + failedStage + ", error code=" + exception.getErrorCode() + " "
+					+ exception.getErrorMessage());
+			failedCount.incrementAndGet();
+			boolean compensated = false;
+			if (compensateOnFailure && completedStage == Stage.APPROVE) {
+				try {
+					loansService.undoApproveLoanAccount(account.getEncodedKey(), onboarding.getNotes());
+					completedStage = Stage.CREATE;
+					compensated = true;
+				} catch (MambuApiException e) {
+					LOGGER.warning("Approval of " + account.getEncodedKey() + " not undone: " + e.getMessage());
+				} catch (RuntimeException e) {
+					LOGGER.warning("Approval of " + account.getEncodedKey() + " not undone: " + e.getMessage());
+				}
+			}
+			complete(new LoanOnboardingResult(onboarding, account, null, completedStage, failedStage, exception,
+					compensated));
+		}
+
+		private void complete(LoanOnboardingResult result) {
+			future.set(result);
+			pendingPermits.release();
+			synchronized (pendingLock) {
+				pendingCount--;
+				if (pendingCount == 0) {
+					pendingLock.notifyAll();
+					if (shutdown) {
+						shutdownExecutors();
+					}
+				}
+			}
+		}
+	}
+
+	/***
+	 * Create loan onboarding pipeline
+	 *
+	 * @param mambuAPIService
+	 *            the service responsible for the connection to the server
+	 * @param createConcurrency
+	 *            maximum number of accounts created at the same time. Must be positive
+	 * @param approveConcurrency
+	 *            maximum number of accounts approved at the same time. Must be positive
+	 * @param disburseConcurrency
+	 *            maximum number of accounts disbursed at the same time. Must be positive
+	 * @param maxPendingAccounts
+	 *            maximum number of submitted accounts in the pipeline. Must be positive
+	 */
+	public LoanOnboardingPipeline(MambuAPIService mambuAPIService, int createConcurrency, int approveConcurrency,
+			int disburseConcurrency, int maxPendingAccounts) {
+		if (mambuAPIService == null) {
+			throw new IllegalArgumentException("Mambu API Service must not be null");
+		}
+		if (createConcurrency <= 0 || approveConcurrency <= 0 || disburseConcurrency <= 0 || maxPendingAccounts <= 0) {
+			throw new IllegalArgumentException("Stage concurrency and maximum pending accounts must be positive");
+		}
+		this.loansService = new LoansService(mambuAPIService);
+		this.pendingPermits = new Semaphore(maxPendingAccounts);
+		this.createExecutor = newStageExecutor(createConcurrency, "create");
+		this.approveExecutor = newStageExecutor(approveConcurrency, "approve");
+		this.disburseExecutor = newStageExecutor(disburseConcurrency, "disburse");
+	}
+
+	/***
+	 * Set if the approval of an account is undone when its disbursement fails, so that the account is pending approval
+	 * again
+	 *
+	 * @param compensateOnFailure
+	 *            true to undo the approval, false to leave the account approved (default)
+	 */
+	public void setCompensateOnFailure(boolean compensateOnFailure) {
+		this.compensateOnFailure = compensateOnFailure;
+	}
+
+	/***
+	 * Submit an account to the pipeline. Blocks while the maximum number of accounts is in the pipeline
+	 *
+	 * @param onboarding
+	 *            account to create, approve and disburse. Must not be null
+	 * @return future for the result. The future does not fail: failures are reported by the result
+	 * @throws InterruptedException
+	 *             if interrupted while waiting to submit the account
+	 * @throws IllegalStateException
+	 *             if the pipeline is shut down, also while waiting to submit the account
+	 */
+	public ListenableFuture<LoanOnboardingResult> submit(LoanOnboarding onboarding) throws InterruptedException {
+		if (onboarding == null) {
+			throw new IllegalArgumentException("Loan onboarding must not be null");
+		}
+		if (shutdown) {
+			throw new IllegalStateException("Loan onboarding pipeline is shut down");
+		}
+		pendingPermits.acquire();
+		final Job job = new Job(onboarding);
+		synchronized (pendingLock) {
+			if (shutdown) {
+				pendingPermits.release();
+				throw new IllegalStateException("Loan onboarding pipeline is shut down");
+			}
+			pendingCount++;
+			try {
+				createExecutor.execute(new Runnable() {
+					@Override
+					public void run() {
+						job.create();
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				pendingCount--;
+				if (pendingCount == 0) {
+					pendingLock.notifyAll();
+				}
+				pendingPermits.release();
+				throw new IllegalStateException("Loan onboarding pipeline cannot accept accounts", e);
+			}
+		}
+		return job.future;
+	}
+
+	/***
+	 * Wait until all submitted accounts are onboarded or failed
+	 *
+	 * @throws InterruptedException
+	 */
+	public void awaitCompletion() throws InterruptedException {
+		synchronized (pendingLock) {
+			while (pendingCount > 0) {
+				pendingLock.wait();
+			}
+		}
+	}
+
+	/***
+	 * Wait until all submitted accounts are onboarded or failed, or the timeout expires
+	 *
+	 * @param timeout
+	 *            maximum time to wait
+	 * @param unit
+	 *            time unit
+	 * @return true if all accounts completed, false if the timeout expired
+	 * @throws InterruptedException
+	 */
+	public boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		synchronized (pendingLock) {
+			while (pendingCount > 0) {
+				long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+				if (remainingMillis <= 0) {
+					return false;
+				}
+				pendingLock.wait(remainingMillis);
+			}
+		}
+		return true;
+	}
+
+	/***
+	 * Shut down the pipeline. Accounts already submitted go through all their stages. No new accounts are accepted
+	 */
+	public void shutdown() {
+		synchronized (pendingLock) {
+			shutdown = true;
+			if (pendingCount == 0) {
+				shutdownExecutors();
+			}
+		}
+	}
+
+	/***
+	 * Roll back an onboarded or partially onboarded account: undo its disbursement and its approval, in this order. The
+	 * account itself is not deleted
+	 *
+	 * @param result
+	 *            result of the account. Must not be null
+	 * @throws MambuApiException
+	 *             if a stage cannot be undone. The stages undone before the failure stay undone
+	 */
+	public void undo(LoanOnboardingResult result) throws MambuApiException {
+		if (result == null) {
+			throw new IllegalArgumentException("Result must not be null");
+		}
+		Stage completedStage = result.getCompletedStage();
+		if (completedStage == null || completedStage == Stage.CREATE) {
+			return;
+		}
+		String accountKey = result.getAccount().getEncodedKey();
+		String notes = result.getOnboarding().getNotes();
+		if (completedStage == Stage.DISBURSE) {
+			loansService.undoDisburseLoanAccount(accountKey, notes);
+		}
+		loansService.undoApproveLoanAccount(accountKey, notes);
+	}
+
+	public long getOnboardedCount() {
+		return onboardedCount.get();
+	}
+
+	public long getFailedCount() {
+		return failedCount.get();
+	}
+
+	/***
+	 * Get the number of submitted accounts not completed yet
+	 *
+	 * @return number of accounts in the pipeline
+	 */
+	public int getPendingCount() {
+		synchronized (pendingLock) {
+			return pendingCount;
+		}
+	}
+
+	private void shutdownExecutors() {
+		createExecutor.shutdown();
+		approveExecutor.shutdown();
+		disburseExecutor.shutdown();
+	}
+
+	private static ExecutorService newStageExecutor(int concurrency, String stageName) {
+		return Executors.newFixedThreadPool(concurrency, new ThreadFactoryBuilder()
+				.setNameFormat("mambu-onboarding-" + stageName + "-%d").setDaemon(true).build());
+	}
+}
@@ -0,0 +1,110 @@
+package com.mambu.apisdk.batch;
+
+import com.mambu.apisdk.exception.MambuApiException;
+import com.mambu.loans.shared.model.LoanAccount;
+import com.mambu.loans.shared.model.LoanTransaction;
+
+/**
+ * Outcome of a {@link LoanOnboarding} submitted to the {@link LoanOnboardingPipeline}
+ *
+ * @author agent
+ *
+ */
+public class LoanOnboardingResult {
+
+	/**
+	 * Pipeline stages, in the order they run for an account
+	 */
+	public enum Stage {
+		CREATE, APPROVE, DISBURSE
+	}
+
+	private final LoanOnboarding onboarding;
+	private final LoanAccount account;
+	private final LoanTransaction disbursement;
+	private final Stage completedStage;
+	private final Stage failedStage;
+	private final MambuApiException exception;
+	private final boolean compensated;
+
+	LoanOnboardingResult(LoanOnboarding onboarding, LoanAccount account, LoanTransaction disbursement,
+			Stage completedStage, Stage failedStage, MambuApiException exception, boolean compensated) {
+		this.onboarding = onboarding;
+		this.account = account;
+		this.disbursement = disbursement;
+		this.completedStage = completedStage;
+		this.failedStage = failedStage;
+		this.exception = exception;
+		this.compensated = compensated;
+	}
+
+	public LoanOnboarding getOnboarding() {
+		return onboarding;
+	}
+
+	/***
+	 * Get the created account
+	 *
+	 * @return loan account as returned when it was created or null if it was not created
+	 */
+	public LoanAccount getAccount() {
+		return account;
+	}
+
+	/***
+	 * Get the disbursement transaction
+	 *
+	 * @return disbursement or null if the account was not disbursed
+	 */
+	public LoanTransaction getDisbursement() {
+		return disbursement;
+	}
+
+	/***
+	 * Get the last stage completed for the account. Stages undone by compensation are not completed
+	 *
+	 * @return completed stage or null if the account was not created
+	 */
+	public Stage getCompletedStage() {
+		return completedStage;
+	}
+
+	/***
+	 * Get the stage which failed
+	 *
+	 * @return failed stage or null if the account was created, approved and disbursed
+	 */
+	public Stage getFailedStage() {
+		return failedStage;
+	}
+
+	/***
+	 * Get the exception the failed stage or its compensation failed with
+	 *
+	 * @return exception or null if all stages completed
+	 */
+	public MambuApiException getException() {
+		return exception;
+	}
+
+	/***
+	 * Check if the stages completed before the failure were undone
+	 *
+	 * @return true if the approval was undone after the disbursement failed
+	 */
+	public boolean isCompensated() {
+		return compensated;
+	}
+
+	public boolean isSuccessful() {
+		return failedStage == null;
+	}
+
+	@Override
+	public String toString() {
+		String accountId = account != null ? account.getId() : null;
+		return "Loan " + accountId + ": completed=" + completedStage
+				+ (failedStage != null ? ", failed=" + failedStage + " " + exception.getErrorCode() + " "
+						+ exception.getErrorMessage() : "") + (compensated ? ", compensated" : "");
+	}
+}
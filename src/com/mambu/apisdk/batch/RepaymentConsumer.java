@@ -0,0 +1,20 @@
+package com.mambu.apisdk.batch;
+
+import com.mambu.loans.shared.model.Repayment;
+
+/**
+ * Receives the repayments streamed by {@link DueRepaymentsCollector}, one at a time in due date order
+ *
+ * @author agent
+ *
+ */
+public interface RepaymentConsumer {
+
+	/***
+	 * Process a repayment. Throwing an exception stops the collection
+	 *
+	 * @param repayment
+	 *            due repayment
+	 */
+	void onRepayment(Repayment repayment);
+}
@@ -0,0 +1,264 @@
+package com.mambu.apisdk.batch;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import com.mambu.api.server.handler.core.dynamicsearch.model.JSONFilterConstraint;
+import com.mambu.api.server.handler.core.dynamicsearch.model.JSONFilterConstraints;
+import com.mambu.apisdk.MambuAPIService;
+import com.mambu.apisdk.exception.MambuApiException;
+import com.mambu.apisdk.services.SearchService;
+import com.mambu.apisdk.util.DateUtils;
+import com.mambu.apisdk.util.FutureUtils;
+import com.mambu.apisdk.util.MambuEntityType;
+import com.mambu.core.shared.data.DataFieldType;
+import com.mambu.core.shared.data.FilterElement;
+import com.mambu.core.shared.model.HasEncodedKey;
+
+/**
+ * Executes large searches with filter constraints (see
+ * {@link SearchService#searchEntities(MambuEntityType, JSONFilterConstraints, String, String)}) as several smaller
+ * searches running in parallel.
+ *
+ * Paging through one large result set requires deeper and deeper offsets, which get slower on the server. Instead, the
+ * filter constraints are split into sub-queries for disjoint ranges of a date or amount field (see
+ * {@link #splitByDate(JSONFilterConstraints, String, String, Date, Date, int)} and
+ * {@link #splitByAmount(JSONFilterConstraints, String, String, BigDecimal...)}). Each sub-query is paged separately,
+ * with at most the configured number of requests running at the same time, and the results are merged in the order of
+ * the sub-queries. Within each sub-query the sort order of the original filter constraints applies.
+ *
+ * Example:
+ *
+ * <pre>
+ * List&lt;JSONFilterConstraints&gt; subQueries = SplitQueryExecutor.splitByDate(filterConstraints,
+ * 		TransactionsDataField.ENTRY_DATE.name(), null, from, to, 7);
+ * List&lt;LoanTransaction&gt; transactions = new SplitQueryExecutor(mambuAPIService).search(
+ * 		MambuEntityType.LOAN_TRANSACTION, subQueries);
+ * </pre>
+ *
+ * @author agent
+ *
+ */
+public class SplitQueryExecutor {
+
+	private final static Logger LOGGER = Logger.getLogger(SplitQueryExecutor.class.getName());
+
+	/**
+	 * Default number of entities requested with one page
+	 */
+	public final static int DEFAULT_PAGE_SIZE = 500;
+	/**
+	 * Default maximum number of concurrent requests
+	 */
+	public final static int DEFAULT_MAX_CONCURRENT_REQUESTS = 4;
+
+	private final SearchService searchService;
+	private final int pageSize;
+	private final int maxConcurrentRequests;
+
+	/***
+	 * Create split query executor with default page size and concurrency
+	 *
+	 * @param mambuAPIService
+	 *            the service responsible for the connection to the server
+	 */
+	public SplitQueryExecutor(MambuAPIService mambuAPIService) {
+		this(mambuAPIService, DEFAULT_PAGE_SIZE, DEFAULT_MAX_CONCURRENT_REQUESTS);
+	}
+
+	/***
+	 * Create split query executor
+	 *
+	 * @param mambuAPIService
+	 *            the service responsible for the connection to the server
+	 * @param pageSize
+	 *            number of entities requested with one page. Must be positive
+	 * @param maxConcurrentRequests
+	 *            maximum number of concurrent requests. Must be positive
+	 */
+	public SplitQueryExecutor(MambuAPIService mambuAPIService, int pageSize, int maxConcurrentRequests) {
+		if (mambuAPIService == null) {
+			throw new IllegalArgumentException("Mambu API Service must not be null");
+		}
+		if (pageSize <= 0 || maxConcurrentRequests <= 0) {
+			throw new IllegalArgumentException("Page size and maximum concurrent requests must be positive");
+		}
+		this.searchService = new SearchService(mambuAPIService);
+		this.pageSize = pageSize;
+		this.maxConcurrentRequests = maxConcurrentRequests;
+	}
+
+	/***
+	 * Get all entities matching any of the sub-queries
+	 *
+	 * @param searchEntityType
+	 *            Mambu entity type supported by searching with filter constraints
+	 * @param subQueries
+	 *            filter constraints of the sub-queries. Must not be null. Entities matching more than one sub-query
+	 *            are returned once
+	 * @return entities in the order of the sub-queries
+	 * @throws MambuApiException
+	 *             if any request fails. The remaining requests are cancelled
+	 */
+	public <T> List<T> search(final MambuEntityType searchEntityType, List<JSONFilterConstraints> subQueries)
+			throws MambuApiException {
+		if (searchEntityType == null || subQueries == null) {
+			throw new IllegalArgumentException("Entity type and sub-queries must not be null");
+		}
+		List<T> results = new ArrayList<T>();
+		if (subQueries.isEmpty()) {
+			return results;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(subQueries.size(), maxConcurrentRequests));
+		try {
+			List<Future<List<T>>> futures = new ArrayList<Future<List<T>>>(subQueries.size());
+			for (final JSONFilterConstraints subQuery : subQueries) {
+				futures.add(executor.submit(new Callable<List<T>>() {
+					@Override
+					public List<T> call() throws MambuApiException {
+						return searchAllPages(searchEntityType, subQuery);
+					}
+				}));
+			}
+			// Ranges sharing a boundary value can both match the same entity
+			Set<String> encodedKeys = new HashSet<String>();
+			for (Future<List<T>> future : futures) {
+				for (T entity : FutureUtils.getResult(future)) {
+					if (!(entity instanceof HasEncodedKey)
+							|| encodedKeys.add(((HasEncodedKey) entity).getEncodedKey())) {
+						results.add(entity);
+					}
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		LOGGER.fine(searchEntityType + " search with " + subQueries.size() + " sub-queries returned "
+				+ results.size());
+		return results;
+	}
+
+	/***
+	 * Split filter constraints into sub-queries for consecutive date ranges. Each sub-query has the original filter
+	 * constraints and a BETWEEN constraint for its range
+	 *
+	 * @param filterConstraints
+	 *            original filter constraints. Must not be null. The sort details are kept
+	 * @param dataField
+	 *            date field to split on. Example: "CREATION_DATE"
+	 * @param dataItemType
+	 *            data item type of the field or null for a field of the searched entity
+	 * @param from
+	 *            first date of the first range. Only the full date without time is used
+	 * @param to
+	 *            last date of the last range. Only the full date without time is used
+	 * @param daysPerRange
+	 *            number of days of each range. Must be positive
+	 * @return sub-queries, in date order
+	 */
+	public static List<JSONFilterConstraints> splitByDate(JSONFilterConstraints filterConstraints, String dataField,
+			String dataItemType, Date from, Date to, int daysPerRange) {
+		if (filterConstraints == null || dataField == null || from == null || to == null) {
+			throw new IllegalArgumentException("Filter constraints, data field and dates must not be null");
+		}
+		if (daysPerRange <= 0) {
+			throw new IllegalArgumentException("Days per range must be positive");
+		}
+		List<JSONFilterConstraints> subQueries = new ArrayList<JSONFilterConstraints>();
+		for (String[] range : DateUtils.splitIntoDayRanges(from, to, daysPerRange)) {
+			subQueries.add(withConstraint(filterConstraints, makeConstraint(dataField, dataItemType,
+					FilterElement.BETWEEN, range[0], range[1])));
+		}
+		return subQueries;
+	}
+
+	/***
+	 * Split filter constraints into sub-queries for amount ranges. The ranges are: below the first boundary, between
+	 * consecutive boundaries and above the last boundary. Entities without an amount are not matched
+	 *
+	 * @param filterConstraints
+	 *            original filter constraints. Must not be null. The sort details are kept
+	 * @param dataField
+	 *            amount field to split on. Example: "LOAN_AMOUNT"
+	 * @param dataItemType
+	 *            data item type of the field or null for a field of the searched entity
+	 * @param boundaries
+	 *            range boundaries, in ascending order. At least one boundary is required
+	 * @return sub-queries, in amount order
+	 */
+	public static List<JSONFilterConstraints> splitByAmount(JSONFilterConstraints filterConstraints, String dataField,
+			String dataItemType, BigDecimal... boundaries) {
+		if (filterConstraints == null || dataField == null || boundaries == null || boundaries.length == 0) {
+			throw new IllegalArgumentException("Filter constraints, data field and boundaries must not be null");
+		}
+		List<BigDecimal> sorted = new ArrayList<BigDecimal>(Arrays.asList(boundaries));
+		for (int i = 1; i < sorted.size(); i++) {
+			if (sorted.get(i).compareTo(sorted.get(i - 1)) <= 0) {
+				throw new IllegalArgumentException("Boundaries must be in ascending order");
+			}
+		}
+		List<JSONFilterConstraints> subQueries = new ArrayList<JSONFilterConstraints>();
+		subQueries.add(withConstraint(filterConstraints, makeConstraint(dataField, dataItemType,
+				FilterElement.LESS_THAN, sorted.get(0).toPlainString(), null)));
+		for (int i = 1; i < sorted.size(); i++) {
+			subQueries.add(withConstraint(filterConstraints, makeConstraint(dataField, dataItemType,
+					FilterElement.BETWEEN, sorted.get(i - 1).toPlainString(), sorted.get(i).toPlainString())));
+		}
+		subQueries.add(withConstraint(filterConstraints, makeConstraint(dataField, dataItemType,
+				FilterElement.MORE_THAN, sorted.get(sorted.size() - 1).toPlainString(), null)));
+		return subQueries;
+	}
+
+	/**
+	 * Get all pages of one sub-query
+	 */
+	private <T> List<T> searchAllPages(MambuEntityType searchEntityType, JSONFilterConstraints subQuery)
+			throws MambuApiException {
+		List<T> entities = new ArrayList<T>();
+		List<T> page;
+		do {
+			page = searchService.searchEntities(searchEntityType, subQuery, String.valueOf(entities.size()),
+					String.valueOf(pageSize));
+			entities.addAll(page);
+		} while (page.size() == pageSize && !Thread.currentThread().isInterrupted());
+		return entities;
+	}
+
+	private static JSONFilterConstraint makeConstraint(String dataField, String dataItemType,
+			FilterElement filterElement, String value, String secondValue) {
+		JSONFilterConstraint constraint = new JSONFilterConstraint();
+		constraint.setDataFieldType(DataFieldType.NATIVE.name());
+		constraint.setDataItemType(dataItemType);
+		constraint.setFilterSelection(dataField);
+		constraint.setFilterElement(filterElement.name());
+		constraint.setValue(value);
+		constraint.setSecondValue(secondValue);
+		return constraint;
+	}
+
+	/**
+	 * Copy filter constraints adding one constraint
+	 */
+	private static JSONFilterConstraints withConstraint(JSONFilterConstraints filterConstraints,
+			JSONFilterConstraint constraint) {
+		List<JSONFilterConstraint> constraints = new ArrayList<JSONFilterConstraint>();
+		if (filterConstraints.getFilterConstraints() != null) {
+			constraints.addAll(filterConstraints.getFilterConstraints());
+		}
+		constraints.add(constraint);
+		JSONFilterConstraints subQuery = new JSONFilterConstraints();
+		subQuery.setFilterConstraints(constraints);
+		subQuery.setSortDetails(filterConstraints.getSortDetails());
+		return subQuery;
+	}
+}
@@ -0,0 +1,197 @@
+package com.mambu.apisdk.batch;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import com.mambu.apisdk.MambuAPIService;
+import com.mambu.apisdk.exception.MambuApiException;
+import com.mambu.apisdk.services.DocumentTemplatesService;
+import com.mambu.apisdk.util.MambuEntityType;
+
+/**
+ * Generates a populated document template for many loan or savings accounts (see
+ * {@link DocumentTemplatesService#getPopulatedEntityTemplate(MambuEntityType, String, String, String, String)}) with
+ * concurrent requests. Statements for a whole portfolio, for example.
+ *
+ * Each document is written to a {@link DocumentSink} as soon as it is received, so only the documents of the requests
+ * in progress are held in memory. Documents already in the sink are skipped, so an interrupted batch is resumed by
+ * running it again with a sink for the same directory or archive. A failed document does not stop the batch: it is
+ * reported in the {@link TemplateBatchResult} and generated again by the next run.
+ *
+ * Example:
+ *
+ * <pre>
+ * ZipDocumentSink sink = new ZipDocumentSink(new File(&quot;statements.zip&quot;));
+ * try {
+ * 	result = new TemplateBatchGenerator(mambuAPIService).generate(MambuEntityType.LOAN_ACCOUNT, accountIds,
+ * 			templateKey, startDate, endDate, sink);
+ * } finally {
+ * 	sink.close();
+ * }
+ * </pre>
+ *
+ * @author agent
+ *
+ */
+public class TemplateBatchGenerator {
+
+	private final static Logger LOGGER = Logger.getLogger(TemplateBatchGenerator.class.getName());
+
+	/**
+	 * Default maximum number of concurrent requests
+	 */
+	public final static int DEFAULT_MAX_CONCURRENT_REQUESTS = 4;
+
+	private final DocumentTemplatesService documentTemplatesService;
+	private final int maxConcurrentRequests;
+
+	/**
+	 * Populated template of an entity or the exception it failed with
+	 */
+	private static class Document {
+		private final String entityId;
+		private final String content;
+		private final MambuApiException exception;
+
+		private Document(String entityId, String content, MambuApiException exception) {
+			this.entityId = entityId;
+			this.content = content;
+			this.exception = exception;
+		}
+	}
+
+	/***
+	 * Create template batch generator with the default concurrency
+	 *
+	 * @param mambuAPIService
+	 *            the service responsible for the connection to the server
+	 */
+	public TemplateBatchGenerator(MambuAPIService mambuAPIService) {
+		this(mambuAPIService, DEFAULT_MAX_CONCURRENT_REQUESTS);
+	}
+
+	/***
+	 * Create template batch generator
+	 *
+	 * @param mambuAPIService
+	 *            the service responsible for the connection to the server
+	 * @param maxConcurrentRequests
+	 *            maximum number of concurrent requests. Must be positive
+	 */
+	public TemplateBatchGenerator(MambuAPIService mambuAPIService, int maxConcurrentRequests) {
+		if (mambuAPIService == null) {
+			throw new IllegalArgumentException("Mambu API Service must not be null");
+		}
+		if (maxConcurrentRequests <= 0) {
+			throw new IllegalArgumentException("Maximum concurrent requests must be positive");
+		}
+		this.documentTemplatesService = new DocumentTemplatesService(mambuAPIService);
+		this.maxConcurrentRequests = maxConcurrentRequests;
+	}
+
+	/***
+	 * Generate the populated template for each entity and write it to the sink. The sink is not closed
+	 *
+	 * @param parentEntity
+	 *            MambuEntityType.LOAN_ACCOUNT or MambuEntityType.SAVINGS_ACCOUNT
+	 * @param entityIds
+	 *            IDs or encoded keys of the entities. Must not be null. Duplicates are generated once
+	 * @param templateKey
+	 *            template encoded key. Must not be null
+	 * @param startDate
+	 *            start date for templates with transactions history or null
+	 * @param endDate
+	 *            end date for templates with transactions history or null
+	 * @param sink
+	 *            destination of the documents. Must not be null
+	 * @return batch result
+	 */
+	public TemplateBatchResult generate(final MambuEntityType parentEntity, Collection<String> entityIds,
+			final String templateKey, final String startDate, final String endDate, DocumentSink sink) {
+		if (!DocumentTemplatesService.isSupported(parentEntity)) {
+			throw new IllegalArgumentException("Populated templates are not supported for " + parentEntity);
+		}
+		if (entityIds == null || templateKey == null || sink == null) {
+			throw new IllegalArgumentException("Entity IDs, template key and sink must not be null");
+		}
+		TemplateBatchResult result = new TemplateBatchResult();
+		Iterator<String> remaining = new LinkedHashSet<String>(entityIds).iterator();
+		ExecutorService executor = Executors.newFixedThreadPool(maxConcurrentRequests);
+		CompletionService<Document> completionService = new ExecutorCompletionService<Document>(executor);
+		try {
+			int inProgress = 0;
+			while (true) {
+				// Keep one request per thread in progress
+				while (inProgress < maxConcurrentRequests && remaining.hasNext()) {
+					final String entityId = remaining.next();
+					if (sink.isCompleted(entityId)) {
+						result.addSkipped(entityId);
+						continue;
+					}
+					completionService.submit(new Callable<Document>() {
+						@Override
+						public Document call() {
+							try {
+								return new Document(entityId, documentTemplatesService.getPopulatedEntityTemplate(
+										parentEntity, entityId, templateKey, startDate, endDate), null);
+							} catch (MambuApiException e) {
+								return new Document(entityId, null, e);
+							}
+						}
+					});
+					inProgress++;
+				}
+				if (inProgress == 0) {
+					break;
+				}
+				Document document = getResult(completionService.take());
+				inProgress--;
+				write(document, sink, result);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			LOGGER.warning("Template batch interrupted: " + result);
+		} finally {
+			executor.shutdownNow();
+		}
+		LOGGER.info("Template batch for " + templateKey + ": " + result);
+		return result;
+	}
+
+	private static void write(Document document, DocumentSink sink, TemplateBatchResult result) {
+		if (document.exception != null) {
+			LOGGER.warning("Template for " + document.entityId + " failed: " + document.exception.getMessage());
+			result.addFailed(document.entityId, document.exception);
+			return;
+		}
+		try {
+			sink.write(document.entityId, document.content == null ? "" : document.content);
+			result.addGenerated(document.entityId);
+		} catch (IOException e) {
+			LOGGER.warning("Template for " + document.entityId + " not written: " + e.getMessage());
+			result.addFailed(document.entityId, e);
+		}
+	}
+
+	private static Document getResult(Future<Document> future) throws InterruptedException {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			// Request failures are returned as documents
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw (RuntimeException) e.getCause();
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package com.mambu.apisdk.batch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of generating populated templates with the {@link TemplateBatchGenerator}.
+ *
+ * Failed documents are not written, so running the batch again with a sink for the same destination generates only
+ * the failed documents and the documents not generated yet
+ *
+ * @author agent
+ *
+ */
+public class TemplateBatchResult {
+
+	private final List<String> generated = new ArrayList<String>();
+	private final List<String> skipped = new ArrayList<String>();
+	private final Map<String, Exception> failed = new LinkedHashMap<String, Exception>();
+
+	void addGenerated(String entityId) {
+		generated.add(entityId);
+	}
+
+	void addSkipped(String entityId) {
+		skipped.add(entityId);
+	}
+
+	void addFailed(String entityId, Exception exception) {
+		failed.put(entityId, exception);
+	}
+
+	/***
+	 * Check if all documents were generated
+	 *
+	 * @return true if no document failed
+	 */
+	public boolean isSuccessful() {
+		return failed.isEmpty();
+	}
+
+	/***
+	 * Get IDs of the entities whose documents were generated, in the order they were written
+	 *
+	 * @return entity IDs
+	 */
+	public List<String> getGenerated() {
+		return Collections.unmodifiableList(generated);
+	}
+
+	/***
+	 * Get IDs of the entities skipped because the sink already had their documents
+	 *
+	 * @return entity IDs
+	 */
+	public List<String> getSkipped() {
+		return Collections.unmodifiableList(skipped);
+	}
+
+	/***
+	 * Get IDs of the entities whose documents failed and the exceptions they failed with: MambuApiException when the
+	 * request failed or IOException when the document could not be written
+	 *
+	 * @return failed entity IDs and exceptions
+	 */
+	public Map<String, Exception> getFailed() {
+		return Collections.unmodifiableMap(failed);
+	}
+
+	@Override
+	public String toString() {
+		return "Generated=" + generated.size() + ", skipped=" + skipped.size() + ", failed=" + failed.size();
+	}
+}
@@ -0,0 +1,360 @@
+package com.mambu.apisdk.batch;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.mambu.accounts.shared.model.Account;
+import com.mambu.apisdk.MambuAPIService;
+import com.mambu.apisdk.batch.TransactionOperation.OperationType;
+import com.mambu.apisdk.batch.TransactionResult.Status;
+import com.mambu.apisdk.exception.MambuApiException;
+import com.mambu.apisdk.services.LoansService;
+import com.mambu.apisdk.services.SavingsService;
+import com.mambu.loans.shared.model.LoanTransactionType;
+import com.mambu.savings.shared.model.SavingsTransactionType;
+
+/**
+ * Posts large numbers of account transactions (loan repayments, savings deposits and withdrawals and fees) to Mambu.
+ *
+ * Operations for the same account are posted one at a time, in the order they were submitted. Operations for different
+ * accounts are posted in parallel, for at most the configured number of accounts at the same time. The outcome of each
+ * operation is reported asynchronously with the future returned by {@link #submit(TransactionOperation)}.
+ *
+ * Submitting blocks when the configured number of operations is waiting to be posted, so that operations can be read
+ * from a large input without keeping them all in memory. By default, when an operation fails all further operations
+ * for the same account are skipped, because they could depend on it, until the failure is cleared with
+ * {@link #clearFailure(String)} (see {@link #setSkipAfterFailure(boolean)}).
+ *
+ * Example:
+ *
+ * <pre>
+ * TransactionEngine engine = new TransactionEngine(mambuAPIService, 8, 10000);
+ * for (...) {
+ * 	engine.submit(TransactionOperation.repayment(accountId, amount, date, null, null, notes));
+ * }
+ * engine.awaitCompletion();
+ * engine.shutdown();
+ * </pre>
+ *
+ * @author agent
+ *
+ */
+public class TransactionEngine {
+
+	private final static Logger LOGGER = Logger.getLogger(TransactionEngine.class.getName());
+
+	private final LoansService loansService;
+	private final SavingsService savingsService;
+	private final ExecutorService executor;
+	private final Semaphore pendingPermits;
+	private final int maxPendingOperations;
+
+	// Queued operations for accounts with pending operations. Guarded by itself
+	private final Map<String, AccountQueue> accountQueues = new HashMap<String, AccountQueue>();
+	// Accounts with failed operations, until their failure is cleared
+	private final Set<String> failedAccounts = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private volatile boolean skipAfterFailure = true;
+	// Set while holding the accountQueues lock, so that no account is registered after the engine was shut down
+	private volatile boolean shutdown = false;
+
+	private final AtomicLong postedCount = new AtomicLong();
+	private final AtomicLong failedCount = new AtomicLong();
+	private final AtomicLong skippedCount = new AtomicLong();
+
+	/**
+	 * Operation waiting to be posted and the future for its result
+	 */
+	private static class PendingOperation {
+		private final TransactionOperation operation;
+		private final SettableFuture<TransactionResult> future = SettableFuture.create();
+
+		private PendingOperation(TransactionOperation operation) {
+			this.operation = operation;
+		}
+	}
+
+	/**
+	 * Operations for one account. Only one task per account is submitted to the executor at a time: the task posts the
+	 * first queued operation and resubmits itself while there are more operations, so that other accounts get their turn.
+	 * The queue is removed when it drains
+	 */
+	private class AccountQueue implements Runnable {
+		private final String accountKey;
+		private final Deque<PendingOperation> operations = new ArrayDeque<PendingOperation>();
+
+		private AccountQueue(String accountKey) {
+			this.accountKey = accountKey;
+		}
+
+		@Override
+		public void run() {
+			while (true) {
+				PendingOperation pendingOperation;
+				synchronized (accountQueues) {
+					pendingOperation = operations.poll();
+				}
+				try {
+					pendingOperation.future.set(post(pendingOperation.operation));
+				} catch (RuntimeException e) {
+					pendingOperation.future.setException(e);
+				} finally {
+					pendingPermits.release();
+				}
+				synchronized (accountQueues) {
+					if (operations.isEmpty()) {
+						accountQueues.remove(accountKey);
+						accountQueues.notifyAll();
+						return;
+					}
+				}
+				if (!shutdown) {
+					try {
+						executor.execute(this);
+						return;
+					} catch (RejectedExecutionException e) {
+						// Shut down meanwhile: post the remaining operations in this thread
+					}
+				}
+			}
+		}
+	}
+
+	/***
+	 * Create transaction engine
+	 *
+	 * @param mambuAPIService
+	 *            the service responsible for the connection to the server
+	 * @param maxConcurrentAccounts
+	 *            maximum number of accounts with transactions posted at the same time. Must be positive
+	 * @param maxPendingOperations
+	 *            maximum number of submitted operations waiting to be posted. Must be positive
+	 */
+	public TransactionEngine(MambuAPIService mambuAPIService, int maxConcurrentAccounts, int maxPendingOperations) {
+		if (mambuAPIService == null) {
+			throw new IllegalArgumentException("Mambu API Service must not be null");
+		}
+		if (maxConcurrentAccounts <= 0 || maxPendingOperations <= 0) {
+			throw new IllegalArgumentException("Maximum concurrent accounts and pending operations must be positive");
+		}
+		this.loansService = new LoansService(mambuAPIService);
+		this.savingsService = new SavingsService(mambuAPIService);
+		this.maxPendingOperations = maxPendingOperations;
+		this.pendingPermits = new Semaphore(maxPendingOperations);
+		this.executor = Executors.newFixedThreadPool(maxConcurrentAccounts, new ThreadFactoryBuilder()
+				.setNameFormat("mambu-transactions-%d").setDaemon(true).build());
+	}
+
+	/***
+	 * Set if operations for an account are skipped after an operation for this account fails. Operations are skipped,
+	 * whenever they were submitted, until the failure is cleared with {@link #clearFailure(String)}
+	 *
+	 * @param skipAfterFailure
+	 *            true to skip the operations (default), false to post them
+	 */
+	public void setSkipAfterFailure(boolean skipAfterFailure) {
+		this.skipAfterFailure = skipAfterFailure;
+	}
+
+	/***
+	 * Clear the failure of an account, so that its operations are posted again. Operations posted for the account
+	 * after this call are no longer skipped
+	 *
+	 * @param accountKey
+	 *            account key in "accountType:accountId" format, as returned by {@link #getFailedAccounts()}. Example:
+	 *            "LOAN:ABC123"
+	 */
+	public void clearFailure(String accountKey) {
+		if (accountKey == null) {
+			throw new IllegalArgumentException("Account key must not be null");
+		}
+		failedAccounts.remove(accountKey);
+	}
+
+	/***
+	 * Submit transaction operation. Blocks while the maximum number of operations is waiting to be posted
+	 *
+	 * @param operation
+	 *            transaction operation. Must not be null
+	 * @return future for the operation result. The result reports posted, failed and skipped operations
+	 * @throws InterruptedException
+	 *             if interrupted while waiting to submit the operation
+	 */
+	public ListenableFuture<TransactionResult> submit(TransactionOperation operation) throws InterruptedException {
+		if (operation == null) {
+			throw new IllegalArgumentException("Operation must not be null");
+		}
+		if (shutdown) {
+			throw new IllegalStateException("Transaction engine is shut down");
+		}
+		pendingPermits.acquire();
+
+		PendingOperation pendingOperation = new PendingOperation(operation);
+		String accountKey = operation.getAccountKey();
+		synchronized (accountQueues) {
+			if (shutdown) {
+				pendingPermits.release();
+				throw new IllegalStateException("Transaction engine is shut down");
+			}
+			AccountQueue accountQueue = accountQueues.get(accountKey);
+			if (accountQueue != null) {
+				// Posted by the task already running for the account
+				accountQueue.operations.add(pendingOperation);
+				return pendingOperation.future;
+			}
+			accountQueue = new AccountQueue(accountKey);
+			accountQueue.operations.add(pendingOperation);
+			accountQueues.put(accountKey, accountQueue);
+			try {
+				executor.execute(accountQueue);
+			} catch (RejectedExecutionException e) {
+				accountQueues.remove(accountKey);
+				accountQueues.notifyAll();
+				pendingPermits.release();
+				throw new IllegalStateException("Transaction engine cannot post operations", e);
+			}
+		}
+		return pendingOperation.future;
+	}
+
+	/***
+	 * Wait until all submitted operations are completed
+	 *
+	 * @throws InterruptedException
+	 */
+	public void awaitCompletion() throws InterruptedException {
+		synchronized (accountQueues) {
+			while (!accountQueues.isEmpty()) {
+				accountQueues.wait();
+			}
+		}
+	}
+
+	/***
+	 * Wait until all submitted operations are completed or the timeout expires
+	 *
+	 * @param timeout
+	 *            maximum time to wait
+	 * @param unit
+	 *            time unit
+	 * @return true if all operations completed, false if the timeout expired
+	 * @throws InterruptedException
+	 */
+	public boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		synchronized (accountQueues) {
+			while (!accountQueues.isEmpty()) {
+				long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+				if (remainingMillis <= 0) {
+					return false;
+				}
+				accountQueues.wait(remainingMillis);
+			}
+		}
+		return true;
+	}
+
+	/***
+	 * Shut down the engine. Operations already submitted are still posted. No new operations are accepted
+	 */
+	public void shutdown() {
+		synchronized (accountQueues) {
+			shutdown = true;
+		}
+		executor.shutdown();
+	}
+
+	/***
+	 * Get the number of submitted operations not completed yet
+	 *
+	 * @return number of pending operations
+	 */
+	public int getPendingCount() {
+		return maxPendingOperations - pendingPermits.availablePermits();
+	}
+
+	public long getPostedCount() {
+		return postedCount.get();
+	}
+
+	public long getFailedCount() {
+		return failedCount.get();
+	}
+
+	public long getSkippedCount() {
+		return skippedCount.get();
+	}
+
+	/***
+	 * Get the accounts with failed operations, except those cleared with {@link #clearFailure(String)}
+	 *
+	 * @return account keys in "accountType:accountId" format. Example: "LOAN:ABC123"
+	 */
+	public Set<String> getFailedAccounts() {
+		return Collections.unmodifiableSet(new HashSet<String>(failedAccounts));
+	}
+
+	private TransactionResult post(TransactionOperation operation) {
+
+		if (skipAfterFailure && failedAccounts.contains(operation.getAccountKey())) {
+			skippedCount.incrementAndGet();
+			return new TransactionResult(operation, Status.SKIPPED, null, null);
+		}
+		try {
+			Object transaction;
+			if (operation.getAccountType() == Account.Type.LOAN) {
+				LoanTransactionType transactionType = LoanTransactionType.REPAYMENT;
+				if (operation.getOperationType() == OperationType.FEE) {
+					transactionType = LoanTransactionType.FEE;
+				}
+				transaction = loansService.executeJSONTransactionRequest(operation.getAccountId(), transactionType,
+						operation.getTransactionRequest());
+			} else {
+				SavingsTransactionType transactionType;
+				switch (operation.getOperationType()) {
+				case DEPOSIT:
+					transactionType = SavingsTransactionType.DEPOSIT;
+					break;
+				case WITHDRAWAL:
+					transactionType = SavingsTransactionType.WITHDRAWAL;
+					break;
+				default:
+					transactionType = SavingsTransactionType.FEE_APPLIED;
+					break;
+				}
+				transaction = savingsService.executeJSONTransactionRequest(operation.getAccountId(), transactionType,
+						operation.getTransactionRequest());
+			}
+			postedCount.incrementAndGet();
+			return new TransactionResult(operation, Status.POSTED, transaction, null);
+
+		} catch (MambuApiException e) {
+			return failed(operation, e);
+		} catch (RuntimeException e) {
+			return failed(operation, new MambuApiException(e));
+		}
+	}
+
+	private TransactionResult failed(TransactionOperation operation, MambuApiException exception) {
+		LOGGER.warning("Transaction failed: " + operation + ", error code=" + exception.getErrorCode() + " "
+				+ exception.getErrorMessage());
+		failedCount.incrementAndGet();
+		failedAccounts.add(operation.getAccountKey());
+		return new TransactionResult(operation, Status.FAILED, null, exception);
+	}
+}
@@ -0,0 +1,213 @@
+package com.mambu.apisdk.batch;
+
+import java.util.Date;
+import java.util.List;
+
+import com.mambu.accounts.shared.model.Account;
+import com.mambu.accounts.shared.model.TransactionDetails;
+import com.mambu.api.server.handler.loan.model.JSONTransactionRequest;
+import com.mambu.apisdk.util.ServiceHelper;
+import com.mambu.core.shared.model.CustomFieldValue;
+import com.mambu.core.shared.model.Money;
+import com.mambu.loans.shared.model.CustomPredefinedFee;
+
+/**
+ * An account transaction submitted to the {@link TransactionEngine}: a loan repayment, a savings deposit, a savings
+ * withdrawal or a fee applied to a loan or savings account
+ *
+ * @author agent
+ *
+ */
+public class TransactionOperation {
+
+	/**
+	 * Supported transaction operations
+	 */
+	public enum OperationType {
+		REPAYMENT, DEPOSIT, WITHDRAWAL, FEE
+	}
+
+	private final Account.Type accountType;
+	private final String accountId;
+	private final OperationType operationType;
+	private final JSONTransactionRequest transactionRequest;
+	private String reference;
+
+	/***
+	 * Create transaction operation
+	 *
+	 * @param accountType
+	 *            account type. Must be LOAN for repayments and SAVINGS for deposits and withdrawals
+	 * @param accountId
+	 *            account ID or encoded key. Operations for the same account must use the same account identifier to be
+	 *            posted in order
+	 * @param operationType
+	 *            operation type
+	 * @param transactionRequest
+	 *            JSON transaction request. See {@link ServiceHelper#makeJSONTransactionRequest} and
+	 *            {@link ServiceHelper#makeJSONApplyManualFeeRequest(List, Integer, String)}
+	 */
+	public TransactionOperation(Account.Type accountType, String accountId, OperationType operationType,
+			JSONTransactionRequest transactionRequest) {
+		if (accountType == null || accountId == null || operationType == null || transactionRequest == null) {
+			throw new IllegalArgumentException("Account type, account ID, operation type and request must not be null");
+		}
+		if (operationType == OperationType.REPAYMENT && accountType != Account.Type.LOAN) {
+			throw new IllegalArgumentException("Repayments can be made only to loan accounts");
+		}
+		if ((operationType == OperationType.DEPOSIT || operationType == OperationType.WITHDRAWAL)
+				&& accountType != Account.Type.SAVINGS) {
+			throw new IllegalArgumentException(operationType + " can be made only to savings accounts");
+		}
+		this.accountType = accountType;
+		this.accountId = accountId;
+		this.operationType = operationType;
+		this.transactionRequest = transactionRequest;
+	}
+
+	/***
+	 * Create loan repayment operation
+	 *
+	 * @param accountId
+	 *            loan account ID or encoded key
+	 * @param amount
+	 *            transaction amount
+	 * @param date
+	 *            transaction date
+	 * @param transactionDetails
+	 *            transaction details. Can be null
+	 * @param customInformation
+	 *            transaction custom fields. Can be null
+	 * @param notes
+	 *            transaction notes
+	 * @return transaction operation
+	 */
+	public static TransactionOperation repayment(String accountId, Money amount, Date date,
+			TransactionDetails transactionDetails, List<CustomFieldValue> customInformation, String notes) {
+		return new TransactionOperation(Account.Type.LOAN, accountId, OperationType.REPAYMENT,
+				ServiceHelper.makeJSONTransactionRequest(amount, date, null, transactionDetails, null,
+						customInformation, notes));
+	}
+
+	/***
+	 * Create savings deposit operation
+	 *
+	 * @param accountId
+	 *            savings account ID or encoded key
+	 * @param amount
+	 *            transaction amount
+	 * @param date
+	 *            transaction date
+	 * @param transactionDetails
+	 *            transaction details. Can be null
+	 * @param customInformation
+	 *            transaction custom fields. Can be null
+	 * @param notes
+	 *            transaction notes
+	 * @return transaction operation
+	 */
+	public static TransactionOperation deposit(String accountId, Money amount, Date date,
+			TransactionDetails transactionDetails, List<CustomFieldValue> customInformation, String notes) {
+		return new TransactionOperation(Account.Type.SAVINGS, accountId, OperationType.DEPOSIT,
+				ServiceHelper.makeJSONTransactionRequest(amount, date, null, transactionDetails, null,
+						customInformation, notes));
+	}
+
+	/***
+	 * Create savings withdrawal operation
+	 *
+	 * @param accountId
+	 *            savings account ID or encoded key
+	 * @param amount
+	 *            transaction amount
+	 * @param date
+	 *            transaction date
+	 * @param transactionDetails
+	 *            transaction details. Can be null
+	 * @param customInformation
+	 *            transaction custom fields. Can be null
+	 * @param notes
+	 *            transaction notes
+	 * @return transaction operation
+	 */
+	public static TransactionOperation withdrawal(String accountId, Money amount, Date date,
+			TransactionDetails transactionDetails, List<CustomFieldValue> customInformation, String notes) {
+		return new TransactionOperation(Account.Type.SAVINGS, accountId, OperationType.WITHDRAWAL,
+				ServiceHelper.makeJSONTransactionRequest(amount, date, null, transactionDetails, null,
+						customInformation, notes));
+	}
+
+	/***
+	 * Create operation applying a manual predefined fee
+	 *
+	 * @param accountType
+	 *            account type, LOAN or SAVINGS
+	 * @param accountId
+	 *            account ID or encoded key
+	 * @param fees
+	 *            fees. Must contain exactly one fee
+	 * @param repaymentNumber
+	 *            repayment number. Can be specified only for fixed loans
+	 * @param notes
+	 *            transaction notes
+	 * @return transaction operation
+	 */
+	public static TransactionOperation fee(Account.Type accountType, String accountId, List<CustomPredefinedFee> fees,
+			Integer repaymentNumber, String notes) {
+		if (fees == null || fees.size() != 1) {
+			throw new IllegalArgumentException("There must be exactly one fee present");
+		}
+		return new TransactionOperation(accountType, accountId, OperationType.FEE,
+				ServiceHelper.makeJSONApplyManualFeeRequest(fees, repaymentNumber, notes));
+	}
+
+	public Account.Type getAccountType() {
+		return accountType;
+	}
+
+	public String getAccountId() {
+		return accountId;
+	}
+
+	public OperationType getOperationType() {
+		return operationType;
+	}
+
+	public JSONTransactionRequest getTransactionRequest() {
+		return transactionRequest;
+	}
+
+	/***
+	 * Get application reference for the operation
+	 *
+	 * @return reference or null
+	 */
+	public String getReference() {
+		return reference;
+	}
+
+	/***
+	 * Set application reference for the operation, for example the line number in the input file. Used to match
+	 * results to the input
+	 *
+	 * @param reference
+	 *            reference
+	 * @return this operation
+	 */
+	public TransactionOperation setReference(String reference) {
+		this.reference = reference;
+		return this;
+	}
+
+	/**
+	 * Key used to serialize operations for the same account
+	 */
+	String getAccountKey() {
+		return accountType + ":" + accountId;
+	}
+
+	@Override
+	public String toString() {
+		return operationType + " " + accountType + " " + accountId + (reference != null ? " (" + reference + ")" : "");
+	}
+}
@@ -0,0 +1,79 @@
+package com.mambu.apisdk.batch;
+
+import com.mambu.apisdk.exception.MambuApiException;
+
+/**
+ * Outcome of a {@link TransactionOperation} submitted to the {@link TransactionEngine}
+ *
+ * @author agent
+ *
+ */
+public class TransactionResult {
+
+	/**
+	 * Operation status
+	 */
+	public enum Status {
+		/**
+		 * Transaction was posted
+		 */
+		POSTED,
+		/**
+		 * Mambu rejected the transaction or the request failed
+		 */
+		FAILED,
+		/**
+		 * Transaction was not sent because an earlier operation for the same account failed
+		 */
+		SKIPPED
+	}
+
+	private final TransactionOperation operation;
+	private final Status status;
+	private final Object transaction;
+	private final MambuApiException exception;
+
+	TransactionResult(TransactionOperation operation, Status status, Object transaction, MambuApiException exception) {
+		this.operation = operation;
+		this.status = status;
+		this.transaction = transaction;
+		this.exception = exception;
+	}
+
+	public TransactionOperation getOperation() {
+		return operation;
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	public boolean isPosted() {
+		return status == Status.POSTED;
+	}
+
+	/***
+	 * Get posted transaction
+	 *
+	 * @return LoanTransaction for loan accounts, SavingsTransaction for savings accounts or null if the transaction
+	 *         was not posted
+	 */
+	public Object getTransaction() {
+		return transaction;
+	}
+
+	/***
+	 * Get the exception the operation failed with
+	 *
+	 * @return exception or null if the transaction was posted
+	 */
+	public MambuApiException getException() {
+		return exception;
+	}
+
+	@Override
+	public String toString() {
+		return operation + ": " + status + (exception != null ? " " + exception.getErrorCode() + " "
+				+ exception.getErrorMessage() : "");
+	}
+}
@@ -0,0 +1,179 @@
+package com.mambu.apisdk.batch;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes all documents into one zip archive, with one entry per entity named after the entity ID. Example:
+ * "LOAN123.html". Characters which are not safe in file names are percent-encoded.
+ *
+ * The archive is written to a ".part" file next to it and moved in place when the sink is closed. If a batch is
+ * interrupted, a new sink for the same archive copies the complete entries of the unfinished (or of the existing)
+ * archive and the batch continues with the remaining documents. Entries are flushed as they are written, so that only
+ * the entry being written when the batch stopped is lost
+ *
+ * @author agent
+ *
+ */
+public class ZipDocumentSink implements DocumentSink {
+
+	private final static Logger LOGGER = Logger.getLogger(ZipDocumentSink.class.getName());
+
+	private final static Charset UTF8 = Charset.forName("UTF-8");
+	private final static char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+	private final File archive;
+	private final File partFile;
+	private final String extension;
+	private final Set<String> entryNames = new HashSet<String>();
+	private final ZipOutputStream out;
+
+	/***
+	 * Create zip sink for HTML documents
+	 *
+	 * @param archive
+	 *            zip archive. Must not be null
+	 * @throws IOException
+	 *             if the archive cannot be created
+	 */
+	public ZipDocumentSink(File archive) throws IOException {
+		this(archive, ".html");
+	}
+
+	/***
+	 * Create zip sink
+	 *
+	 * @param archive
+	 *            zip archive. Must not be null
+	 * @param extension
+	 *            entry name extension. Example: ".html"
+	 * @throws IOException
+	 *             if the archive cannot be created
+	 */
+	public ZipDocumentSink(File archive, String extension) throws IOException {
+		if (archive == null) {
+			throw new IllegalArgumentException("Archive must not be null");
+		}
+		this.archive = archive;
+		this.partFile = new File(archive.getPath() + ".part");
+		this.extension = extension == null ? "" : extension;
+
+		// Entries written before are copied from the unfinished archive of an interrupted batch or from the archive
+		File resumeFile = new File(archive.getPath() + ".resume");
+		if (!resumeFile.exists() && partFile.exists()) {
+			Files.move(partFile.toPath(), resumeFile.toPath());
+		}
+		File previous = resumeFile.exists() ? resumeFile : archive.exists() ? archive : null;
+
+		out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(partFile)));
+		if (previous != null) {
+			try {
+				copyEntries(previous);
+			} catch (IOException e) {
+				out.close();
+				throw e;
+			}
+			resumeFile.delete();
+		}
+	}
+
+	@Override
+	public boolean isCompleted(String entityId) {
+		return entryNames.contains(toFileName(entityId) + extension);
+	}
+
+	@Override
+	public void write(String entityId, String document) throws IOException {
+		String name = toFileName(entityId) + extension;
+		if (!entryNames.add(name)) {
+			throw new IOException("Archive already has an entry " + name);
+		}
+		writeEntry(name, document.getBytes(UTF8));
+	}
+
+	/***
+	 * Finish the archive and move it in place
+	 *
+	 * @throws IOException
+	 */
+	@Override
+	public void close() throws IOException {
+		out.close();
+		Files.move(partFile.toPath(), archive.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private void writeEntry(String name, byte[] content) throws IOException {
+		out.putNextEntry(new ZipEntry(name));
+		out.write(content);
+		out.closeEntry();
+		out.flush();
+	}
+
+	/**
+	 * Copy the complete entries of an archive. The archive can be truncated: copying stops at the first incomplete
+	 * entry
+	 */
+	private void copyEntries(File previous) throws IOException {
+		InputStream in = new FileInputStream(previous);
+		try {
+			ZipInputStream zipIn = new ZipInputStream(in);
+			byte[] buffer = new byte[8192];
+			while (true) {
+				ZipEntry entry;
+				// Read the whole entry before copying it, so that a truncated entry is not copied
+				ByteArrayOutputStream content = new ByteArrayOutputStream();
+				try {
+					entry = zipIn.getNextEntry();
+					if (entry == null) {
+						break;
+					}
+					int count;
+					while ((count = zipIn.read(buffer)) > 0) {
+						content.write(buffer, 0, count);
+					}
+				} catch (IOException e) {
+					LOGGER.warning("Archive " + previous + " is incomplete after " + entryNames.size() + " entries: "
+							+ e.getMessage());
+					break;
+				}
+				if (entryNames.add(entry.getName())) {
+					writeEntry(entry.getName(), content.toByteArray());
+				}
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Make a file name from an entity ID, percent-encoding the UTF-8 bytes of the characters which are not safe in file
+	 * names. Different IDs always get different file names. Example: "A/1" is "A%2F1"
+	 */
+	static String toFileName(String entityId) {
+		StringBuilder fileName = new StringBuilder(entityId.length());
+		for (byte b : entityId.getBytes(UTF8)) {
+			char c = (char) (b & 0xFF);
+			if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '.' || c == '_'
+					|| c == '-') {
+				fileName.append(c);
+			} else {
+				fileName.append('%').append(HEX_DIGITS[c >> 4]).append(HEX_DIGITS[c & 0xF]);
+			}
+		}
+		return fileName.toString();
+	}
+}
@@ -0,0 +1,268 @@
+package com.mambu.apisdk.cache;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.mambu.api.server.handler.customviews.model.ApiViewType;
+import com.mambu.api.server.handler.customviews.model.CustomViewEntitiesSummaryWrapper;
+import com.mambu.apisdk.MambuAPIService;
+import com.mambu.apisdk.exception.MambuApiException;
+import com.mambu.apisdk.services.CustomViewsService;
+import com.mambu.apisdk.util.FutureUtils;
+
+/**
+ * Reads all entities of large custom views with concurrent requests and caches them, with the custom view summaries,
+ * for a configured time.
+ *
+ * To materialize a custom view the summary is read first (see
+ * {@link CustomViewsService#getCustomViewSummary(ApiViewType, String, String)}) to get the number of entities. All pages
+ * are then requested at the same time with
+ * {@link CustomViewsService#getCustomViewEntities(ApiViewType, String, boolean, String, String, String)}, with at most
+ * the configured number of concurrent requests, and assembled in order. If the custom view grew meanwhile, the
+ * remaining pages are read after the last expected page.
+ *
+ * Materialized views and summaries are cached per API view type, branch, details level and custom view key. Concurrent
+ * requests for the same view wait for one materialization
+ *
+ * @author agent
+ *
+ */
+public class CustomViewCache {
+
+	private final static Logger LOGGER = Logger.getLogger(CustomViewCache.class.getName());
+
+	/**
+	 * Default number of entities requested with one page
+	 */
+	public final static int DEFAULT_PAGE_SIZE = 500;
+	/**
+	 * Default maximum number of concurrent requests
+	 */
+	public final static int DEFAULT_MAX_CONCURRENT_REQUESTS = 4;
+	/**
+	 * Default time to live of materialized views and summaries, in seconds
+	 */
+	public final static long DEFAULT_TIME_TO_LIVE_SECONDS = 300;
+
+	private final CustomViewsService customViewsService;
+	private final int pageSize;
+	private final int maxConcurrentRequests;
+	private final Cache<String, MaterializedCustomView<?>> views;
+	private final Cache<String, CustomViewEntitiesSummaryWrapper> summaries;
+
+	/***
+	 * Create custom view cache with default settings
+	 *
+	 * @param mambuAPIService
+	 *            the service responsible for the connection to the server
+	 */
+	public CustomViewCache(MambuAPIService mambuAPIService) {
+		this(mambuAPIService, DEFAULT_PAGE_SIZE, DEFAULT_MAX_CONCURRENT_REQUESTS, DEFAULT_TIME_TO_LIVE_SECONDS,
+				TimeUnit.SECONDS);
+	}
+
+	/***
+	 * Create custom view cache
+	 *
+	 * @param mambuAPIService
+	 *            the service responsible for the connection to the server
+	 * @param pageSize
+	 *            number of entities requested with one page. Must be positive
+	 * @param maxConcurrentRequests
+	 *            maximum number of concurrent requests for one view. Must be positive
+	 * @param timeToLive
+	 *            time to live of materialized views and summaries. Must be positive
+	 * @param unit
+	 *            time unit for the time to live
+	 */
+	public CustomViewCache(MambuAPIService mambuAPIService, int pageSize, int maxConcurrentRequests, long timeToLive,
+			TimeUnit unit) {
+		if (mambuAPIService == null) {
+			throw new IllegalArgumentException("Mambu API Service must not be null");
+		}
+		if (pageSize <= 0 || maxConcurrentRequests <= 0 || timeToLive <= 0) {
+			throw new IllegalArgumentException("Page size, concurrent requests and time to live must be positive");
+		}
+		this.customViewsService = new CustomViewsService(mambuAPIService);
+		this.pageSize = pageSize;
+		this.maxConcurrentRequests = maxConcurrentRequests;
+		this.views = CacheBuilder.newBuilder().expireAfterWrite(timeToLive, unit).build();
+		this.summaries = CacheBuilder.newBuilder().expireAfterWrite(timeToLive, unit).build();
+	}
+
+	/***
+	 * Get the cached summary of a custom view or read it from Mambu
+	 *
+	 * @param apiViewType
+	 *            API view type. Example, ApiViewType.LOANS, or ApiViewType.CLIENTS
+	 * @param branchId
+	 *            an optional branch ID filtering parameter
+	 * @param customViewKey
+	 *            the encoded key for the custom view. Must not be null
+	 * @return custom view summary
+	 * @throws MambuApiException
+	 */
+	public CustomViewEntitiesSummaryWrapper getSummary(final ApiViewType apiViewType, final String branchId,
+			final String customViewKey) throws MambuApiException {
+		String key = makeKey(apiViewType, branchId, null, customViewKey);
+		try {
+			return summaries.get(key, new Callable<CustomViewEntitiesSummaryWrapper>() {
+				@Override
+				public CustomViewEntitiesSummaryWrapper call() throws MambuApiException {
+					CustomViewEntitiesSummaryWrapper summary = customViewsService.getCustomViewSummary(apiViewType,
+							branchId, customViewKey);
+					// Null values cannot be cached
+					return summary != null ? summary : new CustomViewEntitiesSummaryWrapper();
+				}
+			});
+		} catch (ExecutionException e) {
+			throw FutureUtils.toMambuApiException(e.getCause());
+		} catch (UncheckedExecutionException e) {
+			throw FutureUtils.toMambuApiException(e.getCause());
+		}
+	}
+
+	/***
+	 * Get all entities of a custom view from the cache or read them from Mambu with concurrent requests
+	 *
+	 * @param apiViewType
+	 *            API view type. Example, ApiViewType.LOANS, or ApiViewType.CLIENTS
+	 * @param branchId
+	 *            an optional branch ID filtering parameter
+	 * @param fullDetails
+	 *            true to get entities with full details
+	 * @param customViewKey
+	 *            the encoded key for the custom view. Must not be null
+	 * @return materialized custom view
+	 * @throws MambuApiException
+	 *             if any request fails. Nothing is cached in this case
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> MaterializedCustomView<T> materialize(final ApiViewType apiViewType, final String branchId,
+			final boolean fullDetails, final String customViewKey) throws MambuApiException {
+		String key = makeKey(apiViewType, branchId, fullDetails, customViewKey);
+		try {
+			return (MaterializedCustomView<T>) views.get(key, new Callable<MaterializedCustomView<?>>() {
+				@Override
+				public MaterializedCustomView<?> call() throws MambuApiException {
+					return load(apiViewType, branchId, fullDetails, customViewKey);
+				}
+			});
+		} catch (ExecutionException e) {
+			throw FutureUtils.toMambuApiException(e.getCause());
+		} catch (UncheckedExecutionException e) {
+			throw FutureUtils.toMambuApiException(e.getCause());
+		}
+	}
+
+	/***
+	 * Remove the cached views and summaries of a custom view
+	 *
+	 * @param customViewKey
+	 *            the encoded key for the custom view
+	 */
+	public void invalidate(String customViewKey) {
+		String suffix = "|" + customViewKey;
+		for (String key : new ArrayList<String>(views.asMap().keySet())) {
+			if (key.endsWith(suffix)) {
+				views.invalidate(key);
+			}
+		}
+		for (String key : new ArrayList<String>(summaries.asMap().keySet())) {
+			if (key.endsWith(suffix)) {
+				summaries.invalidate(key);
+			}
+		}
+	}
+
+	/***
+	 * Remove all cached views and summaries
+	 */
+	public void invalidateAll() {
+		views.invalidateAll();
+		summaries.invalidateAll();
+	}
+
+	/**
+	 * Read the summary and all pages of a custom view
+	 */
+	private <T> MaterializedCustomView<T> load(final ApiViewType apiViewType, final String branchId,
+			final boolean fullDetails, final String customViewKey) throws MambuApiException {
+		Date materializedTime = new Date();
+		// The summary is read again: the count must be current for the pages requested
+		CustomViewEntitiesSummaryWrapper summary = customViewsService.getCustomViewSummary(apiViewType, branchId,
+				customViewKey);
+		if (summary != null) {
+			summaries.put(makeKey(apiViewType, branchId, null, customViewKey), summary);
+		}
+		int count = parseCount(summary);
+		int pages = Math.max(1, (count + pageSize - 1) / pageSize);
+
+		List<T> entities = new ArrayList<T>(count);
+		List<T> lastPage;
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(pages, maxConcurrentRequests));
+		try {
+			List<Future<List<T>>> futures = new ArrayList<Future<List<T>>>(pages);
+			for (int page = 0; page < pages; page++) {
+				final String offset = String.valueOf(page * pageSize);
+				futures.add(executor.submit(new Callable<List<T>>() {
+					@Override
+					public List<T> call() throws MambuApiException {
+						return customViewsService.getCustomViewEntities(apiViewType, branchId, fullDetails,
+								customViewKey, offset, String.valueOf(pageSize));
+					}
+				}));
+			}
+			lastPage = null;
+			for (Future<List<T>> future : futures) {
+				lastPage = future.get();
+				entities.addAll(lastPage);
+			}
+		} catch (ExecutionException e) {
+			throw FutureUtils.toMambuApiException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MambuApiException(e);
+		} finally {
+			executor.shutdownNow();
+		}
+		// Entities added since the summary was read
+		while (lastPage.size() == pageSize) {
+			lastPage = customViewsService.getCustomViewEntities(apiViewType, branchId, fullDetails, customViewKey,
+					String.valueOf(entities.size()), String.valueOf(pageSize));
+			entities.addAll(lastPage);
+		}
+		LOGGER.fine("Custom view " + customViewKey + " materialized: " + entities.size() + " entities in " + pages
+				+ " pages");
+		return new MaterializedCustomView<T>(summary, entities, materializedTime);
+	}
+
+	private static int parseCount(CustomViewEntitiesSummaryWrapper summary) {
+		if (summary == null || summary.getCount() == null) {
+			return 0;
+		}
+		try {
+			return Math.max(0, Integer.parseInt(summary.getCount().trim()));
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	private static String makeKey(ApiViewType apiViewType, String branchId, Boolean fullDetails, String customViewKey) {
+		if (apiViewType == null || customViewKey == null) {
+			throw new IllegalArgumentException("API view type and custom view key must not be null");
+		}
+		return apiViewType + "|" + branchId + "|" + fullDetails + "|" + customViewKey;
+	}
+}
@@ -0,0 +1,403 @@
+package com.mambu.apisdk.cache;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.mambu.apisdk.util.APIData;
+import com.mambu.apisdk.util.MambuEntityType;
+import com.mambu.clients.shared.model.Client;
+import com.mambu.loans.shared.model.LoanAccount;
+import com.mambu.savings.shared.model.SavingsAccount;
+
+/**
+ * Optional short-lived cache for Mambu entities read by ClientsService.getClient(), LoansService.getLoanAccount() and
+ * SavingsService.getSavingsAccount().
+ *
+ * The cache is enabled by setting it on the MambuAPIService used by the services (see
+ * {@link com.mambu.apisdk.MambuAPIService#setEntityCache(EntityCache)}). Cached entities are invalidated automatically
+ * when the wrapper sends a write request (POST, PATCH or DELETE) for the entity, for example when making a repayment,
+ * approving a loan, making a deposit, updating a client or its custom field values. Changes made by other applications
+ * are only seen after the cached entries expire, so the time to live should be short.
+ *
+ * Entities are stored as Mambu's JSON responses: each read returns a new object which the caller can modify.
+ *
+ * Not found responses (HTTP 404) are cached too, for a shorter time, so that repeated lookups of missing IDs do not
+ * reach the server. They are invalidated when an entity of the same type is created or changed by the wrapper. To
+ * cache only not found responses, create the cache with zero time to live for the entities
+ *
+ * @author agent
+ *
+ */
+public class EntityCache {
+
+	/**
+	 * Default time to live for cached entities, in seconds
+	 */
+	public final static long DEFAULT_TIME_TO_LIVE_SECONDS = 30;
+	/**
+	 * Default maximum number of cached entities per entity type
+	 */
+	public final static long DEFAULT_MAXIMUM_SIZE = 10000;
+	/**
+	 * Default time to live for cached not found responses, in seconds
+	 */
+	public final static long DEFAULT_NOT_FOUND_TIME_TO_LIVE_SECONDS = 10;
+
+	// Cached entries for each supported entity type. Entries are keyed by both entity ID and encoded key
+	private final Map<MambuEntityType, Cache<String, CachedEntity>> caches = new EnumMap<MambuEntityType, Cache<String, CachedEntity>>(
+			MambuEntityType.class);
+	// Error messages of the not found responses for each supported entity type, keyed by the requested ID
+	private final Map<MambuEntityType, Cache<String, String>> notFoundCaches = new EnumMap<MambuEntityType, Cache<String, String>>(
+			MambuEntityType.class);
+	// Invalidations counter for each entity type. Used to prevent caching responses read before an invalidation
+	private final Map<MambuEntityType, AtomicLong> versions = new EnumMap<MambuEntityType, AtomicLong>(
+			MambuEntityType.class);
+
+	/**
+	 * Cached entity's JSON response and all keys it is cached under
+	 */
+	private static class CachedEntity {
+		private final String json;
+		private final List<String> keys;
+
+		private CachedEntity(String json, List<String> keys) {
+			this.json = json;
+			this.keys = keys;
+		}
+	}
+
+	/***
+	 * Create entity cache with default time to live and maximum size
+	 */
+	public EntityCache() {
+		this(DEFAULT_TIME_TO_LIVE_SECONDS, TimeUnit.SECONDS, DEFAULT_MAXIMUM_SIZE);
+	}
+
+	/***
+	 * Create entity cache with the default time to live for not found responses
+	 *
+	 * @param timeToLive
+	 *            time to live for the cached entities. Zero disables caching of entities
+	 * @param unit
+	 *            time unit
+	 * @param maximumSize
+	 *            maximum number of cached entities per entity type. Must be positive
+	 */
+	public EntityCache(long timeToLive, TimeUnit unit, long maximumSize) {
+		this(timeToLive, unit, maximumSize, DEFAULT_NOT_FOUND_TIME_TO_LIVE_SECONDS, TimeUnit.SECONDS);
+	}
+
+	/***
+	 * Create entity cache
+	 *
+	 * @param timeToLive
+	 *            time to live for the cached entities. Zero disables caching of entities, so that only not found
+	 *            responses are cached
+	 * @param unit
+	 *            time unit
+	 * @param maximumSize
+	 *            maximum number of cached entities and of cached not found responses per entity type. Must be
+	 *            positive
+	 * @param notFoundTimeToLive
+	 *            time to live for the cached not found responses. Zero disables caching of not found responses
+	 * @param notFoundUnit
+	 *            time unit for the not found responses
+	 */
+	public EntityCache(long timeToLive, TimeUnit unit, long maximumSize, long notFoundTimeToLive,
+			TimeUnit notFoundUnit) {
+		if (timeToLive < 0 || unit == null || maximumSize <= 0) {
+			throw new IllegalArgumentException("Time to live must not be negative, maximum size must be positive");
+		}
+		if (notFoundTimeToLive < 0 || notFoundUnit == null) {
+			throw new IllegalArgumentException("Not found time to live must not be negative");
+		}
+		for (MambuEntityType type : getSupportedTypes()) {
+			// Each entity is cached under its ID and encoded key. With zero time to live entities are not retained, but
+			// the cache is still used to synchronize invalidations with caching not found responses
+			Cache<String, CachedEntity> cache = CacheBuilder.newBuilder().expireAfterWrite(timeToLive, unit)
+					.maximumSize(2 * maximumSize).recordStats().build();
+			caches.put(type, cache);
+			versions.put(type, new AtomicLong());
+			if (notFoundTimeToLive > 0) {
+				Cache<String, String> notFoundCache = CacheBuilder.newBuilder()
+						.expireAfterWrite(notFoundTimeToLive, notFoundUnit).maximumSize(maximumSize).recordStats()
+						.build();
+				notFoundCaches.put(type, notFoundCache);
+			}
+		}
+	}
+
+	/***
+	 * Get entity types supported by the entity cache
+	 *
+	 * @return CLIENT, LOAN_ACCOUNT and SAVINGS_ACCOUNT
+	 */
+	public static MambuEntityType[] getSupportedTypes() {
+		return new MambuEntityType[] { MambuEntityType.CLIENT, MambuEntityType.LOAN_ACCOUNT,
+				MambuEntityType.SAVINGS_ACCOUNT };
+	}
+
+	/***
+	 * Get the entity type cached for an API end point
+	 *
+	 * @param endPoint
+	 *            API end point. Example: "loans"
+	 * @return entity type or null if entities for this end point are not cached
+	 */
+	public static MambuEntityType getEntityType(String endPoint) {
+		if (APIData.CLIENTS.equals(endPoint)) {
+			return MambuEntityType.CLIENT;
+		}
+		if (APIData.LOANS.equals(endPoint)) {
+			return MambuEntityType.LOAN_ACCOUNT;
+		}
+		if (APIData.SAVINGS.equals(endPoint)) {
+			return MambuEntityType.SAVINGS_ACCOUNT;
+		}
+		return null;
+	}
+
+	/***
+	 * Check if entities of this type are cached
+	 *
+	 * @param type
+	 *            entity type
+	 * @return true if supported
+	 */
+	public boolean isCached(MambuEntityType type) {
+		return type != null && caches.containsKey(type);
+	}
+
+	/***
+	 * Get cached entity's JSON
+	 *
+	 * @param type
+	 *            entity type
+	 * @param key
+	 *            entity ID or encoded key
+	 * @return JSON response for the entity or null if not cached
+	 */
+	public String get(MambuEntityType type, String key) {
+		if (!isCached(type) || key == null) {
+			return null;
+		}
+		CachedEntity cachedEntity = caches.get(type).getIfPresent(key);
+		return (cachedEntity == null) ? null : cachedEntity.json;
+	}
+
+	/***
+	 * Get cached not found response
+	 *
+	 * @param type
+	 *            entity type
+	 * @param key
+	 *            requested entity ID or encoded key
+	 * @return error message of the not found response or null if the entity is not known to be missing
+	 */
+	public String getNotFound(MambuEntityType type, String key) {
+		if (!notFoundCaches.containsKey(type) || key == null) {
+			return null;
+		}
+		return notFoundCaches.get(type).getIfPresent(key);
+	}
+
+	/***
+	 * Cache not found response. The response is not cached if any entity of this type was invalidated after the
+	 * version was obtained, because the entity could have been created meanwhile
+	 *
+	 * @param type
+	 *            entity type
+	 * @param requestedKey
+	 *            ID or encoded key used to get the entity
+	 * @param errorMessage
+	 *            error message of the not found response
+	 * @param version
+	 *            version obtained before the entity was requested
+	 */
+	public void putNotFound(MambuEntityType type, String requestedKey, String errorMessage, long version) {
+		if (!notFoundCaches.containsKey(type) || requestedKey == null) {
+			return;
+		}
+		synchronized (caches.get(type)) {
+			if (versions.get(type).get() != version) {
+				return;
+			}
+			notFoundCaches.get(type).put(requestedKey, errorMessage == null ? "" : errorMessage);
+		}
+	}
+
+	/***
+	 * Invalidate all cached not found responses for an entity type. Used when new entities of this type are created
+	 *
+	 * @param type
+	 *            entity type
+	 */
+	public void invalidateNotFound(MambuEntityType type) {
+		if (!isCached(type)) {
+			return;
+		}
+		synchronized (caches.get(type)) {
+			versions.get(type).incrementAndGet();
+			if (notFoundCaches.containsKey(type)) {
+				notFoundCaches.get(type).invalidateAll();
+			}
+		}
+	}
+
+	/***
+	 * Get current version of the cached entities of a type. The version changes whenever an entity of this type is
+	 * invalidated
+	 *
+	 * @param type
+	 *            entity type
+	 * @return version
+	 */
+	public long getVersion(MambuEntityType type) {
+		return isCached(type) ? versions.get(type).get() : 0;
+	}
+
+	/***
+	 * Cache entity's JSON response. The entity is not cached if any entity of this type was invalidated after the
+	 * version was obtained, because the response could have been read before the invalidating write completed
+	 *
+	 * @param type
+	 *            entity type
+	 * @param requestedKey
+	 *            ID or encoded key used to get the entity
+	 * @param entity
+	 *            entity parsed from the response. Used to get entity's ID and encoded key
+	 * @param json
+	 *            JSON response
+	 * @param version
+	 *            version obtained before the entity was requested
+	 */
+	public void put(MambuEntityType type, String requestedKey, Object entity, String json, long version) {
+		if (!isCached(type) || json == null) {
+			return;
+		}
+		List<String> keys = getEntityKeys(entity);
+		if (requestedKey != null && !keys.contains(requestedKey)) {
+			keys.add(requestedKey);
+		}
+		CachedEntity cachedEntity = new CachedEntity(json, keys);
+		Cache<String, CachedEntity> cache = caches.get(type);
+		synchronized (cache) {
+			if (versions.get(type).get() != version) {
+				return;
+			}
+			for (String key : keys) {
+				cache.put(key, cachedEntity);
+			}
+		}
+	}
+
+	/***
+	 * Invalidate cached entity
+	 *
+	 * @param type
+	 *            entity type
+	 * @param key
+	 *            entity ID or encoded key
+	 */
+	public void invalidate(MambuEntityType type, String key) {
+		if (!isCached(type)) {
+			return;
+		}
+		Cache<String, CachedEntity> cache = caches.get(type);
+		synchronized (cache) {
+			versions.get(type).incrementAndGet();
+			if (key == null) {
+				return;
+			}
+			if (notFoundCaches.containsKey(type)) {
+				notFoundCaches.get(type).invalidate(key);
+			}
+			CachedEntity cachedEntity = cache.getIfPresent(key);
+			cache.invalidate(key);
+			if (cachedEntity != null) {
+				cache.invalidateAll(cachedEntity.keys);
+			}
+		}
+	}
+
+	/***
+	 * Invalidate all cached entities of a type
+	 *
+	 * @param type
+	 *            entity type
+	 */
+	public void invalidateAll(MambuEntityType type) {
+		if (!isCached(type)) {
+			return;
+		}
+		Cache<String, CachedEntity> cache = caches.get(type);
+		synchronized (cache) {
+			versions.get(type).incrementAndGet();
+			cache.invalidateAll();
+			if (notFoundCaches.containsKey(type)) {
+				notFoundCaches.get(type).invalidateAll();
+			}
+		}
+	}
+
+	/***
+	 * Invalidate all cached entities
+	 */
+	public void invalidateAll() {
+		for (MambuEntityType type : caches.keySet()) {
+			invalidateAll(type);
+		}
+	}
+
+	/***
+	 * Get cache statistics for an entity type
+	 *
+	 * @param type
+	 *            entity type
+	 * @return statistics with hit and miss counts
+	 */
+	public CacheStats getStats(MambuEntityType type) {
+		return isCached(type) ? caches.get(type).stats() : new CacheStats(0, 0, 0, 0, 0, 0);
+	}
+
+	/***
+	 * Get not found responses cache statistics for an entity type
+	 *
+	 * @param type
+	 *            entity type
+	 * @return statistics with hit and miss counts
+	 */
+	public CacheStats getNotFoundStats(MambuEntityType type) {
+		return notFoundCaches.containsKey(type) ? notFoundCaches.get(type).stats() : new CacheStats(0, 0, 0, 0, 0, 0);
+	}
+
+	private static List<String> getEntityKeys(Object entity) {
+		List<String> keys = new ArrayList<String>(3);
+		String id = null;
+		String encodedKey = null;
+		if (entity instanceof Client) {
+			id = ((Client) entity).getId();
+			encodedKey = ((Client) entity).getEncodedKey();
+		} else if (entity instanceof LoanAccount) {
+			id = ((LoanAccount) entity).getId();
+			encodedKey = ((LoanAccount) entity).getEncodedKey();
+		} else if (entity instanceof SavingsAccount) {
+			id = ((SavingsAccount) entity).getId();
+			encodedKey = ((SavingsAccount) entity).getEncodedKey();
+		}
+		if (id != null) {
+			keys.add(id);
+		}
+		if (encodedKey != null) {
+			keys.add(encodedKey);
+		}
+		return keys;
+	}
+}
@@ -0,0 +1,439 @@
+package com.mambu.apisdk.cache;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import org.apache.commons.codec.binary.Base64;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.mambu.apisdk.MambuAPIService;
+import com.mambu.apisdk.exception.MambuApiException;
+import com.mambu.apisdk.services.DocumentsService;
+import com.mambu.apisdk.services.OrganizationService;
+import com.mambu.apisdk.util.APIData;
+import com.mambu.apisdk.util.APIData.IMAGE_SIZE_TYPE;
+import com.mambu.apisdk.util.FutureUtils;
+
+/**
+ * Two-tier cache for images read by {@link DocumentsService#getImage(String, IMAGE_SIZE_TYPE)} (client pictures, for
+ * example) and for the branding logo and icon read by {@link OrganizationService}.
+ *
+ * Images are decoded from Mambu's base64 responses and kept as bytes: the most recently used images in memory, up to a
+ * total size, and all images in a directory, also up to a total size. Images are cached by image key and size type.
+ * When the disk cache is full, the least recently read images are deleted first. The directory can be shared by
+ * application restarts, so that images are served without requests to Mambu after a restart too.
+ *
+ * Images older than the time to live, counted from the time they were read from Mambu, are read again from Mambu. If
+ * Mambu cannot be reached, the expired image is returned instead and Mambu is asked again a minute later. The returned
+ * arrays are copies and can be modified
+ *
+ * @author agent
+ *
+ */
+public class ImageCache {
+
+	private final static Logger LOGGER = Logger.getLogger(ImageCache.class.getName());
+
+	/**
+	 * Default maximum total size of the images in memory, in bytes
+	 */
+	public final static long DEFAULT_MAX_MEMORY_BYTES = 8 * 1024 * 1024;
+	/**
+	 * Default maximum total size of the images on disk, in bytes
+	 */
+	public final static long DEFAULT_MAX_DISK_BYTES = 256 * 1024 * 1024;
+	/**
+	 * Default time to live of the images, in hours
+	 */
+	public final static long DEFAULT_TIME_TO_LIVE_HOURS = 24;
+
+	private final static String FILE_EXTENSION = ".img";
+	private final static String LOGO_KEY = "branding_logo";
+	private final static String ICON_KEY = "branding_icon";
+	// Time an expired image is served before Mambu is asked again, when Mambu could not be reached
+	private final static long STALE_RETRY_MILLIS = 60 * 1000L;
+
+	private final DocumentsService documentsService;
+	private final OrganizationService organizationService;
+	private final File directory;
+	private final long maxDiskBytes;
+	private final long timeToLiveMillis;
+	private final Cache<String, CachedImage> memoryCache;
+
+	// Total size of the files in the directory. Guarded by this
+	private long diskBytes;
+	private final AtomicLong requestCount = new AtomicLong();
+
+	/**
+	 * Decoded image, the time it was read from Mambu and the time it must be read again
+	 */
+	private static class CachedImage {
+		private final byte[] bytes;
+		private final long readTime;
+		private final long expiryTime;
+
+		private CachedImage(byte[] bytes, long readTime, long expiryTime) {
+			this.bytes = bytes;
+			this.readTime = readTime;
+			this.expiryTime = expiryTime;
+		}
+	}
+
+	/***
+	 * Create image cache with default sizes and time to live
+	 *
+	 * @param mambuAPIService
+	 *            the service responsible for the connection to the server
+	 * @param directory
+	 *            directory of the disk cache or null to cache images in memory only
+	 * @throws IOException
+	 *             if the directory cannot be created
+	 */
+	public ImageCache(MambuAPIService mambuAPIService, File directory) throws IOException {
+		this(mambuAPIService, directory, DEFAULT_MAX_MEMORY_BYTES, DEFAULT_MAX_DISK_BYTES, DEFAULT_TIME_TO_LIVE_HOURS,
+				TimeUnit.HOURS);
+	}
+
+	/***
+	 * Create image cache
+	 *
+	 * @param mambuAPIService
+	 *            the service responsible for the connection to the server
+	 * @param directory
+	 *            directory of the disk cache or null to cache images in memory only. Created if it does not exist
+	 * @param maxMemoryBytes
+	 *            maximum total size of the images in memory. Must be positive
+	 * @param maxDiskBytes
+	 *            maximum total size of the images on disk. Must be positive
+	 * @param timeToLive
+	 *            time after which images are read again from Mambu. Must be positive
+	 * @param unit
+	 *            time unit for the time to live
+	 * @throws IOException
+	 *             if the directory cannot be created
+	 */
+	public ImageCache(MambuAPIService mambuAPIService, File directory, long maxMemoryBytes, long maxDiskBytes,
+			long timeToLive, TimeUnit unit) throws IOException {
+		if (mambuAPIService == null) {
+			throw new IllegalArgumentException("Mambu API Service must not be null");
+		}
+		if (maxMemoryBytes <= 0 || maxDiskBytes <= 0 || timeToLive <= 0) {
+			throw new IllegalArgumentException("Maximum sizes and time to live must be positive");
+		}
+		if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Cannot create directory " + directory);
+		}
+		this.documentsService = new DocumentsService(mambuAPIService);
+		this.organizationService = new OrganizationService(mambuAPIService);
+		this.directory = directory;
+		this.maxDiskBytes = maxDiskBytes;
+		this.timeToLiveMillis = unit.toMillis(timeToLive);
+		this.memoryCache = CacheBuilder.newBuilder().maximumWeight(maxMemoryBytes)
+				.weigher(new Weigher<String, CachedImage>() {
+					@Override
+					public int weigh(String key, CachedImage image) {
+						return image.bytes.length;
+					}
+				}).expireAfterWrite(timeToLive, unit).recordStats().build();
+		for (File file : listFiles()) {
+			diskBytes += file.length();
+		}
+	}
+
+	/***
+	 * Get an image from the cache or from Mambu
+	 *
+	 * @param imageKey
+	 *            image key. Example: client.getProfilePictureKey(). Must not be null
+	 * @param sizeType
+	 *            image size or null for the full size
+	 * @return image bytes
+	 * @throws MambuApiException
+	 *             if the image is not cached and cannot be read from Mambu
+	 */
+	public byte[] getImage(final String imageKey, final IMAGE_SIZE_TYPE sizeType) throws MambuApiException {
+		if (imageKey == null) {
+			throw new IllegalArgumentException("Image key must not be null");
+		}
+		return get(imageKey + "_" + (sizeType == null ? "FULL" : sizeType.name()), new Callable<String>() {
+			@Override
+			public String call() throws MambuApiException {
+				return documentsService.getImage(imageKey, sizeType);
+			}
+		});
+	}
+
+	/***
+	 * Get the organization's branding logo from the cache or from Mambu
+	 *
+	 * @return logo image bytes
+	 * @throws MambuApiException
+	 *             if the logo is not cached and cannot be read from Mambu
+	 */
+	public byte[] getBrandingLogo() throws MambuApiException {
+		return get(LOGO_KEY, new Callable<String>() {
+			@Override
+			public String call() throws MambuApiException {
+				return organizationService.getBrandingLogo();
+			}
+		});
+	}
+
+	/***
+	 * Get the organization's branding icon from the cache or from Mambu
+	 *
+	 * @return icon image bytes
+	 * @throws MambuApiException
+	 *             if the icon is not cached and cannot be read from Mambu
+	 */
+	public byte[] getBrandingIcon() throws MambuApiException {
+		return get(ICON_KEY, new Callable<String>() {
+			@Override
+			public String call() throws MambuApiException {
+				return organizationService.getBrandingIcon();
+			}
+		});
+	}
+
+	/***
+	 * Remove all sizes of an image from memory and disk. Images should be invalidated when they are changed
+	 *
+	 * @param imageKey
+	 *            image key
+	 */
+	public void invalidate(String imageKey) {
+		invalidateKey(imageKey + "_FULL");
+		for (IMAGE_SIZE_TYPE sizeType : IMAGE_SIZE_TYPE.values()) {
+			invalidateKey(imageKey + "_" + sizeType.name());
+		}
+	}
+
+	/***
+	 * Remove the branding logo and icon from memory and disk
+	 */
+	public void invalidateBranding() {
+		invalidateKey(LOGO_KEY);
+		invalidateKey(ICON_KEY);
+	}
+
+	/***
+	 * Remove all images from memory and disk
+	 */
+	public synchronized void invalidateAll() {
+		memoryCache.invalidateAll();
+		for (File file : listFiles()) {
+			deleteFile(file);
+		}
+	}
+
+	/***
+	 * Get the number of requests sent to Mambu
+	 *
+	 * @return number of requests
+	 */
+	public long getRequestCount() {
+		return requestCount.get();
+	}
+
+	/***
+	 * Get statistics of the memory cache: hits, misses, evictions, etc.
+	 *
+	 * @return cache statistics
+	 */
+	public CacheStats getStats() {
+		return memoryCache.stats();
+	}
+
+	/**
+	 * Get an image from memory, from disk or from Mambu. Concurrent requests for the same image wait for one load
+	 */
+	private byte[] get(final String key, final Callable<String> request) throws MambuApiException {
+		Callable<CachedImage> loader = new Callable<CachedImage>() {
+			@Override
+			public CachedImage call() throws Exception {
+				return load(key, request);
+			}
+		};
+		try {
+			CachedImage image = memoryCache.get(key, loader);
+			if (System.currentTimeMillis() >= image.expiryTime) {
+				// Images loaded from disk expire with their read time, not with the time they were loaded into memory
+				memoryCache.asMap().remove(key, image);
+				image = memoryCache.get(key, loader);
+			}
+			return image.bytes.clone();
+		} catch (ExecutionException e) {
+			throw FutureUtils.toMambuApiException(e.getCause());
+		} catch (UncheckedExecutionException e) {
+			throw FutureUtils.toMambuApiException(e.getCause());
+		}
+	}
+
+	/**
+	 * Load an image from disk or, if it is not on disk or expired, from Mambu
+	 */
+	private CachedImage load(String key, Callable<String> request) throws Exception {
+		CachedImage stored = readFile(key);
+		long now = System.currentTimeMillis();
+		if (stored != null && now < stored.expiryTime) {
+			return stored;
+		}
+		String response;
+		try {
+			requestCount.incrementAndGet();
+			response = request.call();
+		} catch (MambuApiException e) {
+			if (stored == null || e.isNotFound()) {
+				throw e;
+			}
+			LOGGER.warning("Image " + key + " not revalidated, using the expired image: " + e.getMessage());
+			return new CachedImage(stored.bytes, stored.readTime, now + Math.min(timeToLiveMillis, STALE_RETRY_MILLIS));
+		}
+		if (response == null) {
+			throw new MambuApiException(-1, "No image data for " + key);
+		}
+		CachedImage image = new CachedImage(decode(response), now, now + timeToLiveMillis);
+		writeFile(key, image);
+		return image;
+	}
+
+	private synchronized CachedImage readFile(String key) {
+		File file = getFile(key);
+		if (file == null || !file.exists()) {
+			return null;
+		}
+		try {
+			DataInputStream in = new DataInputStream(new FileInputStream(file));
+			try {
+				long readTime = in.readLong();
+				byte[] bytes = new byte[(int) file.length() - 8];
+				in.readFully(bytes);
+				// The modification time orders the files by last use for evictions
+				file.setLastModified(System.currentTimeMillis());
+				return new CachedImage(bytes, readTime, readTime + timeToLiveMillis);
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			LOGGER.warning("Cannot read cached image " + file + ": " + e.getMessage());
+			deleteFile(file);
+			return null;
+		}
+	}
+
+	private synchronized void writeFile(String key, CachedImage image) {
+		File file = getFile(key);
+		if (file == null) {
+			return;
+		}
+		try {
+			File tempFile = File.createTempFile(file.getName(), ".tmp", directory);
+			try {
+				DataOutputStream out = new DataOutputStream(new FileOutputStream(tempFile));
+				try {
+					out.writeLong(image.readTime);
+					out.write(image.bytes);
+				} finally {
+					out.close();
+				}
+				long previousLength = file.length();
+				Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				diskBytes += file.length() - previousLength;
+			} finally {
+				if (tempFile.exists()) {
+					tempFile.delete();
+				}
+			}
+		} catch (IOException e) {
+			// The image is still cached in memory
+			LOGGER.warning("Cannot write cached image " + file + ": " + e.getMessage());
+		}
+		evict();
+	}
+
+	/**
+	 * Delete the least recently used files until the total size fits the maximum size. Guarded by this
+	 */
+	private void evict() {
+		if (diskBytes <= maxDiskBytes) {
+			return;
+		}
+		File[] files = listFiles();
+		Arrays.sort(files, new Comparator<File>() {
+			@Override
+			public int compare(File first, File second) {
+				return Long.compare(first.lastModified(), second.lastModified());
+			}
+		});
+		for (int i = 0; i < files.length && diskBytes > maxDiskBytes; i++) {
+			deleteFile(files[i]);
+		}
+	}
+
+	private synchronized void invalidateKey(String key) {
+		memoryCache.invalidate(key);
+		File file = getFile(key);
+		if (file != null && file.exists()) {
+			deleteFile(file);
+		}
+	}
+
+	/**
+	 * Delete a cached file. Guarded by this
+	 */
+	private void deleteFile(File file) {
+		long length = file.length();
+		if (file.delete()) {
+			diskBytes -= length;
+		}
+	}
+
+	private File[] listFiles() {
+		if (directory == null) {
+			return new File[0];
+		}
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return new File[0];
+		}
+		int count = 0;
+		for (File file : files) {
+			if (file.getName().endsWith(FILE_EXTENSION)) {
+				files[count++] = file;
+			}
+		}
+		return Arrays.copyOf(files, count);
+	}
+
+	private File getFile(String key) {
+		return directory == null ? null : new File(directory, key.replaceAll("[^A-Za-z0-9._-]", "_")
+				+ FILE_EXTENSION);
+	}
+
+	/**
+	 * Decode a base64 image, with or without the data URI header. Example: "data:image/PNG;base64,iVBORw0..."
+	 */
+	private static byte[] decode(String response) {
+		int dataStart = response.indexOf(APIData.BASE64_ENCODING_INDICATOR);
+		String base64 = dataStart < 0 ? response : response.substring(dataStart
+				+ APIData.BASE64_ENCODING_INDICATOR.length());
+		return Base64.decodeBase64(base64);
+	}
+}
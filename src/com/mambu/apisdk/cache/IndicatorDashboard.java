@@ -0,0 +1,348 @@
+package com.mambu.apisdk.cache;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.mambu.apisdk.MambuAPIService;
+import com.mambu.apisdk.exception.MambuApiException;
+import com.mambu.apisdk.services.IntelligenceService;
+import com.mambu.intelligence.shared.model.Intelligence.Indicator;
+
+/**
+ * Refreshes the indicators of a dashboard (see {@link IntelligenceService#getIndicator(Indicator)}) on a schedule and
+ * publishes their values as an immutable {@link IndicatorSnapshot} shared by all readers.
+ *
+ * Viewers subscribe to the indicators they display. The dashboard polls each subscribed indicator once per refresh,
+ * however many viewers subscribed to it, with concurrent requests. Readers get the latest snapshot from memory and
+ * never send requests, so the number of requests depends only on the number of indicators and the refresh interval.
+ * Indicators subscribed to after the dashboard is started are read right away, without refreshing the other
+ * indicators.
+ *
+ * Example:
+ *
+ * <pre>
+ * IndicatorDashboard dashboard = new IndicatorDashboard(mambuAPIService, 1, TimeUnit.MINUTES, 4);
+ * dashboard.start();
+ * dashboard.subscribe(Arrays.asList(Indicator.NUM_CLIENTS, Indicator.GROSS_LOAN_PORTFOLIO));
+ * ...
+ * BigDecimal clients = dashboard.getSnapshot().getValue(Indicator.NUM_CLIENTS);
+ * </pre>
+ *
+ * @author agent
+ *
+ */
+public class IndicatorDashboard {
+
+	private final static Logger LOGGER = Logger.getLogger(IndicatorDashboard.class.getName());
+
+	/**
+	 * Default refresh interval, in seconds
+	 */
+	public final static long DEFAULT_REFRESH_INTERVAL_SECONDS = 60;
+	/**
+	 * Default maximum number of concurrent requests
+	 */
+	public final static int DEFAULT_MAX_CONCURRENT_REQUESTS = 4;
+
+	private final IntelligenceService intelligenceService;
+	private final long refreshIntervalMillis;
+	private final ScheduledExecutorService scheduler;
+	// Sends the requests of all refreshes. Refreshes run one at a time
+	private final ExecutorService requestExecutor;
+
+	// Number of subscriptions for each indicator. Guarded by this
+	private final Map<Indicator, Integer> subscriptions = new EnumMap<Indicator, Integer>(Indicator.class);
+	// Guarded by this
+	private ScheduledFuture<?> scheduledRefresh;
+
+	private volatile IndicatorSnapshot snapshot = new IndicatorSnapshot(null, new EnumMap<Indicator, BigDecimal>(
+			Indicator.class), EnumSet.noneOf(Indicator.class));
+	// Only one refresh runs at a time
+	private final Object refreshLock = new Object();
+	private final AtomicLong requestCount = new AtomicLong();
+
+	private final Runnable refreshTask = new Runnable() {
+		@Override
+		public void run() {
+			try {
+				refresh();
+			} catch (RuntimeException e) {
+				// Keep the schedule running
+				LOGGER.warning("Indicator refresh failed: " + e.getMessage());
+			}
+		}
+	};
+
+	/***
+	 * Create indicator dashboard with the default refresh interval and concurrency
+	 *
+	 * @param mambuAPIService
+	 *            the service responsible for the connection to the server
+	 */
+	public IndicatorDashboard(MambuAPIService mambuAPIService) {
+		this(mambuAPIService, DEFAULT_REFRESH_INTERVAL_SECONDS, TimeUnit.SECONDS, DEFAULT_MAX_CONCURRENT_REQUESTS);
+	}
+
+	/***
+	 * Create indicator dashboard
+	 *
+	 * @param mambuAPIService
+	 *            the service responsible for the connection to the server
+	 * @param refreshInterval
+	 *            time between the end of a refresh and the start of the next one. Must be positive
+	 * @param unit
+	 *            time unit for the refresh interval
+	 * @param maxConcurrentRequests
+	 *            maximum number of concurrent requests in a refresh. Must be positive
+	 */
+	public IndicatorDashboard(MambuAPIService mambuAPIService, long refreshInterval, TimeUnit unit,
+			int maxConcurrentRequests) {
+		if (mambuAPIService == null) {
+			throw new IllegalArgumentException("Mambu API Service must not be null");
+		}
+		if (refreshInterval <= 0 || maxConcurrentRequests <= 0) {
+			throw new IllegalArgumentException("Refresh interval and maximum concurrent requests must be positive");
+		}
+		this.intelligenceService = new IntelligenceService(mambuAPIService);
+		this.refreshIntervalMillis = unit.toMillis(refreshInterval);
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+				.setNameFormat("mambu-indicators-%d").setDaemon(true).build());
+		this.requestExecutor = Executors.newFixedThreadPool(maxConcurrentRequests, new ThreadFactoryBuilder()
+				.setNameFormat("mambu-indicator-requests-%d").setDaemon(true).build());
+	}
+
+	/***
+	 * Subscribe to indicators. Indicators not refreshed yet are read right away if the dashboard is started
+	 *
+	 * @param indicators
+	 *            indicators displayed by a viewer. Must not be null
+	 */
+	public void subscribe(Collection<Indicator> indicators) {
+		if (indicators == null) {
+			throw new IllegalArgumentException("Indicators must not be null");
+		}
+		final List<Indicator> added = new ArrayList<Indicator>();
+		synchronized (this) {
+			for (Indicator indicator : indicators) {
+				Integer count = subscriptions.get(indicator);
+				subscriptions.put(indicator, count == null ? 1 : count + 1);
+				if (count == null && !snapshot.getValues().containsKey(indicator)) {
+					added.add(indicator);
+				}
+			}
+			if (!added.isEmpty() && scheduledRefresh != null && !scheduler.isShutdown()) {
+				scheduler.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							refreshAdded(added);
+						} catch (RuntimeException e) {
+							LOGGER.warning("Indicator refresh failed: " + e.getMessage());
+						}
+					}
+				});
+			}
+		}
+	}
+
+	/***
+	 * Remove subscriptions made with {@link #subscribe(Collection)}. Indicators without subscriptions are not
+	 * refreshed any more, but keep their last value in the snapshot until the next refresh
+	 *
+	 * @param indicators
+	 *            indicators no longer displayed by a viewer. Must not be null
+	 */
+	public synchronized void unsubscribe(Collection<Indicator> indicators) {
+		if (indicators == null) {
+			throw new IllegalArgumentException("Indicators must not be null");
+		}
+		for (Indicator indicator : indicators) {
+			Integer count = subscriptions.get(indicator);
+			if (count == null) {
+				continue;
+			}
+			if (count == 1) {
+				subscriptions.remove(indicator);
+			} else {
+				subscriptions.put(indicator, count - 1);
+			}
+		}
+	}
+
+	/***
+	 * Start refreshing the subscribed indicators. The first refresh starts immediately
+	 */
+	public synchronized void start() {
+		if (scheduledRefresh != null) {
+			return;
+		}
+		scheduledRefresh = scheduler.scheduleWithFixedDelay(refreshTask, 0, refreshIntervalMillis,
+				TimeUnit.MILLISECONDS);
+	}
+
+	/***
+	 * Stop refreshing and cancel the requests in flight. The last snapshot remains available. The dashboard cannot be
+	 * started or refreshed again
+	 */
+	public synchronized void stop() {
+		if (scheduledRefresh != null) {
+			scheduledRefresh.cancel(false);
+		}
+		scheduler.shutdownNow();
+		requestExecutor.shutdownNow();
+	}
+
+	/***
+	 * Get the latest indicator values. No requests are sent
+	 *
+	 * @return the latest snapshot. Before the first refresh the snapshot has no values
+	 */
+	public IndicatorSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	/***
+	 * Read all subscribed indicators now and publish a new snapshot. Waits if another refresh is in progress. Called
+	 * by the schedule, but can also be called directly, without starting the dashboard
+	 *
+	 * @return the new snapshot
+	 * @throws IllegalStateException
+	 *             if the dashboard was stopped
+	 */
+	public IndicatorSnapshot refresh() {
+		synchronized (refreshLock) {
+			checkNotStopped();
+			List<Indicator> indicators;
+			synchronized (this) {
+				indicators = new ArrayList<Indicator>(subscriptions.keySet());
+			}
+			IndicatorSnapshot previous = snapshot;
+			Map<Indicator, BigDecimal> values = new EnumMap<Indicator, BigDecimal>(Indicator.class);
+			Set<Indicator> stale = EnumSet.noneOf(Indicator.class);
+			if (!indicators.isEmpty()) {
+				readIndicators(indicators, values, stale);
+			}
+			for (Indicator indicator : stale) {
+				BigDecimal previousValue = previous.getValue(indicator);
+				if (previousValue != null) {
+					values.put(indicator, previousValue);
+				}
+			}
+			snapshot = new IndicatorSnapshot(new Date(), values, stale);
+			LOGGER.fine("Refreshed " + indicators.size() + " indicators, " + stale.size() + " stale");
+			return snapshot;
+		}
+	}
+
+	/**
+	 * Read indicators subscribed to since the last refresh and add them to the snapshot. The other indicators keep their
+	 * values until the next refresh
+	 */
+	private void refreshAdded(List<Indicator> added) {
+		synchronized (refreshLock) {
+			checkNotStopped();
+			IndicatorSnapshot previous = snapshot;
+			List<Indicator> indicators = new ArrayList<Indicator>();
+			synchronized (this) {
+				for (Indicator indicator : added) {
+					// Skip indicators unsubscribed from or read by a refresh meanwhile
+					if (subscriptions.containsKey(indicator) && !previous.getValues().containsKey(indicator)) {
+						indicators.add(indicator);
+					}
+				}
+			}
+			if (indicators.isEmpty()) {
+				return;
+			}
+			Map<Indicator, BigDecimal> values = new EnumMap<Indicator, BigDecimal>(previous.getValues());
+			Set<Indicator> stale = EnumSet.noneOf(Indicator.class);
+			stale.addAll(previous.getStaleIndicators());
+			stale.removeAll(indicators);
+			readIndicators(indicators, values, stale);
+			Date refreshTime = previous.getRefreshTime() != null ? previous.getRefreshTime() : new Date();
+			snapshot = new IndicatorSnapshot(refreshTime, values, stale);
+			LOGGER.fine("Read " + indicators.size() + " added indicators");
+		}
+	}
+
+	private void checkNotStopped() {
+		if (requestExecutor.isShutdown()) {
+			throw new IllegalStateException("Indicator dashboard is stopped");
+		}
+	}
+
+	/***
+	 * Get the number of requests sent to Mambu
+	 *
+	 * @return number of requests
+	 */
+	public long getRequestCount() {
+		return requestCount.get();
+	}
+
+	/**
+	 * Read indicators with concurrent requests. Failed indicators are added to the stale set
+	 */
+	private void readIndicators(List<Indicator> indicators, Map<Indicator, BigDecimal> values, Set<Indicator> stale) {
+		List<Future<BigDecimal>> futures = new ArrayList<Future<BigDecimal>>(indicators.size());
+		try {
+			for (final Indicator indicator : indicators) {
+				futures.add(requestExecutor.submit(new Callable<BigDecimal>() {
+					@Override
+					public BigDecimal call() throws MambuApiException {
+						requestCount.incrementAndGet();
+						return intelligenceService.getIndicator(indicator);
+					}
+				}));
+			}
+			for (int i = 0; i < indicators.size(); i++) {
+				Indicator indicator = indicators.get(i);
+				try {
+					BigDecimal value = futures.get(i).get();
+					if (value != null) {
+						values.put(indicator, value);
+					} else {
+						stale.add(indicator);
+					}
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof Error) {
+						throw (Error) e.getCause();
+					}
+					LOGGER.warning("Indicator " + indicator + " not refreshed: " + e.getCause().getMessage());
+					stale.add(indicator);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			// Indicators not read yet keep their previous values
+			for (Indicator indicator : indicators) {
+				if (!values.containsKey(indicator)) {
+					stale.add(indicator);
+				}
+			}
+		} finally {
+			// Requests of an interrupted refresh are not needed any more
+			for (Future<BigDecimal> future : futures) {
+				future.cancel(true);
+			}
+		}
+	}
+}
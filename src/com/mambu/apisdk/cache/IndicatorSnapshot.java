@@ -0,0 +1,92 @@
+package com.mambu.apisdk.cache;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.mambu.intelligence.shared.model.Intelligence.Indicator;
+
+/**
+ * Immutable values of the indicators refreshed by an {@link IndicatorDashboard}. One snapshot is shared by all readers
+ * until the next refresh replaces it.
+ *
+ * Indicators whose last request failed keep the value of the previous snapshot, if any, and are reported as stale
+ *
+ * @author agent
+ *
+ */
+public class IndicatorSnapshot {
+
+	private final Date refreshTime;
+	private final Map<Indicator, BigDecimal> values;
+	private final Set<Indicator> staleIndicators;
+
+	IndicatorSnapshot(Date refreshTime, Map<Indicator, BigDecimal> values, Set<Indicator> staleIndicators) {
+		Map<Indicator, BigDecimal> valuesCopy = new EnumMap<Indicator, BigDecimal>(Indicator.class);
+		valuesCopy.putAll(values);
+		Set<Indicator> staleCopy = EnumSet.noneOf(Indicator.class);
+		staleCopy.addAll(staleIndicators);
+
+		this.refreshTime = refreshTime;
+		this.values = Collections.unmodifiableMap(valuesCopy);
+		this.staleIndicators = Collections.unmodifiableSet(staleCopy);
+	}
+
+	/***
+	 * Get the time the snapshot was refreshed
+	 *
+	 * @return refresh time or null if the dashboard was not refreshed yet
+	 */
+	public Date getRefreshTime() {
+		return refreshTime == null ? null : new Date(refreshTime.getTime());
+	}
+
+	/***
+	 * Get the value of an indicator
+	 *
+	 * @param indicator
+	 *            indicator
+	 * @return indicator value or null if the indicator was not read yet
+	 */
+	public BigDecimal getValue(Indicator indicator) {
+		return values.get(indicator);
+	}
+
+	/***
+	 * Get the values of all refreshed indicators
+	 *
+	 * @return unmodifiable map of indicator values
+	 */
+	public Map<Indicator, BigDecimal> getValues() {
+		return values;
+	}
+
+	/***
+	 * Get the indicators which failed in the last refresh
+	 *
+	 * @return unmodifiable set of stale indicators
+	 */
+	public Set<Indicator> getStaleIndicators() {
+		return staleIndicators;
+	}
+
+	/***
+	 * Check if an indicator failed in the last refresh
+	 *
+	 * @param indicator
+	 *            indicator
+	 * @return true if the indicator value is from an earlier refresh or missing
+	 */
+	public boolean isStale(Indicator indicator) {
+		return staleIndicators.contains(indicator);
+	}
+
+	@Override
+	public String toString() {
+		return "Refreshed=" + refreshTime + ", values=" + values + ", stale=" + staleIndicators;
+	}
+}
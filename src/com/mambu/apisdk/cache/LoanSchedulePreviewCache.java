@@ -0,0 +1,216 @@
+package com.mambu.apisdk.cache;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.mambu.apisdk.MambuAPIService;
+import com.mambu.apisdk.exception.MambuApiException;
+import com.mambu.apisdk.services.LoansService;
+import com.mambu.apisdk.util.FutureUtils;
+import com.mambu.loans.shared.model.LoanAccount;
+import com.mambu.loans.shared.model.Repayment;
+
+/**
+ * Cache for loan product schedule previews read by {@link LoansService#getLoanProductSchedule(String, LoanAccount)}.
+ *
+ * Previews are cached by the product ID and the schedule parameters sent for the account (see
+ * {@link LoansService#makeParamsForLoanProductSchedule(LoanAccount)}): loan amount, installments, interest rate, grace
+ * period, repayment period, disbursement and first repayment dates, etc. Other account fields do not change the
+ * preview. Numeric parameters are normalized, so that 1000 and 1000.00 share one preview. When the cache is full, the
+ * least recently used previews are evicted first.
+ *
+ * {@link #getSchedules(String, List)} gets the previews for many accounts with concurrent requests, for example to
+ * compare several loan amounts and terms.
+ *
+ * Cached previews are shared: the returned lists and repayments must not be modified. As previews change when the
+ * product is updated, the time to live should match how often products are changed
+ *
+ * @author agent
+ *
+ */
+public class LoanSchedulePreviewCache {
+
+	/**
+	 * Default maximum number of cached previews
+	 */
+	public final static int DEFAULT_MAXIMUM_SIZE = 1000;
+	/**
+	 * Default time to live of cached previews, in minutes
+	 */
+	public final static long DEFAULT_TIME_TO_LIVE_MINUTES = 30;
+	/**
+	 * Default maximum number of concurrent requests for {@link #getSchedules(String, List)}
+	 */
+	public final static int DEFAULT_MAX_CONCURRENT_REQUESTS = 4;
+
+	private final LoansService loansService;
+	private final int maxConcurrentRequests;
+	private final Cache<String, List<Repayment>> cache;
+
+	/***
+	 * Create loan schedule preview cache with default settings
+	 *
+	 * @param mambuAPIService
+	 *            the service responsible for the connection to the server
+	 */
+	public LoanSchedulePreviewCache(MambuAPIService mambuAPIService) {
+		this(mambuAPIService, DEFAULT_MAXIMUM_SIZE, DEFAULT_TIME_TO_LIVE_MINUTES, TimeUnit.MINUTES,
+				DEFAULT_MAX_CONCURRENT_REQUESTS);
+	}
+
+	/***
+	 * Create loan schedule preview cache
+	 *
+	 * @param mambuAPIService
+	 *            the service responsible for the connection to the server
+	 * @param maximumSize
+	 *            maximum number of cached previews. Must be positive
+	 * @param timeToLive
+	 *            time to live of cached previews. Must be positive
+	 * @param unit
+	 *            time unit for the time to live
+	 * @param maxConcurrentRequests
+	 *            maximum number of concurrent requests for getSchedules. Must be positive
+	 */
+	public LoanSchedulePreviewCache(MambuAPIService mambuAPIService, int maximumSize, long timeToLive, TimeUnit unit,
+			int maxConcurrentRequests) {
+		if (mambuAPIService == null) {
+			throw new IllegalArgumentException("Mambu API Service must not be null");
+		}
+		if (maximumSize <= 0 || timeToLive <= 0 || maxConcurrentRequests <= 0) {
+			throw new IllegalArgumentException("Maximum size, time to live and concurrent requests must be positive");
+		}
+		this.loansService = new LoansService(mambuAPIService);
+		this.maxConcurrentRequests = maxConcurrentRequests;
+		this.cache = CacheBuilder.newBuilder().maximumSize(maximumSize).expireAfterWrite(timeToLive, unit)
+				.recordStats().build();
+	}
+
+	/***
+	 * Get the schedule preview for a loan account, from the cache or from Mambu
+	 *
+	 * @param productId
+	 *            the id of the loan product. Must not be null
+	 * @param account
+	 *            loan account containing parameters for determining loan schedule. Must not be null
+	 * @return repayments of the preview. Shared, must not be modified
+	 * @throws MambuApiException
+	 */
+	public List<Repayment> getSchedule(final String productId, final LoanAccount account) throws MambuApiException {
+		try {
+			return cache.get(makeKey(productId, account), new Callable<List<Repayment>>() {
+				@Override
+				public List<Repayment> call() throws MambuApiException {
+					List<Repayment> repayments = loansService.getLoanProductSchedule(productId, account);
+					return repayments == null ? Collections.<Repayment> emptyList() : Collections
+							.unmodifiableList(new ArrayList<Repayment>(repayments));
+				}
+			});
+		} catch (ExecutionException e) {
+			throw FutureUtils.toMambuApiException(e.getCause());
+		} catch (UncheckedExecutionException e) {
+			throw FutureUtils.toMambuApiException(e.getCause());
+		}
+	}
+
+	/***
+	 * Get the schedule previews for several loan accounts of a product with concurrent requests. Accounts with the
+	 * same schedule parameters share one request
+	 *
+	 * @param productId
+	 *            the id of the loan product. Must not be null
+	 * @param accounts
+	 *            loan accounts containing parameters for determining loan schedules. Must not be null
+	 * @return repayments of the previews, in the order of the accounts. Shared, must not be modified
+	 * @throws MambuApiException
+	 *             if any request fails. The remaining requests are cancelled
+	 */
+	public List<List<Repayment>> getSchedules(final String productId, List<LoanAccount> accounts)
+			throws MambuApiException {
+		if (productId == null || accounts == null) {
+			throw new IllegalArgumentException("Product ID and accounts must not be null");
+		}
+		List<List<Repayment>> schedules = new ArrayList<List<Repayment>>(accounts.size());
+		if (accounts.isEmpty()) {
+			return schedules;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(accounts.size(), maxConcurrentRequests));
+		try {
+			List<Future<List<Repayment>>> futures = new ArrayList<Future<List<Repayment>>>(accounts.size());
+			for (final LoanAccount account : accounts) {
+				futures.add(executor.submit(new Callable<List<Repayment>>() {
+					@Override
+					public List<Repayment> call() throws MambuApiException {
+						return getSchedule(productId, account);
+					}
+				}));
+			}
+			for (Future<List<Repayment>> future : futures) {
+				schedules.add(future.get());
+			}
+		} catch (ExecutionException e) {
+			throw FutureUtils.toMambuApiException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MambuApiException(e);
+		} finally {
+			executor.shutdownNow();
+		}
+		return schedules;
+	}
+
+	/***
+	 * Remove all cached previews. Previews should be invalidated when loan products are updated
+	 */
+	public void invalidateAll() {
+		cache.invalidateAll();
+	}
+
+	/***
+	 * Get cache statistics: hits, misses, evictions, etc.
+	 *
+	 * @return cache statistics
+	 */
+	public CacheStats getStats() {
+		return cache.stats();
+	}
+
+	/**
+	 * Make the cache key from the product ID and the schedule parameters in a canonical order and format
+	 */
+	static String makeKey(String productId, LoanAccount account) {
+		if (productId == null || account == null) {
+			throw new IllegalArgumentException("Product ID and Loan Account must not be null");
+		}
+		Map<String, String> params = new TreeMap<String, String>();
+		for (Map.Entry<String, String> param : LoansService.makeParamsForLoanProductSchedule(account).entrySet()) {
+			if (param.getValue() != null) {
+				params.put(param.getKey(), normalize(param.getValue()));
+			}
+		}
+		return productId + params;
+	}
+
+	private static String normalize(String value) {
+		try {
+			BigDecimal number = new BigDecimal(value);
+			return number.signum() == 0 ? "0" : number.stripTrailingZeros().toPlainString();
+		} catch (NumberFormatException e) {
+			return value;
+		}
+	}
+}
@@ -0,0 +1,49 @@
+package com.mambu.apisdk.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import com.mambu.api.server.handler.customviews.model.CustomViewEntitiesSummaryWrapper;
+
+/**
+ * All entities of a custom view read at one time, with the custom view summary. See {@link CustomViewCache}
+ *
+ * @author agent
+ *
+ */
+public class MaterializedCustomView<T> {
+
+	private final CustomViewEntitiesSummaryWrapper summary;
+	private final List<T> entities;
+	private final Date materializedTime;
+
+	MaterializedCustomView(CustomViewEntitiesSummaryWrapper summary, List<T> entities, Date materializedTime) {
+		this.summary = summary;
+		this.entities = Collections.unmodifiableList(new ArrayList<T>(entities));
+		this.materializedTime = materializedTime;
+	}
+
+	/***
+	 * Get the custom view summary read before the entities
+	 *
+	 * @return summary with the count and totals. Can be null if Mambu returned no summary
+	 */
+	public CustomViewEntitiesSummaryWrapper getSummary() {
+		return summary;
+	}
+
+	/***
+	 * Get all entities of the custom view
+	 *
+	 * @return entities in the custom view order. The entities are shared and must not be modified
+	 */
+	public List<T> getEntities() {
+		return entities;
+	}
+
+	public Date getMaterializedTime() {
+		return new Date(materializedTime.getTime());
+	}
+}
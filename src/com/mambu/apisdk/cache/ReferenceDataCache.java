@@ -0,0 +1,719 @@
+package com.mambu.apisdk.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.mambu.accounts.shared.model.TransactionChannel;
+import com.mambu.api.server.handler.settings.organization.model.JSONOrganization;
+import com.mambu.apisdk.MambuAPIService;
+import com.mambu.apisdk.exception.MambuApiException;
+import com.mambu.apisdk.services.LoansService;
+import com.mambu.apisdk.services.OrganizationService;
+import com.mambu.apisdk.services.SavingsService;
+import com.mambu.apisdk.services.UsersService;
+import com.mambu.core.shared.model.Currency;
+import com.mambu.core.shared.model.CustomFieldSet;
+import com.mambu.core.shared.model.CustomFieldType;
+import com.mambu.core.shared.model.GeneralSettings;
+import com.mambu.core.shared.model.Role;
+import com.mambu.core.shared.model.User;
+import com.mambu.loans.shared.model.LoanProduct;
+import com.mambu.organization.shared.model.Branch;
+import com.mambu.organization.shared.model.Centre;
+import com.mambu.savings.shared.model.SavingsProduct;
+
+/**
+ * Read-through cache for rarely changing Mambu reference data: loan and savings products, branches, centres, users,
+ * user roles, currency, custom field sets, transaction channels, general settings and organization details.
+ *
+ * Each {@link ReferenceDataType} has its own time to live and maximum size (see {@link ReferenceDataCacheSettings}).
+ * The maximum size bounds the number of cached entities and lists: an entity cached under several keys (ID, encoded
+ * key, username) counts once.
+ * Entries missing in the cache are loaded from Mambu using the corresponding API service and are cached until they
+ * expire, are evicted or are invalidated by the application. The cache can be warmed up at startup with one list
+ * request per type. Hit and miss statistics are recorded for each type.
+ *
+ * Optionally, the cached data is persisted to a snapshot file each time the cache is warmed up (see
+ * {@link ReferenceDataCacheSettings#setSnapshotFile(File)}). At startup the snapshot can be loaded with
+ * {@link #loadSnapshot()} to serve reference data immediately, and revalidated with
+ * {@link #warmUpInBackground(ExecutorService)}.
+ *
+ * The cache is thread safe. Cached objects are shared by all callers and must not be modified
+ *
+ * @author agent
+ *
+ */
+public class ReferenceDataCache {
+
+	private final static Logger LOGGER = Logger.getLogger(ReferenceDataCache.class.getName());
+
+	// Key for the cached list of all entities of a type and for the organization wide singletons
+	final static String ALL = "*";
+	// Page size used when getting all entities of a type. Mambu returns at most 1000 entities per request
+	final static int LIST_PAGE_SIZE = 1000;
+
+	private final LoansService loansService;
+	private final SavingsService savingsService;
+	private final OrganizationService organizationService;
+	private final UsersService usersService;
+	private final ReferenceDataCacheSettings settings;
+
+	private final Map<ReferenceDataType, Cache<String, Object>> caches = new EnumMap<ReferenceDataType, Cache<String, Object>>(
+			ReferenceDataType.class);
+
+	/***
+	 * Create a reference data cache with default settings
+	 *
+	 * @param mambuAPIService
+	 *            the service responsible for the connection to the server
+	 */
+	public ReferenceDataCache(MambuAPIService mambuAPIService) {
+		this(mambuAPIService, new ReferenceDataCacheSettings());
+	}
+
+	/***
+	 * Create a reference data cache
+	 *
+	 * @param mambuAPIService
+	 *            the service responsible for the connection to the server
+	 * @param settings
+	 *            cache settings
+	 */
+	public ReferenceDataCache(MambuAPIService mambuAPIService, ReferenceDataCacheSettings settings) {
+		if (mambuAPIService == null || settings == null) {
+			throw new IllegalArgumentException("Mambu API Service and settings must not be null");
+		}
+		this.loansService = new LoansService(mambuAPIService);
+		this.savingsService = new SavingsService(mambuAPIService);
+		this.organizationService = new OrganizationService(mambuAPIService);
+		this.usersService = new UsersService(mambuAPIService);
+		this.settings = settings;
+
+		for (ReferenceDataType type : ReferenceDataType.values()) {
+			// Reference data is rarely written: one segment, so that the maximum size is not split between segments
+			Cache<String, Object> cache = CacheBuilder.newBuilder().concurrencyLevel(1)
+					.expireAfterWrite(settings.getTimeToLiveSeconds(type), TimeUnit.SECONDS)
+					.maximumWeight(settings.getMaximumSize(type)).weigher(new EntityWeigher())
+					.removalListener(new AliasRemover(type)).recordStats().build();
+			caches.put(type, cache);
+		}
+	}
+
+	public ReferenceDataCacheSettings getSettings() {
+		return settings;
+	}
+
+	/***
+	 * Get loan product by its ID or encoded key
+	 *
+	 * @param productId
+	 *            product ID or encoded key
+	 * @return loan product
+	 * @throws MambuApiException
+	 */
+	public LoanProduct getLoanProduct(String productId) throws MambuApiException {
+		return (LoanProduct) getEntity(ReferenceDataType.LOAN_PRODUCT, productId);
+	}
+
+	/***
+	 * Get all loan products
+	 *
+	 * @return loan products
+	 * @throws MambuApiException
+	 */
+	@SuppressWarnings("unchecked")
+	public List<LoanProduct> getLoanProducts() throws MambuApiException {
+		return (List<LoanProduct>) getList(ReferenceDataType.LOAN_PRODUCT, ALL);
+	}
+
+	/***
+	 * Get savings product by its ID or encoded key
+	 *
+	 * @param productId
+	 *            product ID or encoded key
+	 * @return savings product
+	 * @throws MambuApiException
+	 */
+	public SavingsProduct getSavingsProduct(String productId) throws MambuApiException {
+		return (SavingsProduct) getEntity(ReferenceDataType.SAVINGS_PRODUCT, productId);
+	}
+
+	/***
+	 * Get all savings products
+	 *
+	 * @return savings products
+	 * @throws MambuApiException
+	 */
+	@SuppressWarnings("unchecked")
+	public List<SavingsProduct> getSavingsProducts() throws MambuApiException {
+		return (List<SavingsProduct>) getList(ReferenceDataType.SAVINGS_PRODUCT, ALL);
+	}
+
+	/***
+	 * Get branch by its ID or encoded key
+	 *
+	 * @param branchId
+	 *            branch ID or encoded key
+	 * @return branch
+	 * @throws MambuApiException
+	 */
+	public Branch getBranch(String branchId) throws MambuApiException {
+		return (Branch) getEntity(ReferenceDataType.BRANCH, branchId);
+	}
+
+	/***
+	 * Get all branches
+	 *
+	 * @return branches
+	 * @throws MambuApiException
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Branch> getBranches() throws MambuApiException {
+		return (List<Branch>) getList(ReferenceDataType.BRANCH, ALL);
+	}
+
+	/***
+	 * Get centre by its ID or encoded key
+	 *
+	 * @param centreId
+	 *            centre ID or encoded key
+	 * @return centre
+	 * @throws MambuApiException
+	 */
+	public Centre getCentre(String centreId) throws MambuApiException {
+		return (Centre) getEntity(ReferenceDataType.CENTRE, centreId);
+	}
+
+	/***
+	 * Get all centres
+	 *
+	 * @return centres
+	 * @throws MambuApiException
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Centre> getCentres() throws MambuApiException {
+		return (List<Centre>) getList(ReferenceDataType.CENTRE, ALL);
+	}
+
+	/***
+	 * Get user by its ID, username or encoded key
+	 *
+	 * @param userId
+	 *            user ID, username or encoded key
+	 * @return user
+	 * @throws MambuApiException
+	 */
+	public User getUser(String userId) throws MambuApiException {
+		return (User) getEntity(ReferenceDataType.USER, userId);
+	}
+
+	/***
+	 * Get all users
+	 *
+	 * @return users
+	 * @throws MambuApiException
+	 */
+	@SuppressWarnings("unchecked")
+	public List<User> getUsers() throws MambuApiException {
+		return (List<User>) getList(ReferenceDataType.USER, ALL);
+	}
+
+	/***
+	 * Get user role by its encoded key
+	 *
+	 * @param roleKey
+	 *            role's encoded key
+	 * @return user role
+	 * @throws MambuApiException
+	 */
+	public Role getUserRole(String roleKey) throws MambuApiException {
+		return (Role) getEntity(ReferenceDataType.USER_ROLE, roleKey);
+	}
+
+	/***
+	 * Get all user roles
+	 *
+	 * @return user roles
+	 * @throws MambuApiException
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Role> getUserRoles() throws MambuApiException {
+		return (List<Role>) getList(ReferenceDataType.USER_ROLE, ALL);
+	}
+
+	/***
+	 * Get organization's base currency
+	 *
+	 * @return currency
+	 * @throws MambuApiException
+	 */
+	public Currency getCurrency() throws MambuApiException {
+		return (Currency) getEntity(ReferenceDataType.CURRENCY, ALL);
+	}
+
+	/***
+	 * Get custom field sets
+	 *
+	 * @param customFieldType
+	 *            custom field type. If null, sets for all types are returned
+	 * @return custom field sets
+	 * @throws MambuApiException
+	 */
+	@SuppressWarnings("unchecked")
+	public List<CustomFieldSet> getCustomFieldSets(CustomFieldType customFieldType) throws MambuApiException {
+		String key = (customFieldType == null) ? ALL : customFieldType.name();
+		return (List<CustomFieldSet>) getList(ReferenceDataType.CUSTOM_FIELD_SET, key);
+	}
+
+	/***
+	 * Get all transaction channels
+	 *
+	 * @return transaction channels
+	 * @throws MambuApiException
+	 */
+	@SuppressWarnings("unchecked")
+	public List<TransactionChannel> getTransactionChannels() throws MambuApiException {
+		return (List<TransactionChannel>) getList(ReferenceDataType.TRANSACTION_CHANNEL, ALL);
+	}
+
+	/***
+	 * Get organization's general settings
+	 *
+	 * @return general settings
+	 * @throws MambuApiException
+	 */
+	public GeneralSettings getGeneralSettings() throws MambuApiException {
+		return (GeneralSettings) getEntity(ReferenceDataType.GENERAL_SETTINGS, ALL);
+	}
+
+	/***
+	 * Get organization details
+	 *
+	 * @return organization
+	 * @throws MambuApiException
+	 */
+	public JSONOrganization getOrganization() throws MambuApiException {
+		return (JSONOrganization) getEntity(ReferenceDataType.ORGANIZATION, ALL);
+	}
+
+	/***
+	 * Warm up the cache for all reference data types
+	 *
+	 * @throws MambuApiException
+	 */
+	public void warmUp() throws MambuApiException {
+		warmUp(ReferenceDataType.values());
+	}
+
+	/***
+	 * Warm up the cache for the specified reference data types. One list request is sent for each type (more only if
+	 * there are more entities than Mambu returns in one response)
+	 *
+	 * @param types
+	 *            reference data types to load
+	 * @throws MambuApiException
+	 */
+	public void warmUp(ReferenceDataType... types) throws MambuApiException {
+		if (types == null) {
+			return;
+		}
+		for (ReferenceDataType type : types) {
+			long start = System.currentTimeMillis();
+			if (type.isSingleton()) {
+				putEntity(type, ALL, loadEntity(type, ALL));
+			} else {
+				List<?> list = putList(type, ALL, loadList(type, ALL));
+				if (type == ReferenceDataType.CUSTOM_FIELD_SET) {
+					putCustomFieldSetsByType(list);
+				}
+			}
+			LOGGER.fine("Warmed up " + type + " in " + (System.currentTimeMillis() - start) + " ms");
+		}
+		// Persist refreshed data
+		if (settings.getSnapshotFile() != null) {
+			try {
+				saveSnapshot();
+			} catch (IOException e) {
+				LOGGER.warning("Cannot write reference data snapshot: " + e.getMessage());
+			}
+		}
+	}
+
+	/***
+	 * Warm up the cache for all reference data types in the background. Cached entries remain available while they are
+	 * being reloaded
+	 *
+	 * @param executor
+	 *            executor service to run the warm up with
+	 * @return future completing when the cache is warmed up. Future's get() throws ExecutionException with the cause
+	 *         of the failure if the cache could not be warmed up
+	 */
+	public Future<Void> warmUpInBackground(ExecutorService executor) {
+		return executor.submit(new Callable<Void>() {
+			@Override
+			public Void call() throws MambuApiException {
+				try {
+					warmUp();
+				} catch (MambuApiException e) {
+					LOGGER.warning("Reference data warm up failed: " + e.getMessage());
+					throw e;
+				}
+				return null;
+			}
+		});
+	}
+
+	/***
+	 * Load cached data from the snapshot file specified in the settings
+	 *
+	 * @return the time the snapshot was written or null if the snapshot file was not specified or does not exist.
+	 *         Applications can use it to decide if cached data must be revalidated
+	 * @throws IOException
+	 *             if the snapshot file cannot be read
+	 */
+	public Date loadSnapshot() throws IOException {
+		File snapshotFile = settings.getSnapshotFile();
+		if (snapshotFile == null || !snapshotFile.exists()) {
+			return null;
+		}
+		long start = System.currentTimeMillis();
+		Date timestamp = ReferenceDataSnapshot.load(this, snapshotFile, settings.isMemoryMappedSnapshot());
+		LOGGER.fine("Loaded reference data snapshot from " + timestamp + " in "
+				+ (System.currentTimeMillis() - start) + " ms");
+		return timestamp;
+	}
+
+	/***
+	 * Write cached data to the snapshot file specified in the settings
+	 *
+	 * @return the time the snapshot was written
+	 * @throws IOException
+	 *             if the snapshot file cannot be written
+	 */
+	public Date saveSnapshot() throws IOException {
+		File snapshotFile = settings.getSnapshotFile();
+		if (snapshotFile == null) {
+			throw new IllegalStateException("Snapshot file is not specified");
+		}
+		return ReferenceDataSnapshot.write(this, snapshotFile);
+	}
+
+	/***
+	 * Remove all cached entries for a reference data type
+	 *
+	 * @param type
+	 *            reference data type
+	 */
+	public void invalidate(ReferenceDataType type) {
+		caches.get(type).invalidateAll();
+	}
+
+	/***
+	 * Remove a cached entity. The cached lists of this type are removed too
+	 *
+	 * @param type
+	 *            reference data type
+	 * @param key
+	 *            entity's ID or encoded key
+	 */
+	public void invalidate(ReferenceDataType type, String key) {
+		Cache<String, Object> cache = caches.get(type);
+		Object entity = cache.getIfPresent(key);
+		cache.invalidate(key);
+		if (entity != null) {
+			cache.invalidateAll(getEntityKeys(entity));
+		}
+		// Lists may contain the invalidated entity
+		List<String> listKeys = new ArrayList<String>();
+		for (Map.Entry<String, Object> entry : cache.asMap().entrySet()) {
+			if (entry.getValue() instanceof List) {
+				listKeys.add(entry.getKey());
+			}
+		}
+		cache.invalidateAll(listKeys);
+	}
+
+	/***
+	 * Remove all cached entries
+	 */
+	public void invalidateAll() {
+		for (Cache<String, Object> cache : caches.values()) {
+			cache.invalidateAll();
+		}
+	}
+
+	/***
+	 * Get cache statistics for a reference data type
+	 *
+	 * @param type
+	 *            reference data type
+	 * @return statistics with hit and miss counts
+	 */
+	public CacheStats getStats(ReferenceDataType type) {
+		return caches.get(type).stats();
+	}
+
+	/***
+	 * Get the number of cached entries for a reference data type
+	 *
+	 * @param type
+	 *            reference data type
+	 * @return number of cached entries (entities and lists)
+	 */
+	public long getSize(ReferenceDataType type) {
+		return caches.get(type).size();
+	}
+
+	/**
+	 * Get cached entity or load it from Mambu
+	 */
+	private Object getEntity(ReferenceDataType type, String key) throws MambuApiException {
+		if (key == null) {
+			throw new IllegalArgumentException(type + " ID must not be null");
+		}
+		Object entity = caches.get(type).getIfPresent(key);
+		if (entity == null) {
+			entity = loadEntity(type, key);
+			putEntity(type, key, entity);
+		}
+		return entity;
+	}
+
+	/**
+	 * Get cached list or load it from Mambu
+	 */
+	private List<?> getList(ReferenceDataType type, String key) throws MambuApiException {
+		List<?> list = (List<?>) caches.get(type).getIfPresent(key);
+		if (list == null) {
+			list = loadList(type, key);
+			list = putList(type, key, list);
+		}
+		return list;
+	}
+
+	void putEntity(ReferenceDataType type, String key, Object entity) {
+		if (entity == null) {
+			return;
+		}
+		Cache<String, Object> cache = caches.get(type);
+		cache.put(key, entity);
+		for (String entityKey : getEntityKeys(entity)) {
+			cache.put(entityKey, entity);
+		}
+	}
+
+	List<?> putList(ReferenceDataType type, String key, List<?> list) {
+		List<?> cachedList = (list == null) ? Collections.emptyList() : Collections.unmodifiableList(list);
+		caches.get(type).put(key, cachedList);
+
+		if (settings.isIndexListEntries()) {
+			for (Object entity : cachedList) {
+				for (String entityKey : getEntityKeys(entity)) {
+					caches.get(type).put(entityKey, entity);
+				}
+			}
+		}
+		return cachedList;
+	}
+
+	/**
+	 * Cache custom field sets for each custom field type, so that requests for one type are served from the sets for all
+	 * types
+	 */
+	private void putCustomFieldSetsByType(List<?> allSets) {
+		Map<CustomFieldType, List<CustomFieldSet>> setsByType = new EnumMap<CustomFieldType, List<CustomFieldSet>>(
+				CustomFieldType.class);
+		for (CustomFieldType customFieldType : CustomFieldType.values()) {
+			setsByType.put(customFieldType, new ArrayList<CustomFieldSet>());
+		}
+		for (Object set : allSets) {
+			CustomFieldSet customFieldSet = (CustomFieldSet) set;
+			if (customFieldSet.getType() != null) {
+				setsByType.get(customFieldSet.getType()).add(customFieldSet);
+			}
+		}
+		for (Map.Entry<CustomFieldType, List<CustomFieldSet>> entry : setsByType.entrySet()) {
+			putList(ReferenceDataType.CUSTOM_FIELD_SET, entry.getKey().name(), entry.getValue());
+		}
+	}
+
+	/**
+	 * Get cached entries for a reference data type
+	 */
+	Map<String, Object> getEntries(ReferenceDataType type) {
+		return caches.get(type).asMap();
+	}
+
+	/**
+	 * Load an individual entity from Mambu
+	 */
+	private Object loadEntity(ReferenceDataType type, String key) throws MambuApiException {
+		switch (type) {
+		case LOAN_PRODUCT:
+			return loansService.getLoanProduct(key);
+		case SAVINGS_PRODUCT:
+			return savingsService.getSavingsProduct(key);
+		case BRANCH:
+			return organizationService.getBranch(key);
+		case CENTRE:
+			return organizationService.getCentre(key);
+		case USER:
+			return usersService.getUserById(key);
+		case USER_ROLE:
+			return usersService.getUserRole(key);
+		case CURRENCY:
+			return organizationService.getCurrency();
+		case GENERAL_SETTINGS:
+			return organizationService.getGeneralSettings();
+		case ORGANIZATION:
+			return organizationService.getOrganization();
+		default:
+			throw new IllegalArgumentException(type + " entities can be obtained only as a list");
+		}
+	}
+
+	/**
+	 * Load all entities of a type from Mambu
+	 */
+	private List<?> loadList(ReferenceDataType type, String key) throws MambuApiException {
+		switch (type) {
+		case USER_ROLE:
+			return usersService.getUserRoles();
+		case CUSTOM_FIELD_SET:
+			CustomFieldType customFieldType = ALL.equals(key) ? null : CustomFieldType.valueOf(key);
+			return organizationService.getCustomFieldSets(customFieldType);
+		case TRANSACTION_CHANNEL:
+			return organizationService.getTransactionChannels();
+		case LOAN_PRODUCT:
+		case SAVINGS_PRODUCT:
+		case BRANCH:
+		case CENTRE:
+		case USER:
+			// Paginated APIs: get all pages
+			List<Object> all = new ArrayList<Object>();
+			int offset = 0;
+			List<?> page;
+			do {
+				page = loadPage(type, String.valueOf(offset), String.valueOf(LIST_PAGE_SIZE));
+				if (page != null) {
+					all.addAll(page);
+				}
+				offset += LIST_PAGE_SIZE;
+			} while (page != null && page.size() == LIST_PAGE_SIZE);
+			return all;
+		default:
+			throw new IllegalArgumentException(type + " is not a list type");
+		}
+	}
+
+	private List<?> loadPage(ReferenceDataType type, String offset, String limit) throws MambuApiException {
+		switch (type) {
+		case LOAN_PRODUCT:
+			return loansService.getLoanProducts(offset, limit);
+		case SAVINGS_PRODUCT:
+			return savingsService.getSavingsProducts(offset, limit);
+		case BRANCH:
+			return organizationService.getBranches(offset, limit);
+		case CENTRE:
+			return organizationService.getCentres(null, offset, limit);
+		case USER:
+			return usersService.getUsers(offset, limit);
+		default:
+			throw new IllegalArgumentException(type + " is not a paginated type");
+		}
+	}
+
+	/**
+	 * Get the keys under which an entity can be looked up: ID, encoded key and, for users, the username
+	 */
+	private static List<String> getEntityKeys(Object entity) {
+		List<String> keys = new ArrayList<String>(3);
+		if (entity instanceof LoanProduct) {
+			addKeys(keys, ((LoanProduct) entity).getId(), ((LoanProduct) entity).getEncodedKey());
+		} else if (entity instanceof SavingsProduct) {
+			addKeys(keys, ((SavingsProduct) entity).getId(), ((SavingsProduct) entity).getEncodedKey());
+		} else if (entity instanceof Branch) {
+			addKeys(keys, ((Branch) entity).getId(), ((Branch) entity).getEncodedKey());
+		} else if (entity instanceof Centre) {
+			addKeys(keys, ((Centre) entity).getId(), ((Centre) entity).getEncodedKey());
+		} else if (entity instanceof User) {
+			addKeys(keys, ((User) entity).getId(), ((User) entity).getEncodedKey());
+			addKeys(keys, ((User) entity).getUsername());
+		} else if (entity instanceof Role) {
+			addKeys(keys, ((Role) entity).getEncodedKey());
+		} else if (entity instanceof TransactionChannel) {
+			addKeys(keys, ((TransactionChannel) entity).getId(), ((TransactionChannel) entity).getEncodedKey());
+		}
+		return keys;
+	}
+
+	private static void addKeys(List<String> keys, String... values) {
+		for (String value : values) {
+			if (value != null && !value.equals(ALL)) {
+				keys.add(value);
+			}
+		}
+	}
+
+	/**
+	 * Check if an entity is cached under this key as its primary key: its first key (see {@link #getEntityKeys(Object)})
+	 * or any key for entities without keys. Entities cached under their other keys are aliases
+	 */
+	private static boolean isPrimaryKey(String key, Object entity) {
+		List<String> entityKeys = getEntityKeys(entity);
+		return entityKeys.isEmpty() || entityKeys.get(0).equals(key);
+	}
+
+	/**
+	 * Weighs lists and entities under their primary key as one entry. Aliases weigh nothing, so that the maximum size
+	 * bounds the number of entities rather than the number of their keys
+	 */
+	private static class EntityWeigher implements Weigher<String, Object> {
+		@Override
+		public int weigh(String key, Object value) {
+			return (value instanceof List || isPrimaryKey(key, value)) ? 1 : 0;
+		}
+	}
+
+	/**
+	 * Removes the aliases of entities evicted by size. Aliases weigh nothing and would otherwise stay cached until they
+	 * expire
+	 */
+	private class AliasRemover implements RemovalListener<String, Object> {
+		private final ReferenceDataType type;
+
+		AliasRemover(ReferenceDataType type) {
+			this.type = type;
+		}
+
+		@Override
+		public void onRemoval(RemovalNotification<String, Object> notification) {
+			Object entity = notification.getValue();
+			if (notification.getCause() != RemovalCause.SIZE || entity instanceof List) {
+				return;
+			}
+			Map<String, Object> entries = caches.get(type).asMap();
+			for (String entityKey : getEntityKeys(entity)) {
+				entries.remove(entityKey, entity);
+			}
+		}
+	}
+}
@@ -0,0 +1,153 @@
+package com.mambu.apisdk.cache;
+
+import java.io.File;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Settings for the {@link ReferenceDataCache}: time to live and the maximum number of cached entities for each
+ * reference data type
+ *
+ * @author agent
+ *
+ */
+public class ReferenceDataCacheSettings {
+
+	/**
+	 * Default time to live for cached entries, in seconds (one hour)
+	 */
+	public final static long DEFAULT_TIME_TO_LIVE_SECONDS = 3600;
+	/**
+	 * Default maximum number of cached entities and lists per type
+	 */
+	public final static long DEFAULT_MAXIMUM_SIZE = 5000;
+
+	private final Map<ReferenceDataType, Long> timeToLiveSeconds = new EnumMap<ReferenceDataType, Long>(
+			ReferenceDataType.class);
+	private final Map<ReferenceDataType, Long> maximumSizes = new EnumMap<ReferenceDataType, Long>(
+			ReferenceDataType.class);
+	private boolean indexListEntries = true;
+	private File snapshotFile;
+	private boolean memoryMappedSnapshot;
+
+	/***
+	 * Set time to live for the entries of a reference data type. Entries are reloaded from Mambu when they expire
+	 *
+	 * @param type
+	 *            reference data type
+	 * @param duration
+	 *            time to live. Must be positive
+	 * @param unit
+	 *            time unit
+	 * @return these settings
+	 */
+	public ReferenceDataCacheSettings setTimeToLive(ReferenceDataType type, long duration, TimeUnit unit) {
+		if (type == null || unit == null || duration <= 0) {
+			throw new IllegalArgumentException("Type and unit must not be null, duration must be positive");
+		}
+		timeToLiveSeconds.put(type, Math.max(1, unit.toSeconds(duration)));
+		return this;
+	}
+
+	/***
+	 * Set the maximum number of cached entities and lists for a reference data type. Entities cached under several keys
+	 * (ID, encoded key, username) count once. Least recently used entries are evicted first
+	 *
+	 * @param type
+	 *            reference data type
+	 * @param maximumSize
+	 *            maximum number of entities and lists. Must be positive
+	 * @return these settings
+	 */
+	public ReferenceDataCacheSettings setMaximumSize(ReferenceDataType type, long maximumSize) {
+		if (type == null || maximumSize <= 0) {
+			throw new IllegalArgumentException("Type must not be null, maximum size must be positive");
+		}
+		maximumSizes.put(type, maximumSize);
+		return this;
+	}
+
+	/***
+	 * Get time to live for the entries of a reference data type
+	 *
+	 * @param type
+	 *            reference data type
+	 * @return time to live in seconds
+	 */
+	public long getTimeToLiveSeconds(ReferenceDataType type) {
+		Long seconds = timeToLiveSeconds.get(type);
+		return (seconds == null) ? DEFAULT_TIME_TO_LIVE_SECONDS : seconds;
+	}
+
+	/***
+	 * Get the maximum number of cached entities and lists for a reference data type
+	 *
+	 * @param type
+	 *            reference data type
+	 * @return maximum size
+	 */
+	public long getMaximumSize(ReferenceDataType type) {
+		Long size = maximumSizes.get(type);
+		return (size == null) ? DEFAULT_MAXIMUM_SIZE : size;
+	}
+
+	/***
+	 * Check if entities returned by list requests are also cached as individual entities
+	 *
+	 * @return true if list entries are cached individually (default)
+	 */
+	public boolean isIndexListEntries() {
+		return indexListEntries;
+	}
+
+	/***
+	 * Specify if entities returned by list requests (e.g. when warming up the cache) are also cached as individual
+	 * entities, so that subsequent lookups by ID are served from the cache.
+	 *
+	 * Note: Mambu returns entity details (e.g. custom field values of branches, centres and users) only when getting
+	 * individual entities. Set to false if applications need these details for entities looked up by ID
+	 *
+	 * @param indexListEntries
+	 *            true to cache list entries individually
+	 * @return these settings
+	 */
+	public ReferenceDataCacheSettings setIndexListEntries(boolean indexListEntries) {
+		this.indexListEntries = indexListEntries;
+		return this;
+	}
+
+	public File getSnapshotFile() {
+		return snapshotFile;
+	}
+
+	/***
+	 * Set the file for persisting cached reference data. When set, the snapshot is written each time the cache is
+	 * warmed up and can be loaded at startup with {@link ReferenceDataCache#loadSnapshot()}. See
+	 * {@link ReferenceDataSnapshot}
+	 *
+	 * @param snapshotFile
+	 *            snapshot file. If null, cached data is not persisted
+	 * @return these settings
+	 */
+	public ReferenceDataCacheSettings setSnapshotFile(File snapshotFile) {
+		this.snapshotFile = snapshotFile;
+		return this;
+	}
+
+	public boolean isMemoryMappedSnapshot() {
+		return memoryMappedSnapshot;
+	}
+
+	/***
+	 * Specify if the snapshot file is read via a memory mapped buffer rather than as a stream
+	 *
+	 * @param memoryMappedSnapshot
+	 *            true to memory map the snapshot file when loading it
+	 * @return these settings
+	 */
+	public ReferenceDataCacheSettings setMemoryMappedSnapshot(boolean memoryMappedSnapshot) {
+		this.memoryMappedSnapshot = memoryMappedSnapshot;
+		return this;
+	}
+}
@@ -0,0 +1,336 @@
+package com.mambu.apisdk.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import com.google.gson.Gson;
+import com.mambu.apisdk.util.GsonUtils;
+import com.mambu.apisdk.util.ServiceExecutor;
+
+/**
+ * Persists the content of a {@link ReferenceDataCache} to a compact binary file and loads it back, so that applications
+ * can start serving reference data immediately and revalidate it with Mambu in the background.
+ *
+ * File format: a header (magic number, format version, snapshot timestamp, number of records) followed by one record
+ * per cached entity or list: reference data type, record kind, the keys the value is cached under and the deflated JSON
+ * of the value. Entities cached under several keys (ID and encoded key) are stored once and entities which are also
+ * entries of a cached list are stored as references to the list entry, so that loaded entities are shared with the
+ * loaded lists, as they are in the cache. The file is written to a
+ * temporary file first and then moved in place, so readers never see a partially written snapshot
+ *
+ * @author agent
+ *
+ */
+public class ReferenceDataSnapshot {
+
+	private final static int MAGIC = 0x4D425244; // "MBRD"
+	private final static short FORMAT_VERSION = 1;
+
+	private final static byte ENTITY_RECORD = 0;
+	private final static byte LIST_RECORD = 1;
+	private final static byte LIST_ENTRY_RECORD = 2;
+
+	private final static Charset UTF8 = Charset.forName("UTF-8");
+
+	private ReferenceDataSnapshot() {
+	}
+
+	/***
+	 * Write all entries of the reference data cache to a snapshot file
+	 *
+	 * @param cache
+	 *            reference data cache
+	 * @param file
+	 *            snapshot file. Replaced if it exists
+	 * @return snapshot timestamp
+	 * @throws IOException
+	 */
+	public static Date write(ReferenceDataCache cache, File file) throws IOException {
+
+		Gson gson = GsonUtils.createGson();
+		Date timestamp = new Date();
+
+		// Collect records first: the number of records is written in the header
+		List<ReferenceDataType> recordTypes = new ArrayList<ReferenceDataType>();
+		List<Object> recordValues = new ArrayList<Object>();
+		List<List<String>> recordKeys = new ArrayList<List<String>>();
+		for (ReferenceDataType type : ReferenceDataType.values()) {
+			// Group keys by value, so that entities cached under several keys are stored once
+			Map<Object, List<String>> keysByValue = new IdentityHashMap<Object, List<String>>();
+			for (Map.Entry<String, Object> entry : cache.getEntries(type).entrySet()) {
+				List<String> keys = keysByValue.get(entry.getValue());
+				if (keys == null) {
+					keys = new ArrayList<String>();
+					keysByValue.put(entry.getValue(), keys);
+				}
+				keys.add(entry.getKey());
+			}
+			// Lists go first: entity records may reference their entries
+			Map<Object, Object> listEntries = new IdentityHashMap<Object, Object>();
+			for (Map.Entry<Object, List<String>> entry : keysByValue.entrySet()) {
+				if (entry.getKey() instanceof List) {
+					List<?> list = (List<?>) entry.getKey();
+					for (int index = 0; index < list.size(); index++) {
+						if (!listEntries.containsKey(list.get(index))) {
+							listEntries.put(list.get(index), new ListEntry(entry.getValue().get(0), index));
+						}
+					}
+					recordTypes.add(type);
+					recordValues.add(entry.getKey());
+					recordKeys.add(entry.getValue());
+				}
+			}
+			for (Map.Entry<Object, List<String>> entry : keysByValue.entrySet()) {
+				if (!(entry.getKey() instanceof List)) {
+					Object listEntry = listEntries.get(entry.getKey());
+					recordTypes.add(type);
+					recordValues.add(listEntry != null ? listEntry : entry.getKey());
+					recordKeys.add(entry.getValue());
+				}
+			}
+		}
+
+		File parent = file.getAbsoluteFile().getParentFile();
+		File tempFile = File.createTempFile(file.getName(), ".tmp", parent);
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		boolean moved = false;
+		try {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+			try {
+				out.writeInt(MAGIC);
+				out.writeShort(FORMAT_VERSION);
+				out.writeLong(timestamp.getTime());
+				out.writeInt(recordValues.size());
+
+				byte[] buffer = new byte[8192];
+				for (int i = 0; i < recordValues.size(); i++) {
+					Object value = recordValues.get(i);
+					out.writeUTF(recordTypes.get(i).name());
+					out.writeByte(value instanceof ListEntry ? LIST_ENTRY_RECORD : value instanceof List ? LIST_RECORD
+							: ENTITY_RECORD);
+					List<String> keys = recordKeys.get(i);
+					out.writeShort(keys.size());
+					for (String key : keys) {
+						out.writeUTF(key);
+					}
+					if (value instanceof ListEntry) {
+						out.writeUTF(((ListEntry) value).listKey);
+						out.writeInt(((ListEntry) value).index);
+						continue;
+					}
+					byte[] json = gson.toJson(value).getBytes(UTF8);
+					byte[] compressed = deflate(deflater, json, buffer);
+					out.writeInt(json.length);
+					out.writeInt(compressed.length);
+					out.write(compressed);
+				}
+			} finally {
+				out.close();
+			}
+			Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			moved = true;
+		} finally {
+			// Release the native memory of the deflater and do not leave a partially written file behind
+			deflater.end();
+			if (!moved) {
+				tempFile.delete();
+			}
+		}
+
+		return timestamp;
+	}
+
+	/***
+	 * Load a snapshot file into the reference data cache. Loaded entries replace the cached entries with the same keys
+	 *
+	 * @param cache
+	 *            reference data cache
+	 * @param file
+	 *            snapshot file
+	 * @param memoryMapped
+	 *            true to read the file via a memory mapped buffer, false to read it as a stream
+	 * @return snapshot timestamp: the time the snapshot was written
+	 * @throws IOException
+	 *             if the file cannot be read or is not a valid snapshot file
+	 */
+	public static Date load(ReferenceDataCache cache, File file, boolean memoryMapped) throws IOException {
+
+		InputStream input;
+		RandomAccessFile randomAccessFile = null;
+		if (memoryMapped) {
+			randomAccessFile = new RandomAccessFile(file, "r");
+			FileChannel channel = randomAccessFile.getChannel();
+			input = new ByteBufferInputStream(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		} else {
+			input = new BufferedInputStream(new FileInputStream(file));
+		}
+
+		DataInputStream in = new DataInputStream(input);
+		Inflater inflater = new Inflater();
+		try {
+			if (in.readInt() != MAGIC) {
+				throw new IOException("Not a reference data snapshot file: " + file);
+			}
+			short formatVersion = in.readShort();
+			if (formatVersion != FORMAT_VERSION) {
+				throw new IOException("Unsupported snapshot format version " + formatVersion);
+			}
+			Date timestamp = new Date(in.readLong());
+			int recordsCount = in.readInt();
+
+			Gson gson = GsonUtils.createGson();
+			// Loaded lists for each type, by list key
+			Map<ReferenceDataType, Map<String, List<?>>> lists = new EnumMap<ReferenceDataType, Map<String, List<?>>>(
+					ReferenceDataType.class);
+			for (int i = 0; i < recordsCount; i++) {
+				ReferenceDataType type = ReferenceDataType.valueOf(in.readUTF());
+				byte kind = in.readByte();
+				int keysCount = in.readShort();
+				List<String> keys = new ArrayList<String>(keysCount);
+				for (int k = 0; k < keysCount; k++) {
+					keys.add(in.readUTF());
+				}
+				if (kind == LIST_ENTRY_RECORD) {
+					String listKey = in.readUTF();
+					int index = in.readInt();
+					List<?> list = lists.containsKey(type) ? lists.get(type).get(listKey) : null;
+					if (list == null || index < 0 || index >= list.size()) {
+						throw new IOException("Invalid list entry reference in snapshot file " + file);
+					}
+					for (String key : keys) {
+						cache.putEntity(type, key, list.get(index));
+					}
+					continue;
+				}
+				byte[] json = new byte[in.readInt()];
+				byte[] compressed = new byte[in.readInt()];
+				in.readFully(compressed);
+				inflate(inflater, compressed, json);
+
+				String jsonString = new String(json, UTF8);
+				if (kind == LIST_RECORD) {
+					List<?> list = gson.fromJson(jsonString, ServiceExecutor.getCollectionType(type.getEntityClass()));
+					for (String key : keys) {
+						list = cache.putList(type, key, list);
+					}
+					if (!lists.containsKey(type)) {
+						lists.put(type, new HashMap<String, List<?>>());
+					}
+					lists.get(type).put(keys.get(0), list);
+				} else {
+					Object entity = gson.fromJson(jsonString, type.getEntityClass());
+					for (String key : keys) {
+						cache.putEntity(type, key, entity);
+					}
+				}
+			}
+			return timestamp;
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Invalid snapshot file " + file + ": " + e.getMessage(), e);
+		} finally {
+			inflater.end();
+			in.close();
+			if (randomAccessFile != null) {
+				randomAccessFile.close();
+			}
+		}
+	}
+
+	private static byte[] deflate(Deflater deflater, byte[] data, byte[] buffer) {
+		deflater.reset();
+		deflater.setInput(data);
+		deflater.finish();
+		ByteArrayOutputStream result = new ByteArrayOutputStream(data.length / 4 + 16);
+		while (!deflater.finished()) {
+			int count = deflater.deflate(buffer);
+			result.write(buffer, 0, count);
+		}
+		return result.toByteArray();
+	}
+
+	private static void inflate(Inflater inflater, byte[] compressed, byte[] result) throws IOException {
+		inflater.reset();
+		inflater.setInput(compressed);
+		try {
+			int length = 0;
+			while (length < result.length && !inflater.finished()) {
+				int count = inflater.inflate(result, length, result.length - length);
+				if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					throw new IOException("Truncated snapshot record");
+				}
+				length += count;
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("Invalid snapshot record: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Reference to an entry of a cached list
+	 */
+	private static class ListEntry {
+		private final String listKey;
+		private final int index;
+
+		private ListEntry(String listKey, int index) {
+			this.listKey = listKey;
+			this.index = index;
+		}
+	}
+
+	/**
+	 * Input stream reading a (memory mapped) byte buffer
+	 */
+	private static class ByteBufferInputStream extends InputStream {
+
+		private final ByteBuffer buffer;
+
+		private ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? (buffer.get() & 0xFF) : -1;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) {
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			length = Math.min(length, buffer.remaining());
+			buffer.get(bytes, offset, length);
+			return length;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+	}
+}
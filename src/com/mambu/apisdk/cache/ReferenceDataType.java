@@ -0,0 +1,52 @@
+package com.mambu.apisdk.cache;
+
+import com.mambu.accounts.shared.model.TransactionChannel;
+import com.mambu.api.server.handler.settings.organization.model.JSONOrganization;
+import com.mambu.core.shared.model.Currency;
+import com.mambu.core.shared.model.CustomFieldSet;
+import com.mambu.core.shared.model.GeneralSettings;
+import com.mambu.core.shared.model.Role;
+import com.mambu.core.shared.model.User;
+import com.mambu.loans.shared.model.LoanProduct;
+import com.mambu.organization.shared.model.Branch;
+import com.mambu.organization.shared.model.Centre;
+import com.mambu.savings.shared.model.SavingsProduct;
+
+/**
+ * ReferenceDataType is an enum for the rarely changing Mambu entities which can be cached by the
+ * {@link ReferenceDataCache}
+ *
+ * @author agent
+ *
+ */
+public enum ReferenceDataType {
+
+	LOAN_PRODUCT(LoanProduct.class), SAVINGS_PRODUCT(SavingsProduct.class), BRANCH(Branch.class), CENTRE(Centre.class), USER(
+			User.class), USER_ROLE(Role.class), CURRENCY(Currency.class), CUSTOM_FIELD_SET(CustomFieldSet.class), TRANSACTION_CHANNEL(
+			TransactionChannel.class), GENERAL_SETTINGS(GeneralSettings.class), ORGANIZATION(JSONOrganization.class);
+
+	private final Class<?> entityClass;
+
+	private ReferenceDataType(Class<?> entityClass) {
+		this.entityClass = entityClass;
+	}
+
+	/***
+	 * Get Mambu model class for this reference data type
+	 *
+	 * @return class
+	 */
+	public Class<?> getEntityClass() {
+		return entityClass;
+	}
+
+	/***
+	 * Check if this type is a single object for the organization (e.g. General Settings) rather than a collection of
+	 * entities
+	 *
+	 * @return true for the organization wide singletons
+	 */
+	public boolean isSingleton() {
+		return this == CURRENCY || this == GENERAL_SETTINGS || this == ORGANIZATION;
+	}
+}
@@ -0,0 +1,304 @@
+package com.mambu.apisdk.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.mambu.apisdk.MambuAPIService;
+import com.mambu.apisdk.exception.MambuApiException;
+import com.mambu.apisdk.services.SearchService;
+import com.mambu.core.shared.model.SearchResult;
+import com.mambu.core.shared.model.SearchType;
+
+/**
+ * Search front-end for search-as-you-type user interfaces, on top of
+ * {@link SearchService#search(String, List, String)}.
+ *
+ * Results are cached by query, for the configured time and up to the configured number of queries (least recently
+ * used queries are evicted first). A query which is not cached is answered from the cached results of a shorter prefix
+ * of it, when those results were not truncated by the limit: the results are filtered locally, keeping the results
+ * whose display string or ID contains every word of the query. Results matched by Mambu on other fields are not kept.
+ *
+ * {@link #searchAsync(String)} adds debouncing for keystrokes: the request is sent only when no other query was
+ * submitted for the debounce time, and submitting a new query cancels the previous one. A cancelled query which was
+ * already sent to Mambu still caches its results, but they are not delivered.
+ *
+ * One instance should be used per input field, as the pending query is shared by all callers
+ *
+ * @author agent
+ *
+ */
+public class TypeaheadSearch {
+
+	/**
+	 * Default time to wait for the next keystroke before sending a request, in milliseconds
+	 */
+	public final static long DEFAULT_DEBOUNCE_MILLIS = 250;
+	/**
+	 * Default maximum number of cached queries
+	 */
+	public final static int DEFAULT_MAXIMUM_SIZE = 1000;
+	/**
+	 * Default time to live of cached results, in seconds
+	 */
+	public final static long DEFAULT_TIME_TO_LIVE_SECONDS = 60;
+	/**
+	 * Default maximum number of results requested. Mambu's default
+	 */
+	public final static int DEFAULT_LIMIT = 100;
+
+	private final SearchService searchService;
+	private final List<SearchType> searchTypes;
+	private final int limit;
+	private final long debounceMillis;
+	private final Cache<String, CachedResults> cache;
+	private final ScheduledExecutorService scheduler;
+
+	// The last query submitted with searchAsync. Guarded by this
+	private SettableFuture<Map<SearchType, List<SearchResult>>> pendingFuture;
+	private ScheduledFuture<?> pendingTask;
+
+	private final AtomicLong requestCount = new AtomicLong();
+	private final AtomicLong prefixHitCount = new AtomicLong();
+
+	/**
+	 * Results of a query and whether the limit truncated them
+	 */
+	private static class CachedResults {
+		private final Map<SearchType, List<SearchResult>> results;
+		private final boolean truncated;
+
+		private CachedResults(Map<SearchType, List<SearchResult>> results, boolean truncated) {
+			this.results = results;
+			this.truncated = truncated;
+		}
+	}
+
+	/***
+	 * Create typeahead search with default settings
+	 *
+	 * @param mambuAPIService
+	 *            the service responsible for the connection to the server
+	 * @param searchTypes
+	 *            search types to query or null for all types
+	 */
+	public TypeaheadSearch(MambuAPIService mambuAPIService, List<SearchType> searchTypes) {
+		this(mambuAPIService, searchTypes, DEFAULT_LIMIT, DEFAULT_DEBOUNCE_MILLIS, DEFAULT_MAXIMUM_SIZE,
+				DEFAULT_TIME_TO_LIVE_SECONDS, TimeUnit.SECONDS);
+	}
+
+	/***
+	 * Create typeahead search
+	 *
+	 * @param mambuAPIService
+	 *            the service responsible for the connection to the server
+	 * @param searchTypes
+	 *            search types to query or null for all types
+	 * @param limit
+	 *            maximum number of results requested. Must be positive
+	 * @param debounceMillis
+	 *            time to wait for the next query before sending a request with searchAsync. Must not be negative
+	 * @param maximumSize
+	 *            maximum number of cached queries. Must be positive
+	 * @param timeToLive
+	 *            time to live of cached results. Must be positive
+	 * @param unit
+	 *            time unit for the time to live
+	 */
+	public TypeaheadSearch(MambuAPIService mambuAPIService, List<SearchType> searchTypes, int limit,
+			long debounceMillis, int maximumSize, long timeToLive, TimeUnit unit) {
+		if (mambuAPIService == null) {
+			throw new IllegalArgumentException("Mambu API Service must not be null");
+		}
+		if (limit <= 0 || debounceMillis < 0 || maximumSize <= 0 || timeToLive <= 0) {
+			throw new IllegalArgumentException(
+					"Limit, maximum size and time to live must be positive and debounce time not negative");
+		}
+		this.searchService = new SearchService(mambuAPIService);
+		this.searchTypes = searchTypes == null ? null : new ArrayList<SearchType>(searchTypes);
+		this.limit = limit;
+		this.debounceMillis = debounceMillis;
+		this.cache = CacheBuilder.newBuilder().maximumSize(maximumSize).expireAfterWrite(timeToLive, unit).build();
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+				.setNameFormat("mambu-typeahead-%d").setDaemon(true).build());
+	}
+
+	/***
+	 * Search without debouncing. The results are served from memory when possible
+	 *
+	 * @param query
+	 *            query. Must not be null
+	 * @return search results by search type. The results are shared and must not be modified
+	 * @throws MambuApiException
+	 */
+	public Map<SearchType, List<SearchResult>> search(String query) throws MambuApiException {
+		String normalizedQuery = normalize(query);
+		Map<SearchType, List<SearchResult>> results = getFromMemory(normalizedQuery);
+		if (results != null) {
+			return results;
+		}
+		requestCount.incrementAndGet();
+		results = Collections.unmodifiableMap(searchService.search(normalizedQuery, searchTypes,
+				String.valueOf(limit)));
+		int count = 0;
+		for (List<SearchResult> typeResults : results.values()) {
+			count += typeResults.size();
+		}
+		cache.put(normalizedQuery, new CachedResults(results, count >= limit));
+		return results;
+	}
+
+	/***
+	 * Search with debouncing. Queries served from memory complete immediately. Other queries are sent after the
+	 * debounce time unless another query is submitted meanwhile. Submitting a query cancels the previous one
+	 *
+	 * @param query
+	 *            query. Must not be null
+	 * @return future for the search results. The future is cancelled when a newer query is submitted before it
+	 *         completes
+	 */
+	public ListenableFuture<Map<SearchType, List<SearchResult>>> searchAsync(String query) {
+		final String normalizedQuery = normalize(query);
+		synchronized (this) {
+			cancelPending();
+			Map<SearchType, List<SearchResult>> results = getFromMemory(normalizedQuery);
+			if (results != null) {
+				return Futures.immediateFuture(results);
+			}
+			final SettableFuture<Map<SearchType, List<SearchResult>>> future = SettableFuture.create();
+			pendingFuture = future;
+			pendingTask = scheduler.schedule(new Runnable() {
+				@Override
+				public void run() {
+					if (future.isCancelled()) {
+						return;
+					}
+					try {
+						future.set(search(normalizedQuery));
+					} catch (MambuApiException e) {
+						future.setException(e);
+					} catch (RuntimeException e) {
+						future.setException(e);
+					}
+				}
+			}, debounceMillis, TimeUnit.MILLISECONDS);
+			return future;
+		}
+	}
+
+	/***
+	 * Cancel the pending query submitted with searchAsync, if any
+	 */
+	public synchronized void cancelPending() {
+		if (pendingFuture != null) {
+			pendingFuture.cancel(false);
+			// A request already sent is completed, so that its results are cached
+			pendingTask.cancel(false);
+			pendingFuture = null;
+			pendingTask = null;
+		}
+	}
+
+	/***
+	 * Get the number of search requests sent to Mambu
+	 *
+	 * @return number of requests
+	 */
+	public long getRequestCount() {
+		return requestCount.get();
+	}
+
+	/***
+	 * Get the number of queries answered by filtering the results of a shorter prefix
+	 *
+	 * @return number of prefix hits
+	 */
+	public long getPrefixHitCount() {
+		return prefixHitCount.get();
+	}
+
+	/***
+	 * Remove all cached results
+	 */
+	public void invalidateAll() {
+		cache.invalidateAll();
+	}
+
+	/***
+	 * Stop the debouncing thread. Pending queries are cancelled
+	 */
+	public void shutdown() {
+		cancelPending();
+		scheduler.shutdownNow();
+	}
+
+	/**
+	 * Get the results of a query or of its longest cached prefix which was not truncated
+	 */
+	private Map<SearchType, List<SearchResult>> getFromMemory(String normalizedQuery) {
+		CachedResults cached = cache.getIfPresent(normalizedQuery);
+		if (cached != null) {
+			return cached.results;
+		}
+		for (int end = normalizedQuery.length() - 1; end > 0; end--) {
+			CachedResults prefixResults = cache.getIfPresent(normalizedQuery.substring(0, end));
+			if (prefixResults != null && !prefixResults.truncated) {
+				Map<SearchType, List<SearchResult>> results = filter(prefixResults.results, normalizedQuery);
+				cache.put(normalizedQuery, new CachedResults(results, false));
+				prefixHitCount.incrementAndGet();
+				return results;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Keep the results whose display string or ID contains all words of the query
+	 */
+	private static Map<SearchType, List<SearchResult>> filter(Map<SearchType, List<SearchResult>> results,
+			String normalizedQuery) {
+		String[] words = normalizedQuery.split("\\s+");
+		Map<SearchType, List<SearchResult>> filtered = new LinkedHashMap<SearchType, List<SearchResult>>();
+		for (Map.Entry<SearchType, List<SearchResult>> entry : results.entrySet()) {
+			List<SearchResult> typeResults = new ArrayList<SearchResult>();
+			for (SearchResult result : entry.getValue()) {
+				String text = (result.getDisplayString() + " " + result.getResultID()).toLowerCase(Locale.ENGLISH);
+				boolean matches = true;
+				for (String word : words) {
+					if (!text.contains(word)) {
+						matches = false;
+						break;
+					}
+				}
+				if (matches) {
+					typeResults.add(result);
+				}
+			}
+			if (!typeResults.isEmpty()) {
+				filtered.put(entry.getKey(), Collections.unmodifiableList(typeResults));
+			}
+		}
+		return Collections.unmodifiableMap(filtered);
+	}
+
+	private static String normalize(String query) {
+		if (query == null) {
+			throw new IllegalArgumentException("Query must not be null");
+		}
+		return query.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ENGLISH);
+	}
+}
@@ -1,5 +1,7 @@
 package com.mambu.apisdk.exception;
 
+import java.net.HttpURLConnection;
+
 /**
  * Encapsulation for exceptions which may occur when calling Mambu APIs
  * 
@@ -72,6 +74,15 @@ public class MambuApiException extends Exception {
 		this.errorCode = errorCode;
 	}
 
+	/**
+	 * Check if the exception was raised because the requested entity does not exist
+	 * 
+	 * @return true if Mambu responded with HTTP 404 Not Found
+	 */
+	public boolean isNotFound() {
+		return errorCode != null && errorCode == HttpURLConnection.HTTP_NOT_FOUND;
+	}
+
 	public String getErrorMessage() {
 		return errorMessage;
 	}
@@ -0,0 +1,162 @@
+package com.mambu.apisdk.model;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import com.mambu.apisdk.exception.MambuApiException;
+import com.mambu.apisdk.services.Client360Service;
+import com.mambu.clients.shared.model.ClientExpanded;
+import com.mambu.clients.shared.model.GroupExpanded;
+import com.mambu.core.shared.model.Comment;
+import com.mambu.docs.shared.model.Document;
+import com.mambu.linesofcredit.shared.model.LineOfCredit;
+import com.mambu.loans.shared.model.LoanAccount;
+import com.mambu.savings.shared.model.SavingsAccount;
+import com.mambu.tasks.shared.model.Task;
+
+/**
+ * The profile of a client or a group returned by {@link Client360Service}: customer details, accounts, lines of
+ * credit, documents, comments and tasks.
+ *
+ * The parts are read with concurrent requests and a shared deadline. Parts whose request failed or did not complete
+ * before the deadline are null and their errors are returned by {@link #getErrors()}
+ *
+ * @author agent
+ *
+ */
+public class Client360 {
+
+	/**
+	 * Parts of the profile, one request each
+	 */
+	public enum Part {
+		DETAILS, LOAN_ACCOUNTS, SAVINGS_ACCOUNTS, LINES_OF_CREDIT, DOCUMENTS, COMMENTS, TASKS
+	}
+
+	private ClientExpanded client;
+	private GroupExpanded group;
+	private List<LoanAccount> loanAccounts;
+	private List<SavingsAccount> savingsAccounts;
+	private List<LineOfCredit> linesOfCredit;
+	private List<Document> documents;
+	private List<Comment> comments;
+	private List<Task> tasks;
+	private final Map<Part, MambuApiException> errors = new EnumMap<Part, MambuApiException>(Part.class);
+
+	/***
+	 * Get client details
+	 *
+	 * @return client with full details or null if the profile is for a group or the details were not read
+	 */
+	public ClientExpanded getClient() {
+		return client;
+	}
+
+	public void setClient(ClientExpanded client) {
+		this.client = client;
+	}
+
+	/***
+	 * Get group details
+	 *
+	 * @return group with full details or null if the profile is for a client or the details were not read
+	 */
+	public GroupExpanded getGroup() {
+		return group;
+	}
+
+	public void setGroup(GroupExpanded group) {
+		this.group = group;
+	}
+
+	public List<LoanAccount> getLoanAccounts() {
+		return loanAccounts;
+	}
+
+	public void setLoanAccounts(List<LoanAccount> loanAccounts) {
+		this.loanAccounts = loanAccounts;
+	}
+
+	public List<SavingsAccount> getSavingsAccounts() {
+		return savingsAccounts;
+	}
+
+	public void setSavingsAccounts(List<SavingsAccount> savingsAccounts) {
+		this.savingsAccounts = savingsAccounts;
+	}
+
+	public List<LineOfCredit> getLinesOfCredit() {
+		return linesOfCredit;
+	}
+
+	public void setLinesOfCredit(List<LineOfCredit> linesOfCredit) {
+		this.linesOfCredit = linesOfCredit;
+	}
+
+	public List<Document> getDocuments() {
+		return documents;
+	}
+
+	public void setDocuments(List<Document> documents) {
+		this.documents = documents;
+	}
+
+	public List<Comment> getComments() {
+		return comments;
+	}
+
+	public void setComments(List<Comment> comments) {
+		this.comments = comments;
+	}
+
+	public List<Task> getTasks() {
+		return tasks;
+	}
+
+	public void setTasks(List<Task> tasks) {
+		this.tasks = tasks;
+	}
+
+	/***
+	 * Set the error a part failed with
+	 *
+	 * @param part
+	 *            profile part
+	 * @param error
+	 *            error of the part's request
+	 */
+	public void setError(Part part, MambuApiException error) {
+		errors.put(part, error);
+	}
+
+	/***
+	 * Get the error a part failed with
+	 *
+	 * @param part
+	 *            profile part
+	 * @return error or null if the part was read
+	 */
+	public MambuApiException getError(Part part) {
+		return errors.get(part);
+	}
+
+	/***
+	 * Get the errors of all failed parts
+	 *
+	 * @return unmodifiable map of errors by part
+	 */
+	public Map<Part, MambuApiException> getErrors() {
+		return Collections.unmodifiableMap(errors);
+	}
+
+	/***
+	 * Check if all parts were read
+	 *
+	 * @return true if no part failed
+	 */
+	public boolean isComplete() {
+		return errors.isEmpty();
+	}
+}
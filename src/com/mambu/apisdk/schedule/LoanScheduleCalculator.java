@@ -0,0 +1,468 @@
+package com.mambu.apisdk.schedule;
+
+import static com.mambu.core.shared.model.RoundingRepaymentScheduleMethod.ROUND_PRINCIPAL_AND_INTEREST_REMAINDER_INTO_LAST_REPAYMENT;
+import static com.mambu.core.shared.model.RoundingRepaymentScheduleMethod.ROUND_REMAINDER_INTO_LAST_REPAYMENT;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+
+import com.mambu.accounts.shared.model.InterestChargeFrequencyMethod;
+import com.mambu.apisdk.services.LoansService;
+import com.mambu.apisdk.util.DateUtils;
+import com.mambu.core.shared.model.DaysInYearMethod;
+import com.mambu.core.shared.model.Money;
+import com.mambu.core.shared.model.RepaymentCurrencyRounding;
+import com.mambu.core.shared.model.RoundingRepaymentScheduleMethod;
+import com.mambu.loans.shared.model.DisbursementDetails;
+import com.mambu.loans.shared.model.GracePeriodType;
+import com.mambu.loans.shared.model.InterestCalculationMethod;
+import com.mambu.loans.shared.model.LoanAccount;
+import com.mambu.loans.shared.model.LoanAccount.RepaymentPeriodUnit;
+import com.mambu.loans.shared.model.LoanProduct;
+import com.mambu.loans.shared.model.Repayment;
+import com.mambu.loans.shared.model.RepaymentInteresDaysCountMethod;
+import com.mambu.loans.shared.model.ScheduleDueDatesMethod;
+
+/**
+ * Calculates loan repayment schedules locally, without requests to Mambu, for simulations with many scenarios. The
+ * result has the same model as {@link LoansService#getLoanProductSchedule(String, LoanAccount)}.
+ *
+ * Supported interest calculation methods:
+ * <ul>
+ * <li>FLAT: equal principal, interest on the loan amount</li>
+ * <li>DECLINING_BALANCE: fixed principal, interest on the remaining balance</li>
+ * <li>DECLINING_BALANCE_DISCOUNTED: equal installments, interest on the remaining balance</li>
+ * </ul>
+ *
+ * The product's interest charge frequency, days in year, interest days count method, grace period type (pay interest
+ * only and interest forgiveness), repayment currency rounding and rounding of the schedule remainder are applied.
+ * Repayments are due at regular intervals from the first repayment date. Schedules which need other settings (fixed
+ * days of month, principal repayment interval, rolled up interest, interest on interest, etc.) are rejected with an
+ * IllegalArgumentException. Fees and taxes are not calculated.
+ *
+ * Results can differ from Mambu's for edge cases: use {@link LoanScheduleVerifier} to compare a sample of the
+ * scenarios with Mambu before relying on the calculator for a product.
+ *
+ * Calculators are immutable and can be shared by threads
+ *
+ * @author agent
+ *
+ */
+public class LoanScheduleCalculator {
+
+	/**
+	 * Default number of decimals of the currency
+	 */
+	public final static int DEFAULT_CURRENCY_DECIMALS = 2;
+
+	private final static MathContext MATH_CONTEXT = MathContext.DECIMAL64;
+	private final static BigDecimal HUNDRED = new BigDecimal(100);
+	// Deprecated in the model, but still set on older products. Compared by name to avoid deprecation warnings
+	private final static String ROUND_REMAINDER_INTO_FIRST_REPAYMENT = "ROUND_REMAINDER_INTO_FIRST_REPAYMENT";
+	private final static String ROLL_UP_INTEREST = "ROLL_UP_INTEREST";
+
+	private final LoanProduct product;
+	private final int currencyDecimals;
+
+	/***
+	 * Create schedule calculator for a product with a currency with two decimals
+	 *
+	 * @param product
+	 *            loan product. Must not be null
+	 */
+	public LoanScheduleCalculator(LoanProduct product) {
+		this(product, DEFAULT_CURRENCY_DECIMALS);
+	}
+
+	/***
+	 * Create schedule calculator for a product
+	 *
+	 * @param product
+	 *            loan product. Must not be null
+	 * @param currencyDecimals
+	 *            number of decimals of the currency. Must not be negative
+	 */
+	public LoanScheduleCalculator(LoanProduct product, int currencyDecimals) {
+		if (product == null) {
+			throw new IllegalArgumentException("Loan Product must not be null");
+		}
+		if (currencyDecimals < 0) {
+			throw new IllegalArgumentException("Currency decimals must not be negative");
+		}
+		if (product.getScheduleDueDatesMethod() == ScheduleDueDatesMethod.FIXED_DAYS_OF_MONTH) {
+			throw new IllegalArgumentException("Fixed days of month schedules are not supported");
+		}
+		this.product = product;
+		this.currencyDecimals = currencyDecimals;
+	}
+
+	/***
+	 * Calculate the repayment schedule for a loan account. Parameters not set on the account are taken from the
+	 * product defaults, as for {@link LoansService#getLoanProductSchedule(String, LoanAccount)}
+	 *
+	 * @param account
+	 *            loan account with the schedule parameters: loanAmount (mandatory), repaymentInstallments,
+	 *            interestRate, gracePeriod, gracePeriodType, repaymentPeriodCount, repaymentPeriodUnit and the expected
+	 *            disbursement and first repayment dates. Without an expected disbursement date, today is used
+	 * @return repayments, in due date order
+	 */
+	public List<Repayment> calculate(LoanAccount account) {
+		if (account == null) {
+			throw new IllegalArgumentException("Loan Account must not be null");
+		}
+		BigDecimal amount = account.getLoanAmount() == null ? null : account.getLoanAmount().getAmount();
+		if (amount == null || amount.signum() <= 0) {
+			throw new IllegalArgumentException("Loan Amount must be positive. It is " + amount);
+		}
+		int installments = valueOf(account.getRepaymentInstallments(), product.getDefaultNumInstallments(), 0);
+		int gracePeriod = valueOf(account.getGracePeriod(), product.getDefaultGracePeriod(), 0);
+		GracePeriodType gracePeriodType = account.getGracePeriodType() != null ? account.getGracePeriodType()
+				: product.getGracePeriodType();
+		if (gracePeriodType == null || gracePeriodType == GracePeriodType.NONE) {
+			gracePeriod = 0;
+		}
+		if (installments <= 0 || gracePeriod < 0 || gracePeriod >= installments) {
+			throw new IllegalArgumentException("Invalid installments " + installments + " or grace period "
+					+ gracePeriod);
+		}
+		if (gracePeriod > 0 && ROLL_UP_INTEREST.equals(gracePeriodType.name())) {
+			throw new IllegalArgumentException("Rolled up interest grace period is not supported");
+		}
+		if (valueOf(account.getPrincipalRepaymentInterval(), product.getDefaultPrincipalRepaymentInterval(), 1) != 1) {
+			throw new IllegalArgumentException("Principal repayment interval is not supported");
+		}
+
+		List<Date> dueDates = makeDueDates(account, installments);
+		BigDecimal[] interestRates = makeInterestRates(account, dueDates);
+
+		InterestCalculationMethod method = product.getInterestCalculationMethod() != null ? product
+				.getInterestCalculationMethod() : InterestCalculationMethod.DECLINING_BALANCE;
+		// Installments without principal: the grace period for paying interest only
+		int principalFrom = gracePeriodType == GracePeriodType.PAY_INTEREST_ONLY ? gracePeriod : 0;
+		// Installments without interest: the grace period for interest forgiveness
+		int interestFrom = gracePeriodType == GracePeriodType.INTEREST_FORGIVENESS ? gracePeriod : 0;
+
+		BigDecimal[] principal;
+		BigDecimal[] interest;
+		switch (method) {
+		case FLAT:
+			principal = splitPrincipal(amount, installments, principalFrom);
+			interest = new BigDecimal[installments];
+			for (int i = 0; i < installments; i++) {
+				interest[i] = i < interestFrom ? BigDecimal.ZERO : amount.multiply(interestRates[i], MATH_CONTEXT);
+			}
+			roundInterest(interest, getRoundingMethod() == ROUND_PRINCIPAL_AND_INTEREST_REMAINDER_INTO_LAST_REPAYMENT);
+			break;
+		case DECLINING_BALANCE:
+			principal = splitPrincipal(amount, installments, principalFrom);
+			interest = new BigDecimal[installments];
+			BigDecimal balance = amount;
+			for (int i = 0; i < installments; i++) {
+				interest[i] = i < interestFrom ? BigDecimal.ZERO : round(balance.multiply(interestRates[i],
+						MATH_CONTEXT));
+				balance = balance.subtract(principal[i]);
+			}
+			break;
+		case DECLINING_BALANCE_DISCOUNTED:
+			principal = new BigDecimal[installments];
+			interest = new BigDecimal[installments];
+			calculateEqualInstallments(amount, interestRates, principalFrom, interestFrom, principal, interest);
+			break;
+		default:
+			throw new IllegalArgumentException("Interest calculation method " + method + " is not supported");
+		}
+
+		List<Repayment> repayments = new ArrayList<Repayment>(installments);
+		for (int i = 0; i < installments; i++) {
+			Repayment repayment = new Repayment();
+			repayment.setDueDate(dueDates.get(i));
+			repayment.setPrincipalDue(principal[i]);
+			repayment.setInterestDue(interest[i]);
+			repayment.setFeesDue(BigDecimal.ZERO);
+			repayment.setPenaltyDue(BigDecimal.ZERO);
+			repayments.add(repayment);
+		}
+		return repayments;
+	}
+
+	/**
+	 * Calculate principal and interest of equal installments. The installment is calculated for the nominal rate of
+	 * the installments after the grace period, the last installment repays the remaining balance
+	 */
+	private void calculateEqualInstallments(BigDecimal amount, BigDecimal[] interestRates, int principalFrom,
+			int interestFrom, BigDecimal[] principal, BigDecimal[] interest) {
+		int installments = interestRates.length;
+		int amortized = installments - principalFrom;
+		BigDecimal rate = interestRates[installments - 1];
+		BigDecimal installment;
+		if (rate.signum() == 0) {
+			installment = amount.divide(new BigDecimal(amortized), MATH_CONTEXT);
+		} else {
+			// amount * rate * (1 + rate)^n / ((1 + rate)^n - 1)
+			BigDecimal factor = BigDecimal.ONE.add(rate).pow(amortized, MATH_CONTEXT);
+			installment = amount.multiply(rate, MATH_CONTEXT).multiply(factor, MATH_CONTEXT)
+					.divide(factor.subtract(BigDecimal.ONE), MATH_CONTEXT);
+		}
+		installment = roundInstallment(installment);
+		BigDecimal balance = amount;
+		for (int i = 0; i < installments; i++) {
+			BigDecimal periodInterest = round(balance.multiply(interestRates[i], MATH_CONTEXT));
+			if (i < principalFrom) {
+				principal[i] = BigDecimal.ZERO;
+			} else if (i == installments - 1) {
+				principal[i] = balance;
+			} else {
+				principal[i] = installment.subtract(periodInterest).max(BigDecimal.ZERO).min(balance);
+			}
+			interest[i] = i < interestFrom ? BigDecimal.ZERO : periodInterest;
+			balance = balance.subtract(principal[i]);
+		}
+	}
+
+	/**
+	 * Split the amount into equal principal installments, starting with installment principalFrom. The rounding
+	 * remainder is added to the first or the last of them
+	 */
+	private BigDecimal[] splitPrincipal(BigDecimal amount, int installments, int principalFrom) {
+		BigDecimal[] principal = new BigDecimal[installments];
+		int amortized = installments - principalFrom;
+		BigDecimal installment = roundInstallment(amount.divide(new BigDecimal(amortized), MATH_CONTEXT));
+		if (installment.multiply(new BigDecimal(amortized - 1)).compareTo(amount) > 0) {
+			// Rounding up would repay the amount before the last installment
+			installment = round(amount.divide(new BigDecimal(amortized), MATH_CONTEXT));
+		}
+		for (int i = 0; i < installments; i++) {
+			principal[i] = i < principalFrom ? BigDecimal.ZERO : installment;
+		}
+		BigDecimal remainder = amount.subtract(installment.multiply(new BigDecimal(amortized)));
+		int remainderIndex = ROUND_REMAINDER_INTO_FIRST_REPAYMENT.equals(getRoundingMethod().name()) ? principalFrom
+				: installments - 1;
+		principal[remainderIndex] = principal[remainderIndex].add(remainder);
+		return principal;
+	}
+
+	/**
+	 * Round interest amounts. With remainderIntoLast, the rounding differences are added to the last installment
+	 */
+	private void roundInterest(BigDecimal[] interest, boolean remainderIntoLast) {
+		BigDecimal total = BigDecimal.ZERO;
+		BigDecimal roundedTotal = BigDecimal.ZERO;
+		for (int i = 0; i < interest.length; i++) {
+			total = total.add(interest[i]);
+			interest[i] = round(interest[i]);
+			roundedTotal = roundedTotal.add(interest[i]);
+		}
+		if (remainderIntoLast) {
+			interest[interest.length - 1] = interest[interest.length - 1].add(round(total).subtract(roundedTotal));
+		}
+	}
+
+	/**
+	 * Make the due dates, at regular intervals from the first repayment date
+	 */
+	private List<Date> makeDueDates(LoanAccount account, int installments) {
+		RepaymentPeriodUnit unit = getPeriodUnit(account);
+		int periodCount = getPeriodCount(account);
+		DisbursementDetails details = account.getDisbursementDetails();
+		Date disbursementDate = details != null && details.getExpectedDisbursementDate() != null ? details
+				.getExpectedDisbursementDate() : new Date();
+		Date firstRepaymentDate = details != null && details.getFirstRepaymentDate() != null ? details
+				.getFirstRepaymentDate() : addPeriods(disbursementDate, unit, periodCount);
+
+		List<Date> dueDates = new ArrayList<Date>(installments);
+		for (int i = 0; i < installments; i++) {
+			// Added to the first date, so that due dates after short months keep the day of month
+			dueDates.add(DateUtils.startOfDay(addPeriods(firstRepaymentDate, unit, periodCount * i)));
+		}
+		return dueDates;
+	}
+
+	/**
+	 * Make the interest rate of each installment, as a fraction of the balance
+	 */
+	private BigDecimal[] makeInterestRates(LoanAccount account, List<Date> dueDates) {
+		BigDecimal rate = account.getInterestRate();
+		if (rate == null && product.getInterestRateSettings() != null) {
+			rate = product.getInterestRateSettings().getDefaultInterestRate();
+		}
+		if (rate == null) {
+			rate = BigDecimal.ZERO;
+		}
+		int daysInYear = getDaysInYear();
+		BigDecimal annualRate = rate.divide(HUNDRED, MATH_CONTEXT).multiply(getChargesPerYear(daysInYear),
+				MATH_CONTEXT);
+
+		BigDecimal[] rates = new BigDecimal[dueDates.size()];
+		if (product.getScheduleInterestDaysCountMethod() == RepaymentInteresDaysCountMethod.USING_ACTUAL_DAYS_COUNT) {
+			DisbursementDetails details = account.getDisbursementDetails();
+			Date previous = DateUtils.startOfDay(details != null && details.getExpectedDisbursementDate() != null ? details
+					.getExpectedDisbursementDate() : new Date());
+			for (int i = 0; i < rates.length; i++) {
+				BigDecimal days = new BigDecimal(countDays(previous, dueDates.get(i)));
+				rates[i] = annualRate.multiply(days, MATH_CONTEXT).divide(new BigDecimal(daysInYear), MATH_CONTEXT);
+				previous = dueDates.get(i);
+			}
+		} else {
+			BigDecimal periodRate = annualRate.multiply(getYearFraction(getPeriodUnit(account),
+					getPeriodCount(account), daysInYear), MATH_CONTEXT);
+			for (int i = 0; i < rates.length; i++) {
+				rates[i] = periodRate;
+			}
+		}
+		return rates;
+	}
+
+	private BigDecimal getChargesPerYear(int daysInYear) {
+		// Null if the product has no interest rate settings
+		InterestChargeFrequencyMethod frequency = product.getInterestChargeFrequency();
+		if (frequency == null) {
+			return BigDecimal.ONE;
+		}
+		switch (frequency) {
+		case ANNUALIZED:
+			return BigDecimal.ONE;
+		case EVERY_MONTH:
+			return new BigDecimal(12);
+		case EVERY_FOUR_WEEKS:
+			return new BigDecimal(daysInYear).divide(new BigDecimal(28), MATH_CONTEXT);
+		case EVERY_WEEK:
+			return new BigDecimal(daysInYear).divide(new BigDecimal(7), MATH_CONTEXT);
+		case EVERY_DAY:
+			return new BigDecimal(daysInYear);
+		default:
+			throw new IllegalArgumentException("Interest charge frequency " + frequency + " is not supported");
+		}
+	}
+
+	private static BigDecimal getYearFraction(RepaymentPeriodUnit unit, int periodCount, int daysInYear) {
+		BigDecimal count = new BigDecimal(periodCount);
+		switch (unit) {
+		case DAYS:
+			return count.divide(new BigDecimal(daysInYear), MATH_CONTEXT);
+		case WEEKS:
+			return count.multiply(new BigDecimal(7)).divide(new BigDecimal(daysInYear), MATH_CONTEXT);
+		case MONTHS:
+			return count.divide(new BigDecimal(12), MATH_CONTEXT);
+		case YEARS:
+			return count;
+		default:
+			throw new IllegalArgumentException("Repayment period unit " + unit + " is not supported");
+		}
+	}
+
+	private int getDaysInYear() {
+		DaysInYearMethod daysInYear = product.getDaysInYear();
+		if (daysInYear == null) {
+			return 365;
+		}
+		switch (daysInYear) {
+		case ACTUAL_364:
+			return 364;
+		case ACTUAL_360:
+		case E30_360:
+			return 360;
+		default:
+			return 365;
+		}
+	}
+
+	/**
+	 * Count the days between two dates, with 30 days months for the 30E/360 convention
+	 */
+	private int countDays(Date from, Date to) {
+		if (product.getDaysInYear() == DaysInYearMethod.E30_360) {
+			Calendar start = Calendar.getInstance();
+			start.setTime(from);
+			Calendar end = Calendar.getInstance();
+			end.setTime(to);
+			return 360 * (end.get(Calendar.YEAR) - start.get(Calendar.YEAR)) + 30
+					* (end.get(Calendar.MONTH) - start.get(Calendar.MONTH))
+					+ Math.min(end.get(Calendar.DAY_OF_MONTH), 30) - Math.min(start.get(Calendar.DAY_OF_MONTH), 30);
+		}
+		// Rounded, as days with a daylight saving time change are shorter or longer
+		return (int) Math.round((to.getTime() - from.getTime()) / (24 * 60 * 60 * 1000.0));
+	}
+
+	private RoundingRepaymentScheduleMethod getRoundingMethod() {
+		return product.getRoundingRepaymentScheduleMethod() != null ? product.getRoundingRepaymentScheduleMethod()
+				: ROUND_REMAINDER_INTO_LAST_REPAYMENT;
+	}
+
+	private RepaymentPeriodUnit getPeriodUnit(LoanAccount account) {
+		if (account.getRepaymentPeriodUnit() != null) {
+			return account.getRepaymentPeriodUnit();
+		}
+		return product.getRepaymentPeriodUnit() != null ? product.getRepaymentPeriodUnit()
+				: RepaymentPeriodUnit.MONTHS;
+	}
+
+	private int getPeriodCount(LoanAccount account) {
+		int periodCount = valueOf(account.getRepaymentPeriodCount(), product.getDefaultRepaymentPeriodCount(), 1);
+		if (periodCount <= 0) {
+			throw new IllegalArgumentException("Repayment period count must be positive");
+		}
+		return periodCount;
+	}
+
+	/**
+	 * Round an installment amount with the product's repayment currency rounding
+	 */
+	private BigDecimal roundInstallment(BigDecimal amount) {
+		RepaymentCurrencyRounding rounding = product.getRepaymentCurrencyRounding();
+		if (rounding == RepaymentCurrencyRounding.ROUND_TO_NEAREST_WHOLE_UNIT) {
+			return amount.setScale(0, RoundingMode.HALF_UP);
+		}
+		if (rounding == RepaymentCurrencyRounding.ROUND_UP_TO_NEAREST_WHOLE_UNIT) {
+			return amount.setScale(0, RoundingMode.CEILING);
+		}
+		return round(amount);
+	}
+
+	/**
+	 * Round an amount to the currency decimals
+	 */
+	private BigDecimal round(BigDecimal amount) {
+		return amount.setScale(currencyDecimals, RoundingMode.HALF_UP);
+	}
+
+	private static int valueOf(Integer value, Integer defaultValue, int fallback) {
+		if (value != null) {
+			return value;
+		}
+		return defaultValue != null ? defaultValue : fallback;
+	}
+
+	private static Date addPeriods(Date date, RepaymentPeriodUnit unit, int count) {
+		Calendar calendar = Calendar.getInstance();
+		calendar.setTime(date);
+		switch (unit) {
+		case DAYS:
+			calendar.add(Calendar.DAY_OF_MONTH, count);
+			break;
+		case WEEKS:
+			calendar.add(Calendar.DAY_OF_MONTH, 7 * count);
+			break;
+		case MONTHS:
+			calendar.add(Calendar.MONTH, count);
+			break;
+		case YEARS:
+			calendar.add(Calendar.YEAR, count);
+			break;
+		default:
+			throw new IllegalArgumentException("Repayment period unit " + unit + " is not supported");
+		}
+		return calendar.getTime();
+	}
+
+	/**
+	 * Get the amount of money or zero
+	 */
+	static BigDecimal getAmount(Money money) {
+		return money == null || money.getAmount() == null ? BigDecimal.ZERO : money.getAmount();
+	}
+}
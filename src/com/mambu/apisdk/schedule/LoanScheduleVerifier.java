@@ -0,0 +1,150 @@
+package com.mambu.apisdk.schedule;
+
+import java.math.BigDecimal;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.logging.Logger;
+
+import com.mambu.apisdk.MambuAPIService;
+import com.mambu.apisdk.exception.MambuApiException;
+import com.mambu.apisdk.schedule.ScheduleVerificationReport.Divergence;
+import com.mambu.apisdk.services.LoansService;
+import com.mambu.apisdk.util.DateUtils;
+import com.mambu.loans.shared.model.LoanAccount;
+import com.mambu.loans.shared.model.LoanProduct;
+import com.mambu.loans.shared.model.Repayment;
+
+/**
+ * Verifies {@link LoanScheduleCalculator} against Mambu: a sample of the simulated scenarios is calculated locally and
+ * with {@link LoansService#getLoanProductSchedule(String, LoanAccount)}, and the number of installments, due dates,
+ * principal and interest are compared. The report lists the differences, so that a product's scenarios can be
+ * simulated locally only when the sample matches
+ *
+ * @author agent
+ *
+ */
+public class LoanScheduleVerifier {
+
+	private final static Logger LOGGER = Logger.getLogger(LoanScheduleVerifier.class.getName());
+
+	/**
+	 * Default accepted difference between local and remote amounts
+	 */
+	public final static BigDecimal DEFAULT_TOLERANCE = new BigDecimal("0.01");
+
+	private final LoansService loansService;
+	private final BigDecimal tolerance;
+
+	/***
+	 * Create schedule verifier with the default tolerance
+	 *
+	 * @param mambuAPIService
+	 *            the service responsible for the connection to the server
+	 */
+	public LoanScheduleVerifier(MambuAPIService mambuAPIService) {
+		this(mambuAPIService, DEFAULT_TOLERANCE);
+	}
+
+	/***
+	 * Create schedule verifier
+	 *
+	 * @param mambuAPIService
+	 *            the service responsible for the connection to the server
+	 * @param tolerance
+	 *            accepted difference between local and remote amounts. Must not be null or negative
+	 */
+	public LoanScheduleVerifier(MambuAPIService mambuAPIService, BigDecimal tolerance) {
+		if (mambuAPIService == null) {
+			throw new IllegalArgumentException("Mambu API Service must not be null");
+		}
+		if (tolerance == null || tolerance.signum() < 0) {
+			throw new IllegalArgumentException("Tolerance must not be null or negative");
+		}
+		this.loansService = new LoansService(mambuAPIService);
+		this.tolerance = tolerance;
+	}
+
+	/***
+	 * Compare the local and remote schedules of a sample of scenarios. The sample is spread evenly over the scenarios
+	 *
+	 * @param product
+	 *            loan product of the scenarios. Must not be null
+	 * @param scenarios
+	 *            loan accounts with the schedule parameters. Must not be null
+	 * @param sampleSize
+	 *            maximum number of scenarios sent to Mambu. Must be positive
+	 * @return verification report
+	 * @throws MambuApiException
+	 *             if a schedule preview request fails
+	 */
+	public ScheduleVerificationReport verify(LoanProduct product, List<LoanAccount> scenarios, int sampleSize)
+			throws MambuApiException {
+		if (product == null || scenarios == null) {
+			throw new IllegalArgumentException("Loan Product and scenarios must not be null");
+		}
+		if (sampleSize <= 0) {
+			throw new IllegalArgumentException("Sample size must be positive");
+		}
+		LoanScheduleCalculator calculator = new LoanScheduleCalculator(product);
+		int checked = Math.min(sampleSize, scenarios.size());
+		List<Divergence> divergences = new ArrayList<Divergence>();
+		for (int i = 0; i < checked; i++) {
+			int scenarioIndex = (int) ((long) i * scenarios.size() / checked);
+			LoanAccount scenario = scenarios.get(scenarioIndex);
+			List<Repayment> remote = loansService.getLoanProductSchedule(product.getId(), scenario);
+			if (remote == null) {
+				remote = new ArrayList<Repayment>();
+			}
+			List<Repayment> local;
+			try {
+				local = calculator.calculate(scenario);
+			} catch (IllegalArgumentException e) {
+				divergences.add(new Divergence(scenarioIndex, -1, "unsupported", e
+						.getMessage(), String.valueOf(remote.size())));
+				continue;
+			}
+			compare(scenarioIndex, local, remote, divergences);
+		}
+		ScheduleVerificationReport report = new ScheduleVerificationReport(checked, divergences);
+		LOGGER.info("Schedule verification for product " + product.getId() + ": " + report);
+		return report;
+	}
+
+	private void compare(int scenarioIndex, List<Repayment> local, List<Repayment> remote,
+			List<Divergence> divergences) {
+		if (local.size() != remote.size()) {
+			divergences.add(new Divergence(scenarioIndex, -1, "installments", String
+					.valueOf(local.size()), String.valueOf(remote.size())));
+			return;
+		}
+		SimpleDateFormat dateFormat = new SimpleDateFormat(DateUtils.DATE_FORMAT);
+		for (int i = 0; i < local.size(); i++) {
+			String localDate = format(dateFormat, local.get(i).getDueDate());
+			String remoteDate = format(dateFormat, remote.get(i).getDueDate());
+			if (!localDate.equals(remoteDate)) {
+				divergences.add(new Divergence(scenarioIndex, i, "dueDate", localDate,
+						remoteDate));
+			}
+			compareAmount(scenarioIndex, i, "principalDue",
+					LoanScheduleCalculator.getAmount(local.get(i).getPrincipalDue()),
+					LoanScheduleCalculator.getAmount(remote.get(i).getPrincipalDue()), divergences);
+			compareAmount(scenarioIndex, i, "interestDue",
+					LoanScheduleCalculator.getAmount(local.get(i).getInterestDue()),
+					LoanScheduleCalculator.getAmount(remote.get(i).getInterestDue()), divergences);
+		}
+	}
+
+	private void compareAmount(int scenarioIndex, int installment, String field, BigDecimal local, BigDecimal remote,
+			List<Divergence> divergences) {
+		if (local.subtract(remote).abs().compareTo(tolerance) > 0) {
+			divergences.add(new Divergence(scenarioIndex, installment, field, local
+					.toPlainString(), remote.toPlainString()));
+		}
+	}
+
+	private static String format(SimpleDateFormat dateFormat, Date date) {
+		return date == null ? "null" : dateFormat.format(date);
+	}
+}
@@ -0,0 +1,117 @@
+package com.mambu.apisdk.schedule;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Result of comparing schedules calculated by {@link LoanScheduleCalculator} with Mambu's schedule previews (see
+ * {@link LoanScheduleVerifier})
+ *
+ * @author agent
+ *
+ */
+public class ScheduleVerificationReport {
+
+	/**
+	 * A difference between a local and a remote schedule
+	 */
+	public static class Divergence {
+		private final int scenarioIndex;
+		private final int installment;
+		private final String field;
+		private final String localValue;
+		private final String remoteValue;
+
+		Divergence(int scenarioIndex, int installment, String field, String localValue, String remoteValue) {
+			this.scenarioIndex = scenarioIndex;
+			this.installment = installment;
+			this.field = field;
+			this.localValue = localValue;
+			this.remoteValue = remoteValue;
+		}
+
+		/***
+		 * @return index of the scenario in the verified scenarios
+		 */
+		public int getScenarioIndex() {
+			return scenarioIndex;
+		}
+
+		/***
+		 * @return index of the installment or -1 for differences of the whole schedule
+		 */
+		public int getInstallment() {
+			return installment;
+		}
+
+		/***
+		 * @return differing field: "installments", "dueDate", "principalDue", "interestDue" or "unsupported" when the
+		 *         calculator does not support the scenario
+		 */
+		public String getField() {
+			return field;
+		}
+
+		public String getLocalValue() {
+			return localValue;
+		}
+
+		public String getRemoteValue() {
+			return remoteValue;
+		}
+
+		@Override
+		public String toString() {
+			return "Scenario " + scenarioIndex + (installment >= 0 ? " installment " + installment : "") + " " + field
+					+ ": local=" + localValue + " remote=" + remoteValue;
+		}
+	}
+
+	private final int scenariosChecked;
+	private final List<Divergence> divergences;
+
+	ScheduleVerificationReport(int scenariosChecked, List<Divergence> divergences) {
+		this.scenariosChecked = scenariosChecked;
+		this.divergences = Collections.unmodifiableList(divergences);
+	}
+
+	/***
+	 * @return number of scenarios compared with Mambu
+	 */
+	public int getScenariosChecked() {
+		return scenariosChecked;
+	}
+
+	/***
+	 * @return all differences found, by scenario and installment
+	 */
+	public List<Divergence> getDivergences() {
+		return divergences;
+	}
+
+	/***
+	 * @return number of scenarios with at least one difference
+	 */
+	public int getDivergentScenarios() {
+		Set<Integer> scenarios = new HashSet<Integer>();
+		for (Divergence divergence : divergences) {
+			scenarios.add(divergence.getScenarioIndex());
+		}
+		return scenarios.size();
+	}
+
+	/***
+	 * @return true if all compared schedules match
+	 */
+	public boolean isConsistent() {
+		return divergences.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return "Checked " + scenariosChecked + " scenarios, " + getDivergentScenarios() + " divergent, "
+				+ divergences.size() + " differences";
+	}
+}
@@ -0,0 +1,336 @@
+package com.mambu.apisdk.services;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Logger;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.mambu.apisdk.MambuAPIService;
+import com.mambu.apisdk.exception.MambuApiException;
+import com.mambu.apisdk.model.Client360;
+import com.mambu.apisdk.model.Client360.Part;
+import com.mambu.apisdk.util.MambuEntityType;
+import com.mambu.apisdk.util.RequestDeadline;
+import com.mambu.clients.shared.model.ClientExpanded;
+import com.mambu.clients.shared.model.GroupExpanded;
+import com.mambu.core.shared.model.Comment;
+import com.mambu.docs.shared.model.Document;
+import com.mambu.linesofcredit.shared.model.LineOfCredit;
+import com.mambu.loans.shared.model.LoanAccount;
+import com.mambu.savings.shared.model.SavingsAccount;
+import com.mambu.tasks.shared.model.Task;
+
+/**
+ * Service class which gets the whole profile of a client or a group, as displayed when a customer is opened: details,
+ * loan and savings accounts, lines of credit, documents, comments and tasks.
+ *
+ * All parts are requested at the same time, so the profile takes as long as the slowest request. The requests share
+ * one deadline: the parts not received by the deadline, and the parts whose request failed, are returned without
+ * values and with their errors (see {@link Client360#getErrors()}). Requests still running at the deadline are
+ * aborted, closing their connections (see {@link RequestDeadline}), and requests still waiting for a thread are not
+ * sent.
+ *
+ * The requests of all profiles are sent by threads owned by the service, up to the maximum number of concurrent
+ * requests. Idle threads are stopped after a minute
+ *
+ * @author agent
+ *
+ */
+public class Client360Service {
+
+	private final static Logger LOGGER = Logger.getLogger(Client360Service.class.getName());
+
+	/**
+	 * Default deadline for all requests of a profile, in milliseconds
+	 */
+	public final static long DEFAULT_TIMEOUT_MILLIS = 10000;
+	/**
+	 * Default maximum number of concurrent requests of all profiles: enough for two profiles at a time
+	 */
+	public final static int DEFAULT_MAX_CONCURRENT_REQUESTS = 2 * Part.values().length;
+
+	private final ClientsService clientsService;
+	private final LoansService loansService;
+	private final SavingsService savingsService;
+	private final LinesOfCreditService linesOfCreditService;
+	private final DocumentsService documentsService;
+	private final CommentsService commentsService;
+	private final TasksService tasksService;
+	private final ThreadPoolExecutor executor;
+
+	/***
+	 * Create a new client 360 service with the default maximum number of concurrent requests
+	 *
+	 * @param mambuAPIService
+	 *            the service responsible for the connection to the server
+	 */
+	@Inject
+	public Client360Service(MambuAPIService mambuAPIService) {
+		this(mambuAPIService, DEFAULT_MAX_CONCURRENT_REQUESTS);
+	}
+
+	/***
+	 * Create a new client 360 service
+	 *
+	 * @param mambuAPIService
+	 *            the service responsible for the connection to the server
+	 * @param maxConcurrentRequests
+	 *            maximum number of concurrent requests of all profiles. Must be positive
+	 */
+	public Client360Service(MambuAPIService mambuAPIService, int maxConcurrentRequests) {
+		if (maxConcurrentRequests <= 0) {
+			throw new IllegalArgumentException("Maximum concurrent requests must be positive");
+		}
+		this.executor = new ThreadPoolExecutor(maxConcurrentRequests, maxConcurrentRequests, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new ThreadFactoryBuilder().setNameFormat("mambu-client360-%d")
+						.setDaemon(true).build());
+		this.executor.allowCoreThreadTimeOut(true);
+		this.clientsService = new ClientsService(mambuAPIService);
+		this.loansService = new LoansService(mambuAPIService);
+		this.savingsService = new SavingsService(mambuAPIService);
+		this.linesOfCreditService = new LinesOfCreditService(mambuAPIService);
+		this.documentsService = new DocumentsService(mambuAPIService);
+		this.commentsService = new CommentsService(mambuAPIService);
+		this.tasksService = new TasksService(mambuAPIService);
+	}
+
+	/***
+	 * Get the profile of a client with the default deadline
+	 *
+	 * @param clientId
+	 *            the encoded key or id of the client. Must not be null
+	 * @return client profile. Parts which could not be read have errors
+	 */
+	public Client360 getClient360(String clientId) {
+		return getClient360(clientId, DEFAULT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	/***
+	 * Get the profile of a client
+	 *
+	 * @param clientId
+	 *            the encoded key or id of the client. Must not be null
+	 * @param timeout
+	 *            deadline for all requests, from the time of the call. Must be positive
+	 * @param unit
+	 *            time unit for the timeout
+	 * @return client profile. Parts which could not be read have errors
+	 */
+	public Client360 getClient360(final String clientId, long timeout, TimeUnit unit) {
+		if (clientId == null) {
+			throw new IllegalArgumentException("Client ID must not be null");
+		}
+		Map<Part, Callable<?>> requests = new EnumMap<Part, Callable<?>>(Part.class);
+		requests.put(Part.DETAILS, new Callable<ClientExpanded>() {
+			@Override
+			public ClientExpanded call() throws MambuApiException {
+				return clientsService.getClientDetails(clientId);
+			}
+		});
+		requests.put(Part.LOAN_ACCOUNTS, new Callable<List<LoanAccount>>() {
+			@Override
+			public List<LoanAccount> call() throws MambuApiException {
+				return loansService.getLoanAccountsForClient(clientId);
+			}
+		});
+		requests.put(Part.SAVINGS_ACCOUNTS, new Callable<List<SavingsAccount>>() {
+			@Override
+			public List<SavingsAccount> call() throws MambuApiException {
+				return savingsService.getSavingsAccountsForClient(clientId);
+			}
+		});
+		requests.put(Part.LINES_OF_CREDIT, new Callable<List<LineOfCredit>>() {
+			@Override
+			public List<LineOfCredit> call() throws MambuApiException {
+				return linesOfCreditService.getClientLinesOfCredit(clientId, null, null);
+			}
+		});
+		requests.put(Part.TASKS, new Callable<List<Task>>() {
+			@Override
+			public List<Task> call() throws MambuApiException {
+				return tasksService.getClientTasks(clientId, null, null, null);
+			}
+		});
+		addOwnedEntityRequests(requests, MambuEntityType.CLIENT, clientId);
+
+		return getProfile(requests, timeout, unit);
+	}
+
+	/***
+	 * Get the profile of a group with the default deadline
+	 *
+	 * @param groupId
+	 *            the encoded key or id of the group. Must not be null
+	 * @return group profile. Parts which could not be read have errors
+	 */
+	public Client360 getGroup360(String groupId) {
+		return getGroup360(groupId, DEFAULT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	/***
+	 * Get the profile of a group. The group details include the group members
+	 *
+	 * @param groupId
+	 *            the encoded key or id of the group. Must not be null
+	 * @param timeout
+	 *            deadline for all requests, from the time of the call. Must be positive
+	 * @param unit
+	 *            time unit for the timeout
+	 * @return group profile. Parts which could not be read have errors
+	 */
+	public Client360 getGroup360(final String groupId, long timeout, TimeUnit unit) {
+		if (groupId == null) {
+			throw new IllegalArgumentException("Group ID must not be null");
+		}
+		Map<Part, Callable<?>> requests = new EnumMap<Part, Callable<?>>(Part.class);
+		requests.put(Part.DETAILS, new Callable<GroupExpanded>() {
+			@Override
+			public GroupExpanded call() throws MambuApiException {
+				return clientsService.getGroupDetails(groupId);
+			}
+		});
+		requests.put(Part.LOAN_ACCOUNTS, new Callable<List<LoanAccount>>() {
+			@Override
+			public List<LoanAccount> call() throws MambuApiException {
+				return loansService.getLoanAccountsForGroup(groupId);
+			}
+		});
+		requests.put(Part.SAVINGS_ACCOUNTS, new Callable<List<SavingsAccount>>() {
+			@Override
+			public List<SavingsAccount> call() throws MambuApiException {
+				return savingsService.getSavingsAccountsForGroup(groupId);
+			}
+		});
+		requests.put(Part.LINES_OF_CREDIT, new Callable<List<LineOfCredit>>() {
+			@Override
+			public List<LineOfCredit> call() throws MambuApiException {
+				return linesOfCreditService.getGroupLinesOfCredit(groupId, null, null);
+			}
+		});
+		requests.put(Part.TASKS, new Callable<List<Task>>() {
+			@Override
+			public List<Task> call() throws MambuApiException {
+				return tasksService.getGroupTasks(groupId, null, null, null);
+			}
+		});
+		addOwnedEntityRequests(requests, MambuEntityType.GROUP, groupId);
+
+		return getProfile(requests, timeout, unit);
+	}
+
+	/**
+	 * Add the requests for the documents and comments of a customer
+	 */
+	private void addOwnedEntityRequests(Map<Part, Callable<?>> requests, final MambuEntityType customerType,
+			final String customerId) {
+		requests.put(Part.DOCUMENTS, new Callable<List<Document>>() {
+			@Override
+			public List<Document> call() throws MambuApiException {
+				return documentsService.getDocuments(customerType, customerId, null, null);
+			}
+		});
+		requests.put(Part.COMMENTS, new Callable<List<Comment>>() {
+			@Override
+			public List<Comment> call() throws MambuApiException {
+				return commentsService.getComments(customerType, customerId, null, null);
+			}
+		});
+	}
+
+	/**
+	 * Send all requests at the same time and collect the results received before the deadline
+	 */
+	private Client360 getProfile(Map<Part, Callable<?>> requests, long timeout, TimeUnit unit) {
+		if (timeout <= 0) {
+			throw new IllegalArgumentException("Timeout must be positive");
+		}
+		final long deadline = System.nanoTime() + unit.toNanos(timeout);
+		Client360 profile = new Client360();
+		Map<Part, Future<?>> futures = new EnumMap<Part, Future<?>>(Part.class);
+		try {
+			for (Map.Entry<Part, Callable<?>> request : requests.entrySet()) {
+				final Callable<?> call = request.getValue();
+				futures.put(request.getKey(), executor.submit(new Callable<Object>() {
+					@Override
+					public Object call() throws Exception {
+						RequestDeadline.setDeadline(deadline);
+						try {
+							return call.call();
+						} finally {
+							RequestDeadline.clearDeadline();
+						}
+					}
+				}));
+			}
+			for (Map.Entry<Part, Future<?>> entry : futures.entrySet()) {
+				Part part = entry.getKey();
+				try {
+					setPart(profile, part, entry.getValue().get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS));
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof Error) {
+						throw (Error) cause;
+					}
+					profile.setError(part, cause instanceof MambuApiException ? (MambuApiException) cause
+							: new MambuApiException((Exception) cause));
+				} catch (TimeoutException e) {
+					profile.setError(part, new MambuApiException(new TimeoutException(part + " not received within "
+							+ unit.toMillis(timeout) + " ms")));
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					profile.setError(part, new MambuApiException(e));
+				}
+			}
+		} finally {
+			// Requests not started yet are not sent. Interrupting the running ones stops waits for throttling permits,
+			// their network I/O is aborted at the deadline
+			for (Future<?> future : futures.values()) {
+				future.cancel(true);
+			}
+		}
+		if (!profile.isComplete()) {
+			LOGGER.warning("Incomplete profile, failed parts: " + profile.getErrors().keySet());
+		}
+		return profile;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static void setPart(Client360 profile, Part part, Object value) {
+		switch (part) {
+		case DETAILS:
+			if (value instanceof GroupExpanded) {
+				profile.setGroup((GroupExpanded) value);
+			} else {
+				profile.setClient((ClientExpanded) value);
+			}
+			break;
+		case LOAN_ACCOUNTS:
+			profile.setLoanAccounts((List<LoanAccount>) value);
+			break;
+		case SAVINGS_ACCOUNTS:
+			profile.setSavingsAccounts((List<SavingsAccount>) value);
+			break;
+		case LINES_OF_CREDIT:
+			profile.setLinesOfCredit((List<LineOfCredit>) value);
+			break;
+		case DOCUMENTS:
+			profile.setDocuments((List<Document>) value);
+			break;
+		case COMMENTS:
+			profile.setComments((List<Comment>) value);
+			break;
+		case TASKS:
+			profile.setTasks((List<Task>) value);
+			break;
+		}
+	}
+}
@@ -3,7 +3,9 @@
  */
 package com.mambu.apisdk.services;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import com.google.inject.Inject;
 import com.mambu.accounts.shared.model.AccountHolderType;
@@ -15,11 +17,14 @@ import com.mambu.apisdk.json.ClientPatchJsonSerializer;
 import com.mambu.apisdk.util.APIData;
 import com.mambu.apisdk.util.ApiDefinition;
 import com.mambu.apisdk.util.ApiDefinition.ApiType;
+import com.mambu.apisdk.util.BulkEntityFetcher;
 import com.mambu.apisdk.util.MambuEntityType;
 import com.mambu.apisdk.util.ParamsMap;
 import com.mambu.apisdk.util.RequestExecutor.ContentType;
 import com.mambu.apisdk.util.ServiceExecutor;
 import com.mambu.apisdk.util.ServiceHelper;
+import com.mambu.clients.shared.data.ClientsDataField;
+import com.mambu.clients.shared.data.GroupsDataField;
 import com.mambu.clients.shared.model.Client;
 import com.mambu.clients.shared.model.ClientExpanded;
 import com.mambu.clients.shared.model.ClientState;
@@ -116,6 +121,8 @@ public class ClientsService {
 	/**
 	 * Requests a client by their Mambu ID
 	 * 
+	 * Note: if an EntityCache is set for the MambuAPIService, the cached entity is returned when available
+	 * 
 	 * @param clientId
 	 * 
 	 * @return the Mambu client model
@@ -123,7 +130,25 @@ public class ClientsService {
 	 * @throws MambuApiException
 	 */
 	public Client getClient(String clientId) throws MambuApiException {
-		return serviceExecutor.execute(getClient, clientId);
+		return serviceExecutor.executeCached(MambuEntityType.CLIENT, getClient, clientId);
+	}
+
+	/**
+	 * Check if a client exists
+	 * 
+	 * Note: if an EntityCache is set for the MambuAPIService, cached clients and cached not found responses are used
+	 * 
+	 * @param clientId
+	 *            the id or the encoded key of the client
+	 * 
+	 * @return true if the client exists, false if Mambu responded with Not Found. Not Found is
+	 *         expected and not logged as an error
+	 * 
+	 * @throws MambuApiException
+	 *             for errors other than Not Found
+	 */
+	public boolean clientExists(String clientId) throws MambuApiException {
+		return serviceExecutor.executeExists(MambuEntityType.CLIENT, getClient, clientId);
 	}
 
 	/**
@@ -555,6 +580,48 @@ public class ClientsService {
 
 	}
 
+	/**
+	 * Get clients by their IDs or encoded keys. IDs are sent in chunks of
+	 * {@link BulkEntityFetcher#MAX_IDS_PER_SEARCH} using searching with filter constraints, so that each chunk
+	 * requires one or two API requests
+	 * 
+	 * @param clientIds
+	 *            IDs or encoded keys. Must not be null
+	 * 
+	 * @return map of clients keyed by the requested IDs, in the requested order. IDs which are not found are
+	 *         omitted
+	 * @throws MambuApiException
+	 */
+	public Map<String, Client> getClients(Collection<String> clientIds) throws MambuApiException {
+		// POST {"filterConstraints":[{"filterSelection":"ID","filterElement":"IN","values":["ID1","ID2"]}]}
+		// /api/{entity}/search?offset=0&limit=100
+
+		ApiDefinition apiDefintition = SearchService.makeApiDefinitionforSearchByFilter(MambuEntityType.CLIENT);
+		return BulkEntityFetcher.searchByIds(serviceExecutor, apiDefintition, ClientsDataField.ID.name(),
+				ClientsDataField.ENCODED_KEY.name(), clientIds);
+	}
+
+	/**
+	 * Get clients by their encoded keys. Keys are sent in chunks of {@link BulkEntityFetcher#MAX_IDS_PER_SEARCH}
+	 * using searching with filter constraints, so that each chunk requires one API request. Use
+	 * {@link #getClients(Collection)} if the keys may also be IDs
+	 * 
+	 * @param encodedKeys
+	 *            encoded keys. Must not be null
+	 * 
+	 * @return map of clients keyed by the requested encoded keys, in the requested order. Keys which are not found
+	 *         are omitted
+	 * @throws MambuApiException
+	 */
+	public Map<String, Client> getClientsByEncodedKeys(Collection<String> encodedKeys) throws MambuApiException {
+		// POST {"filterConstraints":[{"filterSelection":"ENCODED_KEY","filterElement":"IN","values":["K1","K2"]}]}
+		// /api/{entity}/search?offset=0&limit=100
+
+		ApiDefinition apiDefintition = SearchService.makeApiDefinitionforSearchByFilter(MambuEntityType.CLIENT);
+		return BulkEntityFetcher.searchByEncodedKeys(serviceExecutor, apiDefintition,
+				ClientsDataField.ENCODED_KEY.name(), encodedKeys);
+	}
+
 	/**
 	 * Get groups by specifying filter constraints
 	 * 
@@ -581,6 +648,48 @@ public class ClientsService {
 
 	}
 
+	/**
+	 * Get groups by their IDs or encoded keys. IDs are sent in chunks of
+	 * {@link BulkEntityFetcher#MAX_IDS_PER_SEARCH} using searching with filter constraints, so that each chunk
+	 * requires one or two API requests
+	 * 
+	 * @param groupIds
+	 *            IDs or encoded keys. Must not be null
+	 * 
+	 * @return map of groups keyed by the requested IDs, in the requested order. IDs which are not found are
+	 *         omitted
+	 * @throws MambuApiException
+	 */
+	public Map<String, Group> getGroups(Collection<String> groupIds) throws MambuApiException {
+		// POST {"filterConstraints":[{"filterSelection":"ID","filterElement":"IN","values":["ID1","ID2"]}]}
+		// /api/{entity}/search?offset=0&limit=100
+
+		ApiDefinition apiDefintition = SearchService.makeApiDefinitionforSearchByFilter(MambuEntityType.GROUP);
+		return BulkEntityFetcher.searchByIds(serviceExecutor, apiDefintition, GroupsDataField.ID.name(),
+				GroupsDataField.ENCODED_KEY.name(), groupIds);
+	}
+
+	/**
+	 * Get groups by their encoded keys. Keys are sent in chunks of {@link BulkEntityFetcher#MAX_IDS_PER_SEARCH}
+	 * using searching with filter constraints, so that each chunk requires one API request. Use
+	 * {@link #getGroups(Collection)} if the keys may also be IDs
+	 * 
+	 * @param encodedKeys
+	 *            encoded keys. Must not be null
+	 * 
+	 * @return map of groups keyed by the requested encoded keys, in the requested order. Keys which are not found
+	 *         are omitted
+	 * @throws MambuApiException
+	 */
+	public Map<String, Group> getGroupsByEncodedKeys(Collection<String> encodedKeys) throws MambuApiException {
+		// POST {"filterConstraints":[{"filterSelection":"ENCODED_KEY","filterElement":"IN","values":["K1","K2"]}]}
+		// /api/{entity}/search?offset=0&limit=100
+
+		ApiDefinition apiDefintition = SearchService.makeApiDefinitionforSearchByFilter(MambuEntityType.GROUP);
+		return BulkEntityFetcher.searchByEncodedKeys(serviceExecutor, apiDefintition,
+				GroupsDataField.ENCODED_KEY.name(), encodedKeys);
+	}
+
 	/**
 	 * Requests a list of group role names
 	 * 
@@ -1,6 +1,8 @@
 package com.mambu.apisdk.services;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import com.google.inject.Inject;
 import com.mambu.accounts.shared.model.Account.Type;
@@ -8,6 +10,7 @@ import com.mambu.apisdk.MambuAPIService;
 import com.mambu.apisdk.exception.MambuApiException;
 import com.mambu.apisdk.util.ApiDefinition;
 import com.mambu.apisdk.util.ApiDefinition.ApiType;
+import com.mambu.apisdk.util.BulkEntityFetcher;
 import com.mambu.apisdk.util.MambuEntityType;
 import com.mambu.apisdk.util.ServiceExecutor;
 import com.mambu.linesofcredit.shared.model.AccountsFromLineOfCredit;
@@ -95,6 +98,27 @@ public class LinesOfCreditService {
 		return lineOfCreditExpanded.getLineOfCredit();
 	}
 
+	/***
+	 * Get lines of credit by their IDs or encoded keys. Lines of credit cannot be searched with filter constraints:
+	 * they are requested one by one, with at most {@link BulkEntityFetcher#MAX_CONCURRENT_REQUESTS} concurrent
+	 * requests
+	 * 
+	 * @param lineofcreditIds
+	 *            IDs or encoded keys of Lines Of Credit. Must not be null
+	 * 
+	 * @return map of Lines of Credit keyed by the requested IDs, in the requested order. IDs which are not found are
+	 *         omitted
+	 * @throws MambuApiException
+	 */
+	public Map<String, LineOfCredit> getLinesOfCredit(Collection<String> lineofcreditIds) throws MambuApiException {
+		return BulkEntityFetcher.getConcurrently(lineofcreditIds, new BulkEntityFetcher.EntityGetter<LineOfCredit>() {
+			@Override
+			public LineOfCredit getEntity(String lineofcreditId) throws MambuApiException {
+				return getLineOfCredit(lineofcreditId);
+			}
+		});
+	}
+
 	/***
 	 * Get lines of credit for a Client or a Group
 	 * 
@@ -4,7 +4,9 @@
 package com.mambu.apisdk.services;
 
 import java.util.Date;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
@@ -32,6 +34,7 @@ import com.mambu.apisdk.util.APIData;
 import com.mambu.apisdk.util.ApiDefinition;
 import com.mambu.apisdk.util.ApiDefinition.ApiReturnFormat;
 import com.mambu.apisdk.util.ApiDefinition.ApiType;
+import com.mambu.apisdk.util.BulkEntityFetcher;
 import com.mambu.apisdk.util.DateUtils;
 import com.mambu.apisdk.util.MambuEntityType;
 import com.mambu.apisdk.util.ParamsMap;
@@ -43,6 +46,7 @@ import com.mambu.clients.shared.model.Client;
 import com.mambu.clients.shared.model.Group;
 import com.mambu.core.shared.model.CustomFieldValue;
 import com.mambu.core.shared.model.Money;
+import com.mambu.loans.shared.data.LoansDataField;
 import com.mambu.loans.shared.model.CustomPredefinedFee;
 import com.mambu.loans.shared.model.DisbursementDetails;
 import com.mambu.loans.shared.model.LoanAccount;
@@ -170,6 +174,8 @@ public class LoansService {
 	/***
 	 * Get a loan account with full details by its id
 	 * 
+	 * Note: if an EntityCache is set for the MambuAPIService, the cached entity is returned when available
+	 * 
 	 * @param accountId
 	 *            the id of the account
 	 * 
@@ -178,7 +184,25 @@ public class LoansService {
 	 * @throws MambuApiException
 	 */
 	public LoanAccount getLoanAccount(String accountId) throws MambuApiException {
-		return serviceExecutor.execute(getAccount, accountId);
+		return serviceExecutor.executeCached(MambuEntityType.LOAN_ACCOUNT, getAccount, accountId);
+	}
+
+	/***
+	 * Check if a loan account exists
+	 * 
+	 * Note: if an EntityCache is set for the MambuAPIService, cached accounts and cached not found responses are used
+	 * 
+	 * @param accountId
+	 *            the id or the encoded key of the account
+	 * 
+	 * @return true if the account exists, false if Mambu responded with Not Found. Not Found is
+	 *         expected and not logged as an error
+	 * 
+	 * @throws MambuApiException
+	 *             for errors other than Not Found
+	 */
+	public boolean loanAccountExists(String accountId) throws MambuApiException {
+		return serviceExecutor.executeExists(MambuEntityType.LOAN_ACCOUNT, getAccount, accountId);
 	}
 
 	/**
@@ -1259,6 +1283,48 @@ public class LoansService {
 
 	}
 
+	/**
+	 * Get loan accounts by their IDs or encoded keys. IDs are sent in chunks of
+	 * {@link BulkEntityFetcher#MAX_IDS_PER_SEARCH} using searching with filter constraints, so that each chunk
+	 * requires one or two API requests
+	 * 
+	 * @param accountIds
+	 *            IDs or encoded keys. Must not be null
+	 * 
+	 * @return map of loan accounts keyed by the requested IDs, in the requested order. IDs which are not found are
+	 *         omitted
+	 * @throws MambuApiException
+	 */
+	public Map<String, LoanAccount> getLoanAccounts(Collection<String> accountIds) throws MambuApiException {
+		// POST {"filterConstraints":[{"filterSelection":"ACCOUNT_ID","filterElement":"IN","values":["ID1","ID2"]}]}
+		// /api/{entity}/search?offset=0&limit=100
+
+		ApiDefinition apiDefintition = SearchService.makeApiDefinitionforSearchByFilter(MambuEntityType.LOAN_ACCOUNT);
+		return BulkEntityFetcher.searchByIds(serviceExecutor, apiDefintition, LoansDataField.ACCOUNT_ID.name(),
+				LoansDataField.ENCODED_KEY.name(), accountIds);
+	}
+
+	/**
+	 * Get loan accounts by their encoded keys. Keys are sent in chunks of {@link BulkEntityFetcher#MAX_IDS_PER_SEARCH}
+	 * using searching with filter constraints, so that each chunk requires one API request. Use
+	 * {@link #getLoanAccounts(Collection)} if the keys may also be IDs
+	 * 
+	 * @param encodedKeys
+	 *            encoded keys. Must not be null
+	 * 
+	 * @return map of loan accounts keyed by the requested encoded keys, in the requested order. Keys which are not found
+	 *         are omitted
+	 * @throws MambuApiException
+	 */
+	public Map<String, LoanAccount> getLoanAccountsByEncodedKeys(Collection<String> encodedKeys) throws MambuApiException {
+		// POST {"filterConstraints":[{"filterSelection":"ENCODED_KEY","filterElement":"IN","values":["K1","K2"]}]}
+		// /api/{entity}/search?offset=0&limit=100
+
+		ApiDefinition apiDefintition = SearchService.makeApiDefinitionforSearchByFilter(MambuEntityType.LOAN_ACCOUNT);
+		return BulkEntityFetcher.searchByEncodedKeys(serviceExecutor, apiDefintition,
+				LoansDataField.ENCODED_KEY.name(), encodedKeys);
+	}
+
 	// Loan Products
 	/***
 	 * Get a list of Loan Products
@@ -1327,13 +1393,25 @@ public class LoansService {
 		}
 
 		// Add applicable params to the map
-		ParamsMap params = ServiceHelper.makeParamsForLoanSchedule(account, getProductSchedule);
+		ParamsMap params = makeParamsForLoanProductSchedule(account);
 		// The API returns a JSONLoanRepayments object containing a list of repayments
 		JSONLoanRepayments jsonRepayments = serviceExecutor.execute(getProductSchedule, productId, params);
 		// Return list of repayments
 		return jsonRepayments != null ? jsonRepayments.getRepayments() : null;
 	}
 
+	/***
+	 * Make the request parameters sent by {@link #getLoanProductSchedule(String, LoanAccount)} for a loan account.
+	 * Accounts with the same parameters have the same schedule preview
+	 * 
+	 * @param account
+	 *            loan account containing parameters for determining loan schedule. Must not be null
+	 * @return params map with the supported schedule parameters
+	 */
+	public static ParamsMap makeParamsForLoanProductSchedule(LoanAccount account) {
+		return ServiceHelper.makeParamsForLoanSchedule(account, getProductSchedule);
+	}
+
 	/****
 	 * Reverse loans transactions for a loan account
 	 * 
@@ -4,7 +4,9 @@
 package com.mambu.apisdk.services;
 
 import java.util.Date;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import com.google.inject.Inject;
 import com.mambu.accounts.shared.model.Account.Type;
@@ -20,6 +22,7 @@ import com.mambu.apisdk.util.APIData;
 import com.mambu.apisdk.util.ApiDefinition;
 import com.mambu.apisdk.util.ApiDefinition.ApiReturnFormat;
 import com.mambu.apisdk.util.ApiDefinition.ApiType;
+import com.mambu.apisdk.util.BulkEntityFetcher;
 import com.mambu.apisdk.util.MambuEntityType;
 import com.mambu.apisdk.util.ParamsMap;
 import com.mambu.apisdk.util.RequestExecutor.ContentType;
@@ -33,6 +36,7 @@ import com.mambu.core.shared.model.Money;
 import com.mambu.loans.shared.model.CustomPredefinedFee;
 import com.mambu.loans.shared.model.LoanAccount;
 import com.mambu.loans.shared.model.LoanTransactionType;
+import com.mambu.savings.shared.data.SavingsDataField;
 import com.mambu.savings.shared.model.SavingsAccount;
 import com.mambu.savings.shared.model.SavingsProduct;
 import com.mambu.savings.shared.model.SavingsTransaction;
@@ -134,6 +138,8 @@ public class SavingsService {
 	/***
 	 * Get a savings account by its id
 	 * 
+	 * Note: if an EntityCache is set for the MambuAPIService, the cached entity is returned when available
+	 * 
 	 * @param accountId
 	 *            the id of the account
 	 * 
@@ -143,7 +149,25 @@ public class SavingsService {
 	 * 
 	 */
 	public SavingsAccount getSavingsAccount(String accountId) throws MambuApiException {
-		return serviceExecutor.execute(getAccount, accountId);
+		return serviceExecutor.executeCached(MambuEntityType.SAVINGS_ACCOUNT, getAccount, accountId);
+	}
+
+	/***
+	 * Check if a savings account exists
+	 * 
+	 * Note: if an EntityCache is set for the MambuAPIService, cached accounts and cached not found responses are used
+	 * 
+	 * @param accountId
+	 *            the id or the encoded key of the account
+	 * 
+	 * @return true if the account exists, false if Mambu responded with Not Found. Not Found is
+	 *         expected and not logged as an error
+	 * 
+	 * @throws MambuApiException
+	 *             for errors other than Not Found
+	 */
+	public boolean savingsAccountExists(String accountId) throws MambuApiException {
+		return serviceExecutor.executeExists(MambuEntityType.SAVINGS_ACCOUNT, getAccount, accountId);
 	}
 
 	/***
@@ -788,6 +812,51 @@ public class SavingsService {
 
 	}
 
+	/**
+	 * Get savings accounts by their IDs or encoded keys. IDs are sent in chunks of
+	 * {@link BulkEntityFetcher#MAX_IDS_PER_SEARCH} using searching with filter constraints, so that each chunk
+	 * requires one or two API requests
+	 * 
+	 * @param accountIds
+	 *            IDs or encoded keys. Must not be null
+	 * 
+	 * @return map of savings accounts keyed by the requested IDs, in the requested order. IDs which are not found are
+	 *         omitted
+	 * @throws MambuApiException
+	 */
+	public Map<String, SavingsAccount> getSavingsAccounts(Collection<String> accountIds) throws MambuApiException {
+		// POST {"filterConstraints":[{"filterSelection":"ACCOUNT_ID","filterElement":"IN","values":["ID1","ID2"]}]}
+		// /api/{entity}/search?offset=0&limit=100
+
+		ApiDefinition apiDefintition = SearchService
+				.makeApiDefinitionforSearchByFilter(MambuEntityType.SAVINGS_ACCOUNT);
+		return BulkEntityFetcher.searchByIds(serviceExecutor, apiDefintition, SavingsDataField.ACCOUNT_ID.name(),
+				SavingsDataField.ENCODED_KEY.name(), accountIds);
+	}
+
+	/**
+	 * Get savings accounts by their encoded keys. Keys are sent in chunks of {@link BulkEntityFetcher#MAX_IDS_PER_SEARCH}
+	 * using searching with filter constraints, so that each chunk requires one API request. Use
+	 * {@link #getSavingsAccounts(Collection)} if the keys may also be IDs
+	 * 
+	 * @param encodedKeys
+	 *            encoded keys. Must not be null
+	 * 
+	 * @return map of savings accounts keyed by the requested encoded keys, in the requested order. Keys which are not
+	 *         found are omitted
+	 * @throws MambuApiException
+	 */
+	public Map<String, SavingsAccount> getSavingsAccountsByEncodedKeys(Collection<String> encodedKeys)
+			throws MambuApiException {
+		// POST {"filterConstraints":[{"filterSelection":"ENCODED_KEY","filterElement":"IN","values":["K1","K2"]}]}
+		// /api/{entity}/search?offset=0&limit=100
+
+		ApiDefinition apiDefintition = SearchService
+				.makeApiDefinitionforSearchByFilter(MambuEntityType.SAVINGS_ACCOUNT);
+		return BulkEntityFetcher.searchByEncodedKeys(serviceExecutor, apiDefintition,
+				SavingsDataField.ENCODED_KEY.name(), encodedKeys);
+	}
+
 	// Savings Products
 	/***
 	 * Get a list of Savings Products
@@ -1,7 +1,9 @@
 package com.mambu.apisdk.services;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.google.inject.Inject;
 import com.mambu.api.server.handler.customviews.model.ApiViewType;
@@ -11,6 +13,7 @@ import com.mambu.apisdk.util.APIData;
 import com.mambu.apisdk.util.APIData.UserBranchAssignmentType;
 import com.mambu.apisdk.util.ApiDefinition;
 import com.mambu.apisdk.util.ApiDefinition.ApiType;
+import com.mambu.apisdk.util.BulkEntityFetcher;
 import com.mambu.apisdk.util.ParamsMap;
 import com.mambu.apisdk.util.ServiceExecutor;
 import com.mambu.core.shared.data.DataViewType;
@@ -176,6 +179,26 @@ public class UsersService {
 		return getUserById(userName);
 	}
 
+	/**
+	 * Get users by their IDs, usernames or encoded keys. Users cannot be searched with filter constraints: the users
+	 * are requested one by one, with at most {@link BulkEntityFetcher#MAX_CONCURRENT_REQUESTS} concurrent requests
+	 * 
+	 * @param userIds
+	 *            user IDs, usernames or encoded keys. Must not be null
+	 * 
+	 * @return map of users keyed by the requested IDs, in the requested order. IDs which are not found are omitted
+	 * 
+	 * @throws MambuApiException
+	 */
+	public Map<String, User> getUsers(Collection<String> userIds) throws MambuApiException {
+		return BulkEntityFetcher.getConcurrently(userIds, new BulkEntityFetcher.EntityGetter<User>() {
+			@Override
+			public User getEntity(String userId) throws MambuApiException {
+				return getUserById(userId);
+			}
+		});
+	}
+
 	/**
 	 * Get Custom Views for the user by user's userName and apiViewType.
 	 * 
@@ -0,0 +1,211 @@
+package com.mambu.apisdk.sync;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.mambu.accounts.shared.model.Account;
+
+/**
+ * In-memory store of accounts keyed by their encoded keys, with secondary indexes on the assigned branch, centre and
+ * credit officer, the account state and the product. Used by {@link PortfolioReplica}.
+ *
+ * Accounts are kept in the order they were added or last replaced. The store can be read and updated concurrently
+ *
+ * @author agent
+ *
+ */
+class AccountIndex<T extends Account> {
+
+	private final Map<String, T> accounts = new LinkedHashMap<String, T>();
+	private final Map<String, Set<String>> byBranch = new HashMap<String, Set<String>>();
+	private final Map<String, Set<String>> byCentre = new HashMap<String, Set<String>>();
+	private final Map<String, Set<String>> byCreditOfficer = new HashMap<String, Set<String>>();
+	private final Map<String, Set<String>> byState = new HashMap<String, Set<String>>();
+	private final Map<String, Set<String>> byProduct = new HashMap<String, Set<String>>();
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/**
+	 * Replace all accounts
+	 */
+	void replaceAll(Collection<T> newAccounts) {
+		lock.writeLock().lock();
+		try {
+			accounts.clear();
+			byBranch.clear();
+			byCentre.clear();
+			byCreditOfficer.clear();
+			byState.clear();
+			byProduct.clear();
+			for (T account : newAccounts) {
+				putUnlocked(account);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Add or replace account
+	 */
+	void put(T account) {
+		lock.writeLock().lock();
+		try {
+			putUnlocked(account);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Remove account
+	 */
+	void remove(String encodedKey) {
+		lock.writeLock().lock();
+		try {
+			removeUnlocked(encodedKey);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	T get(String encodedKey) {
+		lock.readLock().lock();
+		try {
+			return accounts.get(encodedKey);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	int size() {
+		lock.readLock().lock();
+		try {
+			return accounts.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Get accounts matching all the specified criteria. Null criteria match any account
+	 *
+	 * @param offset
+	 *            number of matching accounts skipped
+	 * @param limit
+	 *            maximum number of accounts returned or -1 for all
+	 */
+	List<T> query(String branchKey, String centreKey, String creditOfficerKey, String accountState,
+			String productKey, int offset, int limit) {
+		lock.readLock().lock();
+		try {
+			// Scan the smallest index matching one of the criteria and check the other criteria on each account
+			Collection<String> candidates = null;
+			candidates = smallest(candidates, byBranch, branchKey);
+			candidates = smallest(candidates, byCentre, centreKey);
+			candidates = smallest(candidates, byCreditOfficer, creditOfficerKey);
+			candidates = smallest(candidates, byState, accountState);
+			candidates = smallest(candidates, byProduct, productKey);
+			if (candidates == null) {
+				candidates = accounts.keySet();
+			}
+			List<T> result = new ArrayList<T>();
+			int skipped = 0;
+			for (String encodedKey : candidates) {
+				if (limit >= 0 && result.size() >= limit) {
+					break;
+				}
+				T account = accounts.get(encodedKey);
+				if (matches(branchKey, account.getAssignedBranchKey())
+						&& matches(centreKey, account.getAssignedCentreKey())
+						&& matches(creditOfficerKey, account.getAssignedUserKey())
+						&& matches(accountState, getState(account)) && matches(productKey, account.getProductTypeKey())) {
+					if (skipped < offset) {
+						skipped++;
+					} else {
+						result.add(account);
+					}
+				}
+			}
+			return result;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private void putUnlocked(T account) {
+		String encodedKey = account.getEncodedKey();
+		// Remove first, so that the indexes and the order stay consistent
+		removeUnlocked(encodedKey);
+		accounts.put(encodedKey, account);
+		addToIndex(byBranch, account.getAssignedBranchKey(), encodedKey);
+		addToIndex(byCentre, account.getAssignedCentreKey(), encodedKey);
+		addToIndex(byCreditOfficer, account.getAssignedUserKey(), encodedKey);
+		addToIndex(byState, getState(account), encodedKey);
+		addToIndex(byProduct, account.getProductTypeKey(), encodedKey);
+	}
+
+	private void removeUnlocked(String encodedKey) {
+		T account = accounts.remove(encodedKey);
+		if (account == null) {
+			return;
+		}
+		removeFromIndex(byBranch, account.getAssignedBranchKey(), encodedKey);
+		removeFromIndex(byCentre, account.getAssignedCentreKey(), encodedKey);
+		removeFromIndex(byCreditOfficer, account.getAssignedUserKey(), encodedKey);
+		removeFromIndex(byState, getState(account), encodedKey);
+		removeFromIndex(byProduct, account.getProductTypeKey(), encodedKey);
+	}
+
+	private static String getState(Account account) {
+		return account.getAccountState() == null ? null : account.getAccountState().name();
+	}
+
+	private static boolean matches(String criterion, String value) {
+		return criterion == null || criterion.equals(value);
+	}
+
+	private static Collection<String> smallest(Collection<String> candidates, Map<String, Set<String>> index,
+			String value) {
+		if (value == null) {
+			return candidates;
+		}
+		Set<String> matching = index.get(value);
+		if (matching == null) {
+			return new LinkedHashSet<String>();
+		}
+		return candidates == null || matching.size() < candidates.size() ? matching : candidates;
+	}
+
+	private static void addToIndex(Map<String, Set<String>> index, String value, String encodedKey) {
+		if (value == null) {
+			return;
+		}
+		Set<String> keys = index.get(value);
+		if (keys == null) {
+			keys = new LinkedHashSet<String>();
+			index.put(value, keys);
+		}
+		keys.add(encodedKey);
+	}
+
+	private static void removeFromIndex(Map<String, Set<String>> index, String value, String encodedKey) {
+		if (value == null) {
+			return;
+		}
+		Set<String> keys = index.get(value);
+		if (keys != null) {
+			keys.remove(encodedKey);
+			if (keys.isEmpty()) {
+				index.remove(value);
+			}
+		}
+	}
+}
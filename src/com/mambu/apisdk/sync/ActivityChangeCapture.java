@@ -0,0 +1,308 @@
+package com.mambu.apisdk.sync;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import com.mambu.activityfeed.shared.model.Activity;
+import com.mambu.api.server.handler.activityfeed.model.JSONActivity;
+import com.mambu.apisdk.MambuAPIService;
+import com.mambu.apisdk.exception.MambuApiException;
+import com.mambu.apisdk.services.ActivitiesService;
+import com.mambu.apisdk.services.ClientsService;
+import com.mambu.apisdk.services.LoansService;
+import com.mambu.apisdk.services.SavingsService;
+import com.mambu.apisdk.util.BulkEntityFetcher;
+import com.mambu.apisdk.util.DateUtils;
+import com.mambu.apisdk.util.MambuEntityType;
+
+/**
+ * Incremental change capture based on the Mambu activity feed. See
+ * {@link ActivitiesService#getActivities(Date, Date)}.
+ *
+ * Each {@link #poll()} reads the activities recorded since the stored checkpoint, in windows of the configured number of
+ * days, and maps each activity to the entity it affects (a loan account, a savings account, a client or a group).
+ * Only the affected entities are then fetched again, in batches, and delivered to the {@link ChangeListener}.
+ *
+ * Activities can only be requested by date, so the last day read is read again with the next poll: activities which
+ * were already processed are recognised by their encoded keys, which are stored with the checkpoint. The checkpoint is
+ * stored after the listener has processed the changes of each window, so changes are delivered at least once
+ *
+ * Example:
+ *
+ * <pre>
+ * ActivityChangeCapture capture = new ActivityChangeCapture(mambuAPIService, new CheckpointStore(file), startDate,
+ * 		listener);
+ * capture.poll(); // run periodically
+ * </pre>
+ *
+ * @author agent
+ *
+ */
+public class ActivityChangeCapture {
+
+	private final static Logger LOGGER = Logger.getLogger(ActivityChangeCapture.class.getName());
+
+	/**
+	 * Name of the checkpoint stored in the checkpoint store
+	 */
+	public final static String CHECKPOINT_NAME = "activities";
+	/**
+	 * Default number of days of activities requested at once
+	 */
+	public final static int DEFAULT_WINDOW_DAYS = 1;
+
+	private final ActivitiesService activitiesService;
+	private final ClientsService clientsService;
+	private final LoansService loansService;
+	private final SavingsService savingsService;
+	private final CheckpointStore checkpointStore;
+	private final Date initialDate;
+	private final ChangeListener listener;
+
+	private int windowDays = DEFAULT_WINDOW_DAYS;
+	private Set<MambuEntityType> entityTypes = EnumSet.of(MambuEntityType.CLIENT, MambuEntityType.GROUP,
+			MambuEntityType.LOAN_ACCOUNT, MambuEntityType.SAVINGS_ACCOUNT);
+	private int batchSize = BulkEntityFetcher.MAX_IDS_PER_SEARCH;
+
+	/***
+	 * Create activity change capture
+	 *
+	 * @param mambuAPIService
+	 *            the service responsible for the connection to the server
+	 * @param checkpointStore
+	 *            store for the checkpoint. Must not be null
+	 * @param initialDate
+	 *            date of the first activities read when no checkpoint is stored yet. Must not be null
+	 * @param listener
+	 *            listener for the detected changes. Must not be null
+	 */
+	public ActivityChangeCapture(MambuAPIService mambuAPIService, CheckpointStore checkpointStore, Date initialDate,
+			ChangeListener listener) {
+		if (mambuAPIService == null) {
+			throw new IllegalArgumentException("Mambu API Service must not be null");
+		}
+		if (checkpointStore == null || initialDate == null || listener == null) {
+			throw new IllegalArgumentException("Checkpoint store, initial date and listener must not be null");
+		}
+		this.activitiesService = new ActivitiesService(mambuAPIService);
+		this.clientsService = new ClientsService(mambuAPIService);
+		this.loansService = new LoansService(mambuAPIService);
+		this.savingsService = new SavingsService(mambuAPIService);
+		this.checkpointStore = checkpointStore;
+		this.initialDate = DateUtils.startOfDay(initialDate);
+		this.listener = listener;
+	}
+
+	/***
+	 * Set the number of days of activities requested at once
+	 *
+	 * @param windowDays
+	 *            number of days. Must be positive
+	 */
+	public void setWindowDays(int windowDays) {
+		if (windowDays <= 0) {
+			throw new IllegalArgumentException("Window days must be positive");
+		}
+		this.windowDays = windowDays;
+	}
+
+	/***
+	 * Set the maximum number of entities fetched and delivered to the listener at once
+	 *
+	 * @param batchSize
+	 *            batch size. Must be positive
+	 */
+	public void setBatchSize(int batchSize) {
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException("Batch size must be positive");
+		}
+		this.batchSize = batchSize;
+	}
+
+	/***
+	 * Set the types of the entities for which changes are delivered. Changes of clients, groups, loan accounts and
+	 * savings accounts are delivered by default
+	 *
+	 * @param entityTypes
+	 *            any of CLIENT, GROUP, LOAN_ACCOUNT and SAVINGS_ACCOUNT
+	 */
+	public void setEntityTypes(MambuEntityType... entityTypes) {
+		if (entityTypes == null || entityTypes.length == 0) {
+			throw new IllegalArgumentException("At least one entity type is required");
+		}
+		Set<MambuEntityType> types = EnumSet.noneOf(MambuEntityType.class);
+		for (MambuEntityType entityType : entityTypes) {
+			if (entityType != MambuEntityType.CLIENT && entityType != MambuEntityType.GROUP
+					&& entityType != MambuEntityType.LOAN_ACCOUNT && entityType != MambuEntityType.SAVINGS_ACCOUNT) {
+				throw new IllegalArgumentException("Changes are not supported for " + entityType);
+			}
+			types.add(entityType);
+		}
+		this.entityTypes = types;
+	}
+
+	/***
+	 * Get the current checkpoint
+	 *
+	 * @return stored checkpoint or a checkpoint at the initial date if none is stored yet
+	 */
+	public SyncCheckpoint getCheckpoint() {
+		SyncCheckpoint checkpoint = checkpointStore.get(CHECKPOINT_NAME);
+		return checkpoint != null ? checkpoint : new SyncCheckpoint(initialDate, null);
+	}
+
+	/***
+	 * Read the activities recorded since the checkpoint up to today and deliver the changed entities to the listener
+	 *
+	 * @return number of changes delivered to the listener
+	 * @throws MambuApiException
+	 *             if activities or entities cannot be read. The checkpoint of the windows processed before the failure
+	 *             is stored
+	 * @throws IOException
+	 *             if the checkpoint cannot be stored
+	 */
+	public int poll() throws MambuApiException, IOException {
+		SyncCheckpoint checkpoint = getCheckpoint();
+		Date today = DateUtils.startOfDay(new Date());
+		Date from = DateUtils.startOfDay(checkpoint.getDate());
+		Set<String> processedKeys = checkpoint.getProcessedKeys();
+		int delivered = 0;
+		while (!from.after(today)) {
+			Date to = DateUtils.addDays(from, windowDays - 1);
+			if (to.after(today)) {
+				to = today;
+			}
+			List<JSONActivity> activities = activitiesService.getActivities(from, to);
+
+			// Map new activities to the entities they affect, skipping the activities processed with an earlier poll
+			Map<MambuEntityType, Map<String, List<JSONActivity>>> changes = new LinkedHashMap<MambuEntityType, Map<String, List<JSONActivity>>>();
+			Set<String> windowKeys = new HashSet<String>();
+			// Keys of the last day only: it is the only day read again with the next poll
+			Set<String> lastDayKeys = new LinkedHashSet<String>();
+			int newActivities = 0;
+			for (JSONActivity jsonActivity : activities) {
+				Activity activity = jsonActivity.getActivity();
+				if (activity == null || activity.getEncodedKey() == null) {
+					continue;
+				}
+				String activityKey = activity.getEncodedKey();
+				if (activity.getTimestamp() == null || !activity.getTimestamp().before(to)) {
+					lastDayKeys.add(activityKey);
+				}
+				if (processedKeys.contains(activityKey) || !windowKeys.add(activityKey)) {
+					continue;
+				}
+				newActivities++;
+				MambuEntityType entityType = getAffectedEntityType(activity);
+				if (entityType == null || !entityTypes.contains(entityType)) {
+					continue;
+				}
+				if (!changes.containsKey(entityType)) {
+					changes.put(entityType, new LinkedHashMap<String, List<JSONActivity>>());
+				}
+				Map<String, List<JSONActivity>> entities = changes.get(entityType);
+				String entityKey = getAffectedEntityKey(activity, entityType);
+				if (!entities.containsKey(entityKey)) {
+					entities.put(entityKey, new ArrayList<JSONActivity>());
+				}
+				entities.get(entityKey).add(jsonActivity);
+			}
+			LOGGER.fine("Activities from " + from + " to " + to + ": " + activities.size() + " read, " + newActivities
+					+ " new");
+
+			for (Map.Entry<MambuEntityType, Map<String, List<JSONActivity>>> entry : changes.entrySet()) {
+				delivered += deliver(entry.getKey(), entry.getValue());
+			}
+
+			// The last day is read again with the next poll: it can still get new activities
+			checkpoint = new SyncCheckpoint(to, lastDayKeys);
+			checkpointStore.put(CHECKPOINT_NAME, checkpoint);
+			processedKeys = Collections.emptySet();
+			from = DateUtils.addDays(to, 1);
+		}
+		return delivered;
+	}
+
+	/***
+	 * Get the type of the entity affected by an activity. Account activities (including transactions) affect the
+	 * account, other client and group activities affect the client or the group
+	 *
+	 * @param activity
+	 *            activity
+	 * @return CLIENT, GROUP, LOAN_ACCOUNT or SAVINGS_ACCOUNT or null if the activity does not affect any of these
+	 *         entities
+	 */
+	static MambuEntityType getAffectedEntityType(Activity activity) {
+		if (activity.getLoanAccountKey() != null) {
+			return MambuEntityType.LOAN_ACCOUNT;
+		}
+		if (activity.getSavingsAccountKey() != null) {
+			return MambuEntityType.SAVINGS_ACCOUNT;
+		}
+		if (activity.getClientKey() != null) {
+			return MambuEntityType.CLIENT;
+		}
+		if (activity.getGroupKey() != null) {
+			return MambuEntityType.GROUP;
+		}
+		return null;
+	}
+
+	static String getAffectedEntityKey(Activity activity, MambuEntityType entityType) {
+		switch (entityType) {
+		case LOAN_ACCOUNT:
+			return activity.getLoanAccountKey();
+		case SAVINGS_ACCOUNT:
+			return activity.getSavingsAccountKey();
+		case CLIENT:
+			return activity.getClientKey();
+		case GROUP:
+			return activity.getGroupKey();
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Fetch the changed entities of a type in batches and deliver them to the listener
+	 */
+	private int deliver(MambuEntityType entityType, Map<String, List<JSONActivity>> activitiesByKey)
+			throws MambuApiException {
+		List<String> keys = new ArrayList<String>(activitiesByKey.keySet());
+		for (int start = 0; start < keys.size(); start += batchSize) {
+			List<String> batch = keys.subList(start, Math.min(start + batchSize, keys.size()));
+			Map<String, ?> entities = fetch(entityType, batch);
+			List<EntityChange> changes = new ArrayList<EntityChange>(batch.size());
+			for (String key : batch) {
+				changes.add(new EntityChange(entityType, key, entities.get(key), activitiesByKey.get(key)));
+			}
+			listener.onChanges(changes);
+		}
+		return keys.size();
+	}
+
+	private Map<String, ?> fetch(MambuEntityType entityType, List<String> encodedKeys) throws MambuApiException {
+		switch (entityType) {
+		case LOAN_ACCOUNT:
+			return loansService.getLoanAccountsByEncodedKeys(encodedKeys);
+		case SAVINGS_ACCOUNT:
+			return savingsService.getSavingsAccountsByEncodedKeys(encodedKeys);
+		case CLIENT:
+			return clientsService.getClientsByEncodedKeys(encodedKeys);
+		case GROUP:
+			return clientsService.getGroupsByEncodedKeys(encodedKeys);
+		default:
+			throw new IllegalArgumentException("Changes are not supported for " + entityType);
+		}
+	}
+}
@@ -0,0 +1,23 @@
+package com.mambu.apisdk.sync;
+
+import java.util.List;
+
+/**
+ * Receives the entity changes detected by an incremental synchronisation.
+ *
+ * Changes are delivered at least once: the checkpoint is stored only after the listener returns, so if the listener
+ * throws an exception (or the application stops) the same changes are delivered again with the next poll
+ *
+ * @author agent
+ *
+ */
+public interface ChangeListener {
+
+	/***
+	 * Process a batch of changes
+	 *
+	 * @param changes
+	 *            changed entities. Each entity is included at most once per batch
+	 */
+	void onChanges(List<EntityChange> changes);
+}
@@ -0,0 +1,139 @@
+package com.mambu.apisdk.sync;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Durable storage of {@link SyncCheckpoint}s in a properties file. Each checkpoint is stored with a name, so that one
+ * file can hold the checkpoints of several synchronisations (for example one per entity type).
+ *
+ * The file is rewritten each time a checkpoint is stored: it is written to a temporary file first and then moved in
+ * place, so that a crash never leaves a partially written checkpoint. A store created without a file keeps the
+ * checkpoints in memory only
+ *
+ * @author agent
+ *
+ */
+public class CheckpointStore {
+
+	private final static String DATE_SUFFIX = ".date";
+	private final static String KEYS_SUFFIX = ".keys";
+
+	private final File file;
+	private final Properties properties = new Properties();
+
+	/***
+	 * Create checkpoint store keeping the checkpoints in memory only
+	 */
+	public CheckpointStore() {
+		this.file = null;
+	}
+
+	/***
+	 * Create checkpoint store and load the checkpoints stored in the file
+	 *
+	 * @param file
+	 *            checkpoint file. Must not be null. The file is created when the first checkpoint is stored
+	 * @throws IOException
+	 *             if the existing file cannot be read
+	 */
+	public CheckpointStore(File file) throws IOException {
+		if (file == null) {
+			throw new IllegalArgumentException("Checkpoint file must not be null");
+		}
+		this.file = file;
+		if (file.exists()) {
+			InputStream in = new FileInputStream(file);
+			try {
+				properties.load(in);
+			} finally {
+				in.close();
+			}
+		}
+	}
+
+	/***
+	 * Get stored checkpoint
+	 *
+	 * @param name
+	 *            checkpoint name
+	 * @return checkpoint or null if no checkpoint was stored with this name
+	 */
+	public synchronized SyncCheckpoint get(String name) {
+		String date = properties.getProperty(name + DATE_SUFFIX);
+		if (date == null) {
+			return null;
+		}
+		Set<String> keys = new LinkedHashSet<String>();
+		String storedKeys = properties.getProperty(name + KEYS_SUFFIX, "");
+		for (String key : storedKeys.split(",")) {
+			if (!key.isEmpty()) {
+				keys.add(key);
+			}
+		}
+		return new SyncCheckpoint(new Date(Long.parseLong(date)), keys);
+	}
+
+	/***
+	 * Store checkpoint and write all checkpoints to the file
+	 *
+	 * @param name
+	 *            checkpoint name
+	 * @param checkpoint
+	 *            checkpoint. Must not be null
+	 * @throws IOException
+	 *             if the file cannot be written. The previously stored file is left unchanged
+	 */
+	public synchronized void put(String name, SyncCheckpoint checkpoint) throws IOException {
+		if (name == null || checkpoint == null) {
+			throw new IllegalArgumentException("Checkpoint name and checkpoint must not be null");
+		}
+		StringBuilder keys = new StringBuilder();
+		for (String key : checkpoint.getProcessedKeys()) {
+			if (keys.length() > 0) {
+				keys.append(',');
+			}
+			keys.append(key);
+		}
+		properties.setProperty(name + DATE_SUFFIX, String.valueOf(checkpoint.getDate().getTime()));
+		properties.setProperty(name + KEYS_SUFFIX, keys.toString());
+		if (file == null) {
+			return;
+		}
+
+		File parent = file.getAbsoluteFile().getParentFile();
+		File tempFile = File.createTempFile(file.getName(), ".tmp", parent);
+		try {
+			OutputStream out = new FileOutputStream(tempFile);
+			try {
+				properties.store(out, "Mambu sync checkpoints");
+			} finally {
+				out.close();
+			}
+			Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			if (tempFile.exists()) {
+				tempFile.delete();
+			}
+		}
+	}
+
+	/***
+	 * Get checkpoint file
+	 *
+	 * @return checkpoint file or null if checkpoints are kept in memory only
+	 */
+	public File getFile() {
+		return file;
+	}
+}
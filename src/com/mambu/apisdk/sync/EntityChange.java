@@ -0,0 +1,74 @@
+package com.mambu.apisdk.sync;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.mambu.api.server.handler.activityfeed.model.JSONActivity;
+import com.mambu.apisdk.util.MambuEntityType;
+
+/**
+ * Change of a Mambu entity detected by an incremental synchronisation, with the current version of the entity
+ *
+ * @author agent
+ *
+ */
+public class EntityChange {
+
+	private final MambuEntityType entityType;
+	private final String encodedKey;
+	private final Object entity;
+	private final List<JSONActivity> activities;
+
+	EntityChange(MambuEntityType entityType, String encodedKey, Object entity, List<JSONActivity> activities) {
+		this.entityType = entityType;
+		this.encodedKey = encodedKey;
+		this.entity = entity;
+		this.activities = activities == null ? Collections.<JSONActivity> emptyList() : Collections
+				.unmodifiableList(activities);
+	}
+
+	/***
+	 * Get the type of the changed entity
+	 *
+	 * @return CLIENT, GROUP, LOAN_ACCOUNT or SAVINGS_ACCOUNT
+	 */
+	public MambuEntityType getEntityType() {
+		return entityType;
+	}
+
+	public String getEncodedKey() {
+		return encodedKey;
+	}
+
+	/***
+	 * Get the current version of the changed entity
+	 *
+	 * @return entity (Client, Group, LoanAccount or SavingsAccount) or null if the entity no longer exists
+	 */
+	public Object getEntity() {
+		return entity;
+	}
+
+	/***
+	 * Check if the entity no longer exists
+	 *
+	 * @return true if the entity was deleted
+	 */
+	public boolean isDeleted() {
+		return entity == null;
+	}
+
+	/***
+	 * Get the activities which reported the change
+	 *
+	 * @return activities, in the order they were read. Empty if the change was not detected with activities
+	 */
+	public List<JSONActivity> getActivities() {
+		return activities;
+	}
+
+	@Override
+	public String toString() {
+		return entityType + " " + encodedKey + (isDeleted() ? " deleted" : "") + " activities=" + activities.size();
+	}
+}
@@ -0,0 +1,317 @@
+package com.mambu.apisdk.sync;
+
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import com.mambu.api.server.handler.core.dynamicsearch.model.JSONFilterConstraint;
+import com.mambu.api.server.handler.core.dynamicsearch.model.JSONFilterConstraints;
+import com.mambu.api.server.handler.core.dynamicsearch.model.JSONSortDetails;
+import com.mambu.apisdk.MambuAPIService;
+import com.mambu.apisdk.exception.MambuApiException;
+import com.mambu.apisdk.services.ClientsService;
+import com.mambu.apisdk.services.LoansService;
+import com.mambu.apisdk.services.SavingsService;
+import com.mambu.apisdk.util.DateUtils;
+import com.mambu.apisdk.util.MambuEntityType;
+import com.mambu.clients.shared.data.ClientsDataField;
+import com.mambu.clients.shared.model.Client;
+import com.mambu.core.shared.data.DataFieldType;
+import com.mambu.core.shared.data.DataItemType;
+import com.mambu.core.shared.data.FilterElement;
+import com.mambu.core.shared.data.SortingOrder;
+import com.mambu.loans.shared.data.LoansDataField;
+import com.mambu.loans.shared.model.LoanAccount;
+import com.mambu.savings.shared.data.SavingsDataField;
+import com.mambu.savings.shared.model.SavingsAccount;
+
+/**
+ * Incremental synchronisation of clients, loan accounts or savings accounts based on their last modified date.
+ *
+ * Each {@link #poll()} searches for the entities modified since the stored checkpoint, using a filter constraint on
+ * LAST_MODIFIED_DATE and sorting by it, and reads the results page by page with
+ * {@link ClientsService#getClients(JSONFilterConstraints, String, String)},
+ * {@link LoansService#getLoanAccounts(JSONFilterConstraints, String, String)} or
+ * {@link SavingsService#getSavingsAccounts(JSONFilterConstraints, String, String)}. Modified entities are delivered to
+ * the {@link ChangeListener} one page at a time and the checkpoint (the latest last modified date delivered) is stored
+ * after each page.
+ *
+ * To tolerate clock skew and entities committed out of order, each poll reads again the entities modified within the
+ * configured overlap before the checkpoint. Entities already delivered with the same last modified date are skipped,
+ * so each modification is delivered once. The filter only supports dates without time: entities modified earlier on
+ * the first day are skipped without being delivered. Pages also overlap by a few entities, so that entities modified
+ * while the scan is running (which move to the end of the sorted results) do not make the scan skip other entities
+ *
+ * @author agent
+ *
+ */
+public class LastModifiedDeltaSync {
+
+	private final static Logger LOGGER = Logger.getLogger(LastModifiedDeltaSync.class.getName());
+
+	/**
+	 * Default number of entities requested with one page
+	 */
+	public final static int DEFAULT_PAGE_SIZE = 100;
+	/**
+	 * Default number of entities of the previous page requested again with the next page
+	 */
+	public final static int DEFAULT_PAGE_OVERLAP = 5;
+	/**
+	 * Default time before the checkpoint for which modifications are read again: 5 minutes
+	 */
+	public final static long DEFAULT_OVERLAP_MILLIS = 5 * 60 * 1000L;
+
+	private final MambuEntityType entityType;
+	private final ClientsService clientsService;
+	private final LoansService loansService;
+	private final SavingsService savingsService;
+	private final CheckpointStore checkpointStore;
+	private final Date initialDate;
+	private final ChangeListener listener;
+
+	private int pageSize = DEFAULT_PAGE_SIZE;
+	private int pageOverlap = DEFAULT_PAGE_OVERLAP;
+	private long overlapMillis = DEFAULT_OVERLAP_MILLIS;
+
+	/***
+	 * Create last modified date synchronisation
+	 *
+	 * @param mambuAPIService
+	 *            the service responsible for the connection to the server
+	 * @param entityType
+	 *            CLIENT, LOAN_ACCOUNT or SAVINGS_ACCOUNT
+	 * @param checkpointStore
+	 *            store for the checkpoint. Must not be null
+	 * @param initialDate
+	 *            the entities modified since this date are delivered when no checkpoint is stored yet. If null, all
+	 *            entities are delivered with the first poll
+	 * @param listener
+	 *            listener for the modified entities. Must not be null
+	 */
+	public LastModifiedDeltaSync(MambuAPIService mambuAPIService, MambuEntityType entityType,
+			CheckpointStore checkpointStore, Date initialDate, ChangeListener listener) {
+		if (mambuAPIService == null) {
+			throw new IllegalArgumentException("Mambu API Service must not be null");
+		}
+		if (entityType != MambuEntityType.CLIENT && entityType != MambuEntityType.LOAN_ACCOUNT
+				&& entityType != MambuEntityType.SAVINGS_ACCOUNT) {
+			throw new IllegalArgumentException("Last modified date synchronisation is not supported for "
+					+ entityType);
+		}
+		if (checkpointStore == null || listener == null) {
+			throw new IllegalArgumentException("Checkpoint store and listener must not be null");
+		}
+		this.entityType = entityType;
+		this.clientsService = new ClientsService(mambuAPIService);
+		this.loansService = new LoansService(mambuAPIService);
+		this.savingsService = new SavingsService(mambuAPIService);
+		this.checkpointStore = checkpointStore;
+		this.initialDate = initialDate == null ? new Date(0) : new Date(initialDate.getTime());
+		this.listener = listener;
+	}
+
+	/***
+	 * Set the number of entities requested with one page and how many entities of the previous page are requested
+	 * again
+	 *
+	 * @param pageSize
+	 *            page size. Must be positive
+	 * @param pageOverlap
+	 *            page overlap. Must be less than the page size
+	 */
+	public void setPageSize(int pageSize, int pageOverlap) {
+		if (pageSize <= 0 || pageOverlap < 0 || pageOverlap >= pageSize) {
+			throw new IllegalArgumentException("Page size must be positive and greater than the page overlap");
+		}
+		this.pageSize = pageSize;
+		this.pageOverlap = pageOverlap;
+	}
+
+	/***
+	 * Set the time before the checkpoint for which modifications are read again
+	 *
+	 * @param overlapMillis
+	 *            overlap in milliseconds. Must not be negative. Should exceed the possible clock skew
+	 */
+	public void setOverlapMillis(long overlapMillis) {
+		if (overlapMillis < 0) {
+			throw new IllegalArgumentException("Overlap must not be negative");
+		}
+		this.overlapMillis = overlapMillis;
+	}
+
+	/***
+	 * Get the name of the checkpoint stored in the checkpoint store
+	 *
+	 * @return checkpoint name. Example: "lastModified.LOAN_ACCOUNT"
+	 */
+	public String getCheckpointName() {
+		return "lastModified." + entityType.name();
+	}
+
+	/***
+	 * Get the current checkpoint
+	 *
+	 * @return stored checkpoint or a checkpoint at the initial date if none is stored yet
+	 */
+	public SyncCheckpoint getCheckpoint() {
+		SyncCheckpoint checkpoint = checkpointStore.get(getCheckpointName());
+		return checkpoint != null ? checkpoint : new SyncCheckpoint(initialDate, null);
+	}
+
+	/***
+	 * Deliver the entities modified since the checkpoint to the listener
+	 *
+	 * @return number of modified entities delivered to the listener
+	 * @throws MambuApiException
+	 *             if entities cannot be read. The checkpoint of the pages processed before the failure is stored
+	 * @throws IOException
+	 *             if the checkpoint cannot be stored
+	 */
+	public int poll() throws MambuApiException, IOException {
+		SyncCheckpoint checkpoint = getCheckpoint();
+		Date threshold = new Date(checkpoint.getDate().getTime() - overlapMillis);
+		JSONFilterConstraints filterConstraints = makeModifiedSinceFilter(entityType, threshold);
+
+		// Modifications delivered with the previous polls and this poll, as "encodedKey:lastModifiedTime"
+		Set<String> deliveredModifications = new HashSet<String>(checkpoint.getProcessedKeys());
+		Date latest = checkpoint.getDate();
+		int offset = 0;
+		int delivered = 0;
+		while (true) {
+			List<?> page = fetch(filterConstraints, offset, pageSize);
+			List<EntityChange> changes = new ArrayList<EntityChange>();
+			for (Object entity : page) {
+				Date lastModified = getLastModifiedDate(entity);
+				if (lastModified == null || lastModified.before(threshold)) {
+					continue;
+				}
+				String encodedKey = getEncodedKey(entity);
+				if (!deliveredModifications.add(encodedKey + ":" + lastModified.getTime())) {
+					continue;
+				}
+				changes.add(new EntityChange(entityType, encodedKey, entity, null));
+				if (lastModified.after(latest)) {
+					latest = lastModified;
+				}
+			}
+			if (!changes.isEmpty()) {
+				listener.onChanges(changes);
+				delivered += changes.size();
+				checkpoint = makeCheckpoint(latest, deliveredModifications);
+				checkpointStore.put(getCheckpointName(), checkpoint);
+			}
+			if (page.size() < pageSize) {
+				break;
+			}
+			offset += page.size() - pageOverlap;
+		}
+		LOGGER.fine(entityType + " modified since " + threshold + ": " + delivered + " delivered");
+		return delivered;
+	}
+
+	/***
+	 * Make filter constraints for the entities modified since a date, sorted by their last modified date
+	 *
+	 * @param entityType
+	 *            CLIENT, LOAN_ACCOUNT or SAVINGS_ACCOUNT
+	 * @param since
+	 *            date. Only the full date without time is used
+	 * @return filter constraints
+	 */
+	public static JSONFilterConstraints makeModifiedSinceFilter(MambuEntityType entityType, Date since) {
+		String dataField;
+		DataItemType dataItemType;
+		switch (entityType) {
+		case CLIENT:
+			dataField = ClientsDataField.LAST_MODIFIED_DATE.name();
+			dataItemType = DataItemType.CLIENT;
+			break;
+		case LOAN_ACCOUNT:
+			dataField = LoansDataField.LAST_MODIFIED_DATE.name();
+			dataItemType = DataItemType.LOANS;
+			break;
+		case SAVINGS_ACCOUNT:
+			dataField = SavingsDataField.LAST_MODIFIED_DATE.name();
+			dataItemType = DataItemType.SAVINGS;
+			break;
+		default:
+			throw new IllegalArgumentException("Last modified date filter is not supported for " + entityType);
+		}
+		// Filter for the last modified date from the given date until tomorrow, so that the server's date is included
+		SimpleDateFormat dateFormat = new SimpleDateFormat(DateUtils.DATE_FORMAT);
+		JSONFilterConstraint constraint = new JSONFilterConstraint();
+		constraint.setDataFieldType(DataFieldType.NATIVE.name());
+		constraint.setDataItemType(dataItemType.name());
+		constraint.setFilterSelection(dataField);
+		constraint.setFilterElement(FilterElement.BETWEEN.name());
+		constraint.setValue(dateFormat.format(since));
+		constraint.setSecondValue(dateFormat.format(DateUtils.addDays(new Date(), 1)));
+
+		List<JSONFilterConstraint> constraints = new ArrayList<JSONFilterConstraint>();
+		constraints.add(constraint);
+		JSONFilterConstraints filterConstraints = new JSONFilterConstraints();
+		filterConstraints.setFilterConstraints(constraints);
+
+		JSONSortDetails sortDetails = new JSONSortDetails();
+		sortDetails.setSortingColumn(dataField);
+		sortDetails.setSortingOrder(SortingOrder.ASCENDING.name());
+		filterConstraints.setSortDetails(sortDetails);
+		return filterConstraints;
+	}
+
+	/**
+	 * Make checkpoint keeping the modifications which are read again with the next poll
+	 */
+	private SyncCheckpoint makeCheckpoint(Date latest, Set<String> deliveredModifications) {
+		long nextThreshold = latest.getTime() - overlapMillis;
+		Set<String> keys = new LinkedHashSet<String>();
+		for (String modification : deliveredModifications) {
+			long lastModifiedTime = Long.parseLong(modification.substring(modification.lastIndexOf(':') + 1));
+			if (lastModifiedTime >= nextThreshold) {
+				keys.add(modification);
+			}
+		}
+		return new SyncCheckpoint(latest, keys);
+	}
+
+	private List<?> fetch(JSONFilterConstraints filterConstraints, int offset, int limit) throws MambuApiException {
+		String offsetParam = String.valueOf(offset);
+		String limitParam = String.valueOf(limit);
+		switch (entityType) {
+		case CLIENT:
+			return clientsService.getClients(filterConstraints, offsetParam, limitParam);
+		case LOAN_ACCOUNT:
+			return loansService.getLoanAccounts(filterConstraints, offsetParam, limitParam);
+		default:
+			return savingsService.getSavingsAccounts(filterConstraints, offsetParam, limitParam);
+		}
+	}
+
+	private static Date getLastModifiedDate(Object entity) {
+		if (entity instanceof Client) {
+			return ((Client) entity).getLastModifiedDate();
+		}
+		if (entity instanceof LoanAccount) {
+			return ((LoanAccount) entity).getLastModifiedDate();
+		}
+		return ((SavingsAccount) entity).getLastModifiedDate();
+	}
+
+	private static String getEncodedKey(Object entity) {
+		if (entity instanceof Client) {
+			return ((Client) entity).getEncodedKey();
+		}
+		if (entity instanceof LoanAccount) {
+			return ((LoanAccount) entity).getEncodedKey();
+		}
+		return ((SavingsAccount) entity).getEncodedKey();
+	}
+}
@@ -0,0 +1,518 @@
+package com.mambu.apisdk.sync;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import com.mambu.apisdk.MambuAPIService;
+import com.mambu.apisdk.cache.ReferenceDataCache;
+import com.mambu.apisdk.exception.MambuApiException;
+import com.mambu.apisdk.services.LoansService;
+import com.mambu.apisdk.services.SavingsService;
+import com.mambu.apisdk.util.MambuEntityType;
+import com.mambu.loans.shared.model.LoanAccount;
+import com.mambu.savings.shared.model.SavingsAccount;
+
+/**
+ * Local replica of the loan and savings portfolios, for applications repeatedly filtering accounts by branch, centre,
+ * credit officer, state or product.
+ *
+ * The replica is loaded with all loan and savings accounts, page by page, and kept current with the changes reported
+ * by the activity feed (see {@link ActivityChangeCapture}): only the accounts with new activities are fetched again.
+ * Accounts are indexed in memory by assigned branch, centre and credit officer, account state and product, so that
+ * {@link #getLoanAccountsByBranchCentreOfficerState(String, String, String, String, String, String)} and
+ * {@link #getSavingsAccountsByBranchOfficerState(String, String, String, String, String)} are served locally with the
+ * same parameters as the corresponding {@link LoansService} and {@link SavingsService} methods.
+ *
+ * Once {@link #start()} is called the replica is refreshed on a background schedule and queries are served from the
+ * indexes in memory, without waiting for requests. Queries refresh the replica first only when it was last refreshed
+ * longer ago than the maximum staleness: when the replica was not started, or when background refreshes fail or fall
+ * behind. The replica is loaded with the first query if neither {@link #load()} nor {@link #start()} was called.
+ * Returned accounts are shared and must not be modified
+ *
+ * @author agent
+ *
+ */
+public class PortfolioReplica {
+
+	private final static Logger LOGGER = Logger.getLogger(PortfolioReplica.class.getName());
+
+	/**
+	 * Default maximum time since the last refresh for serving queries: 1 minute
+	 */
+	public final static long DEFAULT_MAX_STALENESS_MILLIS = 60 * 1000L;
+	/**
+	 * Default time between the end of a background refresh and the start of the next one: 20 seconds
+	 */
+	public final static long DEFAULT_REFRESH_INTERVAL_MILLIS = 20 * 1000L;
+	/**
+	 * Default number of accounts requested with one page when loading the replica
+	 */
+	public final static int DEFAULT_LOAD_PAGE_SIZE = 500;
+
+	// Key used for IDs which do not exist: no account is assigned to it
+	private final static String NOT_FOUND_KEY = "";
+
+	private final MambuAPIService mambuAPIService;
+	private final LoansService loansService;
+	private final SavingsService savingsService;
+	private final ReferenceDataCache referenceDataCache;
+
+	private final AccountIndex<LoanAccount> loanAccounts = new AccountIndex<LoanAccount>();
+	private final AccountIndex<SavingsAccount> savingsAccounts = new AccountIndex<SavingsAccount>();
+
+	// Guards loading and refreshing
+	private final Object refreshLock = new Object();
+	private ActivityChangeCapture changeCapture;
+	private volatile long lastRefreshTime = 0;
+
+	private volatile long maxStalenessMillis = DEFAULT_MAX_STALENESS_MILLIS;
+	private long refreshIntervalMillis = DEFAULT_REFRESH_INTERVAL_MILLIS;
+	private int loadPageSize = DEFAULT_LOAD_PAGE_SIZE;
+
+	private final ScheduledExecutorService scheduler = Executors
+			.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("mambu-portfolio-replica-%d")
+					.setDaemon(true).build());
+	// Guarded by this
+	private ScheduledFuture<?> scheduledRefresh;
+
+	private final Runnable refreshTask = new Runnable() {
+		@Override
+		public void run() {
+			try {
+				refresh();
+			} catch (MambuApiException e) {
+				// Keep the schedule running. Queries refresh themselves if the replica gets too stale
+				LOGGER.warning("Portfolio replica refresh failed: " + e.getMessage());
+			} catch (RuntimeException e) {
+				LOGGER.warning("Portfolio replica refresh failed: " + e.getMessage());
+			}
+		}
+	};
+
+	/**
+	 * Applies the changed accounts to the indexes
+	 */
+	private final ChangeListener changeListener = new ChangeListener() {
+		@Override
+		public void onChanges(List<EntityChange> changes) {
+			for (EntityChange change : changes) {
+				if (change.getEntityType() == MambuEntityType.LOAN_ACCOUNT) {
+					if (change.isDeleted()) {
+						loanAccounts.remove(change.getEncodedKey());
+					} else {
+						loanAccounts.put((LoanAccount) change.getEntity());
+					}
+				} else if (change.getEntityType() == MambuEntityType.SAVINGS_ACCOUNT) {
+					if (change.isDeleted()) {
+						savingsAccounts.remove(change.getEncodedKey());
+					} else {
+						savingsAccounts.put((SavingsAccount) change.getEntity());
+					}
+				}
+			}
+		}
+	};
+
+	/***
+	 * Create portfolio replica
+	 *
+	 * @param mambuAPIService
+	 *            the service responsible for the connection to the server
+	 * @param referenceDataCache
+	 *            cache used to get the encoded keys of branches, centres, credit officers and products from their IDs.
+	 *            Must not be null
+	 */
+	public PortfolioReplica(MambuAPIService mambuAPIService, ReferenceDataCache referenceDataCache) {
+		if (mambuAPIService == null || referenceDataCache == null) {
+			throw new IllegalArgumentException("Mambu API Service and reference data cache must not be null");
+		}
+		this.mambuAPIService = mambuAPIService;
+		this.loansService = new LoansService(mambuAPIService);
+		this.savingsService = new SavingsService(mambuAPIService);
+		this.referenceDataCache = referenceDataCache;
+	}
+
+	/***
+	 * Set the maximum time since the last refresh for serving queries without refreshing first. When the replica is
+	 * started, this is the longest time a query waits for changes before serving them anyway
+	 *
+	 * @param maxStalenessMillis
+	 *            maximum staleness in milliseconds. Must not be negative
+	 */
+	public void setMaxStalenessMillis(long maxStalenessMillis) {
+		if (maxStalenessMillis < 0) {
+			throw new IllegalArgumentException("Maximum staleness must not be negative");
+		}
+		this.maxStalenessMillis = maxStalenessMillis;
+	}
+
+	/***
+	 * Set the time between background refreshes. Takes effect when the replica is started. Should be shorter than the
+	 * maximum staleness, so that queries do not have to refresh the replica
+	 *
+	 * @param refreshIntervalMillis
+	 *            refresh interval in milliseconds. Must be positive
+	 */
+	public synchronized void setRefreshIntervalMillis(long refreshIntervalMillis) {
+		if (refreshIntervalMillis <= 0) {
+			throw new IllegalArgumentException("Refresh interval must be positive");
+		}
+		this.refreshIntervalMillis = refreshIntervalMillis;
+	}
+
+	/***
+	 * Start refreshing the replica in the background. The first refresh, which loads the replica if it was not loaded
+	 * yet, starts immediately
+	 */
+	public synchronized void start() {
+		if (scheduledRefresh != null) {
+			return;
+		}
+		scheduledRefresh = scheduler.scheduleWithFixedDelay(refreshTask, 0, refreshIntervalMillis,
+				TimeUnit.MILLISECONDS);
+	}
+
+	/***
+	 * Stop refreshing in the background. The replica keeps its accounts, and queries refresh it when it gets older
+	 * than the maximum staleness. The replica cannot be started again
+	 */
+	public synchronized void stop() {
+		if (scheduledRefresh != null) {
+			scheduledRefresh.cancel(false);
+		}
+		scheduler.shutdownNow();
+	}
+
+	/***
+	 * Set the number of accounts requested with one page when loading the replica
+	 *
+	 * @param loadPageSize
+	 *            page size. Must be positive
+	 */
+	public void setLoadPageSize(int loadPageSize) {
+		if (loadPageSize <= 0) {
+			throw new IllegalArgumentException("Page size must be positive");
+		}
+		this.loadPageSize = loadPageSize;
+	}
+
+	/***
+	 * Load all loan and savings accounts, replacing the accounts loaded before
+	 *
+	 * @throws MambuApiException
+	 *             if accounts cannot be read. The accounts loaded before are kept
+	 */
+	public void load() throws MambuApiException {
+		synchronized (refreshLock) {
+			// Activities are read from the start of the load, so that accounts changed while loading are fetched again
+			Date loadStart = new Date();
+			List<LoanAccount> loans = new ArrayList<LoanAccount>();
+			List<LoanAccount> loansPage;
+			do {
+				loansPage = loansService.getLoanAccountsByBranchCentreOfficerState(null, null, null, null,
+						String.valueOf(loans.size()), String.valueOf(loadPageSize));
+				loans.addAll(loansPage);
+			} while (loansPage.size() == loadPageSize);
+
+			List<SavingsAccount> savings = new ArrayList<SavingsAccount>();
+			List<SavingsAccount> savingsPage;
+			do {
+				savingsPage = savingsService.getSavingsAccountsByBranchCentreOfficerState(null, null, null, null,
+						String.valueOf(savings.size()), String.valueOf(loadPageSize));
+				savings.addAll(savingsPage);
+			} while (savingsPage.size() == loadPageSize);
+
+			loanAccounts.replaceAll(loans);
+			savingsAccounts.replaceAll(savings);
+			changeCapture = new ActivityChangeCapture(mambuAPIService, new CheckpointStore(), loadStart,
+					changeListener);
+			changeCapture.setEntityTypes(MambuEntityType.LOAN_ACCOUNT, MambuEntityType.SAVINGS_ACCOUNT);
+			lastRefreshTime = loadStart.getTime();
+			LOGGER.info("Portfolio replica loaded: " + loanAccounts.size() + " loan accounts, "
+					+ savingsAccounts.size() + " savings accounts");
+		}
+	}
+
+	/***
+	 * Apply the changes reported by the activity feed since the last refresh. Loads the replica if it was not loaded
+	 * yet
+	 *
+	 * @return number of changed accounts
+	 * @throws MambuApiException
+	 */
+	public int refresh() throws MambuApiException {
+		synchronized (refreshLock) {
+			if (changeCapture == null) {
+				load();
+				return 0;
+			}
+			long refreshStart = System.currentTimeMillis();
+			try {
+				int changed = changeCapture.poll();
+				lastRefreshTime = refreshStart;
+				return changed;
+			} catch (IOException e) {
+				// Not expected: checkpoints are kept in memory
+				throw new MambuApiException(e);
+			}
+		}
+	}
+
+	/***
+	 * Get the time of the last load or refresh
+	 *
+	 * @return time of the last refresh or null if the replica was not loaded
+	 */
+	public Date getLastRefreshTime() {
+		long time = lastRefreshTime;
+		return time == 0 ? null : new Date(time);
+	}
+
+	/***
+	 * Get the loan accounts by branch id, centre id, credit officer and account state. See
+	 * {@link LoansService#getLoanAccountsByBranchCentreOfficerState(String, String, String, String, String, String)}
+	 *
+	 * @param branchId
+	 *            the ID of the branch to which the loan accounts are assigned to
+	 * @param centreId
+	 *            the ID of the centre to which the loan accounts are assigned to
+	 * @param creditOfficerUserName
+	 *            the username of the credit officer to whom the loans are assigned to
+	 * @param accountState
+	 *            the desired state of the accounts to filter on (eg: APPROVED)
+	 * @param offset
+	 *            pagination offset. If not null it must be an integer greater or equal to zero
+	 * @param limit
+	 *            pagination limit. If not null it must be an integer greater than zero. If null all matching accounts
+	 *            are returned
+	 * @return the list of loan accounts matching these parameters
+	 * @throws MambuApiException
+	 *             if the replica cannot be refreshed
+	 */
+	public List<LoanAccount> getLoanAccountsByBranchCentreOfficerState(String branchId, String centreId,
+			String creditOfficerUserName, String accountState, String offset, String limit) throws MambuApiException {
+		return getLoanAccounts(branchId, centreId, creditOfficerUserName, accountState, null, offset, limit);
+	}
+
+	/***
+	 * Get the loan accounts by branch id, credit officer and account state
+	 *
+	 * @param branchId
+	 *            the ID of the branch to which the loan accounts are assigned to
+	 * @param creditOfficerUserName
+	 *            the username of the credit officer to whom the loans are assigned to
+	 * @param accountState
+	 *            the desired state of the accounts to filter on (eg: APPROVED)
+	 * @param offset
+	 *            pagination offset
+	 * @param limit
+	 *            pagination limit
+	 * @return the list of loan accounts matching these parameters
+	 * @throws MambuApiException
+	 */
+	public List<LoanAccount> getLoanAccountsByBranchOfficerState(String branchId, String creditOfficerUserName,
+			String accountState, String offset, String limit) throws MambuApiException {
+		return getLoanAccounts(branchId, null, creditOfficerUserName, accountState, null, offset, limit);
+	}
+
+	/***
+	 * Get the loan accounts by branch, centre, credit officer, account state and product. Null parameters match all
+	 * accounts
+	 *
+	 * @param branchId
+	 *            branch ID or encoded key
+	 * @param centreId
+	 *            centre ID or encoded key
+	 * @param creditOfficerUserName
+	 *            credit officer username, ID or encoded key
+	 * @param accountState
+	 *            account state
+	 * @param productId
+	 *            loan product ID or encoded key
+	 * @param offset
+	 *            pagination offset
+	 * @param limit
+	 *            pagination limit. If null all matching accounts are returned
+	 * @return the list of loan accounts matching these parameters
+	 * @throws MambuApiException
+	 */
+	public List<LoanAccount> getLoanAccounts(String branchId, String centreId, String creditOfficerUserName,
+			String accountState, String productId, String offset, String limit) throws MambuApiException {
+		int offsetValue = parsePagination(offset, 0);
+		int limitValue = parsePagination(limit, -1);
+		ensureFresh();
+		String productKey = productId == null ? null : getProductKey(productId, true);
+		return loanAccounts.query(getBranchKey(branchId), getCentreKey(centreId), getUserKey(creditOfficerUserName),
+				accountState, productKey, offsetValue, limitValue);
+	}
+
+	/***
+	 * Get the savings accounts by branch id, credit officer and account state. See
+	 * {@link SavingsService#getSavingsAccountsByBranchOfficerState(String, String, String, String, String)}
+	 *
+	 * @param branchId
+	 *            the ID of the branch to which the accounts are assigned to
+	 * @param creditOfficerUserName
+	 *            the username of the credit officer to whom the accounts are assigned to
+	 * @param accountState
+	 *            the state of the accounts to filter on (e.g: APPROVED)
+	 * @param offset
+	 *            pagination offset. If not null it must be an integer greater or equal to zero
+	 * @param limit
+	 *            pagination limit. If not null it must be an integer greater than zero. If null all matching accounts
+	 *            are returned
+	 * @return the list of savings accounts matching these parameters
+	 * @throws MambuApiException
+	 *             if the replica cannot be refreshed
+	 */
+	public List<SavingsAccount> getSavingsAccountsByBranchOfficerState(String branchId, String creditOfficerUserName,
+			String accountState, String offset, String limit) throws MambuApiException {
+		return getSavingsAccounts(branchId, null, creditOfficerUserName, accountState, null, offset, limit);
+	}
+
+	/***
+	 * Get the savings accounts by branch id, centre id, credit officer and account state
+	 *
+	 * @param branchId
+	 *            the ID of the branch to which the accounts are assigned to
+	 * @param centreId
+	 *            the ID of the centre to which the accounts are assigned to
+	 * @param creditOfficerUserName
+	 *            the username of the credit officer to whom the accounts are assigned to
+	 * @param accountState
+	 *            the state of the accounts to filter on (e.g: APPROVED)
+	 * @param offset
+	 *            pagination offset
+	 * @param limit
+	 *            pagination limit
+	 * @return the list of savings accounts matching these parameters
+	 * @throws MambuApiException
+	 */
+	public List<SavingsAccount> getSavingsAccountsByBranchCentreOfficerState(String branchId, String centreId,
+			String creditOfficerUserName, String accountState, String offset, String limit) throws MambuApiException {
+		return getSavingsAccounts(branchId, centreId, creditOfficerUserName, accountState, null, offset, limit);
+	}
+
+	/***
+	 * Get the savings accounts by branch, centre, credit officer, account state and product. Null parameters match
+	 * all accounts
+	 *
+	 * @param branchId
+	 *            branch ID or encoded key
+	 * @param centreId
+	 *            centre ID or encoded key
+	 * @param creditOfficerUserName
+	 *            credit officer username, ID or encoded key
+	 * @param accountState
+	 *            account state
+	 * @param productId
+	 *            savings product ID or encoded key
+	 * @param offset
+	 *            pagination offset
+	 * @param limit
+	 *            pagination limit. If null all matching accounts are returned
+	 * @return the list of savings accounts matching these parameters
+	 * @throws MambuApiException
+	 */
+	public List<SavingsAccount> getSavingsAccounts(String branchId, String centreId, String creditOfficerUserName,
+			String accountState, String productId, String offset, String limit) throws MambuApiException {
+		int offsetValue = parsePagination(offset, 0);
+		int limitValue = parsePagination(limit, -1);
+		ensureFresh();
+		String productKey = productId == null ? null : getProductKey(productId, false);
+		return savingsAccounts.query(getBranchKey(branchId), getCentreKey(centreId),
+				getUserKey(creditOfficerUserName), accountState, productKey, offsetValue, limitValue);
+	}
+
+	/**
+	 * Refresh the replica if it is older than the maximum staleness. When the replica is started this only happens if
+	 * background refreshes fail or fall behind
+	 */
+	private void ensureFresh() throws MambuApiException {
+		if (System.currentTimeMillis() - lastRefreshTime <= maxStalenessMillis) {
+			return;
+		}
+		synchronized (refreshLock) {
+			// Another thread could have refreshed meanwhile
+			if (System.currentTimeMillis() - lastRefreshTime > maxStalenessMillis) {
+				refresh();
+			}
+		}
+	}
+
+	private String getBranchKey(String branchId) throws MambuApiException {
+		if (branchId == null) {
+			return null;
+		}
+		try {
+			return referenceDataCache.getBranch(branchId).getEncodedKey();
+		} catch (MambuApiException e) {
+			return notFoundKey(e);
+		}
+	}
+
+	private String getCentreKey(String centreId) throws MambuApiException {
+		if (centreId == null) {
+			return null;
+		}
+		try {
+			return referenceDataCache.getCentre(centreId).getEncodedKey();
+		} catch (MambuApiException e) {
+			return notFoundKey(e);
+		}
+	}
+
+	private String getUserKey(String userName) throws MambuApiException {
+		if (userName == null) {
+			return null;
+		}
+		try {
+			return referenceDataCache.getUser(userName).getEncodedKey();
+		} catch (MambuApiException e) {
+			return notFoundKey(e);
+		}
+	}
+
+	private String getProductKey(String productId, boolean loanProduct) throws MambuApiException {
+		try {
+			return loanProduct ? referenceDataCache.getLoanProduct(productId).getEncodedKey() : referenceDataCache
+					.getSavingsProduct(productId).getEncodedKey();
+		} catch (MambuApiException e) {
+			return notFoundKey(e);
+		}
+	}
+
+	/**
+	 * IDs which do not exist match no accounts
+	 */
+	private static String notFoundKey(MambuApiException e) throws MambuApiException {
+		if (e.isNotFound()) {
+			return NOT_FOUND_KEY;
+		}
+		throw e;
+	}
+
+	private static int parsePagination(String value, int defaultValue) {
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			int intValue = Integer.parseInt(value);
+			if (intValue >= 0) {
+				return intValue;
+			}
+		} catch (NumberFormatException e) {
+			// Reported below
+		}
+		throw new IllegalArgumentException("Invalid pagination parameter " + value);
+	}
+}
@@ -0,0 +1,52 @@
+package com.mambu.apisdk.sync;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Position reached by an incremental synchronisation: the date up to which changes were processed and the keys of the
+ * items already processed at this date.
+ *
+ * Changes are read again starting from the checkpoint date, so that changes recorded later with the same date are not
+ * missed. The keys are used to skip the items which were already processed
+ *
+ * @author agent
+ *
+ */
+public class SyncCheckpoint {
+
+	private final Date date;
+	private final Set<String> processedKeys;
+
+	/***
+	 * Create checkpoint
+	 *
+	 * @param date
+	 *            date up to which changes were processed. Must not be null
+	 * @param processedKeys
+	 *            keys of the items already processed at this date. Can be null
+	 */
+	public SyncCheckpoint(Date date, Set<String> processedKeys) {
+		if (date == null) {
+			throw new IllegalArgumentException("Checkpoint date must not be null");
+		}
+		this.date = new Date(date.getTime());
+		this.processedKeys = processedKeys == null ? Collections.<String> emptySet() : Collections
+				.unmodifiableSet(new LinkedHashSet<String>(processedKeys));
+	}
+
+	public Date getDate() {
+		return new Date(date.getTime());
+	}
+
+	public Set<String> getProcessedKeys() {
+		return processedKeys;
+	}
+
+	@Override
+	public String toString() {
+		return "date=" + date + " processed keys=" + processedKeys.size();
+	}
+}
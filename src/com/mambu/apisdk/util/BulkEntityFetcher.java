@@ -0,0 +1,268 @@
+package com.mambu.apisdk.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import com.mambu.api.server.handler.core.dynamicsearch.model.JSONFilterConstraint;
+import com.mambu.api.server.handler.core.dynamicsearch.model.JSONFilterConstraints;
+import com.mambu.apisdk.exception.MambuApiException;
+import com.mambu.clients.shared.model.Client;
+import com.mambu.clients.shared.model.Group;
+import com.mambu.core.shared.data.FilterElement;
+import com.mambu.loans.shared.model.LoanAccount;
+import com.mambu.savings.shared.model.SavingsAccount;
+
+/**
+ * BulkEntityFetcher provides helper methods for getting many Mambu entities by their IDs with as few API requests as
+ * possible.
+ *
+ * For entities supporting searching with filter constraints (clients, groups, loan and savings accounts) the IDs are
+ * sent in chunks of {@link #MAX_IDS_PER_SEARCH} using the IN filter element: first matching entity IDs, then matching
+ * encoded keys for the IDs which were not found. Callers holding encoded keys only search by encoded key (see
+ * {@link #searchByEncodedKeys(ServiceExecutor, ApiDefinition, String, Collection)}). For other entities single GET requests are sent with at most
+ * {@link #MAX_CONCURRENT_REQUESTS} requests running at the same time.
+ *
+ * Results are returned keyed by the requested IDs, in the requested order. IDs of entities which do not exist are
+ * omitted from the results
+ *
+ * @author agent
+ *
+ */
+public class BulkEntityFetcher {
+
+	private final static Logger LOGGER = Logger.getLogger(BulkEntityFetcher.class.getName());
+
+	/**
+	 * Maximum number of values sent in one IN filter constraint
+	 */
+	public final static int MAX_IDS_PER_SEARCH = 100;
+	/**
+	 * Maximum number of concurrent GET requests sent when entities cannot be searched for
+	 */
+	public final static int MAX_CONCURRENT_REQUESTS = 4;
+
+	/**
+	 * Gets one entity by its ID. Implemented by services to get entities which cannot be searched for
+	 */
+	public interface EntityGetter<T> {
+		T getEntity(String entityId) throws MambuApiException;
+	}
+
+	private BulkEntityFetcher() {
+	}
+
+	/**
+	 * Get entities by their IDs or encoded keys using searching with filter constraints
+	 *
+	 * @param serviceExecutor
+	 *            service executor to execute search requests with
+	 * @param searchApiDefinition
+	 *            API definition for searching entities with filter constraints. See
+	 *            {@link com.mambu.apisdk.services.SearchService#makeApiDefinitionforSearchByFilter(MambuEntityType)}
+	 * @param idFilterSelection
+	 *            filter selection for entity ID. Example: "ACCOUNT_ID"
+	 * @param keyFilterSelection
+	 *            filter selection for entity encoded key. Example: "ENCODED_KEY"
+	 * @param entityIds
+	 *            entity IDs or encoded keys. Must not be null
+	 * @return map of the found entities keyed by the requested IDs
+	 * @throws MambuApiException
+	 */
+	public static <T> Map<String, T> searchByIds(ServiceExecutor serviceExecutor, ApiDefinition searchApiDefinition,
+			String idFilterSelection, String keyFilterSelection, Collection<String> entityIds)
+			throws MambuApiException {
+
+		// Search by ID first, then by encoded key for the IDs which were not found
+		return search(serviceExecutor, searchApiDefinition, new String[] { idFilterSelection, keyFilterSelection },
+				entityIds);
+	}
+
+	/**
+	 * Get entities by their encoded keys using searching with filter constraints. Unlike
+	 * {@link #searchByIds(ServiceExecutor, ApiDefinition, String, String, Collection)} only the encoded key is
+	 * matched, so each chunk of keys requires one API request
+	 *
+	 * @param serviceExecutor
+	 *            service executor to execute search requests with
+	 * @param searchApiDefinition
+	 *            API definition for searching entities with filter constraints. See
+	 *            {@link com.mambu.apisdk.services.SearchService#makeApiDefinitionforSearchByFilter(MambuEntityType)}
+	 * @param keyFilterSelection
+	 *            filter selection for entity encoded key. Example: "ENCODED_KEY"
+	 * @param encodedKeys
+	 *            entity encoded keys. Must not be null
+	 * @return map of the found entities keyed by the requested encoded keys
+	 * @throws MambuApiException
+	 */
+	public static <T> Map<String, T> searchByEncodedKeys(ServiceExecutor serviceExecutor,
+			ApiDefinition searchApiDefinition, String keyFilterSelection, Collection<String> encodedKeys)
+			throws MambuApiException {
+
+		return search(serviceExecutor, searchApiDefinition, new String[] { keyFilterSelection }, encodedKeys);
+	}
+
+	/**
+	 * Search for the IDs with each filter selection in turn. Each filter selection is only used for the IDs not found
+	 * with the previous ones
+	 */
+	private static <T> Map<String, T> search(ServiceExecutor serviceExecutor, ApiDefinition searchApiDefinition,
+			String[] filterSelections, Collection<String> entityIds) throws MambuApiException {
+
+		Set<String> remainingIds = getUniqueIds(entityIds);
+		Map<String, T> foundEntities = new LinkedHashMap<String, T>();
+
+		for (String filterSelection : filterSelections) {
+			if (remainingIds.isEmpty()) {
+				break;
+			}
+			List<String> ids = new ArrayList<String>(remainingIds);
+			for (int start = 0; start < ids.size(); start += MAX_IDS_PER_SEARCH) {
+				List<String> chunk = ids.subList(start, Math.min(start + MAX_IDS_PER_SEARCH, ids.size()));
+
+				JSONFilterConstraint constraint = new JSONFilterConstraint();
+				constraint.setFilterSelection(filterSelection);
+				constraint.setFilterElement(FilterElement.IN.name());
+				constraint.setValues(new ArrayList<String>(chunk));
+				JSONFilterConstraints filterConstraints = new JSONFilterConstraints();
+				List<JSONFilterConstraint> constraints = new ArrayList<JSONFilterConstraint>();
+				constraints.add(constraint);
+				filterConstraints.setFilterConstraints(constraints);
+
+				List<T> entities = serviceExecutor.executeJson(searchApiDefinition, filterConstraints, null, null,
+						ServiceHelper.makePaginationParams("0", String.valueOf(chunk.size())));
+				for (T entity : entities) {
+					for (String key : getEntityKeys(entity)) {
+						if (remainingIds.remove(key)) {
+							foundEntities.put(key, entity);
+						}
+					}
+				}
+			}
+		}
+
+		return orderByRequestedIds(entityIds, foundEntities);
+	}
+
+	/**
+	 * Get entities by their IDs sending single GET requests, with at most {@link #MAX_CONCURRENT_REQUESTS} concurrent
+	 * requests. Entities which are not found are omitted. Other errors are thrown after all requests complete
+	 *
+	 * @param entityIds
+	 *            entity IDs or encoded keys. Must not be null
+	 * @param entityGetter
+	 *            getter sending the API request for one entity
+	 * @return map of the found entities keyed by the requested IDs
+	 * @throws MambuApiException
+	 */
+	public static <T> Map<String, T> getConcurrently(Collection<String> entityIds, final EntityGetter<T> entityGetter)
+			throws MambuApiException {
+
+		Set<String> ids = getUniqueIds(entityIds);
+		Map<String, T> foundEntities = new LinkedHashMap<String, T>();
+		if (ids.isEmpty()) {
+			return foundEntities;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(ids.size(), MAX_CONCURRENT_REQUESTS));
+		try {
+			Map<String, Future<T>> futures = new LinkedHashMap<String, Future<T>>();
+			for (final String id : ids) {
+				futures.put(id, executor.submit(new Callable<T>() {
+					@Override
+					public T call() throws MambuApiException {
+						return entityGetter.getEntity(id);
+					}
+				}));
+			}
+			MambuApiException exception = null;
+			for (Map.Entry<String, Future<T>> entry : futures.entrySet()) {
+				try {
+					T entity = entry.getValue().get();
+					if (entity != null) {
+						foundEntities.put(entry.getKey(), entity);
+					}
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof RuntimeException) {
+						throw (RuntimeException) e.getCause();
+					}
+					if (e.getCause() instanceof Error) {
+						throw (Error) e.getCause();
+					}
+					MambuApiException cause = (MambuApiException) e.getCause();
+					if (cause.isNotFound()) {
+						continue;
+					}
+					LOGGER.warning("Cannot get entity " + entry.getKey() + ": " + cause.getMessage());
+					if (exception == null) {
+						exception = cause;
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new MambuApiException(e);
+				}
+			}
+			if (exception != null) {
+				throw exception;
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		return foundEntities;
+	}
+
+	private static Set<String> getUniqueIds(Collection<String> entityIds) {
+		if (entityIds == null) {
+			throw new IllegalArgumentException("Entity IDs must not be null");
+		}
+		Set<String> ids = new LinkedHashSet<String>();
+		for (String id : entityIds) {
+			if (id != null) {
+				ids.add(id);
+			}
+		}
+		return ids;
+	}
+
+	private static <T> Map<String, T> orderByRequestedIds(Collection<String> entityIds, Map<String, T> foundEntities) {
+		Map<String, T> result = new LinkedHashMap<String, T>();
+		for (String id : entityIds) {
+			if (id != null && foundEntities.containsKey(id)) {
+				result.put(id, foundEntities.get(id));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Get the ID and the encoded key of a searched entity
+	 */
+	private static List<String> getEntityKeys(Object entity) {
+		List<String> keys = new ArrayList<String>(2);
+		if (entity instanceof Client) {
+			keys.add(((Client) entity).getId());
+			keys.add(((Client) entity).getEncodedKey());
+		} else if (entity instanceof Group) {
+			keys.add(((Group) entity).getId());
+			keys.add(((Group) entity).getEncodedKey());
+		} else if (entity instanceof LoanAccount) {
+			keys.add(((LoanAccount) entity).getId());
+			keys.add(((LoanAccount) entity).getEncodedKey());
+		} else if (entity instanceof SavingsAccount) {
+			keys.add(((SavingsAccount) entity).getId());
+			keys.add(((SavingsAccount) entity).getEncodedKey());
+		}
+		return keys;
+	}
+}
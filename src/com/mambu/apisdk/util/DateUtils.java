@@ -1,7 +1,10 @@
 package com.mambu.apisdk.util;
 
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.Date;
+import java.util.List;
 
 /**
  * Formats date classes into the ISO standard
@@ -21,4 +24,69 @@ public class DateUtils {
 		}
 		return FORMAT.format(date);
 	}
+
+	/***
+	 * Get the start of the day of a date, in the default time zone
+	 * 
+	 * @param date
+	 *            date. Must not be null
+	 * @return midnight of the date
+	 */
+	public static Date startOfDay(Date date) {
+		Calendar calendar = Calendar.getInstance();
+		calendar.setTime(date);
+		calendar.set(Calendar.HOUR_OF_DAY, 0);
+		calendar.set(Calendar.MINUTE, 0);
+		calendar.set(Calendar.SECOND, 0);
+		calendar.set(Calendar.MILLISECOND, 0);
+		return calendar.getTime();
+	}
+
+	/***
+	 * Add days to a date, in the default time zone
+	 * 
+	 * @param date
+	 *            date. Must not be null
+	 * @param days
+	 *            number of days to add. Can be negative
+	 * @return the date the number of days later
+	 */
+	public static Date addDays(Date date, int days) {
+		Calendar calendar = Calendar.getInstance();
+		calendar.setTime(date);
+		calendar.add(Calendar.DAY_OF_MONTH, days);
+		return calendar.getTime();
+	}
+
+	/***
+	 * Split a date range into consecutive ranges of whole days. The last range ends on the last date and can be
+	 * shorter
+	 * 
+	 * @param from
+	 *            first date of the first range. Only the full date without time is used
+	 * @param to
+	 *            last date of the last range. Only the full date without time is used
+	 * @param daysPerRange
+	 *            number of days of each range. Must be positive
+	 * @return the first and last date of each range, formatted with {@link #DATE_FORMAT}, in date order. Empty if the
+	 *         first date is after the last date
+	 */
+	public static List<String[]> splitIntoDayRanges(Date from, Date to, int daysPerRange) {
+		if (daysPerRange <= 0) {
+			throw new IllegalArgumentException("Days per range must be positive");
+		}
+		SimpleDateFormat dateFormat = new SimpleDateFormat(DATE_FORMAT);
+		Date lastDay = startOfDay(to);
+		Calendar calendar = Calendar.getInstance();
+		calendar.setTime(startOfDay(from));
+		List<String[]> ranges = new ArrayList<String[]>();
+		while (!calendar.getTime().after(lastDay)) {
+			String rangeFrom = dateFormat.format(calendar.getTime());
+			calendar.add(Calendar.DAY_OF_MONTH, daysPerRange - 1);
+			Date rangeTo = calendar.getTime().after(lastDay) ? lastDay : calendar.getTime();
+			ranges.add(new String[] { rangeFrom, dateFormat.format(rangeTo) });
+			calendar.add(Calendar.DAY_OF_MONTH, 1);
+		}
+		return ranges;
+	}
 }
@@ -0,0 +1,61 @@
+package com.mambu.apisdk.util;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import com.mambu.apisdk.exception.MambuApiException;
+
+/**
+ * Unwraps the results and failures of tasks run on executors and loading caches, so that they are reported as if the
+ * task was run by the calling thread
+ * 
+ * @author agent
+ * 
+ */
+public class FutureUtils {
+
+	/***
+	 * Wait for the result of a task
+	 * 
+	 * @param future
+	 *            task result. Must not be null
+	 * @return the result
+	 * @throws MambuApiException
+	 *             the exception the task failed with, or a MambuApiException wrapping a checked exception or the
+	 *             interruption of the calling thread. Unchecked exceptions and errors are rethrown
+	 */
+	public static <T> T getResult(Future<T> future) throws MambuApiException {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			throw toMambuApiException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MambuApiException(e);
+		}
+	}
+
+	/***
+	 * Convert the cause of an ExecutionException or UncheckedExecutionException
+	 * 
+	 * @param cause
+	 *            the exception a task failed with
+	 * @return the cause if it is a MambuApiException, otherwise a MambuApiException wrapping the checked cause
+	 * @throws RuntimeException
+	 *             the cause, if it is unchecked
+	 * @throws Error
+	 *             the cause, if it is an error
+	 */
+	public static MambuApiException toMambuApiException(Throwable cause) {
+		if (cause instanceof MambuApiException) {
+			return (MambuApiException) cause;
+		}
+		if (cause instanceof Error) {
+			throw (Error) cause;
+		}
+		if (cause instanceof RuntimeException) {
+			throw (RuntimeException) cause;
+		}
+		return new MambuApiException((Exception) cause);
+	}
+}
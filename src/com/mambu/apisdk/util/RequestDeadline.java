@@ -0,0 +1,102 @@
+package com.mambu.apisdk.util;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.http.client.methods.HttpRequestBase;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.mambu.apisdk.exception.MambuApiException;
+
+/**
+ * Deadline for the requests sent by the current thread with {@link RequestExecutorImpl}.
+ *
+ * Interrupting a thread does not stop a request blocked reading from the network. While a deadline is set, requests
+ * which are still running at the deadline are aborted instead, which closes their connection, and requests started
+ * after the deadline fail right away. Both fail with a MambuApiException caused by an IOException or a
+ * TimeoutException.
+ *
+ * Example:
+ *
+ * <pre>
+ * RequestDeadline.setDeadline(System.nanoTime() + TimeUnit.SECONDS.toNanos(5));
+ * try {
+ * 	client = clientsService.getClientDetails(clientId);
+ * } finally {
+ * 	RequestDeadline.clearDeadline();
+ * }
+ * </pre>
+ *
+ * @author agent
+ *
+ */
+public class RequestDeadline {
+
+	private final static ScheduledThreadPoolExecutor abortScheduler = new ScheduledThreadPoolExecutor(1,
+			new ThreadFactoryBuilder().setNameFormat("mambu-request-abort-%d").setDaemon(true).build());
+	static {
+		// Most requests complete before their deadline
+		abortScheduler.setRemoveOnCancelPolicy(true);
+	}
+
+	private final static ThreadLocal<Long> deadline = new ThreadLocal<Long>();
+	private final static ThreadLocal<ScheduledFuture<?>> pendingAbort = new ThreadLocal<ScheduledFuture<?>>();
+
+	/***
+	 * Set the deadline for the requests sent by the current thread
+	 *
+	 * @param deadlineNanoTime
+	 *            deadline, as a {@link System#nanoTime()} value
+	 */
+	public static void setDeadline(long deadlineNanoTime) {
+		deadline.set(deadlineNanoTime);
+	}
+
+	/***
+	 * Remove the deadline of the current thread. Must be called when the requests with the deadline are done, for
+	 * example in a finally block
+	 */
+	public static void clearDeadline() {
+		cancelAbort();
+		deadline.remove();
+	}
+
+	/**
+	 * Schedule aborting a request at the deadline of the current thread, if it has one. The abort must be cancelled
+	 * with {@link #cancelAbort()} once the response is read
+	 *
+	 * @throws MambuApiException
+	 *             if the deadline has already passed
+	 */
+	static void abortAtDeadline(final HttpRequestBase request) throws MambuApiException {
+		Long deadlineNanoTime = deadline.get();
+		if (deadlineNanoTime == null) {
+			return;
+		}
+		long remainingNanos = deadlineNanoTime - System.nanoTime();
+		if (remainingNanos <= 0) {
+			throw new MambuApiException(new TimeoutException("Request deadline passed before sending "
+					+ request.getMethod() + " request"));
+		}
+		cancelAbort();
+		pendingAbort.set(abortScheduler.schedule(new Runnable() {
+			@Override
+			public void run() {
+				request.abort();
+			}
+		}, remainingNanos, TimeUnit.NANOSECONDS));
+	}
+
+	/**
+	 * Cancel the abort scheduled for the last request of the current thread, if any
+	 */
+	static void cancelAbort() {
+		ScheduledFuture<?> abort = pendingAbort.get();
+		if (abort != null) {
+			abort.cancel(false);
+			pendingAbort.remove();
+		}
+	}
+}
@@ -95,4 +95,24 @@ public interface RequestExecutor {
 	public String executeRequest(String urlString, Method method, ContentType contentTypeFormat)
 			throws MambuApiException;
 
+	/**
+	 * Executes a request for a resource which may not exist, for example to check if an entity exists. A Not Found
+	 * response is thrown as MambuApiException with the 404 error code, but it is expected and not logged as an error
+	 * 
+	 * @param urlString
+	 *            the url to execute on. eg: https://demo.mambu.com/api/clients/ID
+	 * @param params
+	 *            the parameters eg: {fullDetails=true}
+	 * @param method
+	 *            the method (e.g. GET)
+	 * @param contentTypeFormat
+	 *            enum for the content type string
+	 * 
+	 * @return Mambu Response String
+	 * 
+	 * @throws MambuApiException
+	 */
+	public String executeLookupRequest(String urlString, ParamsMap params, Method method, ContentType contentTypeFormat)
+			throws MambuApiException;
+
 }
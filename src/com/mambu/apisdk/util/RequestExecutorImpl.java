@@ -23,10 +23,12 @@ import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPatch;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.message.BasicNameValuePair;
 import org.apache.http.protocol.HTTP;
+import org.apache.http.util.EntityUtils;
 
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
@@ -44,6 +46,11 @@ public class RequestExecutorImpl implements RequestExecutor {
 
 	private URLHelper urlHelper;
 	private String encodedAuthorization;
+	// Optional HttpClient shared with other executors (e.g. with other tenants). When not null, it is used for all
+	// requests and is not shut down by this executor
+	private final HttpClient sharedHttpClient;
+	// Optional Application Key for this executor only. When null, the key set in MambuAPIFactory is used
+	private String applicationKey;
 	private final static String UTF8_charset = HTTP.UTF_8;
 	private final static String wwwFormUrlEncodedContentType = "application/x-www-form-urlencoded; charset=UTF-8";
 
@@ -62,7 +69,43 @@ public class RequestExecutorImpl implements RequestExecutor {
 
 	@Inject
 	public RequestExecutorImpl(URLHelper urlHelper) {
+		this(urlHelper, null);
+	}
+
+	/***
+	 * Create a request executor which sends all requests via the supplied HttpClient. The HttpClient is expected to be
+	 * thread safe (e.g. built with a pooling connection manager) and can be shared by many executors. The executor
+	 * never shuts down the shared client, this is the responsibility of the caller
+	 * 
+	 * @param urlHelper
+	 *            url helper
+	 * @param sharedHttpClient
+	 *            shared http client. If null, a new http client is created and shut down for each request
+	 */
+	public RequestExecutorImpl(URLHelper urlHelper, HttpClient sharedHttpClient) {
 		this.urlHelper = urlHelper;
+		this.sharedHttpClient = sharedHttpClient;
+	}
+
+	/***
+	 * Set the Application Key to be used by this executor only. This allows applications working with many tenants to
+	 * use a different key per tenant
+	 * 
+	 * @param applicationKey
+	 *            application key. If null, the key set with {@link MambuAPIFactory#setApplicationKey(String)} is used
+	 */
+	public void setApplicationKey(String applicationKey) {
+		this.applicationKey = applicationKey;
+	}
+
+	/***
+	 * Get the Application Key used by this executor
+	 * 
+	 * @return executor's own application key, if set, or the key set with
+	 *         {@link MambuAPIFactory#setApplicationKey(String)} otherwise
+	 */
+	public String getApplicationKey() {
+		return (applicationKey != null) ? applicationKey : MambuAPIFactory.getApplicationKey();
 	}
 
 	// Without params and with default contentType (ContentType.WWW_FORM)
@@ -98,24 +141,40 @@ public class RequestExecutorImpl implements RequestExecutor {
 	@Override
 	public String executeRequest(String urlString, ParamsMap params, Method method, ContentType contentTypeFormat)
 			throws MambuApiException {
+		return execute(urlString, params, method, contentTypeFormat, false);
+	}
+
+	@Override
+	public String executeLookupRequest(String urlString, ParamsMap params, Method method, ContentType contentTypeFormat)
+			throws MambuApiException {
+		return execute(urlString, params, method, contentTypeFormat, true);
+	}
+
+	/**
+	 * Executes a request as per the interface specification. Not Found responses are not logged as errors if
+	 * notFoundExpected is true
+	 */
+	private String execute(String urlString, ParamsMap params, Method method, ContentType contentTypeFormat,
+			boolean notFoundExpected) throws MambuApiException {
 
 		// Pagination parameters for POST with JSON are to be provided with the URL. See MBU-8975
 		urlString = urlHelper.addJsonPaginationParams(urlString, method, contentTypeFormat, params);
 
+		// Get 'Application Key', if it was set by the application
+		String applicationKey = getApplicationKey();
+
 		// Log API Request details
 		if (LOGGER.isLoggable(requesLogLevel)) {
-			logApiRequest(requesLogLevel, method, contentTypeFormat, urlString, params);
+			logApiRequest(requesLogLevel, method, contentTypeFormat, urlString, params, applicationKey);
 		}
 		// Optionally log a template for the "curl" command as if it would be executed with the request specific API
 		// params
 		if (LOGGER.isLoggable(curlRequestTemplateLogLevel)) {
-			logCurlCommandForRequest(method, contentTypeFormat, urlString, params);
+			logCurlCommandForRequest(method, contentTypeFormat, urlString, params, applicationKey);
 		}
 
 		// Add 'Application Key', if it was set by the application
 		// Mambu may handle API requests differently for different Application Keys
-
-		String applicationKey = MambuAPIFactory.getApplicationKey();
 		if (applicationKey != null) {
 			// add application key to the params map
 			if (params == null) {
@@ -128,7 +187,7 @@ public class RequestExecutorImpl implements RequestExecutor {
 
 		}
 
-		HttpClient httpClient = new DefaultHttpClient();
+		HttpClient httpClient = (sharedHttpClient != null) ? sharedHttpClient : new DefaultHttpClient();
 		String response = "";
 		HttpResponse httpResponse = null;
 		try {
@@ -150,7 +209,8 @@ public class RequestExecutorImpl implements RequestExecutor {
 						+ method.name() + ".");
 			}
 			// Process response
-			response = processResponse(httpResponse, method, contentTypeFormat, urlString, params);
+			response = processResponse(httpResponse, method, contentTypeFormat, urlString, params, applicationKey,
+					notFoundExpected);
 
 		} catch (MalformedURLException e) {
 			LOGGER.severe("MalformedURLException: " + e.getMessage());
@@ -159,12 +219,31 @@ public class RequestExecutorImpl implements RequestExecutor {
 			LOGGER.warning("IOException: message= " + e.getMessage());
 			throw new MambuApiException(e);
 		} finally {
-			httpClient.getConnectionManager().shutdown();
+			// The response is read, or the request failed
+			RequestDeadline.cancelAbort();
+			// Release the connection back to the pool when using a shared client, also if reading the response failed
+			if (httpResponse != null) {
+				EntityUtils.consumeQuietly(httpResponse.getEntity());
+			}
+			// Shared clients keep their connections open for subsequent requests
+			if (sharedHttpClient == null) {
+				httpClient.getConnectionManager().shutdown();
+			}
 		}
 
 		return response;
 	}
 
+	/**
+	 * Send a request. If the current thread has a {@link RequestDeadline}, the request is aborted when it is still
+	 * running at the deadline
+	 */
+	private static HttpResponse send(HttpClient httpClient, HttpRequestBase request) throws IOException,
+			MambuApiException {
+		RequestDeadline.abortAtDeadline(request);
+		return httpClient.execute(request);
+	}
+
 	/**
 	 * Executes a POST request as per the interface specification
 	 */
@@ -204,7 +283,7 @@ public class RequestExecutorImpl implements RequestExecutor {
 		}
 
 		// execute
-		HttpResponse httpResponse = httpClient.execute(httpPost);
+		HttpResponse httpResponse = send(httpClient, httpPost);
 
 		return httpResponse;
 
@@ -229,7 +308,7 @@ public class RequestExecutorImpl implements RequestExecutor {
 		httpPatch.setEntity(jsonEntity);
 
 		// execute
-		HttpResponse httpResponse = httpClient.execute(httpPatch);
+		HttpResponse httpResponse = send(httpClient, httpPatch);
 
 		return httpResponse;
 
@@ -259,7 +338,7 @@ public class RequestExecutorImpl implements RequestExecutor {
 		// setHeader("Content-Type") not need for GET requests
 
 		// execute
-		HttpResponse httpResponse = httpClient.execute(httpGet);
+		HttpResponse httpResponse = send(httpClient, httpGet);
 
 		return httpResponse;
 
@@ -288,7 +367,7 @@ public class RequestExecutorImpl implements RequestExecutor {
 		httpDelete.setHeader("Authorization", "Basic " + encodedAuthorization);
 
 		// execute
-		HttpResponse httpResponse = httpClient.execute(httpDelete);
+		HttpResponse httpResponse = send(httpClient, httpDelete);
 
 		return httpResponse;
 
@@ -336,10 +415,15 @@ public class RequestExecutorImpl implements RequestExecutor {
 	 *            URL string for the HTTP request
 	 * @param params
 	 *            Params Map
+	 * @param appKeyValue
+	 *            application key used in the request, to be removed when logging
+	 * @param notFoundExpected
+	 *            true if a Not Found response is expected and must not be logged as an error
 	 * @return HTTP response string
 	 */
 	private static String processResponse(HttpResponse httpResponse, Method method, ContentType contentType,
-			String urlString, ParamsMap params) throws IOException, MambuApiException {
+			String urlString, ParamsMap params, String appKeyValue, boolean notFoundExpected) throws IOException,
+			MambuApiException {
 
 		// get status
 		int status = httpResponse.getStatusLine().getStatusCode();
@@ -369,11 +453,15 @@ public class RequestExecutorImpl implements RequestExecutor {
 		// Set error code and throw Mambu Exception
 		Integer errorCode = status;
 
+		// Expected Not Found responses (e.g. for existence checks) are not errors
+		if (notFoundExpected && status == HttpURLConnection.HTTP_NOT_FOUND) {
+			throw new MambuApiException(errorCode, response);
+		}
+
 		// Log raising exception
 		if (LOGGER.isLoggable(exceptionLogLevel)) {
 			// Remove appKey from the URL string when logging exception
 			String urlLogString = urlString;
-			String appKeyValue = MambuAPIFactory.getApplicationKey();
 			if (appKeyValue != null) {
 				urlLogString = urlLogString.replace(appKeyValue, "...");
 			}
@@ -386,7 +474,7 @@ public class RequestExecutorImpl implements RequestExecutor {
 			if (!LOGGER.isLoggable(requesLogLevel)) {
 				// Request was not log. Log it now with the exception
 				LOGGER.log(exceptionLogLevel, "Request causing Mambu exception:");
-				logApiRequest(exceptionLogLevel, method, contentType, urlLogString, params);
+				logApiRequest(exceptionLogLevel, method, contentType, urlLogString, params, appKeyValue);
 			}
 		}
 		// pass to MambuApiException the content that goes with the error code
@@ -499,10 +587,12 @@ public class RequestExecutorImpl implements RequestExecutor {
 	 *            the ParamsMap.
 	 * 
 	 *            The method shall be invoked before the appKey is added to the map to avoid printing appKey details
+	 * @param appKeyValue
+	 *            application key to be removed from the logged details
 	 * 
 	 */
 	private static void logApiRequest(Level logerLevel, Method method, ContentType contentType, String urlString,
-			ParamsMap params) {
+			ParamsMap params, String appKeyValue) {
 
 		if (!LOGGER.isLoggable(logerLevel) || method == null) {
 			return;
@@ -557,7 +647,6 @@ public class RequestExecutorImpl implements RequestExecutor {
 			requestDetails = requestDetails + " (contentType=" + contentType + ")";
 		}
 		// Remove appKey from the URL string when logging exception
-		String appKeyValue = MambuAPIFactory.getApplicationKey();
 		if (requestDetails != null && appKeyValue != null) {
 			requestDetails = requestDetails.replace(appKeyValue, "...");
 		}
@@ -591,9 +680,11 @@ public class RequestExecutorImpl implements RequestExecutor {
 	 *            url string with added params for www-form-urlencoded requests
 	 * @param params
 	 *            the ParamsMap.
+	 * @param appKeyValue
+	 *            application key used in the request (only a placeholder is logged)
 	 */
 	private static void logCurlCommandForRequest(Method method, ContentType contentType, String urlString,
-			ParamsMap params) {
+			ParamsMap params, String appKeyValue) {
 
 		if (method == null) {
 			return;
@@ -623,7 +714,6 @@ public class RequestExecutorImpl implements RequestExecutor {
 		String curlCommand = "curl" + apiMethod + contentHeader;
 
 		// Add appkey param (as a placeholder only)
-		String appKeyValue = MambuAPIFactory.getApplicationKey();
 		final String emptyAppKey = "...";
 
 		// Make url command required for the contentType
@@ -0,0 +1,145 @@
+package com.mambu.apisdk.util;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import com.google.common.util.concurrent.RateLimiter;
+import com.mambu.apisdk.exception.MambuApiException;
+import com.mambu.apisdk.util.RequestExecutor.Method;
+
+/**
+ * Rate limit and bulkhead (maximum number of requests in flight) applied by one or more
+ * {@link ThrottledRequestExecutor}s.
+ *
+ * Executors sharing a throttle share its limits, so that all executors sending requests for the same tenant together
+ * stay within the tenant's limits. The limits can be changed while requests are in flight: requests started before
+ * the change complete under the previous limits, requests started after the change use the new ones.
+ *
+ * @author agent
+ *
+ */
+public class RequestThrottle {
+
+	private final static Logger LOGGER = Logger.getLogger(RequestThrottle.class.getName());
+
+	/**
+	 * Limits in effect. Replaced as a whole when the limits change, so that each request acquires and releases its
+	 * permits from the same limits
+	 */
+	private static class Limits {
+		private final Double requestsPerSecond;
+		private final Integer maxConcurrentRequests;
+		private final long maxWaitMillis;
+		private final RateLimiter rateLimiter;
+		private final Semaphore bulkhead;
+
+		private Limits(Double requestsPerSecond, Integer maxConcurrentRequests, long maxWaitMillis) {
+			this.requestsPerSecond = requestsPerSecond;
+			this.maxConcurrentRequests = maxConcurrentRequests;
+			this.maxWaitMillis = maxWaitMillis;
+			this.rateLimiter = (requestsPerSecond == null) ? null : RateLimiter.create(requestsPerSecond);
+			this.bulkhead = (maxConcurrentRequests == null) ? null : new Semaphore(maxConcurrentRequests, true);
+		}
+	}
+
+	private volatile Limits limits;
+
+	/***
+	 * Create a throttle
+	 *
+	 * @param requestsPerSecond
+	 *            maximum number of requests per second. If null, the rate is not limited
+	 * @param maxConcurrentRequests
+	 *            maximum number of requests in flight. If null, the number of concurrent requests is not limited
+	 * @param maxWaitMillis
+	 *            maximum time to wait for a permit before rejecting the request
+	 */
+	public RequestThrottle(Double requestsPerSecond, Integer maxConcurrentRequests, long maxWaitMillis) {
+		this.limits = createLimits(requestsPerSecond, maxConcurrentRequests, maxWaitMillis);
+	}
+
+	/***
+	 * Change the limits. Requests in flight complete under the previous limits
+	 *
+	 * @param requestsPerSecond
+	 *            maximum number of requests per second. If null, the rate is not limited
+	 * @param maxConcurrentRequests
+	 *            maximum number of requests in flight. If null, the number of concurrent requests is not limited
+	 * @param maxWaitMillis
+	 *            maximum time to wait for a permit before rejecting the request
+	 */
+	public synchronized void setLimits(Double requestsPerSecond, Integer maxConcurrentRequests, long maxWaitMillis) {
+		Limits current = limits;
+		if (equal(current.requestsPerSecond, requestsPerSecond)
+				&& equal(current.maxConcurrentRequests, maxConcurrentRequests)
+				&& current.maxWaitMillis == maxWaitMillis) {
+			// Keep the permits in use
+			return;
+		}
+		limits = createLimits(requestsPerSecond, maxConcurrentRequests, maxWaitMillis);
+	}
+
+	/***
+	 * Get the number of requests which can be started now without waiting for the bulkhead
+	 *
+	 * @return available permits, or null if the number of concurrent requests is not limited
+	 */
+	public Integer getAvailableConcurrentRequests() {
+		Semaphore bulkhead = limits.bulkhead;
+		return (bulkhead == null) ? null : bulkhead.availablePermits();
+	}
+
+	/**
+	 * Wait for a permit to send a request. The returned bulkhead must be released when the request completes
+	 *
+	 * @return the bulkhead the permit was acquired from, or null if the number of concurrent requests is not limited
+	 * @throws MambuApiException
+	 *             with {@link ThrottledRequestExecutor#REQUEST_REJECTED} error code if no permit was obtained within
+	 *             the maximum wait time
+	 */
+	Semaphore acquire(Method method) throws MambuApiException {
+
+		Limits current = limits;
+		// Enter the bulkhead first, so that waiting requests do not consume the rate
+		if (current.bulkhead != null) {
+			boolean acquired;
+			try {
+				acquired = current.bulkhead.tryAcquire(current.maxWaitMillis, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new MambuApiException(e);
+			}
+			if (!acquired) {
+				LOGGER.warning("Too many concurrent requests, rejecting " + method + " request");
+				throw new MambuApiException(ThrottledRequestExecutor.REQUEST_REJECTED, "Too many concurrent requests");
+			}
+		}
+		if (current.rateLimiter != null
+				&& !current.rateLimiter.tryAcquire(current.maxWaitMillis, TimeUnit.MILLISECONDS)) {
+			if (current.bulkhead != null) {
+				current.bulkhead.release();
+			}
+			LOGGER.warning("Request rate exceeded, rejecting " + method + " request");
+			throw new MambuApiException(ThrottledRequestExecutor.REQUEST_REJECTED, "Request rate exceeded");
+		}
+		return current.bulkhead;
+	}
+
+	private static Limits createLimits(Double requestsPerSecond, Integer maxConcurrentRequests, long maxWaitMillis) {
+		if (requestsPerSecond != null && requestsPerSecond <= 0) {
+			throw new IllegalArgumentException("Requests per second must be positive");
+		}
+		if (maxConcurrentRequests != null && maxConcurrentRequests <= 0) {
+			throw new IllegalArgumentException("Max concurrent requests must be positive");
+		}
+		if (maxWaitMillis < 0) {
+			throw new IllegalArgumentException("Max wait time must not be negative");
+		}
+		return new Limits(requestsPerSecond, maxConcurrentRequests, maxWaitMillis);
+	}
+
+	private static boolean equal(Object first, Object second) {
+		return first == null ? second == null : first.equals(second);
+	}
+}
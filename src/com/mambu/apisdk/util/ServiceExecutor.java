@@ -1,6 +1,7 @@
 package com.mambu.apisdk.util;
 
 import java.lang.reflect.Type;
+import java.net.HttpURLConnection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -18,6 +19,7 @@ import com.mambu.api.server.handler.loan.model.JSONLoanAccount;
 import com.mambu.api.server.handler.loan.model.JSONTransactionRequest;
 import com.mambu.api.server.handler.savings.model.JSONSavingsAccount;
 import com.mambu.apisdk.MambuAPIService;
+import com.mambu.apisdk.cache.EntityCache;
 import com.mambu.apisdk.exception.MambuApiException;
 import com.mambu.apisdk.exception.MambuApiResponseMessage;
 import com.mambu.apisdk.util.ApiDefinition.ApiReturnFormat;
@@ -129,10 +131,132 @@ public class ServiceExecutor {
 	 * 
 	 * @throws MambuApiException
 	 */
-	@SuppressWarnings("unchecked")
 	public <R> R execute(ApiDefinition apiDefinition, String objectId, String relatedEntityId, ParamsMap paramsMap)
 			throws MambuApiException {
 
+		String jsonResponse = executeApiRequest(apiDefinition, objectId, relatedEntityId, paramsMap);
+
+		// Process API Response
+		return getResult(jsonResponse, apiDefinition);
+	}
+
+	/****
+	 * Execute API Request to get an entity by its ID using the entity cache, if the cache was set for the
+	 * MambuAPIService. Cached entities are returned without sending the API request. Cached not found responses are
+	 * thrown as MambuApiException with the 404 error code. See {@link EntityCache}
+	 * 
+	 * @param entityType
+	 *            type of the entity returned by the request
+	 * @param apiDefinition
+	 *            API definition for the GET request
+	 * @param objectId
+	 *            entity ID or encoded key
+	 * 
+	 * @return entity
+	 * 
+	 * @throws MambuApiException
+	 */
+	public <R> R executeCached(MambuEntityType entityType, ApiDefinition apiDefinition, String objectId)
+			throws MambuApiException {
+
+		EntityCache entityCache = mambuAPIService.getEntityCache();
+		if (entityCache == null || !entityCache.isCached(entityType) || apiDefinition.getMethod() != Method.GET) {
+			return execute(apiDefinition, objectId);
+		}
+		String jsonResponse = entityCache.get(entityType, objectId);
+		if (jsonResponse != null) {
+			return getResult(jsonResponse, apiDefinition);
+		}
+		String notFoundMessage = entityCache.getNotFound(entityType, objectId);
+		if (notFoundMessage != null) {
+			throw new MambuApiException(HttpURLConnection.HTTP_NOT_FOUND, notFoundMessage);
+		}
+		// Get the version before sending the request: the response is not cached if the entity changes meanwhile
+		long version = entityCache.getVersion(entityType);
+		try {
+			jsonResponse = executeApiRequest(apiDefinition, objectId, null, null);
+		} catch (MambuApiException e) {
+			if (e.isNotFound()) {
+				entityCache.putNotFound(entityType, objectId, e.getErrorMessage(), version);
+			}
+			throw e;
+		}
+		R result = getResult(jsonResponse, apiDefinition);
+		entityCache.put(entityType, objectId, result, jsonResponse, version);
+		return result;
+	}
+
+	/****
+	 * Execute API Request to check if an entity exists. Uses the entity cache, if the cache was set for the
+	 * MambuAPIService, like {@link #executeCached(MambuEntityType, ApiDefinition, String)}. A Not Found response is
+	 * expected and is neither logged as an error nor thrown
+	 * 
+	 * @param entityType
+	 *            type of the entity returned by the request
+	 * @param apiDefinition
+	 *            API definition for the GET request
+	 * @param objectId
+	 *            entity ID or encoded key
+	 * 
+	 * @return true if the entity exists, false if Mambu responded with Not Found
+	 * 
+	 * @throws MambuApiException
+	 *             for errors other than Not Found
+	 */
+	public boolean executeExists(MambuEntityType entityType, ApiDefinition apiDefinition, String objectId)
+			throws MambuApiException {
+
+		EntityCache entityCache = mambuAPIService.getEntityCache();
+		boolean cached = entityCache != null && entityCache.isCached(entityType)
+				&& apiDefinition.getMethod() == Method.GET;
+		long version = 0;
+		if (cached) {
+			if (entityCache.get(entityType, objectId) != null) {
+				return true;
+			}
+			if (entityCache.getNotFound(entityType, objectId) != null) {
+				return false;
+			}
+			// Get the version before sending the request: the response is not cached if the entity changes meanwhile
+			version = entityCache.getVersion(entityType);
+		}
+		String jsonResponse;
+		try {
+			jsonResponse = executeApiRequest(apiDefinition, objectId, null, null, true);
+		} catch (MambuApiException e) {
+			if (!e.isNotFound()) {
+				throw e;
+			}
+			if (cached) {
+				entityCache.putNotFound(entityType, objectId, e.getErrorMessage(), version);
+			}
+			return false;
+		}
+		if (cached) {
+			entityCache.put(entityType, objectId, getResult(jsonResponse, apiDefinition), jsonResponse, version);
+		}
+		return true;
+	}
+
+	/****
+	 * Build and execute API Request using its ApiDefinition and supplied input data
+	 * 
+	 * @return Mambu's response string
+	 */
+	private String executeApiRequest(ApiDefinition apiDefinition, String objectId, String relatedEntityId,
+			ParamsMap paramsMap) throws MambuApiException {
+		return executeApiRequest(apiDefinition, objectId, relatedEntityId, paramsMap, false);
+	}
+
+	/****
+	 * Build and execute API Request using its ApiDefinition and supplied input data. Not Found responses are not logged
+	 * as errors if notFoundExpected is true
+	 * 
+	 * @return Mambu's response string
+	 */
+	private String executeApiRequest(ApiDefinition apiDefinition, String objectId, String relatedEntityId,
+			ParamsMap paramsMap, boolean notFoundExpected) throws MambuApiException {
+
 		if (apiDefinition == null) {
 			throw new IllegalArgumentException("ApiDefinition cannot be NULL");
 
@@ -154,9 +278,30 @@ public class ServiceExecutor {
 		ContentType contentType = apiDefinition.getContentType();
 
 		// Use mambuAPIService to execute request
-		String jsonResponse = mambuAPIService.executeRequest(apiUrlPath, paramsMap, method, contentType);
+		try {
+			if (notFoundExpected) {
+				return mambuAPIService.executeLookupRequest(apiUrlPath, paramsMap, method, contentType);
+			}
+			return mambuAPIService.executeRequest(apiUrlPath, paramsMap, method, contentType);
+		} finally {
+			// Cached entities changed by this request are no longer valid (even if the request failed)
+			invalidateCachedEntities(apiDefinition, objectId, paramsMap);
+		}
+	}
 
-		// Process API Response. Get the return format from the apiDefintion
+	/****
+	 * Get the result of the API request from Mambu's response
+	 * 
+	 * @param jsonResponse
+	 *            JSON response string
+	 * @param apiDefinition
+	 *            API definition for the request
+	 * @return object result object, which will be an API specific object or a list of objects
+	 */
+	@SuppressWarnings("unchecked")
+	private <R> R getResult(String jsonResponse, ApiDefinition apiDefinition) {
+
+		// Get the return format from the apiDefintion
 		ApiReturnFormat returnFormat = apiDefinition.getApiReturnFormat();
 
 		R result = null;
@@ -336,6 +481,56 @@ public class ServiceExecutor {
 	}
 
 	// // Private Helper methods ////
+	/****
+	 * Invalidate cached entities which may be changed by the API request: the entity the request is sent for (e.g.
+	 * "loans/{ID}/transactions") and the target accounts of transfers. Search requests do not invalidate anything
+	 * 
+	 * @param apiDefinition
+	 *            Api Definition for the API request
+	 * @param objectId
+	 *            object ID for the API request
+	 * @param paramsMap
+	 *            request's params
+	 */
+	private void invalidateCachedEntities(ApiDefinition apiDefinition, String objectId, ParamsMap paramsMap) {
+		EntityCache entityCache = mambuAPIService.getEntityCache();
+		if (entityCache == null || apiDefinition.getMethod() == Method.GET) {
+			return;
+		}
+		String endPoint = apiDefinition.getEndPoint();
+		String entityId = objectId;
+		String urlPath = apiDefinition.getUrlPath();
+		if (urlPath != null) {
+			// URL path is provided as "endPoint/entityId/..."
+			String[] pathParts = urlPath.split("[/?]");
+			endPoint = pathParts[0];
+			entityId = (pathParts.length > 1) ? pathParts[1] : null;
+			// Searches, e.g. "clients/search" or "loans/transactions/search", are POST requests which change nothing
+			if (APIData.SEARCH.equals(entityId) || APIData.TRANSACTIONS.equals(entityId)) {
+				return;
+			}
+		}
+		MambuEntityType entityType = EntityCache.getEntityType(endPoint);
+		if (entityType != null && entityId != null) {
+			entityCache.invalidate(entityType, entityId);
+		} else if (entityType != null && apiDefinition.getMethod() != Method.POST) {
+			// Updated or deleted entities are not known: invalidate all of them
+			entityCache.invalidateAll(entityType);
+		} else if (entityType != null) {
+			// POST without ID creates new entities: their IDs may have been cached as not found
+			entityCache.invalidateNotFound(entityType);
+		}
+		// Transfers also change the target account
+		if (paramsMap != null) {
+			if (paramsMap.get(APIData.TO_LOAN) != null) {
+				entityCache.invalidate(MambuEntityType.LOAN_ACCOUNT, paramsMap.get(APIData.TO_LOAN));
+			}
+			if (paramsMap.get(APIData.TO_SAVINGS) != null) {
+				entityCache.invalidate(MambuEntityType.SAVINGS_ACCOUNT, paramsMap.get(APIData.TO_SAVINGS));
+			}
+		}
+	}
+
 	/****
 	 * Get URL path for the API request based on the request's ApiDefinition. The URL path is created to comply with the
 	 * following URL path pattern: endPoint/objectId/relatedEntity. ApiDefinition for the request determines which URL
@@ -0,0 +1,132 @@
+package com.mambu.apisdk.util;
+
+import java.util.concurrent.Semaphore;
+
+import com.mambu.apisdk.exception.MambuApiException;
+
+/**
+ * Request executor decorator which limits the rate and the number of concurrent requests sent by the wrapped executor.
+ *
+ * Used to isolate tenants sharing the same transport: each tenant gets its own rate limit and its own bulkhead (maximum
+ * number of requests in flight), so that one busy tenant cannot use up all connections of the shared pool. Executors
+ * created with the same {@link RequestThrottle} share its limits.
+ *
+ * Requests which cannot obtain a permit within the configured wait time are rejected with a MambuApiException with
+ * {@link #REQUEST_REJECTED} error code, without sending them to Mambu
+ *
+ * @author agent
+ *
+ */
+public class ThrottledRequestExecutor implements RequestExecutor {
+
+	/**
+	 * Error code used for requests rejected by the throttling executor (same as HTTP 429 "Too Many Requests")
+	 */
+	public final static int REQUEST_REJECTED = 429;
+
+	private final RequestExecutor executor;
+	private final RequestThrottle throttle;
+
+	/***
+	 * Create a throttling executor with its own limits
+	 *
+	 * @param executor
+	 *            the executor to send requests with. Must not be null
+	 * @param requestsPerSecond
+	 *            maximum number of requests per second. If null, the rate is not limited
+	 * @param maxConcurrentRequests
+	 *            maximum number of requests in flight. If null, the number of concurrent requests is not limited
+	 * @param maxWaitMillis
+	 *            maximum time to wait for a permit before rejecting the request
+	 */
+	public ThrottledRequestExecutor(RequestExecutor executor, Double requestsPerSecond, Integer maxConcurrentRequests,
+			long maxWaitMillis) {
+		this(executor, new RequestThrottle(requestsPerSecond, maxConcurrentRequests, maxWaitMillis));
+	}
+
+	/***
+	 * Create a throttling executor sharing the limits of other executors
+	 *
+	 * @param executor
+	 *            the executor to send requests with. Must not be null
+	 * @param throttle
+	 *            the limits shared by the executors. Must not be null
+	 */
+	public ThrottledRequestExecutor(RequestExecutor executor, RequestThrottle throttle) {
+		if (executor == null) {
+			throw new IllegalArgumentException("Request executor must not be null");
+		}
+		if (throttle == null) {
+			throw new IllegalArgumentException("Request throttle must not be null");
+		}
+		this.executor = executor;
+		this.throttle = throttle;
+	}
+
+	/***
+	 * Get the wrapped executor
+	 *
+	 * @return request executor
+	 */
+	public RequestExecutor getExecutor() {
+		return executor;
+	}
+
+	/***
+	 * Get the number of requests which can be started now without waiting for the bulkhead
+	 *
+	 * @return available permits, or null if the number of concurrent requests is not limited
+	 */
+	public Integer getAvailableConcurrentRequests() {
+		return throttle.getAvailableConcurrentRequests();
+	}
+
+	@Override
+	public void setAuthorization(String username, String password) {
+		executor.setAuthorization(username, password);
+	}
+
+	@Override
+	public String executeRequest(String urlString, Method method) throws MambuApiException {
+		return executeRequest(urlString, null, method, ContentType.WWW_FORM);
+	}
+
+	@Override
+	public String executeRequest(String urlString, ParamsMap params, Method method) throws MambuApiException {
+		return executeRequest(urlString, params, method, ContentType.WWW_FORM);
+	}
+
+	@Override
+	public String executeRequest(String urlString, Method method, ContentType contentTypeFormat)
+			throws MambuApiException {
+		return executeRequest(urlString, null, method, contentTypeFormat);
+	}
+
+	@Override
+	public String executeRequest(String urlString, ParamsMap params, Method method, ContentType contentTypeFormat)
+			throws MambuApiException {
+
+		Semaphore bulkhead = throttle.acquire(method);
+		try {
+			return executor.executeRequest(urlString, params, method, contentTypeFormat);
+		} finally {
+			if (bulkhead != null) {
+				bulkhead.release();
+			}
+		}
+	}
+
+	@Override
+	public String executeLookupRequest(String urlString, ParamsMap params, Method method, ContentType contentTypeFormat)
+			throws MambuApiException {
+
+		Semaphore bulkhead = throttle.acquire(method);
+		try {
+			return executor.executeLookupRequest(urlString, params, method, contentTypeFormat);
+		} finally {
+			if (bulkhead != null) {
+				bulkhead.release();
+			}
+		}
+	}
+}
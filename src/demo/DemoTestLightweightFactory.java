@@ -0,0 +1,81 @@
+package demo;
+
+import com.mambu.apisdk.MambuAPILightweightFactory;
+import com.mambu.apisdk.MambuAPIServiceFactory;
+import com.mambu.apisdk.exception.MambuApiException;
+
+/**
+ * Startup time benchmark comparing {@link MambuAPIServiceFactory} (Guice) with {@link MambuAPILightweightFactory}
+ * (plain Java). No API requests are sent: the benchmark measures only the time to create a factory and obtain the
+ * services typically used by a batch job.
+ *
+ * Cold start is only meaningful for the first factory created in the JVM, so run the program once with "guice" and
+ * once with "lightweight" as the argument to compare cold starts. Without arguments both factories are measured in the
+ * same JVM (the lightweight factory first, so it is charged with loading the service classes)
+ *
+ * @author agent
+ *
+ */
+public class DemoTestLightweightFactory {
+
+	private static final String domain = "demo.sandbox.mambu.com";
+	private static final String user = "demo";
+	private static final String password = "demo";
+
+	private static final int warmIterations = 1000;
+
+	public static void main(String[] args) {
+		try {
+			String mode = (args != null && args.length > 0) ? args[0] : "both";
+
+			if (mode.equals("lightweight") || mode.equals("both")) {
+				System.out.println("Lightweight factory cold start (ms)=" + nanosToMillis(createLightweight()));
+			}
+			if (mode.equals("guice") || mode.equals("both")) {
+				System.out.println("Guice factory cold start (ms)=" + nanosToMillis(createGuice()));
+			}
+
+			// Warm timings: average per factory after classes are loaded
+			long lightweightTotal = 0;
+			long guiceTotal = 0;
+			for (int i = 0; i < warmIterations; i++) {
+				lightweightTotal += createLightweight();
+				guiceTotal += createGuice();
+			}
+			System.out.println("Lightweight factory warm average (ms)="
+					+ nanosToMillis(lightweightTotal / warmIterations));
+			System.out.println("Guice factory warm average (ms)=" + nanosToMillis(guiceTotal / warmIterations));
+
+		} catch (MambuApiException e) {
+			System.out.println("Exception caught in Demo Test Lightweight Factory");
+			System.out.println("Error code=" + e.getErrorCode());
+			System.out.println(" Cause=" + e.getCause() + ".  Message=" + e.getMessage());
+		}
+	}
+
+	private static long createLightweight() {
+		long start = System.nanoTime();
+
+		MambuAPILightweightFactory factory = MambuAPILightweightFactory.getFactory(domain, user, password);
+		factory.getClientService();
+		factory.getLoanService();
+		factory.getSavingsService();
+
+		return System.nanoTime() - start;
+	}
+
+	private static long createGuice() throws MambuApiException {
+		long start = System.nanoTime();
+
+		MambuAPIServiceFactory factory = MambuAPIServiceFactory.getFactory(domain, user, password);
+		factory.getClientService();
+		factory.getLoanService();
+		factory.getSavingsService();
+
+		return System.nanoTime() - start;
+	}
+
+	private static String nanosToMillis(long nanos) {
+		return String.format("%.3f", nanos / 1000000.0);
+	}
+}
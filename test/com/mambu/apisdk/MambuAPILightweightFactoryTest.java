@@ -0,0 +1,53 @@
+package com.mambu.apisdk;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+/**
+ * Tests for the factory creating services without Guice
+ *
+ * @author agent
+ *
+ */
+public class MambuAPILightweightFactoryTest extends MambuAPIServiceTest {
+
+	@Test
+	public void cachesServices() {
+
+		MambuAPILightweightFactory factory = new MambuAPILightweightFactory(mambuApiService);
+
+		assertNotNull(factory.getLoanService());
+		assertSame(factory.getLoanService(), factory.getLoanService());
+		assertSame(factory.getClientService(), factory.getClientService());
+		assertSame(mambuApiService, factory.getMambuAPIService());
+
+		// Each factory has its own services
+		MambuAPILightweightFactory otherFactory = new MambuAPILightweightFactory(mambuApiService);
+		assertNotSame(factory.getLoanService(), otherFactory.getLoanService());
+	}
+
+	@Test
+	public void createsAllServices() {
+
+		MambuAPILightweightFactory factory = MambuAPILightweightFactory.getFactory(domain, username, password);
+
+		assertNotNull(factory.getAccountingService());
+		assertNotNull(factory.getActivitiesService());
+		assertNotNull(factory.getCommentsService());
+		assertNotNull(factory.getCustomFieldValueService());
+		assertNotNull(factory.getCustomViewsService());
+		assertNotNull(factory.getDocumentsService());
+		assertNotNull(factory.getDocumentTemplatesService());
+		assertNotNull(factory.getIntelligenceService());
+		assertNotNull(factory.getLineOfCreditService());
+		assertNotNull(factory.getOrganizationService());
+		assertNotNull(factory.getRepaymentsService());
+		assertNotNull(factory.getSavingsService());
+		assertNotNull(factory.getSearchService());
+		assertNotNull(factory.getTasksService());
+		assertNotNull(factory.getUsersService());
+	}
+}
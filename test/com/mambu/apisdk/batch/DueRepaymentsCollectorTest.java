@@ -0,0 +1,79 @@
+package com.mambu.apisdk.batch;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.mambu.apisdk.MambuAPIServiceTest;
+import com.mambu.apisdk.exception.MambuApiException;
+import com.mambu.apisdk.util.APIData;
+import com.mambu.apisdk.util.ParamsMap;
+import com.mambu.apisdk.util.RequestExecutor.ContentType;
+import com.mambu.apisdk.util.RequestExecutor.Method;
+import com.mambu.loans.shared.model.Repayment;
+
+/**
+ * Tests for the due repayments collector
+ *
+ * @author agent
+ *
+ */
+public class DueRepaymentsCollectorTest extends MambuAPIServiceTest {
+
+	@Test
+	public void streamsShardsInDueDateOrder() throws MambuApiException {
+
+		// Each shard of two days returns the later repayments first, over two pages
+		Mockito.when(
+				executor.executeRequest(Mockito.contains("repayments"), (ParamsMap) Mockito.any(),
+						Mockito.eq(Method.GET), (ContentType) Mockito.any())).thenAnswer(new Answer<String>() {
+			@Override
+			public String answer(InvocationOnMock invocation) {
+				ParamsMap params = (ParamsMap) invocation.getArguments()[1];
+				String from = params.get(APIData.DUE_FROM);
+				String to = params.get(APIData.DUE_TO);
+				List<String> shard = Arrays.asList(makeRepayment(to, "b"), makeRepayment(to, "a"),
+						makeRepayment(from, "c"));
+				int offset = Integer.parseInt(params.get(APIData.OFFSET));
+				int limit = Integer.parseInt(params.get(APIData.LIMIT));
+				StringBuilder json = new StringBuilder("[");
+				for (int i = offset; i < Math.min(offset + limit, shard.size()); i++) {
+					json.append(i > offset ? "," : "").append(shard.get(i));
+				}
+				return json.append("]").toString();
+			}
+		});
+
+		Calendar from = Calendar.getInstance();
+		from.set(2016, Calendar.MARCH, 1, 9, 0);
+		Calendar to = Calendar.getInstance();
+		to.set(2016, Calendar.MARCH, 4, 9, 0);
+		final List<String> keys = new ArrayList<String>();
+		int count = new DueRepaymentsCollector(mambuApiService, 2, 2).collect(from.getTime(), to.getTime(), 2,
+				new RepaymentConsumer() {
+					@Override
+					public void onRepayment(Repayment repayment) {
+						keys.add(repayment.getEncodedKey());
+					}
+				});
+
+		assertEquals(6, count);
+		assertEquals(Arrays.asList("2016-03-01c", "2016-03-02b", "2016-03-02a", "2016-03-03c", "2016-03-04b",
+				"2016-03-04a"), keys);
+		// Two shards of two pages each
+		Mockito.verify(executor, Mockito.times(4)).executeRequest(Mockito.contains("repayments"),
+				(ParamsMap) Mockito.any(), Mockito.eq(Method.GET), (ContentType) Mockito.any());
+	}
+
+	private static String makeRepayment(String date, String suffix) {
+		return "{\"encodedKey\":\"" + date + suffix + "\",\"dueDate\":\"" + date + "T12:00:00+0000\"}";
+	}
+}
@@ -0,0 +1,88 @@
+package com.mambu.apisdk.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.mambu.accounting.shared.model.EntryType;
+import com.mambu.apisdk.MambuAPIServiceTest;
+import com.mambu.apisdk.exception.MambuApiException;
+import com.mambu.apisdk.model.ApiGLJournalEntry;
+import com.mambu.apisdk.util.ParamsMap;
+import com.mambu.apisdk.util.RequestExecutor.ContentType;
+import com.mambu.apisdk.util.RequestExecutor.Method;
+
+/**
+ * Tests for the GL journal bulk poster
+ *
+ * @author agent
+ *
+ */
+public class GLJournalBulkPosterTest extends MambuAPIServiceTest {
+
+	private static final String journalEntriesUrl = "https://demo.mambutest.com/api/gljournalentries";
+
+	@Test
+	public void splitsIntoBalancedChunks() {
+
+		// One debit of 100 against ten credits of 10
+		List<ApiGLJournalEntry> entries = new ArrayList<ApiGLJournalEntry>();
+		entries.add(new ApiGLJournalEntry("1000", EntryType.DEBIT, new BigDecimal("100")));
+		for (int i = 0; i < 10; i++) {
+			entries.add(new ApiGLJournalEntry("20" + i, EntryType.CREDIT, new BigDecimal("10")));
+		}
+		GLJournalPosting posting = new GLJournalPosting("branch_1", "2016-01-31", "Month end", entries);
+
+		List<GLJournalPosting> chunks = GLJournalBulkPoster.split(posting, 4);
+
+		assertEquals(4, chunks.size());
+		BigDecimal total = BigDecimal.ZERO;
+		for (GLJournalPosting chunk : chunks) {
+			assertTrue(chunk.isBalanced());
+			assertTrue(chunk.getEntries().size() <= 4);
+			assertEquals("branch_1", chunk.getBranchId());
+			total = total.add(chunk.getTotal(EntryType.DEBIT));
+		}
+		assertEquals(0, new BigDecimal("100").compareTo(total));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsUnbalancedPostings() {
+
+		List<ApiGLJournalEntry> entries = new ArrayList<ApiGLJournalEntry>();
+		entries.add(new ApiGLJournalEntry("1000", EntryType.DEBIT, new BigDecimal("100")));
+		entries.add(new ApiGLJournalEntry("2000", EntryType.CREDIT, new BigDecimal("90")));
+
+		new GLJournalBulkPoster(mambuApiService).post(entries, "branch_1", "2016-01-31", null);
+	}
+
+	@Test
+	public void reportsFailedChunks() throws MambuApiException {
+
+		Mockito.when(
+				executor.executeRequest(Mockito.eq(journalEntriesUrl), (ParamsMap) Mockito.any(),
+						Mockito.eq(Method.POST), Mockito.eq(ContentType.WWW_FORM)))
+				.thenReturn("[{\"encodedKey\":\"8a1\"},{\"encodedKey\":\"8a2\"}]")
+				.thenThrow(new MambuApiException(400, "{\"returnCode\":1000,\"returnStatus\":\"INVALID_GL_ACCOUNT\"}"));
+
+		List<ApiGLJournalEntry> entries = new ArrayList<ApiGLJournalEntry>();
+		for (int i = 0; i < 2; i++) {
+			entries.add(new ApiGLJournalEntry("100" + i, EntryType.DEBIT, new BigDecimal("5")));
+			entries.add(new ApiGLJournalEntry("200" + i, EntryType.CREDIT, new BigDecimal("5")));
+		}
+		GLJournalBulkResult result = new GLJournalBulkPoster(mambuApiService, 2, 1).post(entries, "branch_1",
+				"2016-01-31", null);
+
+		assertEquals(1, result.getPostedChunks().size());
+		assertEquals(2, result.getPostedEntries().size());
+		assertEquals(1, result.getFailedChunks().size());
+		Mockito.verify(executor, Mockito.times(2)).executeRequest(Mockito.eq(journalEntriesUrl),
+				(ParamsMap) Mockito.any(), Mockito.eq(Method.POST), Mockito.eq(ContentType.WWW_FORM));
+	}
+}
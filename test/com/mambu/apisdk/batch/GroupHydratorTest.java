@@ -0,0 +1,80 @@
+package com.mambu.apisdk.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.mambu.apisdk.MambuAPIServiceTest;
+import com.mambu.apisdk.exception.MambuApiException;
+import com.mambu.apisdk.util.ParamsMap;
+import com.mambu.apisdk.util.RequestExecutor.ContentType;
+import com.mambu.apisdk.util.RequestExecutor.Method;
+
+/**
+ * Tests for the group hydrator
+ *
+ * @author agent
+ *
+ */
+public class GroupHydratorTest extends MambuAPIServiceTest {
+
+	@Override
+	public void setUp() throws MambuApiException {
+		super.setUp();
+
+		// Groups G1 and G2 share client K2. Each client has one loan account named after it
+		Mockito.when(
+				executor.executeRequest(Mockito.anyString(), (ParamsMap) Mockito.any(), Mockito.eq(Method.GET),
+						(ContentType) Mockito.any())).thenAnswer(new Answer<String>() {
+			@Override
+			public String answer(InvocationOnMock invocation) {
+				String url = (String) invocation.getArguments()[0];
+				if (url.endsWith("/groups/G1")) {
+					return "{\"theGroup\":{\"id\":\"G1\"},"
+							+ "\"groupMembers\":[{\"clientKey\":\"K1\"},{\"clientKey\":\"K2\"}]}";
+				}
+				if (url.endsWith("/groups/G2")) {
+					return "{\"theGroup\":{\"id\":\"G2\"},"
+							+ "\"groupMembers\":[{\"clientKey\":\"K2\"},{\"clientKey\":\"K3\"}]}";
+				}
+				if (url.endsWith("/loans")) {
+					String clientKey = url.substring(url.indexOf("clients/") + 8, url.indexOf("/loans"));
+					return "[{\"id\":\"L" + clientKey + "\"}]";
+				}
+				return "[]";
+			}
+		});
+		Mockito.when(
+				executor.executeRequest(Mockito.contains("clients/search"), (ParamsMap) Mockito.any(),
+						Mockito.eq(Method.POST), (ContentType) Mockito.any())).thenReturn(
+				"[{\"encodedKey\":\"K1\"},{\"encodedKey\":\"K2\"},{\"encodedKey\":\"K3\"}]");
+	}
+
+	@Test
+	public void fetchesSharedMembersOnce() throws MambuApiException {
+
+		List<HydratedGroup> groups = new GroupHydrator(mambuApiService, 2, 100).hydrateGroups(Arrays.asList("G1",
+				"G2", "G1"));
+
+		assertEquals(2, groups.size());
+		assertEquals("G2", groups.get(1).getGroup().getGroup().getId());
+		assertEquals(2, groups.get(1).getMembers().size());
+		assertSame(groups.get(0).getMembers().get(1), groups.get(1).getMembers().get(0));
+		assertEquals("LK3", groups.get(1).getMembers().get(1).getLoanAccounts().get(0).getId());
+
+		// One search for the clients and one request per client and account type
+		Mockito.verify(executor).executeRequest(Mockito.contains("clients/search"), (ParamsMap) Mockito.any(),
+				Mockito.eq(Method.POST), (ContentType) Mockito.any());
+		Mockito.verify(executor, Mockito.times(3)).executeRequest(Mockito.endsWith("/loans"),
+				(ParamsMap) Mockito.any(), Mockito.eq(Method.GET), (ContentType) Mockito.any());
+		Mockito.verify(executor, Mockito.times(3)).executeRequest(Mockito.endsWith("/savings"),
+				(ParamsMap) Mockito.any(), Mockito.eq(Method.GET), (ContentType) Mockito.any());
+	}
+}
@@ -0,0 +1,127 @@
+package com.mambu.apisdk.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.mambu.api.server.handler.core.dynamicsearch.model.JSONFilterConstraint;
+import com.mambu.api.server.handler.core.dynamicsearch.model.JSONFilterConstraints;
+import com.mambu.apisdk.MambuAPIServiceTest;
+import com.mambu.apisdk.exception.MambuApiException;
+import com.mambu.apisdk.util.ParamsMap;
+import com.mambu.apisdk.util.RequestExecutor.ContentType;
+import com.mambu.apisdk.util.RequestExecutor.Method;
+
+/**
+ * Tests for the loan account job runner
+ *
+ * @author agent
+ *
+ */
+public class LoanAccountJobRunnerTest extends MambuAPIServiceTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final AtomicBoolean failK3 = new AtomicBoolean(true);
+	// When set, accounts leave the selection once the operation is applied to them
+	private final AtomicBoolean shrinkingSelection = new AtomicBoolean();
+	private final Set<String> applied = Collections.synchronizedSet(new HashSet<String>());
+
+	@Override
+	public void setUp() throws MambuApiException {
+		super.setUp();
+
+		// Five accounts K0 to K4. Applying interest to K3 fails while failK3 is set
+		Mockito.when(
+				executor.executeRequest(Mockito.anyString(), (ParamsMap) Mockito.any(), Mockito.eq(Method.POST),
+						(ContentType) Mockito.any())).thenAnswer(new Answer<String>() {
+			@Override
+			public String answer(InvocationOnMock invocation) throws MambuApiException {
+				String url = (String) invocation.getArguments()[0];
+				ParamsMap params = (ParamsMap) invocation.getArguments()[1];
+				if (url.contains("loans/search")) {
+					List<String> selection = new ArrayList<String>();
+					for (int i = 0; i < 5; i++) {
+						if (!shrinkingSelection.get() || !applied.contains("K" + i)) {
+							selection.add("K" + i);
+						}
+					}
+					int offset = Integer.parseInt(params.get("offset"));
+					int limit = Integer.parseInt(params.get("limit"));
+					StringBuilder page = new StringBuilder("[");
+					for (int i = offset; i < Math.min(offset + limit, selection.size()); i++) {
+						page.append(i > offset ? "," : "").append("{\"encodedKey\":\"" + selection.get(i) + "\"}");
+					}
+					return page.append("]").toString();
+				}
+				if (url.contains("loans/K3/") && failK3.get()) {
+					throw new MambuApiException(400, "INVALID_ACCOUNT_STATE");
+				}
+				applied.add(url.substring(url.indexOf("loans/") + 6, url.indexOf("/transactions")));
+				return "{\"encodedKey\":\"T\"}";
+			}
+		});
+	}
+
+	@Test
+	public void resumesFromCheckpoint() throws MambuApiException, IOException {
+
+		File checkpointFile = new File(folder.getRoot(), "interest.checkpoint");
+		JSONFilterConstraints filterConstraints = new JSONFilterConstraints();
+		filterConstraints.setFilterConstraints(new ArrayList<JSONFilterConstraint>());
+		LoanAccountSelector selector = LoanAccountSelector.byFilter(filterConstraints);
+		LoanAccountOperation operation = LoanAccountOperation.applyInterest(new Date(), null);
+		LoanAccountJobRunner runner = new LoanAccountJobRunner(mambuApiService, 2, 100.0, 2);
+
+		LoanAccountJobReport report = runner.run(selector, operation, checkpointFile);
+		assertEquals(5, report.getSelectedCount());
+		assertEquals(4, report.getAppliedCount());
+		assertTrue(report.getFailed().containsKey("K3"));
+		assertEquals(4, Files.readAllLines(checkpointFile.toPath(), Charset.forName("UTF-8")).size());
+
+		// Only the failed account is processed again
+		failK3.set(false);
+		report = runner.run(selector, operation, checkpointFile);
+		assertEquals(4, report.getSkippedCount());
+		assertEquals(1, report.getAppliedCount());
+		assertTrue(report.isSuccessful());
+		Mockito.verify(executor, Mockito.times(6)).executeRequest(Mockito.contains("/transactions"),
+				(ParamsMap) Mockito.any(), Mockito.eq(Method.POST), (ContentType) Mockito.any());
+	}
+
+	@Test
+	public void selectsAccountsBeforeApplying() throws MambuApiException, IOException {
+
+		// Paging by offset while applied accounts leave the selection would skip accounts
+		shrinkingSelection.set(true);
+		failK3.set(false);
+		JSONFilterConstraints filterConstraints = new JSONFilterConstraints();
+		filterConstraints.setFilterConstraints(new ArrayList<JSONFilterConstraint>());
+		LoanAccountJobRunner runner = new LoanAccountJobRunner(mambuApiService, 1, null, 2);
+
+		LoanAccountJobReport report = runner.run(LoanAccountSelector.byFilter(filterConstraints),
+				LoanAccountOperation.applyInterest(new Date(), null), null);
+		assertEquals(5, report.getSelectedCount());
+		assertEquals(5, report.getAppliedCount());
+		assertEquals(5, applied.size());
+	}
+}
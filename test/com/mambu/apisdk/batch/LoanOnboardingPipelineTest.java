@@ -0,0 +1,123 @@
+package com.mambu.apisdk.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.mambu.apisdk.MambuAPIServiceTest;
+import com.mambu.apisdk.batch.LoanOnboardingResult.Stage;
+import com.mambu.apisdk.exception.MambuApiException;
+import com.mambu.apisdk.util.ParamsMap;
+import com.mambu.apisdk.util.RequestExecutor.ContentType;
+import com.mambu.apisdk.util.RequestExecutor.Method;
+import com.mambu.loans.shared.model.LoanAccount;
+
+/**
+ * Tests for the loan onboarding pipeline
+ *
+ * @author agent
+ *
+ */
+public class LoanOnboardingPipelineTest extends MambuAPIServiceTest {
+
+	private final static Pattern ACCOUNT_ID = Pattern.compile("\"id\":\"(\\w+)\"");
+
+	private final List<String> requests = new ArrayList<String>();
+
+	@Override
+	public void setUp() throws MambuApiException {
+		super.setUp();
+
+		// Created accounts get the key "K" + ID. The disbursement of account A2 fails
+		Mockito.when(
+				executor.executeRequest(Mockito.anyString(), (ParamsMap) Mockito.any(), Mockito.eq(Method.POST),
+						(ContentType) Mockito.any())).thenAnswer(new Answer<String>() {
+			@Override
+			public String answer(InvocationOnMock invocation) throws MambuApiException {
+				String url = (String) invocation.getArguments()[0];
+				ParamsMap params = (ParamsMap) invocation.getArguments()[1];
+				if (url.endsWith("/loans")) {
+					Matcher matcher = ACCOUNT_ID.matcher(params.get("JSON"));
+					matcher.find();
+					return "{\"loanAccount\":{\"encodedKey\":\"K" + matcher.group(1) + "\"}}";
+				}
+				String accountKey = url.substring(url.indexOf("loans/") + 6, url.indexOf("/transactions"));
+				String type = params.get("type") != null ? params.get("type") : "DISBURSEMENT";
+				synchronized (requests) {
+					requests.add(type + " " + accountKey);
+				}
+				if (type.equals("DISBURSEMENT")) {
+					if (accountKey.equals("KA2")) {
+						throw new MambuApiException(400, "INVALID_STATE");
+					}
+					return "{\"encodedKey\":\"T" + accountKey + "\"}";
+				}
+				return "{\"encodedKey\":\"" + accountKey + "\"}";
+			}
+		});
+	}
+
+	@Test
+	public void isolatesAndCompensatesFailedAccounts() throws InterruptedException, ExecutionException {
+
+		LoanOnboardingPipeline pipeline = new LoanOnboardingPipeline(mambuApiService, 2, 2, 1, 2);
+		pipeline.setCompensateOnFailure(true);
+		List<Future<LoanOnboardingResult>> futures = new ArrayList<Future<LoanOnboardingResult>>();
+		for (String accountId : new String[] { "A1", "A2", "A3" }) {
+			LoanAccount account = new LoanAccount();
+			account.setId(accountId);
+			futures.add(pipeline.submit(new LoanOnboarding(account, null, null, null)));
+		}
+		pipeline.awaitCompletion();
+		pipeline.shutdown();
+
+		assertTrue(futures.get(0).get().isSuccessful());
+		assertEquals("TKA3", futures.get(2).get().getDisbursement().getEncodedKey());
+		LoanOnboardingResult failed = futures.get(1).get();
+		assertEquals(Stage.DISBURSE, failed.getFailedStage());
+		assertEquals(Stage.CREATE, failed.getCompletedStage());
+		assertTrue(failed.isCompensated());
+		assertEquals(2, pipeline.getOnboardedCount());
+		assertEquals(1, pipeline.getFailedCount());
+
+		// Each account is approved before it is disbursed
+		assertEquals(7, requests.size());
+		for (String accountKey : new String[] { "KA1", "KA2", "KA3" }) {
+			assertTrue(requests.indexOf("APPROVAL " + accountKey) < requests.indexOf("DISBURSEMENT " + accountKey));
+		}
+		assertTrue(requests.indexOf("DISBURSEMENT KA2") < requests.indexOf("UNDO_APPROVAL KA2"));
+	}
+
+	@Test
+	public void rejectsAccountsAfterShutdown() throws InterruptedException {
+
+		LoanOnboardingPipeline pipeline = new LoanOnboardingPipeline(mambuApiService, 1, 1, 1, 1);
+		LoanAccount account = new LoanAccount();
+		account.setId("A1");
+		pipeline.submit(new LoanOnboarding(account, null, null, null));
+		pipeline.shutdown();
+
+		try {
+			pipeline.submit(new LoanOnboarding(account, null, null, null));
+			fail("Accounts submitted after shutdown must be rejected");
+		} catch (IllegalStateException e) {
+			// Expected
+		}
+		assertTrue(pipeline.awaitCompletion(5, TimeUnit.SECONDS));
+		assertEquals(0, pipeline.getPendingCount());
+		assertEquals(1, pipeline.getOnboardedCount());
+	}
+}
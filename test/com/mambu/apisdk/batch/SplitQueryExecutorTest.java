@@ -0,0 +1,109 @@
+package com.mambu.apisdk.batch;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.mambu.api.server.handler.core.dynamicsearch.model.JSONFilterConstraint;
+import com.mambu.api.server.handler.core.dynamicsearch.model.JSONFilterConstraints;
+import com.mambu.apisdk.MambuAPIServiceTest;
+import com.mambu.apisdk.exception.MambuApiException;
+import com.mambu.apisdk.util.MambuEntityType;
+import com.mambu.apisdk.util.ParamsMap;
+import com.mambu.apisdk.util.RequestExecutor.ContentType;
+import com.mambu.apisdk.util.RequestExecutor.Method;
+import com.mambu.loans.shared.model.LoanTransaction;
+
+/**
+ * Tests for the split query executor
+ *
+ * @author agent
+ *
+ */
+public class SplitQueryExecutorTest extends MambuAPIServiceTest {
+
+	@Test
+	public void splitsByDate() {
+
+		Calendar from = Calendar.getInstance();
+		from.set(2015, Calendar.JANUARY, 1, 10, 30);
+		Calendar to = Calendar.getInstance();
+		to.set(2015, Calendar.JANUARY, 10, 8, 0);
+
+		List<JSONFilterConstraints> subQueries = SplitQueryExecutor.splitByDate(new JSONFilterConstraints(),
+				"CREATION_DATE", null, from.getTime(), to.getTime(), 4);
+
+		// Ranges cover every day once, the last range is shorter
+		assertEquals(3, subQueries.size());
+		assertRange(subQueries.get(0), "2015-01-01", "2015-01-04");
+		assertRange(subQueries.get(1), "2015-01-05", "2015-01-08");
+		assertRange(subQueries.get(2), "2015-01-09", "2015-01-10");
+	}
+
+	@Test
+	public void splitsByAmount() {
+
+		List<JSONFilterConstraints> subQueries = SplitQueryExecutor.splitByAmount(new JSONFilterConstraints(),
+				"AMOUNT", null, new BigDecimal("100"), new BigDecimal("1000"));
+
+		assertEquals(3, subQueries.size());
+		assertEquals("LESS_THAN", subQueries.get(0).getFilterConstraints().get(0).getFilterElement());
+		assertRange(subQueries.get(1), "100", "1000");
+		assertEquals("MORE_THAN", subQueries.get(2).getFilterConstraints().get(0).getFilterElement());
+	}
+
+	@Test
+	public void mergesSubQueryResults() throws MambuApiException {
+
+		// Full first pages are followed by a request for the second page. T2 with amount 500 matches two ranges
+		Mockito.when(
+				executor.executeRequest(Mockito.contains("loans/transactions/search"), (ParamsMap) Mockito.any(),
+						Mockito.eq(Method.POST), Mockito.eq(ContentType.JSON))).thenAnswer(new Answer<String>() {
+			@Override
+			public String answer(InvocationOnMock invocation) throws Throwable {
+				ParamsMap params = (ParamsMap) invocation.getArguments()[1];
+				String json = params.get("JSON");
+				if (!params.get("offset").equals("0")) {
+					return "[]";
+				}
+				if (json.contains("LESS_THAN")) {
+					return "[{\"encodedKey\":\"T0\"},{\"encodedKey\":\"T1\"}]";
+				}
+				if (json.contains("\"secondValue\":\"500\"")) {
+					return "[{\"encodedKey\":\"T2\"}]";
+				}
+				if (json.contains("\"secondValue\":\"1000\"")) {
+					return "[{\"encodedKey\":\"T2\"},{\"encodedKey\":\"T3\"}]";
+				}
+				return "[{\"encodedKey\":\"T4\"}]";
+			}
+		});
+
+		JSONFilterConstraints filterConstraints = new JSONFilterConstraints();
+		filterConstraints.setFilterConstraints(new ArrayList<JSONFilterConstraint>());
+		List<LoanTransaction> transactions = new SplitQueryExecutor(mambuApiService, 2, 3).search(
+				MambuEntityType.LOAN_TRANSACTION, SplitQueryExecutor.splitByAmount(filterConstraints, "AMOUNT",
+						null, new BigDecimal("100"), new BigDecimal("500"), new BigDecimal("1000")));
+
+		List<String> keys = new ArrayList<String>();
+		for (LoanTransaction transaction : transactions) {
+			keys.add(transaction.getEncodedKey());
+		}
+		assertEquals("[T0, T1, T2, T3, T4]", keys.toString());
+	}
+
+	private static void assertRange(JSONFilterConstraints subQuery, String value, String secondValue) {
+		JSONFilterConstraint constraint = subQuery.getFilterConstraints().get(0);
+		assertEquals("BETWEEN", constraint.getFilterElement());
+		assertEquals(value, constraint.getValue());
+		assertEquals(secondValue, constraint.getSecondValue());
+	}
+}
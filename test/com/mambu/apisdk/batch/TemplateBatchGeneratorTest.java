@@ -0,0 +1,125 @@
+package com.mambu.apisdk.batch;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.mambu.apisdk.MambuAPIServiceTest;
+import com.mambu.apisdk.exception.MambuApiException;
+import com.mambu.apisdk.util.MambuEntityType;
+import com.mambu.apisdk.util.ParamsMap;
+import com.mambu.apisdk.util.RequestExecutor.ContentType;
+import com.mambu.apisdk.util.RequestExecutor.Method;
+
+/**
+ * Tests for the template batch generator and its document sinks
+ *
+ * @author agent
+ *
+ */
+public class TemplateBatchGeneratorTest extends MambuAPIServiceTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Override
+	public void setUp() throws MambuApiException {
+		super.setUp();
+
+		// Returns the account ID as the document. Account "FAIL" is not found
+		Mockito.when(
+				executor.executeRequest(Mockito.contains("/templates/"), (ParamsMap) Mockito.any(),
+						Mockito.eq(Method.GET), (ContentType) Mockito.any())).thenAnswer(new Answer<String>() {
+			@Override
+			public String answer(InvocationOnMock invocation) throws MambuApiException {
+				String url = (String) invocation.getArguments()[0];
+				String accountId = url.substring(url.indexOf("loans/") + 6, url.indexOf("/templates/"));
+				if (accountId.equals("FAIL")) {
+					throw new MambuApiException(404, "INVALID_LOAN_ACCOUNT_ID");
+				}
+				return "<html>" + accountId + "</html>";
+			}
+		});
+	}
+
+	@Test
+	public void writesFilesAndResumes() throws IOException, MambuApiException {
+
+		File directory = folder.newFolder("statements");
+		TemplateBatchGenerator generator = new TemplateBatchGenerator(mambuApiService, 2);
+		TemplateBatchResult result = generator.generate(MambuEntityType.LOAN_ACCOUNT,
+				Arrays.asList("A1", "FAIL", "A2", "A3", "A1"), "TEMPLATE", null, null, new DirectoryDocumentSink(
+						directory));
+
+		assertEquals(3, result.getGenerated().size());
+		assertEquals(true, result.getFailed().containsKey("FAIL"));
+		assertEquals("<html>A2</html>",
+				new String(Files.readAllBytes(new File(directory, "A2.html").toPath()), Charset.forName("UTF-8")));
+
+		// Only the failed document is requested again
+		result = generator.generate(MambuEntityType.LOAN_ACCOUNT, Arrays.asList("A1", "FAIL", "A2", "A3"),
+				"TEMPLATE", null, null, new DirectoryDocumentSink(directory));
+		assertEquals(3, result.getSkipped().size());
+		assertEquals(0, result.getGenerated().size());
+		Mockito.verify(executor, Mockito.times(5)).executeRequest(Mockito.contains("/templates/"),
+				(ParamsMap) Mockito.any(), Mockito.eq(Method.GET), (ContentType) Mockito.any());
+	}
+
+	@Test
+	public void resumesInterruptedArchive() throws IOException {
+
+		File archive = new File(folder.getRoot(), "statements.zip");
+		TemplateBatchGenerator generator = new TemplateBatchGenerator(mambuApiService, 2);
+
+		// The first batch stops without closing the archive
+		ZipDocumentSink interrupted = new ZipDocumentSink(archive);
+		generator.generate(MambuEntityType.LOAN_ACCOUNT, Arrays.asList("A1", "A2"), "TEMPLATE", null, null,
+				interrupted);
+
+		ZipDocumentSink sink = new ZipDocumentSink(archive);
+		TemplateBatchResult result = generator.generate(MambuEntityType.LOAN_ACCOUNT,
+				Arrays.asList("A1", "A2", "A3"), "TEMPLATE", null, null, sink);
+		sink.close();
+
+		assertEquals(Arrays.asList("A1", "A2"), result.getSkipped());
+		assertEquals(Arrays.asList("A3"), result.getGenerated());
+		List<String> entries = new ArrayList<String>();
+		ZipInputStream in = new ZipInputStream(new FileInputStream(archive));
+		try {
+			ZipEntry entry;
+			while ((entry = in.getNextEntry()) != null) {
+				entries.add(entry.getName());
+			}
+		} finally {
+			in.close();
+		}
+		assertEquals(3, entries.size());
+		assertEquals(true, entries.containsAll(Arrays.asList("A1.html", "A2.html", "A3.html")));
+	}
+
+	@Test
+	public void encodesFileNames() {
+
+		assertEquals("LOAN-1_a.b", ZipDocumentSink.toFileName("LOAN-1_a.b"));
+		assertEquals("A%2F1", ZipDocumentSink.toFileName("A/1"));
+		assertEquals("A_1", ZipDocumentSink.toFileName("A_1"));
+		assertEquals("A%251", ZipDocumentSink.toFileName("A%1"));
+		assertEquals("%C3%A9", ZipDocumentSink.toFileName("\u00e9"));
+	}
+}
@@ -0,0 +1,134 @@
+package com.mambu.apisdk.batch;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.mambu.apisdk.MambuAPIServiceTest;
+import com.mambu.apisdk.exception.MambuApiException;
+import com.mambu.apisdk.util.ParamsMap;
+import com.mambu.apisdk.util.RequestExecutor.ContentType;
+import com.mambu.apisdk.util.RequestExecutor.Method;
+import com.mambu.core.shared.model.Money;
+import com.mambu.loans.shared.model.LoanTransaction;
+
+/**
+ * Tests for the transaction engine
+ *
+ * @author agent
+ *
+ */
+public class TransactionEngineTest extends MambuAPIServiceTest {
+
+	private static final String loansUrl = "https://demo.mambutest.com/api/loans/";
+
+	// Notes of the posted transactions for each account, in the order they were posted
+	private final Map<String, List<String>> postedNotes = new HashMap<String, List<String>>();
+	// Operations for the failing account wait for this latch before failing
+	private final CountDownLatch failingRelease = new CountDownLatch(1);
+
+	@Override
+	public void setUp() throws MambuApiException {
+		super.setUp();
+
+		Mockito.when(
+				executor.executeRequest(Mockito.anyString(), (ParamsMap) Mockito.any(), Mockito.eq(Method.POST),
+						Mockito.eq(ContentType.JSON))).thenAnswer(new Answer<String>() {
+			@Override
+			public String answer(InvocationOnMock invocation) throws Throwable {
+				String url = (String) invocation.getArguments()[0];
+				String accountId = url.substring(loansUrl.length(), url.indexOf("/transactions"));
+				if (accountId.equals("FAILING")) {
+					failingRelease.await();
+					throw new MambuApiException(400, "{\"returnCode\":110,\"returnStatus\":\"INVALID_AMOUNT\"}");
+				}
+				String json = ((ParamsMap) invocation.getArguments()[1]).get("JSON");
+				String notes = json.substring(json.indexOf("\"notes\":\"") + 9, json.indexOf("\"", json
+						.indexOf("\"notes\":\"") + 9));
+				synchronized (postedNotes) {
+					if (!postedNotes.containsKey(accountId)) {
+						postedNotes.put(accountId, new ArrayList<String>());
+					}
+					postedNotes.get(accountId).add(notes);
+				}
+				Thread.sleep(1);
+				return "{\"encodedKey\":\"8a" + notes + "\",\"type\":\"REPAYMENT\"}";
+			}
+		});
+	}
+
+	@Test
+	public void postsInOrderPerAccount() throws InterruptedException, ExecutionException {
+
+		TransactionEngine engine = new TransactionEngine(mambuApiService, 4, 10);
+		List<String> accounts = new ArrayList<String>();
+		for (int i = 0; i < 6; i++) {
+			accounts.add("ACC" + i);
+		}
+		// Interleave operations for all accounts
+		for (int n = 0; n < 10; n++) {
+			for (String accountId : accounts) {
+				engine.submit(TransactionOperation.repayment(accountId, new Money("10"), new Date(), null, null,
+						String.valueOf(n)));
+			}
+		}
+		assertEquals(true, engine.awaitCompletion(10, TimeUnit.SECONDS));
+		engine.shutdown();
+
+		for (String accountId : accounts) {
+			List<String> expected = new ArrayList<String>();
+			for (int n = 0; n < 10; n++) {
+				expected.add(String.valueOf(n));
+			}
+			assertEquals(expected, postedNotes.get(accountId));
+		}
+		assertEquals(60, engine.getPostedCount());
+		assertEquals(0, engine.getPendingCount());
+	}
+
+	@Test
+	public void skipsAfterFailure() throws InterruptedException, ExecutionException {
+
+		TransactionEngine engine = new TransactionEngine(mambuApiService, 2, 10);
+		Future<TransactionResult> failed = engine.submit(TransactionOperation.repayment("FAILING", new Money("10"),
+				new Date(), null, null, "1"));
+		Future<TransactionResult> skipped = engine.submit(TransactionOperation.repayment("FAILING", new Money("10"),
+				new Date(), null, null, "2"));
+		TransactionResult posted = engine.submit(
+				TransactionOperation.repayment("ACC1", new Money("10"), new Date(), null, null, "3")).get();
+		failingRelease.countDown();
+
+		assertEquals(TransactionResult.Status.FAILED, failed.get().getStatus());
+		assertEquals(400, (int) failed.get().getException().getErrorCode());
+		assertEquals(TransactionResult.Status.SKIPPED, skipped.get().getStatus());
+		assertEquals("8a3", ((LoanTransaction) posted.getTransaction()).getEncodedKey());
+		assertEquals(1, engine.getFailedAccounts().size());
+
+		// Operations submitted after the account's queue drained are skipped too
+		assertEquals(true, engine.awaitCompletion(10, TimeUnit.SECONDS));
+		TransactionResult retried = engine.submit(
+				TransactionOperation.repayment("FAILING", new Money("10"), new Date(), null, null, "4")).get();
+		assertEquals(TransactionResult.Status.SKIPPED, retried.getStatus());
+
+		// Posted again once the failure is cleared
+		engine.clearFailure("LOAN:FAILING");
+		retried = engine.submit(
+				TransactionOperation.repayment("FAILING", new Money("10"), new Date(), null, null, "5")).get();
+		assertEquals(TransactionResult.Status.FAILED, retried.getStatus());
+		assertEquals(2, engine.getSkippedCount());
+		engine.shutdown();
+	}
+}
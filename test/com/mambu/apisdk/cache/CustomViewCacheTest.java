@@ -0,0 +1,83 @@
+package com.mambu.apisdk.cache;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.mambu.api.server.handler.customviews.model.ApiViewType;
+import com.mambu.apisdk.MambuAPIServiceTest;
+import com.mambu.apisdk.exception.MambuApiException;
+import com.mambu.apisdk.util.APIData;
+import com.mambu.apisdk.util.ParamsMap;
+import com.mambu.apisdk.util.RequestExecutor.ContentType;
+import com.mambu.apisdk.util.RequestExecutor.Method;
+import com.mambu.loans.shared.model.LoanAccount;
+
+/**
+ * Tests for the custom view cache
+ *
+ * @author agent
+ *
+ */
+public class CustomViewCacheTest extends MambuAPIServiceTest {
+
+	private static final int TOTAL = 5;
+
+	@Override
+	public void setUp() throws MambuApiException {
+		super.setUp();
+
+		// Summary and pages of 2 loans, out of 5 loans with encoded keys "0" to "4"
+		Mockito.when(
+				executor.executeRequest(Mockito.anyString(), (ParamsMap) Mockito.any(), Mockito.eq(Method.GET),
+						(ContentType) Mockito.any())).thenAnswer(new Answer<String>() {
+			@Override
+			public String answer(InvocationOnMock invocation) {
+				ParamsMap params = (ParamsMap) invocation.getArguments()[1];
+				if ("SUMMARY".equals(params.get(APIData.RESULT_TYPE))) {
+					return "{\"summary\":{\"count\":\"" + TOTAL + "\"}}";
+				}
+				int offset = Integer.parseInt(params.get(APIData.OFFSET));
+				int limit = Integer.parseInt(params.get(APIData.LIMIT));
+				StringBuilder json = new StringBuilder("[");
+				for (int i = offset; i < Math.min(offset + limit, TOTAL); i++) {
+					json.append(i > offset ? "," : "").append("{\"encodedKey\":\"").append(i).append("\"}");
+				}
+				return json.append("]").toString();
+			}
+		});
+	}
+
+	@Test
+	public void materializesPagesInOrderAndCaches() throws MambuApiException {
+
+		CustomViewCache cache = new CustomViewCache(mambuApiService, 2, 3, 1, TimeUnit.MINUTES);
+		MaterializedCustomView<LoanAccount> view = cache.materialize(ApiViewType.LOANS, null, false, "view1");
+
+		assertEquals(TOTAL, view.getEntities().size());
+		for (int i = 0; i < TOTAL; i++) {
+			assertEquals(String.valueOf(i), view.getEntities().get(i).getEncodedKey());
+		}
+		assertEquals(String.valueOf(TOTAL), view.getSummary().getCount());
+
+		// Summary and 3 pages
+		Mockito.verify(executor, Mockito.times(4)).executeRequest(Mockito.anyString(), (ParamsMap) Mockito.any(),
+				Mockito.eq(Method.GET), (ContentType) Mockito.any());
+
+		// Served from memory
+		assertEquals(view, cache.materialize(ApiViewType.LOANS, null, false, "view1"));
+		assertEquals(String.valueOf(TOTAL), cache.getSummary(ApiViewType.LOANS, null, "view1").getCount());
+		Mockito.verify(executor, Mockito.times(4)).executeRequest(Mockito.anyString(), (ParamsMap) Mockito.any(),
+				Mockito.eq(Method.GET), (ContentType) Mockito.any());
+
+		cache.invalidate("view1");
+		cache.materialize(ApiViewType.LOANS, null, false, "view1");
+		Mockito.verify(executor, Mockito.times(8)).executeRequest(Mockito.anyString(), (ParamsMap) Mockito.any(),
+				Mockito.eq(Method.GET), (ContentType) Mockito.any());
+	}
+}
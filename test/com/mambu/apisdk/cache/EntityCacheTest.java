@@ -0,0 +1,170 @@
+package com.mambu.apisdk.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.mambu.api.server.handler.core.dynamicsearch.model.JSONFilterConstraints;
+import com.mambu.apisdk.MambuAPIServiceTest;
+import com.mambu.apisdk.exception.MambuApiException;
+import com.mambu.apisdk.services.ClientsService;
+import com.mambu.apisdk.services.LoansService;
+import com.mambu.apisdk.util.APIData;
+import com.mambu.apisdk.util.MambuEntityType;
+import com.mambu.apisdk.util.ParamsMap;
+import com.mambu.apisdk.util.RequestExecutor.ContentType;
+import com.mambu.apisdk.util.RequestExecutor.Method;
+import com.mambu.core.shared.model.Money;
+import com.mambu.loans.shared.model.LoanAccount;
+
+/**
+ * Tests for the write-aware entity cache
+ *
+ * @author agent
+ *
+ */
+public class EntityCacheTest extends MambuAPIServiceTest {
+
+	private static final String accountUrl = "https://demo.mambutest.com/api/loans/ABC123";
+
+	private LoansService service;
+	private EntityCache entityCache;
+	private ParamsMap getParams;
+
+	@Override
+	public void setUp() throws MambuApiException {
+		super.setUp();
+
+		entityCache = new EntityCache();
+		mambuApiService.setEntityCache(entityCache);
+		service = new LoansService(mambuApiService);
+
+		getParams = new ParamsMap();
+		getParams.put(APIData.FULL_DETAILS, "true");
+		when(executor.executeRequest(accountUrl, getParams, Method.GET, ContentType.WWW_FORM)).thenReturn(
+				"{\"encodedKey\":\"8a1\",\"id\":\"ABC123\",\"loanName\":\"Loan\"}");
+	}
+
+	@Test
+	public void servesRepeatedReadsFromCache() throws MambuApiException {
+
+		LoanAccount account = service.getLoanAccount("ABC123");
+		LoanAccount cachedAccount = service.getLoanAccount("ABC123");
+
+		assertEquals("Loan", cachedAccount.getLoanName());
+		// Each read returns a new object
+		assertNotSame(account, cachedAccount);
+		Mockito.verify(executor, Mockito.times(1)).executeRequest(accountUrl, getParams, Method.GET,
+				ContentType.WWW_FORM);
+		assertEquals(1, entityCache.getStats(MambuEntityType.LOAN_ACCOUNT).hitCount());
+	}
+
+	@Test
+	public void invalidatesOnWrite() throws MambuApiException {
+
+		service.getLoanAccount("ABC123");
+
+		// Repayment is posted for the encoded key, the entity cached by its ID must be invalidated too
+		service.makeLoanRepayment("8a1", new Money("10"), new Date(), null, null, null);
+
+		service.getLoanAccount("ABC123");
+		Mockito.verify(executor, Mockito.times(2)).executeRequest(accountUrl, getParams, Method.GET,
+				ContentType.WWW_FORM);
+	}
+
+	@Test
+	public void searchesDoNotInvalidate() throws MambuApiException {
+
+		final ClientsService clientsService = new ClientsService(mambuApiService);
+		final String clientUrl = "https://demo.mambutest.com/api/clients/CL1";
+		String searchUrl = "https://demo.mambutest.com/api/clients/search";
+		when(executor.executeRequest(Mockito.eq(searchUrl), (ParamsMap) Mockito.any(), Mockito.eq(Method.POST),
+				Mockito.eq(ContentType.JSON))).thenReturn("[]");
+		// Another thread searches for clients while the client is being read
+		when(executor.executeRequest(Mockito.eq(clientUrl), (ParamsMap) Mockito.any(), Mockito.eq(Method.GET),
+				Mockito.eq(ContentType.WWW_FORM))).thenAnswer(new Answer<String>() {
+			@Override
+			public String answer(InvocationOnMock invocation) throws Throwable {
+				clientsService.getClients(new JSONFilterConstraints(), null, null);
+				return "{\"encodedKey\":\"8a2\",\"id\":\"CL1\",\"firstName\":\"Jane\"}";
+			}
+		});
+
+		clientsService.getClient("CL1");
+		clientsService.getClient("CL1");
+		Mockito.verify(executor, Mockito.times(1)).executeRequest(Mockito.eq(clientUrl), (ParamsMap) Mockito.any(),
+				Mockito.eq(Method.GET), Mockito.eq(ContentType.WWW_FORM));
+		assertEquals(1, entityCache.getStats(MambuEntityType.CLIENT).hitCount());
+	}
+
+	@Test
+	public void cachesNotFoundResponses() throws MambuApiException {
+
+		// Existence checks send lookup requests, which do not log Not Found responses as errors
+		String missingUrl = "https://demo.mambutest.com/api/loans/MISSING";
+		when(executor.executeLookupRequest(missingUrl, getParams, Method.GET, ContentType.WWW_FORM)).thenThrow(
+				new MambuApiException(404, "{\"returnCode\":101,\"returnStatus\":\"INVALID_LOAN_ACCOUNT_ID\"}"));
+		when(executor.executeLookupRequest(accountUrl, getParams, Method.GET, ContentType.WWW_FORM)).thenReturn(
+				"{\"encodedKey\":\"8a1\",\"id\":\"ABC123\",\"loanName\":\"Loan\"}");
+
+		assertFalse(service.loanAccountExists("MISSING"));
+		assertFalse(service.loanAccountExists("MISSING"));
+		assertTrue(service.loanAccountExists("ABC123"));
+		Mockito.verify(executor, Mockito.times(1)).executeLookupRequest(missingUrl, getParams, Method.GET,
+				ContentType.WWW_FORM);
+		assertEquals(1, entityCache.getNotFoundStats(MambuEntityType.LOAN_ACCOUNT).hitCount());
+
+		// The account found by the existence check is cached
+		service.getLoanAccount("ABC123");
+		Mockito.verify(executor, Mockito.never()).executeRequest(accountUrl, getParams, Method.GET,
+				ContentType.WWW_FORM);
+
+		// Cached not found responses are invalidated when an entity of this type is created
+		entityCache.invalidateNotFound(MambuEntityType.LOAN_ACCOUNT);
+		assertFalse(service.loanAccountExists("MISSING"));
+		Mockito.verify(executor, Mockito.times(2)).executeLookupRequest(missingUrl, getParams, Method.GET,
+				ContentType.WWW_FORM);
+	}
+
+	@Test
+	public void cachesOnlyNotFoundResponses() throws MambuApiException {
+
+		entityCache = new EntityCache(0, TimeUnit.SECONDS, 100, 10, TimeUnit.SECONDS);
+		mambuApiService.setEntityCache(entityCache);
+		String missingUrl = "https://demo.mambutest.com/api/loans/MISSING";
+		when(executor.executeLookupRequest(missingUrl, getParams, Method.GET, ContentType.WWW_FORM)).thenThrow(
+				new MambuApiException(404, "{\"returnCode\":101,\"returnStatus\":\"INVALID_LOAN_ACCOUNT_ID\"}"));
+
+		assertFalse(service.loanAccountExists("MISSING"));
+		assertFalse(service.loanAccountExists("MISSING"));
+		Mockito.verify(executor, Mockito.times(1)).executeLookupRequest(missingUrl, getParams, Method.GET,
+				ContentType.WWW_FORM);
+
+		// Entities are always read from Mambu
+		service.getLoanAccount("ABC123");
+		service.getLoanAccount("ABC123");
+		Mockito.verify(executor, Mockito.times(2)).executeRequest(accountUrl, getParams, Method.GET,
+				ContentType.WWW_FORM);
+	}
+
+	@Test
+	public void readsWithoutCache() throws MambuApiException {
+
+		mambuApiService.setEntityCache(null);
+
+		service.getLoanAccount("ABC123");
+		service.getLoanAccount("ABC123");
+		Mockito.verify(executor, Mockito.times(2)).executeRequest(accountUrl, getParams, Method.GET,
+				ContentType.WWW_FORM);
+	}
+}
@@ -0,0 +1,112 @@
+package com.mambu.apisdk.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.codec.binary.Base64;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+import com.mambu.apisdk.MambuAPIServiceTest;
+import com.mambu.apisdk.exception.MambuApiException;
+import com.mambu.apisdk.util.APIData.IMAGE_SIZE_TYPE;
+import com.mambu.apisdk.util.ParamsMap;
+import com.mambu.apisdk.util.RequestExecutor.ContentType;
+import com.mambu.apisdk.util.RequestExecutor.Method;
+
+/**
+ * Tests for the image cache
+ *
+ * @author agent
+ *
+ */
+public class ImageCacheTest extends MambuAPIServiceTest {
+
+	private final static byte[] IMAGE = "image bytes".getBytes(Charset.forName("UTF-8"));
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Override
+	public void setUp() throws MambuApiException {
+		super.setUp();
+
+		// Mambu returns images as a quoted data URI, in base64 with line breaks
+		Mockito.when(
+				executor.executeRequest(Mockito.contains("/images/"), (ParamsMap) Mockito.any(),
+						Mockito.eq(Method.GET), (ContentType) Mockito.any())).thenReturn(
+				"\"data:image/jpg;base64," + new String(Base64.encodeBase64Chunked(IMAGE), Charset.forName("UTF-8"))
+						+ "\"");
+	}
+
+	@Test
+	public void servesImagesFromMemoryAndDisk() throws IOException, MambuApiException {
+
+		File directory = folder.newFolder("images");
+		ImageCache cache = new ImageCache(mambuApiService, directory);
+
+		assertArrayEquals(IMAGE, cache.getImage("IMAGE_KEY", IMAGE_SIZE_TYPE.SMALL_THUMB));
+		assertArrayEquals(IMAGE, cache.getImage("IMAGE_KEY", IMAGE_SIZE_TYPE.SMALL_THUMB));
+		assertEquals(1, cache.getRequestCount());
+
+		// A new cache for the same directory reads the image from disk
+		ImageCache restarted = new ImageCache(mambuApiService, directory);
+		assertArrayEquals(IMAGE, restarted.getImage("IMAGE_KEY", IMAGE_SIZE_TYPE.SMALL_THUMB));
+		assertEquals(0, restarted.getRequestCount());
+
+		// Other sizes are separate images
+		restarted.getImage("IMAGE_KEY", IMAGE_SIZE_TYPE.LARGE);
+		assertEquals(1, restarted.getRequestCount());
+		Mockito.verify(executor, Mockito.times(2)).executeRequest(Mockito.contains("/images/"),
+				(ParamsMap) Mockito.any(), Mockito.eq(Method.GET), (ContentType) Mockito.any());
+	}
+
+	@Test
+	public void evictsLeastRecentlyUsedFiles() throws IOException, MambuApiException {
+
+		File directory = folder.newFolder("images");
+		// Room for two images on disk
+		ImageCache cache = new ImageCache(mambuApiService, directory, 1024, 2 * (IMAGE.length + 8), 1, TimeUnit.HOURS);
+
+		cache.getImage("FIRST", null);
+		new File(directory, "FIRST_FULL.img").setLastModified(System.currentTimeMillis() - 60000);
+		cache.getImage("SECOND", null);
+		cache.getImage("THIRD", null);
+		assertEquals(2, directory.listFiles().length);
+		assertEquals(false, new File(directory, "FIRST_FULL.img").exists());
+
+		cache.invalidate("THIRD");
+		assertEquals(1, directory.listFiles().length);
+	}
+
+	@Test
+	public void expiresDiskImagesByReadTime() throws IOException, MambuApiException, InterruptedException {
+
+		File directory = folder.newFolder("images");
+		// An image read from Mambu almost ten seconds ago
+		DataOutputStream out = new DataOutputStream(new FileOutputStream(new File(directory, "OLD_FULL.img")));
+		try {
+			out.writeLong(System.currentTimeMillis() - 9700);
+			out.write(IMAGE);
+		} finally {
+			out.close();
+		}
+		ImageCache cache = new ImageCache(mambuApiService, directory, 1024, 1024, 10, TimeUnit.SECONDS);
+		assertArrayEquals(IMAGE, cache.getImage("OLD", null));
+		assertEquals(0, cache.getRequestCount());
+
+		// The image expires in memory when it expires on disk
+		Thread.sleep(500);
+		assertArrayEquals(IMAGE, cache.getImage("OLD", null));
+		assertEquals(1, cache.getRequestCount());
+	}
+}
@@ -0,0 +1,118 @@
+package com.mambu.apisdk.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.mambu.apisdk.MambuAPIServiceTest;
+import com.mambu.apisdk.exception.MambuApiException;
+import com.mambu.apisdk.util.ParamsMap;
+import com.mambu.apisdk.util.RequestExecutor.ContentType;
+import com.mambu.apisdk.util.RequestExecutor.Method;
+import com.mambu.intelligence.shared.model.Intelligence.Indicator;
+
+/**
+ * Tests for the indicator dashboard
+ *
+ * @author agent
+ *
+ */
+public class IndicatorDashboardTest extends MambuAPIServiceTest {
+
+	private final AtomicBoolean failing = new AtomicBoolean();
+
+	@Override
+	public void setUp() throws MambuApiException {
+		super.setUp();
+
+		// Returns the length of the indicator name as its value
+		Mockito.when(
+				executor.executeRequest(Mockito.contains("/indicators/"), (ParamsMap) Mockito.any(),
+						Mockito.eq(Method.GET), (ContentType) Mockito.any())).thenAnswer(new Answer<String>() {
+			@Override
+			public String answer(InvocationOnMock invocation) throws MambuApiException {
+				if (failing.get()) {
+					throw new MambuApiException(500, "INTERNAL_ERROR");
+				}
+				String url = (String) invocation.getArguments()[0];
+				String indicator = url.substring(url.lastIndexOf('/') + 1);
+				return "{\"" + indicator + "\":\"" + indicator.length() + "\"}";
+			}
+		});
+	}
+
+	@Test
+	public void pollsEachIndicatorOncePerRefresh() {
+
+		IndicatorDashboard dashboard = new IndicatorDashboard(mambuApiService, 1, TimeUnit.HOURS, 2);
+		// Two viewers with overlapping indicators
+		dashboard.subscribe(Arrays.asList(Indicator.NUM_CLIENTS, Indicator.GROSS_LOAN_PORTFOLIO));
+		dashboard.subscribe(Arrays.asList(Indicator.NUM_CLIENTS, Indicator.TOTAL_DEPOSITS));
+
+		IndicatorSnapshot snapshot = dashboard.refresh();
+
+		assertEquals(3, dashboard.getRequestCount());
+		assertEquals(3, snapshot.getValues().size());
+		assertEquals(new BigDecimal(Indicator.NUM_CLIENTS.name().length()), snapshot.getValue(Indicator.NUM_CLIENTS));
+		assertSame(snapshot, dashboard.getSnapshot());
+		assertSame(snapshot, dashboard.getSnapshot());
+		assertEquals(3, dashboard.getRequestCount());
+
+		// Indicators still subscribed by a viewer are refreshed
+		dashboard.unsubscribe(Arrays.asList(Indicator.NUM_CLIENTS, Indicator.GROSS_LOAN_PORTFOLIO));
+		snapshot = dashboard.refresh();
+		assertEquals(5, dashboard.getRequestCount());
+		assertEquals(2, snapshot.getValues().size());
+	}
+
+	@Test
+	public void keepsPreviousValuesOfFailedIndicators() {
+
+		IndicatorDashboard dashboard = new IndicatorDashboard(mambuApiService);
+		dashboard.subscribe(Arrays.asList(Indicator.NUM_CLIENTS));
+		BigDecimal value = dashboard.refresh().getValue(Indicator.NUM_CLIENTS);
+
+		failing.set(true);
+		IndicatorSnapshot snapshot = dashboard.refresh();
+
+		assertEquals(value, snapshot.getValue(Indicator.NUM_CLIENTS));
+		assertEquals(true, snapshot.isStale(Indicator.NUM_CLIENTS));
+	}
+
+	@Test
+	public void readsOnlyAddedIndicators() throws InterruptedException {
+
+		IndicatorDashboard dashboard = new IndicatorDashboard(mambuApiService, 1, TimeUnit.HOURS, 2);
+		dashboard.subscribe(Arrays.asList(Indicator.NUM_CLIENTS, Indicator.GROSS_LOAN_PORTFOLIO));
+		dashboard.start();
+		try {
+			awaitValue(dashboard, Indicator.GROSS_LOAN_PORTFOLIO);
+			awaitValue(dashboard, Indicator.NUM_CLIENTS);
+			assertEquals(2, dashboard.getRequestCount());
+
+			// A new viewer's indicator is read without refreshing the others
+			dashboard.subscribe(Arrays.asList(Indicator.NUM_CLIENTS, Indicator.TOTAL_DEPOSITS));
+			awaitValue(dashboard, Indicator.TOTAL_DEPOSITS);
+			assertEquals(3, dashboard.getRequestCount());
+			assertEquals(3, dashboard.getSnapshot().getValues().size());
+		} finally {
+			dashboard.stop();
+		}
+	}
+
+	private static void awaitValue(IndicatorDashboard dashboard, Indicator indicator) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (dashboard.getSnapshot().getValue(indicator) == null && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package com.mambu.apisdk.cache;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.mambu.apisdk.MambuAPIServiceTest;
+import com.mambu.apisdk.exception.MambuApiException;
+import com.mambu.apisdk.util.ParamsMap;
+import com.mambu.apisdk.util.RequestExecutor.ContentType;
+import com.mambu.apisdk.util.RequestExecutor.Method;
+import com.mambu.loans.shared.model.LoanAccount;
+import com.mambu.loans.shared.model.Repayment;
+
+/**
+ * Tests for the loan schedule preview cache
+ *
+ * @author agent
+ *
+ */
+public class LoanSchedulePreviewCacheTest extends MambuAPIServiceTest {
+
+	@Override
+	public void setUp() throws MambuApiException {
+		super.setUp();
+
+		Mockito.when(
+				executor.executeRequest(Mockito.contains("schedule"), (ParamsMap) Mockito.any(),
+						Mockito.eq(Method.GET), (ContentType) Mockito.any())).thenReturn(
+				"{\"repayments\":[{\"encodedKey\":\"r1\"},{\"encodedKey\":\"r2\"}]}");
+	}
+
+	@Test
+	public void cachesByNormalizedScheduleParameters() throws MambuApiException {
+
+		LoanSchedulePreviewCache cache = new LoanSchedulePreviewCache(mambuApiService);
+		assertEquals(2, cache.getSchedule("PROD1", makeAccount("1000", 12)).size());
+
+		// Same parameters in another format, other account fields are ignored
+		LoanAccount sameSchedule = makeAccount("1000.00", 12);
+		sameSchedule.setId("OTHER");
+		cache.getSchedule("PROD1", sameSchedule);
+		verifyRequests(1);
+
+		cache.getSchedule("PROD1", makeAccount("1000", 24));
+		cache.getSchedule("PROD2", makeAccount("1000", 12));
+		verifyRequests(3);
+	}
+
+	@Test
+	public void getsSchedulesConcurrently() throws MambuApiException {
+
+		LoanSchedulePreviewCache cache = new LoanSchedulePreviewCache(mambuApiService);
+		List<List<Repayment>> schedules = cache.getSchedules("PROD1", Arrays.asList(makeAccount("500", 6),
+				makeAccount("1000", 6), makeAccount("500.0", 6)));
+
+		assertEquals(3, schedules.size());
+		assertEquals("r1", schedules.get(2).get(0).getEncodedKey());
+		// Accounts with the same parameters share one request
+		verifyRequests(2);
+	}
+
+	private void verifyRequests(int count) throws MambuApiException {
+		Mockito.verify(executor, Mockito.times(count)).executeRequest(Mockito.contains("schedule"),
+				(ParamsMap) Mockito.any(), Mockito.eq(Method.GET), (ContentType) Mockito.any());
+	}
+
+	private static LoanAccount makeAccount(String amount, int installments) {
+		LoanAccount account = new LoanAccount();
+		account.setLoanAmount(new BigDecimal(amount));
+		account.setRepaymentInstallments(installments);
+		return account;
+	}
+}
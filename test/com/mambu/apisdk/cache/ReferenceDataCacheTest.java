@@ -0,0 +1,115 @@
+package com.mambu.apisdk.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.mambu.apisdk.MambuAPIServiceTest;
+import com.mambu.apisdk.exception.MambuApiException;
+import com.mambu.apisdk.util.APIData;
+import com.mambu.apisdk.util.ParamsMap;
+import com.mambu.apisdk.util.RequestExecutor.ContentType;
+import com.mambu.apisdk.util.RequestExecutor.Method;
+import com.mambu.organization.shared.model.Branch;
+
+/**
+ * Tests for the reference data cache
+ *
+ * @author agent
+ *
+ */
+public class ReferenceDataCacheTest extends MambuAPIServiceTest {
+
+	private static final String branchesUrl = "https://demo.mambutest.com/api/branches";
+
+	private ReferenceDataCache cache;
+
+	@Override
+	public void setUp() throws MambuApiException {
+		super.setUp();
+
+		cache = new ReferenceDataCache(super.mambuApiService);
+	}
+
+	@Test
+	public void cachesEntities() throws MambuApiException {
+
+		ParamsMap params = new ParamsMap();
+		params.put(APIData.FULL_DETAILS, "true");
+		when(executor.executeRequest(branchesUrl + "/branch_1", params, Method.GET, ContentType.WWW_FORM)).thenReturn(
+				"{\"encodedKey\":\"8a1\",\"id\":\"branch_1\",\"name\":\"Main\"}");
+
+		Branch branch = cache.getBranch("branch_1");
+		assertEquals("Main", branch.getName());
+		assertSame(branch, cache.getBranch("branch_1"));
+		// Entity is also cached by its encoded key
+		assertSame(branch, cache.getBranch("8a1"));
+
+		Mockito.verify(executor, Mockito.times(1)).executeRequest(branchesUrl + "/branch_1", params, Method.GET,
+				ContentType.WWW_FORM);
+		assertEquals(2, cache.getStats(ReferenceDataType.BRANCH).hitCount());
+		assertEquals(1, cache.getStats(ReferenceDataType.BRANCH).missCount());
+
+		// Reloaded after invalidation
+		cache.invalidate(ReferenceDataType.BRANCH, "branch_1");
+		cache.getBranch("branch_1");
+		Mockito.verify(executor, Mockito.times(2)).executeRequest(branchesUrl + "/branch_1", params, Method.GET,
+				ContentType.WWW_FORM);
+	}
+
+	@Test
+	public void warmsUpWithListRequests() throws MambuApiException {
+
+		ParamsMap params = new ParamsMap();
+		params.put(APIData.OFFSET, "0");
+		params.put(APIData.LIMIT, String.valueOf(ReferenceDataCache.LIST_PAGE_SIZE));
+		when(executor.executeRequest(branchesUrl, params, Method.GET, ContentType.WWW_FORM)).thenReturn(
+				"[{\"encodedKey\":\"8a1\",\"id\":\"branch_1\"},{\"encodedKey\":\"8a2\",\"id\":\"branch_2\"}]");
+
+		cache.warmUp(ReferenceDataType.BRANCH);
+
+		List<Branch> branches = cache.getBranches();
+		assertEquals(2, branches.size());
+		assertSame(branches.get(1), cache.getBranch("branch_2"));
+
+		// Only one list request was sent
+		Mockito.verify(executor, Mockito.times(1)).executeRequest(Mockito.anyString(), (ParamsMap) Mockito.any(),
+				Mockito.any(Method.class), Mockito.any(ContentType.class));
+	}
+
+	@Test
+	public void boundsNumberOfEntities() throws MambuApiException {
+
+		// Each entity is indexed by its ID and encoded key, but counts once
+		cache = new ReferenceDataCache(super.mambuApiService, new ReferenceDataCacheSettings().setMaximumSize(
+				ReferenceDataType.BRANCH, 30));
+		StringBuilder json = new StringBuilder("[");
+		for (int i = 0; i < 20; i++) {
+			json.append(i == 0 ? "" : ",").append("{\"encodedKey\":\"8a" + i + "\",\"id\":\"branch_" + i + "\"}");
+		}
+		json.append("]");
+		ParamsMap params = new ParamsMap();
+		params.put(APIData.OFFSET, "0");
+		params.put(APIData.LIMIT, String.valueOf(ReferenceDataCache.LIST_PAGE_SIZE));
+		when(executor.executeRequest(branchesUrl, params, Method.GET, ContentType.WWW_FORM)).thenReturn(
+				json.toString());
+
+		cache.warmUp(ReferenceDataType.BRANCH);
+
+		List<Branch> branches = cache.getBranches();
+		assertEquals(20, branches.size());
+		for (int i = 0; i < 20; i++) {
+			assertSame(branches.get(i), cache.getBranch("branch_" + i));
+			assertSame(branches.get(i), cache.getBranch("8a" + i));
+		}
+		// Nothing was evicted: all lookups were served from the cache
+		Mockito.verify(executor, Mockito.times(1)).executeRequest(Mockito.anyString(), (ParamsMap) Mockito.any(),
+				Mockito.any(Method.class), Mockito.any(ContentType.class));
+		assertEquals(41, cache.getSize(ReferenceDataType.BRANCH));
+	}
+}
\ No newline at end of file
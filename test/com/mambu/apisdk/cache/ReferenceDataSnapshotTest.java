@@ -0,0 +1,100 @@
+package com.mambu.apisdk.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.mambu.apisdk.MambuAPIServiceTest;
+import com.mambu.apisdk.exception.MambuApiException;
+import com.mambu.apisdk.util.APIData;
+import com.mambu.apisdk.util.ParamsMap;
+import com.mambu.apisdk.util.RequestExecutor.ContentType;
+import com.mambu.apisdk.util.RequestExecutor.Method;
+import com.mambu.organization.shared.model.Branch;
+
+/**
+ * Tests for the reference data cache snapshot
+ *
+ * @author agent
+ *
+ */
+public class ReferenceDataSnapshotTest extends MambuAPIServiceTest {
+
+	private static final String branchesUrl = "https://demo.mambutest.com/api/branches";
+
+	@Test
+	public void restoresWarmedUpCache() throws MambuApiException, IOException {
+
+		restoresWarmedUpCache(false);
+		restoresWarmedUpCache(true);
+	}
+
+	private void restoresWarmedUpCache(boolean memoryMapped) throws MambuApiException, IOException {
+
+		File snapshotFile = File.createTempFile("reference-data", ".snapshot");
+		snapshotFile.deleteOnExit();
+		snapshotFile.delete();
+
+		ParamsMap params = new ParamsMap();
+		params.put(APIData.OFFSET, "0");
+		params.put(APIData.LIMIT, String.valueOf(ReferenceDataCache.LIST_PAGE_SIZE));
+		when(executor.executeRequest(branchesUrl, params, Method.GET, ContentType.WWW_FORM)).thenReturn(
+				"[{\"encodedKey\":\"8a1\",\"id\":\"branch_1\",\"name\":\"Main\"},{\"encodedKey\":\"8a2\",\"id\":\"branch_2\"}]");
+
+		ReferenceDataCacheSettings settings = new ReferenceDataCacheSettings().setSnapshotFile(snapshotFile)
+				.setMemoryMappedSnapshot(memoryMapped);
+		ReferenceDataCache cache = new ReferenceDataCache(mambuApiService, settings);
+		assertNull(cache.loadSnapshot());
+
+		// Snapshot is written after warm up
+		cache.warmUp(ReferenceDataType.BRANCH);
+
+		// New cache is served from the snapshot without API requests
+		Mockito.reset(executor);
+		ReferenceDataCache restoredCache = new ReferenceDataCache(mambuApiService, settings);
+		Date timestamp = restoredCache.loadSnapshot();
+		assertEquals(true, timestamp != null);
+
+		List<Branch> branches = restoredCache.getBranches();
+		assertEquals(2, branches.size());
+		assertEquals("Main", branches.get(0).getName());
+		assertSame(branches.get(1), restoredCache.getBranch("branch_2"));
+		assertSame(branches.get(1), restoredCache.getBranch("8a2"));
+
+		Mockito.verifyZeroInteractions(executor);
+		snapshotFile.delete();
+	}
+
+	@Test
+	public void removesTemporaryFileIfNotMoved() throws IOException {
+
+		// The snapshot cannot replace a directory which is not empty
+		File directory = File.createTempFile("reference-data", "");
+		directory.delete();
+		File snapshotFile = new File(directory, "snapshot");
+		File blocker = new File(snapshotFile, "file");
+		assertTrue(blocker.mkdirs());
+		try {
+			ReferenceDataSnapshot.write(new ReferenceDataCache(mambuApiService), snapshotFile);
+			fail("Snapshot must not replace a directory");
+		} catch (IOException e) {
+			// Only the directory remains
+			assertEquals(1, directory.list().length);
+		} finally {
+			blocker.delete();
+			snapshotFile.delete();
+			directory.delete();
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package com.mambu.apisdk.cache;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.mambu.apisdk.MambuAPIServiceTest;
+import com.mambu.apisdk.exception.MambuApiException;
+import com.mambu.apisdk.util.ParamsMap;
+import com.mambu.apisdk.util.RequestExecutor.ContentType;
+import com.mambu.apisdk.util.RequestExecutor.Method;
+import com.mambu.core.shared.model.SearchResult;
+import com.mambu.core.shared.model.SearchType;
+
+/**
+ * Tests for the typeahead search
+ *
+ * @author agent
+ *
+ */
+public class TypeaheadSearchTest extends MambuAPIServiceTest {
+
+	@Override
+	public void setUp() throws MambuApiException {
+		super.setUp();
+
+		Mockito.when(
+				executor.executeRequest(Mockito.anyString(), (ParamsMap) Mockito.any(), Mockito.eq(Method.GET),
+						(ContentType) Mockito.any())).thenReturn(
+				"{\"CLIENT\":[{\"selectionType\":\"CLIENT\",\"displayString\":\"John Smith\",\"resultID\":\"101\"},"
+						+ "{\"selectionType\":\"CLIENT\",\"displayString\":\"Joan Smart\",\"resultID\":\"102\"}]}");
+	}
+
+	@Test
+	public void servesLongerQueriesFromPrefix() throws MambuApiException {
+
+		TypeaheadSearch search = new TypeaheadSearch(mambuApiService, null);
+		assertEquals(2, search.search("jo").get(SearchType.CLIENT).size());
+
+		List<SearchResult> results = search.search("John ").get(SearchType.CLIENT);
+		assertEquals(1, results.size());
+		assertEquals("101", results.get(0).getResultID());
+		assertEquals(true, search.search("joan sm").containsKey(SearchType.CLIENT));
+		assertEquals(1, search.getRequestCount());
+		assertEquals(2, search.getPrefixHitCount());
+
+		// Truncated results are not filtered: a shorter prefix needs a new request
+		TypeaheadSearch limitedSearch = new TypeaheadSearch(mambuApiService, null, 2, 0, 10, 1, TimeUnit.MINUTES);
+		limitedSearch.search("jo");
+		limitedSearch.search("joh");
+		assertEquals(2, limitedSearch.getRequestCount());
+		search.shutdown();
+		limitedSearch.shutdown();
+	}
+
+	@Test
+	public void debouncesKeystrokes() throws MambuApiException, InterruptedException, ExecutionException {
+
+		TypeaheadSearch search = new TypeaheadSearch(mambuApiService, null, 100, 200, 10, 1, TimeUnit.MINUTES);
+		ListenableFuture<Map<SearchType, List<SearchResult>>> first = search.searchAsync("j");
+		ListenableFuture<Map<SearchType, List<SearchResult>>> second = search.searchAsync("jo");
+
+		assertEquals(true, first.isCancelled());
+		assertEquals(2, second.get().get(SearchType.CLIENT).size());
+		assertEquals(1, search.getRequestCount());
+
+		// Served from memory without waiting
+		ListenableFuture<Map<SearchType, List<SearchResult>>> third = search.searchAsync("joa");
+		assertEquals(true, third.isDone());
+		assertEquals(1, third.get().get(SearchType.CLIENT).size());
+		search.shutdown();
+	}
+}
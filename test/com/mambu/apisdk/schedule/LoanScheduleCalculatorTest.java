@@ -0,0 +1,164 @@
+package com.mambu.apisdk.schedule;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.mambu.accounts.shared.model.InterestChargeFrequencyMethod;
+import com.mambu.admin.shared.model.InterestProductSettings;
+import com.mambu.apisdk.MambuAPIServiceTest;
+import com.mambu.apisdk.exception.MambuApiException;
+import com.mambu.apisdk.util.DateUtils;
+import com.mambu.apisdk.util.ParamsMap;
+import com.mambu.apisdk.util.RequestExecutor.ContentType;
+import com.mambu.apisdk.util.RequestExecutor.Method;
+import com.mambu.core.shared.model.RoundingRepaymentScheduleMethod;
+import com.mambu.loans.shared.model.DisbursementDetails;
+import com.mambu.loans.shared.model.GracePeriodType;
+import com.mambu.loans.shared.model.InterestCalculationMethod;
+import com.mambu.loans.shared.model.LoanAccount;
+import com.mambu.loans.shared.model.LoanAccount.RepaymentPeriodUnit;
+import com.mambu.loans.shared.model.LoanProduct;
+import com.mambu.loans.shared.model.Repayment;
+
+/**
+ * Tests for the local loan schedule calculator and its verification against Mambu
+ *
+ * @author agent
+ *
+ */
+public class LoanScheduleCalculatorTest extends MambuAPIServiceTest {
+
+	@Test
+	public void calculatesEqualInstallments() {
+
+		List<Repayment> schedule = new LoanScheduleCalculator(
+				makeProduct(InterestCalculationMethod.DECLINING_BALANCE_DISCOUNTED)).calculate(makeAccount(12, 0));
+
+		assertEquals(12, schedule.size());
+		assertEquals("2016-02-15", format(schedule.get(0)));
+		assertEquals("2017-01-15", format(schedule.get(11)));
+		assertEquals(0, new BigDecimal("78.85").compareTo(schedule.get(0).getPrincipalDue().getAmount()));
+		assertEquals(0, new BigDecimal("10.00").compareTo(schedule.get(0).getInterestDue().getAmount()));
+		BigDecimal principal = BigDecimal.ZERO;
+		for (Repayment repayment : schedule) {
+			principal = principal.add(repayment.getPrincipalDue().getAmount());
+		}
+		assertEquals(0, new BigDecimal("1000").compareTo(principal));
+	}
+
+	@Test
+	public void calculatesFixedPrincipalAndFlat() {
+
+		List<Repayment> schedule = new LoanScheduleCalculator(makeProduct(InterestCalculationMethod.DECLINING_BALANCE))
+				.calculate(makeAccount(3, 0));
+		assertAmounts(schedule, "333.33", "333.33", "333.34", "10.00", "6.67", "3.33");
+
+		LoanProduct flat = makeProduct(InterestCalculationMethod.FLAT);
+		// Deprecated in the model, but still set on older products
+		flat.setRoundingRepaymentScheduleMethod(RoundingRepaymentScheduleMethod
+				.valueOf("ROUND_REMAINDER_INTO_FIRST_REPAYMENT"));
+		schedule = new LoanScheduleCalculator(flat).calculate(makeAccount(3, 0));
+		assertAmounts(schedule, "333.34", "333.33", "333.33", "10.00", "10.00", "10.00");
+
+		// Interest only for the first installment
+		schedule = new LoanScheduleCalculator(makeProduct(InterestCalculationMethod.DECLINING_BALANCE))
+				.calculate(makeAccount(3, 1));
+		assertAmounts(schedule, "0", "500.00", "500.00", "10.00", "10.00", "5.00");
+	}
+
+	@Test
+	public void appliesInterestChargeFrequency() {
+
+		// Monthly rate of 1% is the same as the annual rate of 12%
+		LoanProduct product = makeProduct(InterestCalculationMethod.DECLINING_BALANCE);
+		product.setInterestChargeFrequency(InterestChargeFrequencyMethod.EVERY_MONTH);
+		LoanAccount account = makeAccount(3, 0);
+		account.setInterestRate(new BigDecimal("1"));
+
+		List<Repayment> schedule = new LoanScheduleCalculator(product).calculate(account);
+		assertAmounts(schedule, "333.33", "333.33", "333.34", "10.00", "6.67", "3.33");
+
+		// Products without interest rate settings have no charge frequency: the rate is annualized
+		product.setInterestRateSettings(null);
+		account.setInterestRate(new BigDecimal("12"));
+		schedule = new LoanScheduleCalculator(product).calculate(account);
+		assertAmounts(schedule, "333.33", "333.33", "333.34", "10.00", "6.67", "3.33");
+	}
+
+	@Test
+	public void reportsDivergencesFromMambu() throws MambuApiException {
+
+		// Mambu's preview differs in the interest of the second installment
+		Mockito.when(
+				executor.executeRequest(Mockito.contains("schedule"), (ParamsMap) Mockito.any(),
+						Mockito.eq(Method.GET), (ContentType) Mockito.any())).thenReturn(
+				"{\"repayments\":[" + makeRepayment("2016-02-15", "333.33", "10.00") + ","
+						+ makeRepayment("2016-03-15", "333.33", "6.70") + ","
+						+ makeRepayment("2016-04-15", "333.34", "3.33") + "]}");
+
+		LoanProduct product = makeProduct(InterestCalculationMethod.DECLINING_BALANCE);
+		ScheduleVerificationReport report = new LoanScheduleVerifier(mambuApiService).verify(product,
+				Arrays.asList(makeAccount(3, 0), makeAccount(4, 0), makeAccount(3, 0)), 2);
+
+		assertEquals(2, report.getScenariosChecked());
+		assertEquals(2, report.getDivergentScenarios());
+		// Scenario 0: the interest differs, scenario 1: the number of installments differs
+		assertEquals(2, report.getDivergences().size());
+		assertEquals("interestDue", report.getDivergences().get(0).getField());
+		assertEquals(1, report.getDivergences().get(0).getInstallment());
+		assertEquals("installments", report.getDivergences().get(1).getField());
+	}
+
+	private static LoanProduct makeProduct(InterestCalculationMethod method) {
+		LoanProduct product = new LoanProduct();
+		product.setId("PROD1");
+		product.setInterestCalculationMethod(method);
+		product.setInterestRateSettings(new InterestProductSettings());
+		product.setInterestChargeFrequency(InterestChargeFrequencyMethod.ANNUALIZED);
+		product.setRepaymentPeriodUnit(RepaymentPeriodUnit.MONTHS);
+		product.setDefaultRepaymentPeriodCount(1);
+		product.setGracePeriodType(GracePeriodType.PAY_INTEREST_ONLY);
+		return product;
+	}
+
+	private static LoanAccount makeAccount(int installments, int gracePeriod) {
+		LoanAccount account = new LoanAccount();
+		account.setLoanAmount(new BigDecimal("1000"));
+		account.setInterestRate(new BigDecimal("12"));
+		account.setRepaymentInstallments(installments);
+		account.setGracePeriod(gracePeriod);
+		Calendar disbursement = Calendar.getInstance();
+		disbursement.set(2016, Calendar.JANUARY, 15, 10, 0);
+		DisbursementDetails details = new DisbursementDetails();
+		details.setExpectedDisbursementDate(disbursement.getTime());
+		account.setDisbursementDetails(details);
+		return account;
+	}
+
+	private static void assertAmounts(List<Repayment> schedule, String... amounts) {
+		assertEquals(amounts.length / 2, schedule.size());
+		for (int i = 0; i < schedule.size(); i++) {
+			assertEquals(0, new BigDecimal(amounts[i]).compareTo(schedule.get(i).getPrincipalDue().getAmount()));
+			assertEquals(0, new BigDecimal(amounts[schedule.size() + i]).compareTo(schedule.get(i).getInterestDue()
+					.getAmount()));
+		}
+	}
+
+	private static String format(Repayment repayment) {
+		return new SimpleDateFormat(DateUtils.DATE_FORMAT).format(repayment.getDueDate());
+	}
+
+	private static String makeRepayment(String dueDate, String principal, String interest) {
+		return "{\"dueDate\":\"" + dueDate + "T12:00:00" + new SimpleDateFormat("Z").format(new Date())
+				+ "\",\"principalDue\":\"" + principal + "\",\"interestDue\":\"" + interest + "\"}";
+	}
+}
@@ -0,0 +1,75 @@
+package com.mambu.apisdk.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.mambu.apisdk.MambuAPIServiceTest;
+import com.mambu.apisdk.exception.MambuApiException;
+import com.mambu.apisdk.model.Client360;
+import com.mambu.apisdk.model.Client360.Part;
+import com.mambu.apisdk.util.ParamsMap;
+import com.mambu.apisdk.util.RequestExecutor.ContentType;
+import com.mambu.apisdk.util.RequestExecutor.Method;
+
+/**
+ * Tests for the client 360 service
+ *
+ * @author agent
+ *
+ */
+public class Client360ServiceTest extends MambuAPIServiceTest {
+
+	private Client360Service service;
+
+	@Override
+	public void setUp() throws MambuApiException {
+		super.setUp();
+
+		service = new Client360Service(super.mambuApiService);
+
+		// Comments fail and tasks are slow. Other parts are empty
+		Mockito.when(
+				executor.executeRequest(Mockito.anyString(), (ParamsMap) Mockito.any(), Mockito.eq(Method.GET),
+						(ContentType) Mockito.any())).thenAnswer(new Answer<String>() {
+			@Override
+			public String answer(InvocationOnMock invocation) throws MambuApiException, InterruptedException {
+				String url = (String) invocation.getArguments()[0];
+				if (url.contains("/comments")) {
+					throw new MambuApiException(500, "INTERNAL_ERROR");
+				}
+				if (url.contains("/tasks")) {
+					Thread.sleep(5000);
+				}
+				if (url.endsWith("/clients/C1")) {
+					return "{\"client\":{\"id\":\"C1\"}}";
+				}
+				return "[]";
+			}
+		});
+	}
+
+	@Test
+	public void returnsPartialProfileAtDeadline() {
+
+		long start = System.currentTimeMillis();
+		Client360 profile = service.getClient360("C1", 500, TimeUnit.MILLISECONDS);
+
+		assertTrue(System.currentTimeMillis() - start < 4000);
+		assertEquals("C1", profile.getClient().getClient().getId());
+		assertEquals(0, profile.getLoanAccounts().size());
+		assertEquals(0, profile.getDocuments().size());
+		assertEquals(2, profile.getErrors().size());
+		assertEquals(Integer.valueOf(500), profile.getError(Part.COMMENTS).getErrorCode());
+		assertTrue(profile.getError(Part.TASKS).getCause() instanceof TimeoutException);
+		assertNull(profile.getTasks());
+	}
+}
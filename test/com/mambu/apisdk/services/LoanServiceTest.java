@@ -5,9 +5,13 @@ package com.mambu.apisdk.services;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
+import org.junit.Assert;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
 import com.mambu.accounts.shared.model.AccountHolderType;
@@ -145,4 +149,46 @@ public class LoanServiceTest extends MambuAPIServiceTest {
 				"https://demo.mambutest.com/api/loans/8ad661123b36cfaf013b42c2e0f46dca/transactions", params,
 				Method.POST, ContentType.WWW_FORM);
 	}
+
+	@Test
+	public void getAccountsByIds() throws MambuApiException {
+
+		// First search matches IDs, second search matches encoded keys of the IDs not found
+		Mockito.when(
+				executor.executeRequest(Mockito.anyString(), (ParamsMap) Mockito.any(), Mockito.eq(Method.POST),
+						Mockito.eq(ContentType.JSON))).thenReturn(
+				"[{\"encodedKey\":\"8a2\",\"id\":\"B2\"},{\"encodedKey\":\"8a1\",\"id\":\"A1\"}]", "[]");
+
+		Map<String, LoanAccount> accounts = service.getLoanAccounts(Arrays.asList("A1", "MISSING", "B2", "A1"));
+
+		// Results are keyed by the requested IDs, in the requested order
+		Assert.assertEquals(Arrays.asList("A1", "B2"), new ArrayList<String>(accounts.keySet()));
+		Assert.assertEquals("8a1", accounts.get("A1").getEncodedKey());
+
+		ArgumentCaptor<ParamsMap> paramsCaptor = ArgumentCaptor.forClass(ParamsMap.class);
+		Mockito.verify(executor, Mockito.times(2)).executeRequest(Mockito.anyString(), paramsCaptor.capture(),
+				Mockito.eq(Method.POST), Mockito.eq(ContentType.JSON));
+		Assert.assertTrue(paramsCaptor.getAllValues().get(0).get("JSON")
+				.contains("\"filterSelection\":\"ACCOUNT_ID\",\"filterElement\":\"IN\""));
+		Assert.assertTrue(paramsCaptor.getAllValues().get(0).get("JSON").contains("[\"A1\",\"MISSING\",\"B2\"]"));
+		Assert.assertTrue(paramsCaptor.getAllValues().get(1).get("JSON")
+				.contains("\"filterSelection\":\"ENCODED_KEY\""));
+	}
+
+	@Test
+	public void getAccountsByEncodedKeys() throws MambuApiException {
+
+		Mockito.when(
+				executor.executeRequest(Mockito.anyString(), (ParamsMap) Mockito.any(), Mockito.eq(Method.POST),
+						Mockito.eq(ContentType.JSON))).thenReturn("[{\"encodedKey\":\"8a1\",\"id\":\"A1\"}]");
+
+		Map<String, LoanAccount> accounts = service.getLoanAccountsByEncodedKeys(Arrays.asList("8a1", "8a2"));
+		Assert.assertEquals(Arrays.asList("8a1"), new ArrayList<String>(accounts.keySet()));
+
+		// Keys are not searched as IDs first
+		ArgumentCaptor<ParamsMap> paramsCaptor = ArgumentCaptor.forClass(ParamsMap.class);
+		Mockito.verify(executor, Mockito.times(1)).executeRequest(Mockito.anyString(), paramsCaptor.capture(),
+				Mockito.eq(Method.POST), Mockito.eq(ContentType.JSON));
+		Assert.assertTrue(paramsCaptor.getValue().get("JSON").contains("\"filterSelection\":\"ENCODED_KEY\""));
+	}
 }
\ No newline at end of file
@@ -0,0 +1,114 @@
+package com.mambu.apisdk.sync;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.mambu.apisdk.MambuAPIServiceTest;
+import com.mambu.apisdk.exception.MambuApiException;
+import com.mambu.apisdk.util.GsonUtils;
+import com.mambu.apisdk.util.MambuEntityType;
+import com.mambu.apisdk.util.ParamsMap;
+import com.mambu.apisdk.util.RequestExecutor.ContentType;
+import com.mambu.apisdk.util.RequestExecutor.Method;
+
+/**
+ * Tests for the activity based change capture
+ *
+ * @author agent
+ *
+ */
+public class ActivityChangeCaptureTest extends MambuAPIServiceTest {
+
+	private final List<EntityChange> changes = new ArrayList<EntityChange>();
+	private String activitiesResponse;
+
+	@Override
+	public void setUp() throws MambuApiException {
+		super.setUp();
+
+		Mockito.when(
+				executor.executeRequest(Mockito.anyString(), (ParamsMap) Mockito.any(), Mockito.eq(Method.GET),
+						(ContentType) Mockito.any())).thenAnswer(new Answer<String>() {
+			@Override
+			public String answer(InvocationOnMock invocation) throws Throwable {
+				return activitiesResponse;
+			}
+		});
+		// Searches by encoded key: loan account found, client deleted, savings account found
+		Mockito.when(
+				executor.executeRequest(Mockito.contains("loans/search"), (ParamsMap) Mockito.any(),
+						Mockito.eq(Method.POST), Mockito.eq(ContentType.JSON))).thenReturn(
+				"[{\"encodedKey\":\"8aL1\",\"id\":\"L1\"}]");
+		Mockito.when(
+				executor.executeRequest(Mockito.contains("clients/search"), (ParamsMap) Mockito.any(),
+						Mockito.eq(Method.POST), Mockito.eq(ContentType.JSON))).thenReturn("[]");
+		Mockito.when(
+				executor.executeRequest(Mockito.contains("savings/search"), (ParamsMap) Mockito.any(),
+						Mockito.eq(Method.POST), Mockito.eq(ContentType.JSON))).thenReturn(
+				"[{\"encodedKey\":\"8aS1\",\"id\":\"S1\"}]");
+	}
+
+	@Test
+	public void deliversChangedEntitiesOnce() throws MambuApiException, IOException {
+
+		File checkpointFile = File.createTempFile("activities", ".checkpoint");
+		checkpointFile.deleteOnExit();
+		checkpointFile.delete();
+
+		ChangeListener listener = new ChangeListener() {
+			@Override
+			public void onChanges(List<EntityChange> batch) {
+				changes.addAll(batch);
+			}
+		};
+		SimpleDateFormat format = new SimpleDateFormat(GsonUtils.defaultDateTimeFormat);
+		String now = format.format(new Date());
+		String yesterday = format.format(new Date(System.currentTimeMillis() - 24 * 60 * 60 * 1000L));
+		activitiesResponse = "[" + activity("A1", now, "\"loanAccountKey\":\"8aL1\",\"clientKey\":\"8aC1\"") + ","
+				+ activity("A2", now, "\"loanAccountKey\":\"8aL1\"") + "," + activity("A3", now, "\"clientKey\":\"8aC1\"")
+				+ "," + activity("A4", now, "\"branchKey\":\"8aB1\"") + ","
+				+ activity("A0", yesterday, "\"branchKey\":\"8aB1\"") + "]";
+
+		ActivityChangeCapture capture = new ActivityChangeCapture(mambuApiService,
+				new CheckpointStore(checkpointFile), new Date(), listener);
+		assertEquals(2, capture.poll());
+
+		// Both loan account activities are reported with one change. The client no longer exists
+		assertEquals(MambuEntityType.LOAN_ACCOUNT, changes.get(0).getEntityType());
+		assertEquals("8aL1", changes.get(0).getEncodedKey());
+		assertEquals(2, changes.get(0).getActivities().size());
+		assertEquals(false, changes.get(0).isDeleted());
+		assertEquals(MambuEntityType.CLIENT, changes.get(1).getEntityType());
+		assertEquals(true, changes.get(1).isDeleted());
+
+		// The same day is read again: only the new activity is delivered, also after restarting from the file
+		changes.clear();
+		activitiesResponse = activitiesResponse.substring(0, activitiesResponse.length() - 1) + ","
+				+ activity("A5", now, "\"savingsAccountKey\":\"8aS1\"") + "]";
+		ActivityChangeCapture restarted = new ActivityChangeCapture(mambuApiService, new CheckpointStore(
+				checkpointFile), new Date(), listener);
+		// Only the activities of the day read again are kept in the checkpoint
+		assertEquals(4, restarted.getCheckpoint().getProcessedKeys().size());
+		assertEquals(1, restarted.poll());
+		assertEquals("8aS1", changes.get(0).getEncodedKey());
+		assertEquals(1, changes.size());
+
+		checkpointFile.delete();
+	}
+
+	private static String activity(String encodedKey, String timestamp, String entityKeys) {
+		return "{\"activity\":{\"encodedKey\":\"" + encodedKey + "\",\"timestamp\":\"" + timestamp + "\","
+				+ entityKeys + "}}";
+	}
+}
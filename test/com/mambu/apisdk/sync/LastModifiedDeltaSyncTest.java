@@ -0,0 +1,93 @@
+package com.mambu.apisdk.sync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import com.mambu.apisdk.MambuAPIServiceTest;
+import com.mambu.apisdk.exception.MambuApiException;
+import com.mambu.apisdk.util.GsonUtils;
+import com.mambu.apisdk.util.MambuEntityType;
+import com.mambu.apisdk.util.ParamsMap;
+import com.mambu.apisdk.util.RequestExecutor.ContentType;
+import com.mambu.apisdk.util.RequestExecutor.Method;
+
+/**
+ * Tests for the last modified date synchronisation
+ *
+ * @author agent
+ *
+ */
+public class LastModifiedDeltaSyncTest extends MambuAPIServiceTest {
+
+	private final List<String> delivered = new ArrayList<String>();
+
+	@Test
+	public void deliversEachModificationOnce() throws MambuApiException, IOException {
+
+		File checkpointFile = File.createTempFile("modified", ".checkpoint");
+		checkpointFile.deleteOnExit();
+		checkpointFile.delete();
+
+		// Dates are sent with a precision of seconds
+		long now = System.currentTimeMillis() / 1000 * 1000;
+		String a = account("A", now - 5000);
+		String b = account("B", now - 4000);
+		String c = account("C", now - 3000);
+		String d = account("D", now - 2000);
+		// First poll: two overlapping pages. Second poll: C unchanged, D modified again and E new
+		Mockito.when(
+				executor.executeRequest(Mockito.contains("loans/search"), (ParamsMap) Mockito.any(),
+						Mockito.eq(Method.POST), Mockito.eq(ContentType.JSON))).thenReturn("[" + a + "," + b + ","
+				+ c + "]", "[" + c + "," + d + "]",
+				"[" + c + "," + account("D", now) + "," + account("E", now - 1000) + "]", "[]");
+
+		ChangeListener listener = new ChangeListener() {
+			@Override
+			public void onChanges(List<EntityChange> changes) {
+				for (EntityChange change : changes) {
+					delivered.add(change.getEncodedKey());
+				}
+			}
+		};
+		LastModifiedDeltaSync sync = new LastModifiedDeltaSync(mambuApiService, MambuEntityType.LOAN_ACCOUNT,
+				new CheckpointStore(checkpointFile), null, listener);
+		sync.setPageSize(3, 1);
+		assertEquals(4, sync.poll());
+		assertEquals("[A, B, C, D]", delivered.toString());
+		assertEquals(now - 2000, sync.getCheckpoint().getDate().getTime());
+
+		delivered.clear();
+		LastModifiedDeltaSync restarted = new LastModifiedDeltaSync(mambuApiService, MambuEntityType.LOAN_ACCOUNT,
+				new CheckpointStore(checkpointFile), null, listener);
+		restarted.setPageSize(3, 1);
+		assertEquals(2, restarted.poll());
+		assertEquals("[D, E]", delivered.toString());
+
+		// Second page starts with the last entity of the first page. Results are filtered and sorted
+		ArgumentCaptor<ParamsMap> paramsCaptor = ArgumentCaptor.forClass(ParamsMap.class);
+		Mockito.verify(executor, Mockito.times(4)).executeRequest(Mockito.anyString(), paramsCaptor.capture(),
+				Mockito.eq(Method.POST), Mockito.eq(ContentType.JSON));
+		assertEquals("2", paramsCaptor.getAllValues().get(1).get("offset"));
+		String json = paramsCaptor.getAllValues().get(0).get("JSON");
+		assertTrue(json.contains("\"filterSelection\":\"LAST_MODIFIED_DATE\",\"filterElement\":\"BETWEEN\""));
+		assertTrue(json.contains("\"sortingColumn\":\"LAST_MODIFIED_DATE\",\"sortingOrder\":\"ASCENDING\""));
+
+		checkpointFile.delete();
+	}
+
+	private static String account(String encodedKey, long lastModified) {
+		String date = new SimpleDateFormat(GsonUtils.defaultDateTimeFormat).format(new Date(lastModified));
+		return "{\"encodedKey\":\"" + encodedKey + "\",\"lastModifiedDate\":\"" + date + "\"}";
+	}
+}
@@ -0,0 +1,147 @@
+package com.mambu.apisdk.sync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.mambu.apisdk.MambuAPIServiceTest;
+import com.mambu.apisdk.cache.ReferenceDataCache;
+import com.mambu.apisdk.exception.MambuApiException;
+import com.mambu.apisdk.util.GsonUtils;
+import com.mambu.apisdk.util.ParamsMap;
+import com.mambu.apisdk.util.RequestExecutor.ContentType;
+import com.mambu.apisdk.util.RequestExecutor.Method;
+import com.mambu.loans.shared.model.LoanAccount;
+
+/**
+ * Tests for the portfolio replica
+ *
+ * @author agent
+ *
+ */
+public class PortfolioReplicaTest extends MambuAPIServiceTest {
+
+	private static final String apiUrl = "https://demo.mambutest.com/api/";
+
+	private String activitiesResponse = "[]";
+
+	@Override
+	public void setUp() throws MambuApiException {
+		super.setUp();
+
+		Mockito.when(
+				executor.executeRequest(Mockito.anyString(), (ParamsMap) Mockito.any(), Mockito.eq(Method.GET),
+						(ContentType) Mockito.any())).thenAnswer(new Answer<String>() {
+			@Override
+			public String answer(InvocationOnMock invocation) throws Throwable {
+				String url = (String) invocation.getArguments()[0];
+				if (url.startsWith(apiUrl + "loans")) {
+					return "[" + loan("8aL1", "8aB1", "8aU1", "ACTIVE") + "," + loan("8aL2", "8aB1", "8aU2", "ACTIVE")
+							+ "," + loan("8aL3", "8aB2", "8aU1", "CLOSED") + "]";
+				}
+				if (url.startsWith(apiUrl + "branches/BR1")) {
+					return "{\"encodedKey\":\"8aB1\",\"id\":\"BR1\"}";
+				}
+				if (url.startsWith(apiUrl + "branches/")) {
+					throw new MambuApiException(404, "{\"returnCode\":8,\"returnStatus\":\"INVALID_BRANCH_ID\"}");
+				}
+				if (url.startsWith(apiUrl + "users/officer")) {
+					return "{\"encodedKey\":\"8aU1\",\"id\":\"1\",\"username\":\"officer\"}";
+				}
+				if (url.startsWith(apiUrl + "activities")) {
+					return activitiesResponse;
+				}
+				return "[]";
+			}
+		});
+	}
+
+	@Test
+	public void servesQueriesLocally() throws MambuApiException {
+
+		PortfolioReplica replica = new PortfolioReplica(mambuApiService, new ReferenceDataCache(mambuApiService));
+		replica.setMaxStalenessMillis(60 * 1000L);
+
+		List<LoanAccount> loans = replica.getLoanAccountsByBranchCentreOfficerState("BR1", null, null, "ACTIVE", null,
+				null);
+		assertEquals(2, loans.size());
+		assertEquals("8aL1", loans.get(0).getEncodedKey());
+		assertEquals(1, replica.getLoanAccountsByBranchOfficerState("BR1", "officer", null, null, null).size());
+		assertEquals(1, replica.getLoanAccountsByBranchCentreOfficerState(null, null, null, null, "2", "5").size());
+		assertEquals(0, replica.getLoanAccountsByBranchOfficerState("MISSING", null, null, null, null).size());
+
+		// Queries within the staleness bound do not request accounts again
+		Mockito.verify(executor, Mockito.times(1)).executeRequest(Mockito.startsWith(apiUrl + "loans"),
+				(ParamsMap) Mockito.any(), Mockito.eq(Method.GET), (ContentType) Mockito.any());
+		Mockito.verify(executor, Mockito.never()).executeRequest(Mockito.startsWith(apiUrl + "activities"),
+				(ParamsMap) Mockito.any(), Mockito.eq(Method.GET), (ContentType) Mockito.any());
+	}
+
+	@Test
+	public void appliesChangedAccounts() throws MambuApiException {
+
+		PortfolioReplica replica = new PortfolioReplica(mambuApiService, new ReferenceDataCache(mambuApiService));
+		replica.setMaxStalenessMillis(0);
+		replica.load();
+
+		// Loan 8aL2 was closed: it is fetched again by encoded key
+		String now = new SimpleDateFormat(GsonUtils.defaultDateTimeFormat).format(new Date());
+		activitiesResponse = "[{\"activity\":{\"encodedKey\":\"A1\",\"timestamp\":\"" + now
+				+ "\",\"loanAccountKey\":\"8aL2\"}}]";
+		Mockito.when(
+				executor.executeRequest(Mockito.contains("loans/search"), (ParamsMap) Mockito.any(),
+						Mockito.eq(Method.POST), Mockito.eq(ContentType.JSON))).thenReturn(
+				"[" + loan("8aL2", "8aB1", "8aU2", "CLOSED") + "]");
+
+		List<LoanAccount> active = replica.getLoanAccountsByBranchCentreOfficerState("BR1", null, null, "ACTIVE",
+				null, null);
+		assertEquals(1, active.size());
+		assertEquals("8aL1", active.get(0).getEncodedKey());
+		assertEquals(2, replica.getLoanAccountsByBranchCentreOfficerState(null, null, null, "CLOSED", null, null)
+				.size());
+	}
+
+	@Test
+	public void refreshesInBackground() throws MambuApiException, InterruptedException {
+
+		PortfolioReplica replica = new PortfolioReplica(mambuApiService, new ReferenceDataCache(mambuApiService));
+		replica.setRefreshIntervalMillis(10);
+		replica.load();
+		Date loadTime = replica.getLastRefreshTime();
+		Mockito.when(
+				executor.executeRequest(Mockito.contains("loans/search"), (ParamsMap) Mockito.any(),
+						Mockito.eq(Method.POST), Mockito.eq(ContentType.JSON))).thenReturn(
+				"[" + loan("8aL2", "8aB1", "8aU2", "CLOSED") + "]");
+		String now = new SimpleDateFormat(GsonUtils.defaultDateTimeFormat).format(new Date());
+		activitiesResponse = "[{\"activity\":{\"encodedKey\":\"A1\",\"timestamp\":\"" + now
+				+ "\",\"loanAccountKey\":\"8aL2\"}}]";
+
+		// Queries within the staleness bound do not wait for the refresh, which applies the change in the background
+		replica.start();
+		try {
+			long deadline = System.currentTimeMillis() + 5000;
+			while (replica.getLoanAccountsByBranchCentreOfficerState(null, null, null, "CLOSED", null, null).size() < 2
+					&& System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+		} finally {
+			replica.stop();
+		}
+		assertEquals(2, replica.getLoanAccountsByBranchCentreOfficerState(null, null, null, "CLOSED", null, null)
+				.size());
+		assertTrue(replica.getLastRefreshTime().after(loadTime));
+	}
+
+	private static String loan(String encodedKey, String branchKey, String userKey, String state) {
+		return "{\"encodedKey\":\"" + encodedKey + "\",\"assignedBranchKey\":\"" + branchKey
+				+ "\",\"assignedUserKey\":\"" + userKey + "\",\"accountState\":\"" + state + "\"}";
+	}
+}
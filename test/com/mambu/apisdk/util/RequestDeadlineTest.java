@@ -0,0 +1,53 @@
+package com.mambu.apisdk.util;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.http.client.methods.HttpGet;
+import org.junit.Test;
+
+import com.mambu.apisdk.exception.MambuApiException;
+
+/**
+ * Tests for request deadlines
+ *
+ * @author agent
+ *
+ */
+public class RequestDeadlineTest {
+
+	@Test
+	public void abortsRequestsAtDeadline() throws MambuApiException, InterruptedException {
+
+		RequestDeadline.setDeadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(50));
+		try {
+			// A request completed before the deadline is not aborted
+			HttpGet completed = new HttpGet("https://demo.mambutest.com/api/clients");
+			RequestDeadline.abortAtDeadline(completed);
+			RequestDeadline.cancelAbort();
+
+			HttpGet running = new HttpGet("https://demo.mambutest.com/api/loans");
+			RequestDeadline.abortAtDeadline(running);
+			long deadline = System.currentTimeMillis() + 5000;
+			while (!running.isAborted() && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			assertTrue(running.isAborted());
+			assertFalse(completed.isAborted());
+
+			// Requests are not sent after the deadline
+			try {
+				RequestDeadline.abortAtDeadline(new HttpGet("https://demo.mambutest.com/api/savings"));
+				fail("Request after the deadline must not be sent");
+			} catch (MambuApiException e) {
+				assertTrue(e.getCause() instanceof TimeoutException);
+			}
+		} finally {
+			RequestDeadline.clearDeadline();
+		}
+	}
+}
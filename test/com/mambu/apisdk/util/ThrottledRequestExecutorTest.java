@@ -0,0 +1,110 @@
+package com.mambu.apisdk.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.mambu.apisdk.exception.MambuApiException;
+import com.mambu.apisdk.util.RequestExecutor.ContentType;
+import com.mambu.apisdk.util.RequestExecutor.Method;
+
+/**
+ * Tests for the throttling request executor
+ *
+ * @author agent
+ *
+ */
+public class ThrottledRequestExecutorTest {
+
+	private RequestExecutor executor;
+
+	@Before
+	public void setUp() {
+		executor = Mockito.mock(RequestExecutor.class);
+	}
+
+	@Test
+	public void delegatesRequests() throws MambuApiException {
+
+		when(executor.executeRequest("url", null, Method.GET, ContentType.WWW_FORM)).thenReturn("response");
+
+		ThrottledRequestExecutor throttled = new ThrottledRequestExecutor(executor, 100d, 2, 1000);
+		assertEquals("response", throttled.executeRequest("url", Method.GET));
+
+		throttled.setAuthorization("user", "password");
+		Mockito.verify(executor).setAuthorization("user", "password");
+		assertEquals(Integer.valueOf(2), throttled.getAvailableConcurrentRequests());
+	}
+
+	@Test
+	public void rejectsRequestsOverBulkhead() throws Exception {
+
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		when(executor.executeRequest("url", null, Method.GET, ContentType.WWW_FORM)).thenAnswer(new Answer<String>() {
+
+			@Override
+			public String answer(InvocationOnMock invocation) throws Throwable {
+				started.countDown();
+				release.await();
+				return "response";
+			}
+		});
+
+		final ThrottledRequestExecutor throttled = new ThrottledRequestExecutor(executor, null, 1, 10);
+		Thread inFlight = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					throttled.executeRequest("url", Method.GET);
+				} catch (MambuApiException e) {
+					// not expected
+				}
+			}
+		});
+		inFlight.start();
+		started.await();
+
+		try {
+			throttled.executeRequest("url", Method.GET);
+			fail("Request over the bulkhead limit must be rejected");
+		} catch (MambuApiException e) {
+			assertEquals(Integer.valueOf(ThrottledRequestExecutor.REQUEST_REJECTED), e.getErrorCode());
+		} finally {
+			release.countDown();
+			inFlight.join();
+		}
+		assertEquals(Integer.valueOf(1), throttled.getAvailableConcurrentRequests());
+	}
+
+	@Test
+	public void sharesThrottleAcrossExecutors() throws MambuApiException {
+
+		when(executor.executeRequest("url", null, Method.GET, ContentType.WWW_FORM)).thenReturn("response");
+
+		RequestThrottle throttle = new RequestThrottle(null, 2, 0);
+		ThrottledRequestExecutor first = new ThrottledRequestExecutor(executor, throttle);
+		ThrottledRequestExecutor second = new ThrottledRequestExecutor(executor, throttle);
+		assertEquals("response", first.executeRequest("url", Method.GET));
+		assertEquals(Integer.valueOf(2), second.getAvailableConcurrentRequests());
+
+		// New limits apply to all executors sharing the throttle
+		throttle.setLimits(null, 1, 0);
+		assertEquals(Integer.valueOf(1), first.getAvailableConcurrentRequests());
+		assertEquals(Integer.valueOf(1), second.getAvailableConcurrentRequests());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsInvalidLimits() {
+		new ThrottledRequestExecutor(executor, 0d, null, 0);
+	}
+}